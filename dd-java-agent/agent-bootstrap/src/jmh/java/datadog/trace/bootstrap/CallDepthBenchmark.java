@@ -0,0 +1,59 @@
+package datadog.trace.bootstrap;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Overhead of tracking nested instrumented calls: each operation enters {@code depth} nested calls
+ * then resets the depth, as the advice of an outer call does on exit. The HashMap based tracking
+ * used before slots were assigned to keys is kept as a baseline.
+ */
+@State(Scope.Thread)
+public class CallDepthBenchmark {
+  private static final ThreadLocal<Map<Object, Integer>> HASH_MAP_TLS =
+      new ThreadLocal<Map<Object, Integer>>() {
+        @Override
+        public Map<Object, Integer> initialValue() {
+          return new HashMap<>();
+        }
+      };
+
+  @Param({"1", "3"})
+  int depth;
+
+  @Benchmark
+  public int nestedCalls() {
+    int outer = 0;
+    for (int i = 0; i < depth; i++) {
+      outer |= CallDepthThreadLocalMap.incrementCallDepth(CallDepthBenchmark.class);
+    }
+    CallDepthThreadLocalMap.reset(CallDepthBenchmark.class);
+    return outer;
+  }
+
+  @Benchmark
+  public int nestedCallsHashMap() {
+    int outer = 0;
+    for (int i = 0; i < depth; i++) {
+      outer |= hashMapIncrementCallDepth(CallDepthBenchmark.class);
+    }
+    HASH_MAP_TLS.get().remove(CallDepthBenchmark.class);
+    return outer;
+  }
+
+  private static int hashMapIncrementCallDepth(final Object k) {
+    final Map<Object, Integer> map = HASH_MAP_TLS.get();
+    Integer depth = map.get(k);
+    if (depth == null) {
+      depth = 0;
+    } else {
+      depth += 1;
+    }
+    map.put(k, depth);
+    return depth;
+  }
+}
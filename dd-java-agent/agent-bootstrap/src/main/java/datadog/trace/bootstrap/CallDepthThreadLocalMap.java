@@ -1,36 +1,59 @@
 package datadog.trace.bootstrap;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Utility to track nested instrumentation.
  *
  * <p>For example, this can be used to track nested calls to super() in constructors by calling
  * #incrementCallDepth at the beginning of each constructor.
+ *
+ * <p>Each key class is assigned a slot the first time it is used, the call depths of a thread are
+ * kept in an array indexed by slot, so neither incrementing nor resetting a depth allocates.
  */
 public class CallDepthThreadLocalMap {
-  private static final ThreadLocal<Map<Object, Integer>> TLS =
-      new ThreadLocal<Map<Object, Integer>>() {
+  private static final AtomicInteger NEXT_SLOT = new AtomicInteger();
+
+  private static final ClassValue<Integer> SLOTS =
+      new ClassValue<Integer>() {
         @Override
-        public Map<Object, Integer> initialValue() {
-          return new HashMap<>();
+        protected Integer computeValue(final Class<?> type) {
+          return NEXT_SLOT.getAndIncrement();
         }
       };
 
-  public static int incrementCallDepth(final Object k) {
-    final Map<Object, Integer> map = TLS.get();
-    Integer depth = map.get(k);
-    if (depth == null) {
-      depth = 0;
-    } else {
-      depth += 1;
-    }
-    map.put(k, depth);
-    return depth;
+  private static final ThreadLocal<CallDepths> TLS =
+      new ThreadLocal<CallDepths>() {
+        @Override
+        public CallDepths initialValue() {
+          return new CallDepths();
+        }
+      };
+
+  public static int incrementCallDepth(final Class<?> k) {
+    return TLS.get().increment(SLOTS.get(k));
   }
 
-  public static void reset(final Object k) {
-    TLS.get().remove(k);
+  public static void reset(final Class<?> k) {
+    TLS.get().reset(SLOTS.get(k));
+  }
+
+  private static final class CallDepths {
+    /** Number of calls since the last reset, per slot */
+    private int[] depths = new int[16];
+
+    int increment(final int slot) {
+      if (slot >= depths.length) {
+        depths = Arrays.copyOf(depths, Math.max(slot + 1, depths.length * 2));
+      }
+      return depths[slot]++;
+    }
+
+    void reset(final int slot) {
+      if (slot < depths.length) {
+        depths[slot] = 0;
+      }
+    }
   }
 }
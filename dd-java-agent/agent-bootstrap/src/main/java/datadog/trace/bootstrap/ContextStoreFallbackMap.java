@@ -0,0 +1,234 @@
+package datadog.trace.bootstrap;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Weak identity map used by the field backed context stores when the context field can't be
+ * injected in the key class, for example because the class was loaded before the agent.
+ *
+ * <ul>
+ *   Keys are spread over lock striped segments...
+ *   <li>lookups don't lock
+ *   <li>updates only lock the segment of the key, which is also the lock to use to synchronize
+ *       compound operations on the key, see {@link #lockFor(Object)}
+ *   <li>entries of collected keys are expunged by the next update of their segment -- no cleaner
+ *       thread is needed
+ * </ul>
+ */
+public final class ContextStoreFallbackMap<K, V> implements WeakMap<K, V> {
+  private static final int SEGMENTS = 16; // must be a power of 2
+  private static final int INITIAL_SEGMENT_CAPACITY = 16; // must be a power of 2
+
+  // Contexts stored in all the fallback maps. Only counted when an entry is added, which happens
+  // once per key and under the segment lock, so lookups don't pay for it.
+  private static final AtomicLong STORES = new AtomicLong();
+
+  private final Segment<K, V>[] segments;
+
+  @SuppressWarnings("unchecked")
+  public ContextStoreFallbackMap() {
+    segments = new Segment[SEGMENTS];
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment<>();
+    }
+  }
+
+  /**
+   * @return how many contexts were stored in a fallback map, that is how often a context store
+   *     couldn't use a field of the key and fell back to a map.
+   */
+  public static long getStoreCount() {
+    return STORES.get();
+  }
+
+  /** @return the lock guarding the updates of the key */
+  public Object lockFor(final K key) {
+    return segmentFor(hash(key));
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (final Segment<K, V> segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  @Override
+  public boolean containsKey(final K key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public V get(final K key) {
+    final int hash = hash(key);
+    return segmentFor(hash).get(key, hash);
+  }
+
+  @Override
+  public void put(final K key, final V value) {
+    final int hash = hash(key);
+    segmentFor(hash).put(key, hash, value, false);
+  }
+
+  @Override
+  public void putIfAbsent(final K key, final V value) {
+    final int hash = hash(key);
+    segmentFor(hash).put(key, hash, value, true);
+  }
+
+  @Override
+  public V computeIfAbsent(final K key, final ValueSupplier<? super K, ? extends V> supplier) {
+    final int hash = hash(key);
+    final Segment<K, V> segment = segmentFor(hash);
+    final V value = segment.get(key, hash);
+    if (value != null) {
+      return value;
+    }
+    synchronized (segment) {
+      final V existing = segment.get(key, hash);
+      if (existing != null) {
+        return existing;
+      }
+      final V created = supplier.get(key);
+      segment.put(key, hash, created, false);
+      return created;
+    }
+  }
+
+  private static int hash(final Object key) {
+    if (key == null) {
+      throw new NullPointerException("key");
+    }
+    return System.identityHashCode(key);
+  }
+
+  private Segment<K, V> segmentFor(final int hash) {
+    return segments[segmentIndex(hash)];
+  }
+
+  private static int segmentIndex(final int hash) {
+    // the top bits of the mixed hash, the bucket indexes use the low bits of the hash
+    return (hash * 0x9E3779B9) >>> 28;
+  }
+
+  /**
+   * Hash table of weak keys. Chains are immutable except for the values, so they can be read
+   * without locking while updated.
+   */
+  private static final class Segment<K, V> extends ReferenceQueue<K> {
+    private volatile AtomicReferenceArray<Entry<K, V>> table =
+        new AtomicReferenceArray<>(INITIAL_SEGMENT_CAPACITY);
+    private int count; // guarded by this
+
+    V get(final Object key, final int hash) {
+      final AtomicReferenceArray<Entry<K, V>> table = this.table;
+      for (Entry<K, V> e = table.get(hash & (table.length() - 1)); e != null; e = e.next) {
+        if (e.hash == hash && e.get() == key) {
+          return e.value;
+        }
+      }
+      return null;
+    }
+
+    synchronized void put(final K key, final int hash, final V value, final boolean onlyIfAbsent) {
+      expungeStaleEntries();
+      final AtomicReferenceArray<Entry<K, V>> table = this.table;
+      final int index = hash & (table.length() - 1);
+      final Entry<K, V> head = table.get(index);
+      for (Entry<K, V> e = head; e != null; e = e.next) {
+        if (e.hash == hash && e.get() == key) {
+          if (!onlyIfAbsent) {
+            e.value = value;
+          }
+          return;
+        }
+      }
+      table.set(index, new Entry<>(key, hash, value, head, this));
+      STORES.incrementAndGet();
+      if (++count > table.length() * 3 / 4) {
+        resize();
+      }
+    }
+
+    synchronized int size() {
+      expungeStaleEntries();
+      return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expungeStaleEntries() {
+      Reference<? extends K> reference;
+      while ((reference = poll()) != null) {
+        remove((Entry<K, V>) reference);
+      }
+    }
+
+    /** The entries preceding the removed one are copied, the ones following it are shared. */
+    private void remove(final Entry<K, V> entry) {
+      final AtomicReferenceArray<Entry<K, V>> table = this.table;
+      final int index = entry.hash & (table.length() - 1);
+      final Entry<K, V> head = table.get(index);
+      for (Entry<K, V> e = head; e != null; e = e.next) {
+        if (e == entry) {
+          Entry<K, V> newHead = entry.next;
+          for (Entry<K, V> p = head; p != entry; p = p.next) {
+            final K key = p.get();
+            if (key != null) {
+              newHead = new Entry<>(key, p.hash, p.value, newHead, this);
+            } else {
+              count--;
+            }
+          }
+          table.set(index, newHead);
+          count--;
+          return;
+        }
+      }
+      // already dropped while copying another chain
+    }
+
+    private void resize() {
+      final AtomicReferenceArray<Entry<K, V>> oldTable = table;
+      final AtomicReferenceArray<Entry<K, V>> newTable =
+          new AtomicReferenceArray<>(oldTable.length() * 2);
+      final int mask = newTable.length() - 1;
+      int newCount = 0;
+      for (int i = 0; i < oldTable.length(); i++) {
+        for (Entry<K, V> e = oldTable.get(i); e != null; e = e.next) {
+          final K key = e.get();
+          if (key != null) {
+            final int index = e.hash & mask;
+            newTable.set(index, new Entry<>(key, e.hash, e.value, newTable.get(index), this));
+            newCount++;
+          }
+        }
+      }
+      table = newTable;
+      count = newCount;
+    }
+  }
+
+  private static final class Entry<K, V> extends WeakReference<K> {
+    final int hash;
+    final Entry<K, V> next;
+    volatile V value;
+
+    Entry(
+        final K key,
+        final int hash,
+        final V value,
+        final Entry<K, V> next,
+        final ReferenceQueue<K> queue) {
+      super(key, queue);
+      this.hash = hash;
+      this.value = value;
+      this.next = next;
+    }
+  }
+}
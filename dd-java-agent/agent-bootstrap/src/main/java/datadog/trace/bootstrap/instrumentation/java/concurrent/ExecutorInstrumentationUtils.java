@@ -56,6 +56,11 @@ public class ExecutorInstrumentationUtils {
       final ContextStore<T, State> contextStore, final T task, final TraceScope scope) {
 
     final State state = contextStore.putIfAbsent(task, State.FACTORY);
+    if (state.hasContinuation()) {
+      // the task was already submitted, don't capture a continuation only to close it
+      log.debug("task {} already has a continuation, state: {}", task, state);
+      return state;
+    }
 
     final TraceScope.Continuation continuation = scope.capture();
     if (state.setContinuation(continuation)) {
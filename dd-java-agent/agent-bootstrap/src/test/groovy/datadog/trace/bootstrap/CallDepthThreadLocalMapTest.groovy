@@ -6,8 +6,8 @@ class CallDepthThreadLocalMapTest extends Specification {
 
   def "test CallDepthThreadLocalMap"() {
     setup:
-    def k1 = new Object()
-    def k2 = new Object()
+    def k1 = K1
+    def k2 = K2
 
     expect:
     CallDepthThreadLocalMap.incrementCallDepth(k1) == 0
@@ -31,5 +31,44 @@ class CallDepthThreadLocalMapTest extends Specification {
 
     CallDepthThreadLocalMap.incrementCallDepth(k1) == 1
     CallDepthThreadLocalMap.incrementCallDepth(k2) == 1
+
+    cleanup:
+    CallDepthThreadLocalMap.reset(k1)
+    CallDepthThreadLocalMap.reset(k2)
+  }
+
+  def "call depths are per thread"() {
+    setup:
+    CallDepthThreadLocalMap.incrementCallDepth(K1)
+    def otherThreadDepth = null
+    def thread = Thread.start {
+      otherThreadDepth = CallDepthThreadLocalMap.incrementCallDepth(K1)
+    }
+    thread.join()
+
+    expect:
+    otherThreadDepth == 0
+    CallDepthThreadLocalMap.incrementCallDepth(K1) == 1
+
+    cleanup:
+    CallDepthThreadLocalMap.reset(K1)
   }
+
+  def "many keys"() {
+    setup:
+    // more key classes than the initial number of slots
+    def keys = [String, Integer, Long, Short, Byte, Double, Float, Character, Boolean, Object,
+                Number, Thread, Runnable, Map, List, Set, Collection, Iterable, K1, K2]
+
+    expect:
+    keys.every { CallDepthThreadLocalMap.incrementCallDepth(it) == 0 }
+    keys.every { CallDepthThreadLocalMap.incrementCallDepth(it) == 1 }
+
+    cleanup:
+    keys.each { CallDepthThreadLocalMap.reset(it) }
+  }
+
+  static class K1 {}
+
+  static class K2 {}
 }
@@ -0,0 +1,135 @@
+package datadog.trace.bootstrap
+
+import datadog.trace.util.gc.GCUtils
+import spock.lang.Specification
+
+import java.lang.ref.WeakReference
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class ContextStoreFallbackMapTest extends Specification {
+  def map = new ContextStoreFallbackMap<Object, String>()
+
+  def "keys are compared by identity"() {
+    setup:
+    def key1 = new String("key")
+    def key2 = new String("key")
+
+    when:
+    map.put(key1, "value1")
+    map.put(key2, "value2")
+
+    then:
+    map.get(key1) == "value1"
+    map.get(key2) == "value2"
+    map.size() == 2
+  }
+
+  def "putIfAbsent and computeIfAbsent keep the existing value"() {
+    setup:
+    def key = new Object()
+    def supplier = Mock(WeakMap.ValueSupplier)
+
+    when:
+    map.putIfAbsent(key, "first")
+    map.putIfAbsent(key, "second")
+
+    then:
+    map.get(key) == "first"
+
+    when:
+    def value = map.computeIfAbsent(key, supplier)
+
+    then:
+    value == "first"
+    0 * supplier._
+
+    when:
+    def otherKey = new Object()
+    def computed = map.computeIfAbsent(otherKey, supplier)
+
+    then:
+    1 * supplier.get(otherKey) >> "computed"
+    computed == "computed"
+    map.containsKey(otherKey)
+  }
+
+  def "many keys"() {
+    setup:
+    def keys = (1..10000).collect { new Object() }
+
+    when:
+    keys.eachWithIndex { key, i -> map.put(key, "value$i".toString()) }
+
+    then:
+    map.size() == keys.size()
+    (0..<keys.size()).every { map.get(keys[it]) == "value$it".toString() }
+  }
+
+  def "entries of collected keys are expunged"() {
+    setup:
+    def keys = (1..100).collect { new Object() }
+    keys.each { map.put(it, "value") }
+    def key = new Object()
+    map.put(key, "value")
+
+    when:
+    def keyRef = new WeakReference(key)
+    key = null
+    GCUtils.awaitGC(keyRef)
+
+    then:
+    map.size() == keys.size()
+    keys.every { map.get(it) == "value" }
+  }
+
+  def "the lock of a key is stable"() {
+    setup:
+    def key = new Object()
+
+    expect:
+    map.lockFor(key).is(map.lockFor(key))
+  }
+
+  def "concurrent updates"() {
+    setup:
+    def threads = 8
+    def keys = (1..1000).collect { new Object() }
+    def executor = Executors.newFixedThreadPool(threads)
+    def start = new CountDownLatch(1)
+
+    when:
+    def futures = (1..threads).collect { thread ->
+      executor.submit({
+        start.await()
+        keys.each { key -> map.computeIfAbsent(key, { "$thread".toString() } as WeakMap.ValueSupplier) }
+      } as Callable)
+    }
+    start.countDown()
+    futures*.get(10, TimeUnit.SECONDS)
+
+    then:
+    map.size() == keys.size()
+    keys.every { map.get(it) != null }
+
+    cleanup:
+    executor.shutdownNow()
+  }
+
+  def "stores are counted once per key"() {
+    setup:
+    def key = new Object()
+    def stores = ContextStoreFallbackMap.getStoreCount()
+
+    when:
+    map.put(key, "value")
+    map.put(key, "other")
+    map.putIfAbsent(key, "another")
+    map.get(key)
+
+    then:
+    ContextStoreFallbackMap.getStoreCount() == stores + 1
+  }
+}
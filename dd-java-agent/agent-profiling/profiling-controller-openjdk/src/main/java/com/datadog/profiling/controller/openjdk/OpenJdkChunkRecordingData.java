@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 Datadog
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datadog.profiling.controller.openjdk;
+
+import com.datadog.profiling.controller.RecordingData;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Completed JFR chunks read in place from the repository. A JFR file is a sequence of chunks, so
+ * the chunk files are simply concatenated.
+ *
+ * <p>The files are opened right away: JFR may delete the chunks once they are older than the max
+ * age of the recordings, but the open files stay readable until released.
+ */
+@Slf4j
+public class OpenJdkChunkRecordingData implements RecordingData {
+
+  private final String name;
+  private final Instant start;
+  private final Instant end;
+  private final List<InputStream> chunks;
+  private final InputStream stream;
+  private final long size;
+
+  OpenJdkChunkRecordingData(
+      final String name, final List<Path> chunkFiles, final Instant start, final Instant end)
+      throws IOException {
+    this.name = name;
+    this.start = start;
+    this.end = end;
+    chunks = new ArrayList<>(chunkFiles.size());
+    long size = 0;
+    try {
+      for (final Path chunk : chunkFiles) {
+        chunks.add(new FileInputStream(chunk.toFile()));
+        size += chunk.toFile().length();
+      }
+    } catch (final IOException e) {
+      release();
+      throw e;
+    }
+    this.size = size;
+    stream = new SequenceInputStream(Collections.enumeration(chunks));
+  }
+
+  @Override
+  public InputStream getStream() {
+    return stream;
+  }
+
+  @Override
+  public void release() {
+    for (final InputStream chunk : chunks) {
+      try {
+        chunk.close();
+      } catch (final IOException e) {
+        log.debug("Unable to close chunk of recording {}", name, e);
+      }
+    }
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public String toString() {
+    return "OpenJdkChunkRecording: " + getName();
+  }
+
+  @Override
+  public Instant getStart() {
+    return start;
+  }
+
+  @Override
+  public Instant getEnd() {
+    return end;
+  }
+
+  @Override
+  public long getSize() {
+    return size;
+  }
+
+  // Visible for testing
+  int getChunkCount() {
+    return chunks.size();
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 Datadog
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datadog.profiling.controller.openjdk;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lists the chunk files JFR has completed in its repository.
+ *
+ * <p>Chunk files are named after their start time, so they sort chronologically by name. The last
+ * one is the chunk being written: depending on the JDK it is either a {@code .part} file renamed
+ * once completed, or already a {@code .jfr} file. Only the name of the last listed chunk is kept
+ * to skip the chunks already handed over.
+ *
+ * <p>Note: the repository is shared by all the recordings of the JVM, the chunks contain the events
+ * of every running recording.
+ */
+final class OpenJdkChunkRepository {
+  // Set by JFR once the repository is created
+  static final String REPOSITORY_PROPERTY = "jdk.jfr.repository";
+  static final String CHUNK_EXTENSION = ".jfr";
+  static final String PARTIAL_CHUNK_EXTENSION = ".part";
+
+  // whether the repository follows the location JFR advertises
+  private final boolean followsJfr;
+  private Path repository;
+  private String lastChunk;
+
+  /**
+   * @return the repository of the running recordings, {@code null} if JFR doesn't expose its
+   *     location
+   */
+  static OpenJdkChunkRepository current() {
+    final String location = System.getProperty(REPOSITORY_PROPERTY);
+    if (location == null) {
+      return null;
+    }
+    final OpenJdkChunkRepository repository = new OpenJdkChunkRepository(Paths.get(location), true);
+    try {
+      // skip the chunks recorded before
+      repository.completedChunks();
+    } catch (final IOException e) {
+      return null;
+    }
+    return repository;
+  }
+
+  OpenJdkChunkRepository(final Path repository, final boolean followsJfr) {
+    this.repository = repository;
+    this.followsJfr = followsJfr;
+  }
+
+  /**
+   * @return the chunks completed since the previous call, oldest first
+   * @throws IOException if the repository can't be listed
+   */
+  synchronized List<Path> completedChunks() throws IOException {
+    // the repository moves if it is reconfigured with jcmd, no chunk was handed over from the new
+    // one yet
+    if (followsJfr) {
+      final String location = System.getProperty(REPOSITORY_PROPERTY);
+      if (location != null && !repository.equals(Paths.get(location))) {
+        repository = Paths.get(location);
+        lastChunk = null;
+      }
+    }
+
+    final List<String> chunks = new ArrayList<>();
+    try (final DirectoryStream<Path> files = Files.newDirectoryStream(repository)) {
+      for (final Path file : files) {
+        final String name = file.getFileName().toString();
+        if ((name.endsWith(CHUNK_EXTENSION) || name.endsWith(PARTIAL_CHUNK_EXTENSION))
+            && (lastChunk == null || name.compareTo(lastChunk) > 0)) {
+          chunks.add(name);
+        }
+      }
+    }
+    if (chunks.isEmpty()) {
+      return Collections.emptyList();
+    }
+    Collections.sort(chunks);
+    // the newest chunk is still being written
+    chunks.remove(chunks.size() - 1);
+
+    final List<Path> completed = new ArrayList<>(chunks.size());
+    for (final String chunk : chunks) {
+      if (chunk.endsWith(CHUNK_EXTENSION)) {
+        completed.add(repository.resolve(chunk));
+        lastChunk = chunk;
+      }
+    }
+    return completed;
+  }
+}
@@ -1,7 +1,11 @@
 package com.datadog.profiling.controller.openjdk;
 
 import com.datadog.profiling.controller.OngoingRecording;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.time.Instant;
+import java.util.List;
 import jdk.jfr.FlightRecorder;
 import jdk.jfr.Recording;
 import jdk.jfr.RecordingState;
@@ -9,9 +13,15 @@ import jdk.jfr.RecordingState;
 public class OpenJdkOngoingRecording implements OngoingRecording {
 
   private final Recording recording;
+  private final OpenJdkChunkRepository chunkRepository;
 
   OpenJdkOngoingRecording(final Recording recording) {
+    this(recording, OpenJdkChunkRepository.current());
+  }
+
+  OpenJdkOngoingRecording(final Recording recording, final OpenJdkChunkRepository chunkRepository) {
     this.recording = recording;
+    this.chunkRepository = chunkRepository;
   }
 
   @Override
@@ -35,6 +45,31 @@ public class OpenJdkOngoingRecording implements OngoingRecording {
     return new OpenJdkRecordingData(snapshot, start, end);
   }
 
+  @Override
+  public OpenJdkChunkRecordingData rotateChunks(final Instant start, final Instant end) {
+    if (recording.getState() != RecordingState.RUNNING) {
+      throw new IllegalStateException("Cannot rotate chunks of recording that is not running");
+    }
+    if (chunkRepository == null) {
+      throw new UnsupportedOperationException("JFR repository location is unknown");
+    }
+
+    // JFR starts a new chunk whenever a recording starts
+    final Recording rotation = new Recording();
+    rotation.start();
+    rotation.close();
+
+    try {
+      final List<Path> chunks = chunkRepository.completedChunks();
+      if (chunks.isEmpty()) {
+        return null;
+      }
+      return new OpenJdkChunkRecordingData(recording.getName(), chunks, start, end);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
   @Override
   public void close() {
     recording.close();
@@ -0,0 +1,129 @@
+package com.datadog.profiling.controller.openjdk;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class OpenJdkChunkRepositoryTest {
+
+  private Path directory;
+  private OpenJdkChunkRepository repository;
+
+  @BeforeEach
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("dd-profiling-repository-");
+    repository = new OpenJdkChunkRepository(directory, false);
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    try (final Stream<Path> files = Files.list(directory)) {
+      files.forEach(file -> file.toFile().delete());
+    }
+    Files.delete(directory);
+  }
+
+  @Test
+  public void testEmptyRepository() throws IOException {
+    assertTrue(repository.completedChunks().isEmpty());
+  }
+
+  @Test
+  public void testChunkBeingWritten() throws IOException {
+    chunk("2020_04_27_10_00_00.jfr");
+
+    assertTrue(repository.completedChunks().isEmpty());
+  }
+
+  @Test
+  public void testCompletedChunks() throws IOException {
+    chunk("2020_04_27_10_00_00.jfr");
+    chunk("2020_04_27_10_00_01.jfr");
+    chunk("2020_04_27_10_00_01_1.jfr");
+    chunk("2020_04_27_10_00_02.jfr");
+    chunk("unrelated.txt");
+
+    assertEquals(
+        paths("2020_04_27_10_00_00.jfr", "2020_04_27_10_00_01.jfr", "2020_04_27_10_00_01_1.jfr"),
+        repository.completedChunks());
+  }
+
+  @Test
+  public void testPartialChunk() throws IOException {
+    chunk("2020_04_27_10_00_00.jfr");
+    chunk("2020_04_27_10_00_01.jfr");
+    chunk("2020_04_27_10_00_02.part");
+
+    assertEquals(
+        paths("2020_04_27_10_00_00.jfr", "2020_04_27_10_00_01.jfr"), repository.completedChunks());
+  }
+
+  @Test
+  public void testChunksAreHandedOverOnce() throws IOException {
+    chunk("2020_04_27_10_00_00.jfr");
+    chunk("2020_04_27_10_00_01.jfr");
+    assertEquals(paths("2020_04_27_10_00_00.jfr"), repository.completedChunks());
+    assertEquals(Collections.emptyList(), repository.completedChunks());
+
+    chunk("2020_04_27_10_00_02.jfr");
+    chunk("2020_04_27_10_00_03.jfr");
+    assertEquals(
+        paths("2020_04_27_10_00_01.jfr", "2020_04_27_10_00_02.jfr"), repository.completedChunks());
+  }
+
+  @Test
+  public void testChunksAreConcatenated() throws IOException {
+    chunk("2020_04_27_10_00_00.jfr", new byte[] {1, 2});
+    chunk("2020_04_27_10_00_01.jfr", new byte[] {3});
+    chunk("2020_04_27_10_00_02.jfr");
+
+    final Instant start = Instant.ofEpochSecond(1000);
+    final Instant end = Instant.ofEpochSecond(1100);
+    final OpenJdkChunkRecordingData data =
+        new OpenJdkChunkRecordingData("name", repository.completedChunks(), start, end);
+    try {
+      assertEquals("name", data.getName());
+      assertEquals(start, data.getStart());
+      assertEquals(end, data.getEnd());
+      assertEquals(2, data.getChunkCount());
+      assertEquals(3, data.getSize());
+      final byte[] bytes = new byte[4];
+      int length = 0;
+      int read;
+      while ((read = data.getStream().read(bytes, length, bytes.length - length)) > 0) {
+        length += read;
+      }
+      assertArrayEquals(new byte[] {1, 2, 3}, Arrays.copyOf(bytes, length));
+    } finally {
+      data.release();
+    }
+  }
+
+  private void chunk(final String name) throws IOException {
+    chunk(name, new byte[0]);
+  }
+
+  private void chunk(final String name, final byte[] content) throws IOException {
+    Files.write(directory.resolve(name), content);
+  }
+
+  private List<Path> paths(final String... names) {
+    final Path[] paths = new Path[names.length];
+    for (int i = 0; i < names.length; i++) {
+      paths[i] = directory.resolve(names[i]);
+    }
+    return Arrays.asList(paths);
+  }
+}
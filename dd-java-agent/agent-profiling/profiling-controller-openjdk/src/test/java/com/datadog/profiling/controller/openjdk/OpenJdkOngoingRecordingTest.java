@@ -2,11 +2,15 @@ package com.datadog.profiling.controller.openjdk;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
 import jdk.jfr.Recording;
 import jdk.jfr.RecordingState;
@@ -88,6 +92,55 @@ public class OpenJdkOngoingRecordingTest {
     verify(recording, never()).stop();
   }
 
+  @Test
+  public void testRotateChunks() throws IOException {
+    final Path directory = Files.createTempDirectory("dd-profiling-repository-");
+    try {
+      final OpenJdkChunkRepository repository = new OpenJdkChunkRepository(directory, false);
+      ongoingRecording = new OpenJdkOngoingRecording(recording, repository);
+      Files.write(directory.resolve("2020_04_27_10_00_00.jfr"), new byte[] {1, 2});
+
+      assertNull(ongoingRecording.rotateChunks(start, end), "the only chunk is being written");
+
+      Files.write(directory.resolve("2020_04_27_10_00_01.jfr"), new byte[] {3});
+      final OpenJdkChunkRecordingData recordingData = ongoingRecording.rotateChunks(start, end);
+      assertEquals(TEST_NAME, recordingData.getName());
+      assertEquals(start, recordingData.getStart());
+      assertEquals(end, recordingData.getEnd());
+      assertEquals(1, recordingData.getChunkCount());
+      assertEquals(2, recordingData.getSize());
+      recordingData.release();
+
+      verify(recording, never()).stop();
+    } finally {
+      Files.delete(directory.resolve("2020_04_27_10_00_00.jfr"));
+      Files.delete(directory.resolve("2020_04_27_10_00_01.jfr"));
+      Files.delete(directory);
+    }
+  }
+
+  @Test
+  public void testRotateChunksWithoutRepository() {
+    ongoingRecording = new OpenJdkOngoingRecording(recording, null);
+
+    assertThrows(
+        UnsupportedOperationException.class,
+        () -> {
+          ongoingRecording.rotateChunks(start, end);
+        });
+  }
+
+  @Test
+  public void testRotateChunksOnStopped() {
+    when(recording.getState()).thenReturn(RecordingState.STOPPED);
+
+    assertThrows(
+        IllegalStateException.class,
+        () -> {
+          ongoingRecording.rotateChunks(start, end);
+        });
+  }
+
   @Test
   public void testClose() {
     ongoingRecording.close();
@@ -23,6 +23,18 @@ public interface OngoingRecording extends Closeable {
    */
   RecordingData snapshot(final Instant start, final Instant end);
 
+  /**
+   * Starts a new chunk and returns the chunks completed since the previous call, read directly from
+   * the JFR repository instead of being copied into a snapshot. Note: recording continues to run
+   * after this method is called.
+   *
+   * @param start start time of the chunks
+   * @param end end time of the chunks
+   * @return {@link RecordingData} with the completed chunks, {@code null} if there are none
+   * @throws UnsupportedOperationException if the chunks can not be read from the repository
+   */
+  RecordingData rotateChunks(final Instant start, final Instant end);
+
   /** Close recording without capturing any data */
   @Override
   void close();
@@ -19,6 +19,7 @@ import com.datadog.profiling.util.ProfilingThreadFactory;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
@@ -31,6 +32,10 @@ public final class ProfilingSystem {
 
   private static final long TERMINATION_TIMEOUT = 10;
 
+  // In chunked mode the upload period adapts so that uploads are about this size
+  static final long TARGET_CHUNK_SIZE = 4 * 1024 * 1024; // 4MB
+  static final Duration MIN_CHUNK_PERIOD = Duration.ofSeconds(10);
+
   private final ScheduledExecutorService executorService;
   private final Controller controller;
   // For now only support one callback. Multiplex as needed.
@@ -39,6 +44,7 @@ public final class ProfilingSystem {
   private final Duration startupDelay;
   private final Duration uploadPeriod;
   private final boolean isStartingFirst;
+  private final boolean isChunked;
 
   private OngoingRecording recording;
   private boolean started = false;
@@ -69,6 +75,38 @@ public final class ProfilingSystem {
         startupDelayRandomRange,
         uploadPeriod,
         isStartingFirst,
+        false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param controller implementation specific controller of profiling machinery
+   * @param dataListener the listener for data being produced
+   * @param startupDelay delay before starting jfr
+   * @param startupDelayRandomRange randomization range for startup delay
+   * @param uploadPeriod how often to upload data, the maximum period in chunked mode
+   * @param isStartingFirst starting profiling before other tools
+   * @param isChunked upload the JFR chunks as they are completed instead of snapshots
+   * @throws ConfigurationException if the configuration information was bad.
+   */
+  public ProfilingSystem(
+      final Controller controller,
+      final RecordingDataListener dataListener,
+      final Duration startupDelay,
+      final Duration startupDelayRandomRange,
+      final Duration uploadPeriod,
+      final boolean isStartingFirst,
+      final boolean isChunked)
+      throws ConfigurationException {
+    this(
+        controller,
+        dataListener,
+        startupDelay,
+        startupDelayRandomRange,
+        uploadPeriod,
+        isStartingFirst,
+        isChunked,
         Executors.newScheduledThreadPool(
             1, new ProfilingThreadFactory("dd-profiler-recording-scheduler")),
         ThreadLocalRandom.current());
@@ -84,10 +122,34 @@ public final class ProfilingSystem {
       final ScheduledExecutorService executorService,
       final ThreadLocalRandom threadLocalRandom)
       throws ConfigurationException {
+    this(
+        controller,
+        dataListener,
+        baseStartupDelay,
+        startupDelayRandomRange,
+        uploadPeriod,
+        isStartingFirst,
+        false,
+        executorService,
+        threadLocalRandom);
+  }
+
+  ProfilingSystem(
+      final Controller controller,
+      final RecordingDataListener dataListener,
+      final Duration baseStartupDelay,
+      final Duration startupDelayRandomRange,
+      final Duration uploadPeriod,
+      final boolean isStartingFirst,
+      final boolean isChunked,
+      final ScheduledExecutorService executorService,
+      final ThreadLocalRandom threadLocalRandom)
+      throws ConfigurationException {
     this.controller = controller;
     this.dataListener = dataListener;
     this.uploadPeriod = uploadPeriod;
     this.isStartingFirst = isStartingFirst;
+    this.isChunked = isChunked;
     this.executorService = executorService;
 
     if (baseStartupDelay.isNegative()) {
@@ -109,10 +171,12 @@ public final class ProfilingSystem {
 
   public final void start() {
     log.info(
-        "Starting profiling system: startupDelay={}ms, uploadPeriod={}ms, isStartingFirst={}",
+        "Starting profiling system: startupDelay={}ms, uploadPeriod={}ms, isStartingFirst={}, "
+            + "isChunked={}",
         startupDelay.toMillis(),
         uploadPeriod.toMillis(),
-        isStartingFirst);
+        isStartingFirst,
+        isChunked);
 
     if (isStartingFirst) {
       startProfilingRecording();
@@ -130,11 +194,11 @@ public final class ProfilingSystem {
     try {
       final Instant now = Instant.now();
       recording = controller.createRecording(RECORDING_NAME);
-      executorService.scheduleAtFixedRate(
-          new SnapshotRecording(now),
-          uploadPeriod.toMillis(),
-          uploadPeriod.toMillis(),
-          TimeUnit.MILLISECONDS);
+      if (isChunked) {
+        new ChunkRecording(now).schedule();
+      } else {
+        scheduleSnapshots(now);
+      }
       started = true;
     } catch (final Throwable t) {
       log.error("Fatal exception during profiling startup", t);
@@ -163,6 +227,14 @@ public final class ProfilingSystem {
     started = false;
   }
 
+  private void scheduleSnapshots(final Instant startTime) {
+    executorService.scheduleAtFixedRate(
+        new SnapshotRecording(startTime),
+        uploadPeriod.toMillis(),
+        uploadPeriod.toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
+
   public boolean isStarted() {
     return started;
   }
@@ -172,11 +244,85 @@ public final class ProfilingSystem {
     return startupDelay;
   }
 
+  /**
+   * Scales the period so that the next chunks get closer to {@link #TARGET_CHUNK_SIZE}, by at most
+   * a factor of 2 each time to smooth out bursts.
+   *
+   * @param period the period the chunks were recorded in
+   * @param chunkSize the size of the chunks, -1 if unknown
+   * @param minPeriod the lower bound of the period
+   * @param maxPeriod the upper bound of the period
+   * @return the next period
+   */
+  static Duration nextChunkPeriod(
+      final Duration period,
+      final long chunkSize,
+      final Duration minPeriod,
+      final Duration maxPeriod) {
+    if (chunkSize < 0) {
+      return period;
+    }
+    final double scale =
+        chunkSize == 0 ? 2 : Math.max(0.5, Math.min(2, (double) TARGET_CHUNK_SIZE / chunkSize));
+    final long next = Math.round(period.toMillis() * scale);
+    return Duration.ofMillis(Math.max(minPeriod.toMillis(), Math.min(maxPeriod.toMillis(), next)));
+  }
+
   private static Duration randomizeDuration(
       final ThreadLocalRandom random, final Duration duration, final Duration range) {
     return duration.plus(Duration.ofMillis(random.nextLong(range.toMillis())));
   }
 
+  /**
+   * Uploads the chunks completed since the previous run then reschedules itself, with a period
+   * adapted to the size of the chunks. Falls back to snapshots if the chunks can't be read.
+   */
+  private final class ChunkRecording implements Runnable {
+
+    private final Duration minPeriod =
+        MIN_CHUNK_PERIOD.compareTo(uploadPeriod) < 0 ? MIN_CHUNK_PERIOD : uploadPeriod;
+    private Duration period = uploadPeriod;
+    private Instant lastRotation;
+
+    ChunkRecording(final Instant startTime) {
+      lastRotation = startTime;
+    }
+
+    void schedule() {
+      try {
+        executorService.schedule(this, period.toMillis(), TimeUnit.MILLISECONDS);
+      } catch (final RejectedExecutionException e) {
+        // shutting down
+      }
+    }
+
+    @Override
+    public void run() {
+      final RecordingType recordingType = RecordingType.CONTINUOUS;
+      try {
+        final Instant now = Instant.now();
+        final RecordingData recordingData = recording.rotateChunks(lastRotation, now);
+        lastRotation = now;
+        if (recordingData != null) {
+          period = nextChunkPeriod(period, recordingData.getSize(), minPeriod, uploadPeriod);
+          dataListener.onNewData(recordingType, recordingData);
+        } else {
+          period = nextChunkPeriod(period, 0, minPeriod, uploadPeriod);
+        }
+      } catch (final UnsupportedOperationException e) {
+        log.warn("Can not read the recording chunks, uploading snapshots instead", e);
+        scheduleSnapshots(lastRotation);
+        return;
+      } catch (final Exception e) {
+        log.error("Exception in profiling thread, continuing", e);
+      } catch (final Throwable t) {
+        log.error("Fatal exception in profiling thread, exiting", t);
+        throw t;
+      }
+      schedule();
+    }
+  }
+
   private final class SnapshotRecording implements Runnable {
 
     private Instant lastSnapshot;
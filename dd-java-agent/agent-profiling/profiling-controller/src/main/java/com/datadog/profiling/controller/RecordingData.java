@@ -66,4 +66,13 @@ public interface RecordingData {
    * @return the requested end time.
    */
   Instant getEnd();
+
+  /**
+   * Returns the size of the data, when it is known without reading the stream.
+   *
+   * @return the size in bytes, or -1 if unknown.
+   */
+  default long getSize() {
+    return -1;
+  }
 }
@@ -28,6 +28,7 @@ import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -366,6 +367,89 @@ public class ProfilingSystemTest {
     assertEquals(startupDelay, system.getStartupDelay());
   }
 
+  @Test
+  public void testChunkedUpload() throws ConfigurationException {
+    final List<RecordingData> generatedRecordingData = new ArrayList<>();
+    when(recording.rotateChunks(any(), any()))
+        .thenReturn(null)
+        .thenAnswer(generateMockRecordingData(generatedRecordingData));
+
+    final ProfilingSystem system =
+        new ProfilingSystem(
+            controller,
+            listener,
+            Duration.ofMillis(10),
+            Duration.ofMillis(5),
+            Duration.ofMillis(300),
+            false,
+            true,
+            pool,
+            threadLocalRandom);
+    startProfilingSystem(system);
+
+    final ArgumentCaptor<RecordingData> captor = ArgumentCaptor.forClass(RecordingData.class);
+    verify(listener, timeout(REASONABLE_TIMEOUT).times(2))
+        .onNewData(eq(CONTINUOUS), captor.capture());
+    assertEquals(generatedRecordingData, captor.getAllValues());
+    verify(recording, never()).snapshot(any(), any());
+
+    system.shutdown();
+  }
+
+  @Test
+  public void testChunkedUploadFallsBackToSnapshots() throws ConfigurationException {
+    final List<RecordingData> generatedRecordingData = new ArrayList<>();
+    when(recording.rotateChunks(any(), any()))
+        .thenThrow(new UnsupportedOperationException("Test"));
+    when(recording.snapshot(any(), any()))
+        .thenAnswer(generateMockRecordingData(generatedRecordingData));
+
+    final ProfilingSystem system =
+        new ProfilingSystem(
+            controller,
+            listener,
+            Duration.ofMillis(10),
+            Duration.ofMillis(5),
+            Duration.ofMillis(300),
+            false,
+            true,
+            pool,
+            threadLocalRandom);
+    startProfilingSystem(system);
+
+    final ArgumentCaptor<RecordingData> captor = ArgumentCaptor.forClass(RecordingData.class);
+    verify(listener, timeout(REASONABLE_TIMEOUT).atLeast(2))
+        .onNewData(eq(CONTINUOUS), captor.capture());
+    assertEquals(generatedRecordingData, captor.getAllValues());
+    verify(recording, times(1)).rotateChunks(any(), any());
+
+    system.shutdown();
+  }
+
+  @Test
+  public void testNextChunkPeriod() {
+    final Duration min = Duration.ofSeconds(10);
+    final Duration max = Duration.ofSeconds(60);
+    final Duration period = Duration.ofSeconds(30);
+    final long target = ProfilingSystem.TARGET_CHUNK_SIZE;
+
+    // on target or unknown size
+    assertEquals(period, ProfilingSystem.nextChunkPeriod(period, target, min, max));
+    assertEquals(period, ProfilingSystem.nextChunkPeriod(period, -1, min, max));
+    // bigger chunks shorten the period, by at most half
+    assertEquals(
+        Duration.ofSeconds(20), ProfilingSystem.nextChunkPeriod(period, target * 3 / 2, min, max));
+    assertEquals(
+        Duration.ofSeconds(15), ProfilingSystem.nextChunkPeriod(period, target * 10, min, max));
+    // smaller chunks lengthen the period, by at most double
+    assertEquals(
+        Duration.ofSeconds(40), ProfilingSystem.nextChunkPeriod(period, target * 3 / 4, min, max));
+    assertEquals(Duration.ofSeconds(60), ProfilingSystem.nextChunkPeriod(period, 0, min, max));
+    // bounded
+    assertEquals(min, ProfilingSystem.nextChunkPeriod(min, target * 10, min, max));
+    assertEquals(max, ProfilingSystem.nextChunkPeriod(max, 0, min, max));
+  }
+
   private Answer<Object> generateMockRecordingData(
       final List<RecordingData> generatedRecordingData) {
     return (InvocationOnMock invocation) -> {
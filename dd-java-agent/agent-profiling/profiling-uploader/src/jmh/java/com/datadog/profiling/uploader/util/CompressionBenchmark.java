@@ -0,0 +1,66 @@
+package com.datadog.profiling.uploader.util;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compresses the sample recording of profiling-testing with every codec and level. The time per
+ * operation gives the throughput, the compression ratio is printed when the trial ends.
+ */
+@State(Scope.Thread)
+public class CompressionBenchmark {
+  private static final String RECORDING_RESOURCE = "test-recording.jfr";
+
+  @Param({"lz4", "gzip", "zstd"})
+  String codec;
+
+  @Param({"-1", "1", "6", "9"})
+  int level;
+
+  private byte[] recording;
+  private StreamUtils.Compressor compressor;
+  private final byte[] buffer = new byte[64 * 1024];
+  private long compressedSize;
+
+  @Setup
+  public void setup() throws IOException {
+    try (final InputStream is =
+        CompressionBenchmark.class.getClassLoader().getResourceAsStream(RECORDING_RESOURCE)) {
+      recording = ByteStreams.toByteArray(is);
+    }
+    switch (codec) {
+      case "gzip":
+        compressor = StreamUtils.gzip(level);
+        break;
+      case "zstd":
+        compressor = StreamUtils.zstd();
+        break;
+      default:
+        compressor = StreamUtils.lz4(level);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    System.out.printf(
+        "%n%s level %d: %d -> %d bytes, ratio %.2f%n",
+        codec, level, recording.length, compressedSize, (double) recording.length / compressedSize);
+  }
+
+  @Benchmark
+  public long compress() throws IOException {
+    final CountingOutputStream out = new CountingOutputStream(ByteStreams.nullOutputStream());
+    StreamUtils.compressStream(new ByteArrayInputStream(recording), out, compressor, buffer);
+    compressedSize = out.getCount();
+    return compressedSize;
+  }
+}
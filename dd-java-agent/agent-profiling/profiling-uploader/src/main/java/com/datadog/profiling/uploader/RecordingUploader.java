@@ -17,6 +17,7 @@ package com.datadog.profiling.uploader;
 
 import com.datadog.profiling.controller.RecordingData;
 import com.datadog.profiling.controller.RecordingType;
+import com.datadog.profiling.uploader.util.BufferPool;
 import com.datadog.profiling.uploader.util.PidHelper;
 import com.datadog.profiling.uploader.util.StreamUtils;
 import com.datadog.profiling.util.ProfilingThreadFactory;
@@ -54,7 +55,7 @@ import okhttp3.Response;
 @Slf4j
 public final class RecordingUploader {
 
-  private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+  static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
 
   static final String RECORDING_NAME_PARAM = "recording-name";
   static final String FORMAT_PARAM = "format";
@@ -83,6 +84,8 @@ public final class RecordingUploader {
 
   static final int TERMINATION_TIMEOUT = 5;
 
+  static final int STREAMING_BUFFER_SIZE = 64 * 1024;
+
   private static final Headers DATA_HEADERS =
       Headers.of(
           "Content-Disposition", "form-data; name=\"" + DATA_PARAM + "\"; filename=\"recording\"");
@@ -119,6 +122,11 @@ public final class RecordingUploader {
   private final List<String> tags;
   private final Compression compression;
   private final Deque<Integer> requestSizeHistory;
+  private final boolean streaming;
+  private final StreamingRecordingBody.StreamCompression streamCompression;
+  private final BufferPool bufferPool;
+  // Only an authenticating proxy makes OkHttp send a body again
+  private final boolean streamingReplayable;
 
   public RecordingUploader(final Config config) {
     url = config.getFinalProfilingUrl();
@@ -194,13 +202,27 @@ public final class RecordingUploader {
     // We are mainly talking to the same(ish) host so we need to raise this limit
     client.dispatcher().setMaxRequestsPerHost(MAX_RUNNING_REQUESTS);
 
-    compression = getCompression(CompressionType.of(config.getProfilingUploadCompression()));
+    final CompressionType compressionType =
+        CompressionType.of(config.getProfilingUploadCompression());
+    final StreamUtils.Compressor compressor =
+        getCompressor(compressionType, config.getProfilingUploadCompressionLevel());
+    compression = getCompression(compressor);
 
     requestSizeHistory = new ArrayDeque<>(REQUEST_SIZE_HISTORY_SIZE);
     requestSizeHistory.add(SEED_EXPECTED_REQUEST_SIZE);
+
+    streaming = config.isProfilingUploadStreaming();
+    streamCompression = getStreamCompression(compressor);
+    bufferPool = new BufferPool(STREAMING_BUFFER_SIZE, MAX_RUNNING_REQUESTS);
+    streamingReplayable =
+        config.getProfilingProxyHost() != null && config.getProfilingProxyUsername() != null;
   }
 
   public void upload(final RecordingType type, final RecordingData data) {
+    if (streaming) {
+      uploadStreaming(type, data);
+      return;
+    }
     try {
       if (canEnqueueMoreRequests()) {
         makeUploadRequest(type, data);
@@ -219,6 +241,26 @@ public final class RecordingUploader {
     }
   }
 
+  /**
+   * Compresses the recording while it is sent, the body owns the recording and releases it once it
+   * has been read. See {@link StreamingRecordingBody}.
+   */
+  private void uploadStreaming(final RecordingType type, final RecordingData data) {
+    final StreamingRecordingBody body =
+        new StreamingRecordingBody(data, streamCompression, bufferPool, streamingReplayable);
+    try {
+      if (canEnqueueMoreRequests()) {
+        log.debug("Uploading recording {} [{}] (streaming)", data.getName(), type);
+        client.newCall(makeRequest(type, data, body)).enqueue(new StreamingCallback(body));
+        return;
+      }
+      log.error("Cannot upload data: too many enqueued requests!");
+    } catch (final IllegalStateException e) {
+      log.error("Problem uploading recording!", e);
+    }
+    body.close();
+  }
+
   public void shutdown() {
     okHttpExecutorService.shutdownNow();
     try {
@@ -238,43 +280,52 @@ public final class RecordingUploader {
     RequestBody compress(InputStream is, int expectedSize) throws IOException;
   }
 
-  private Compression getCompression(final CompressionType type) {
-    log.debug("Uploader compression type={}", type);
-    final StreamUtils.BytesConsumer<RequestBody> consumer =
-        (bytes, offset, length) -> RequestBody.create(OCTET_STREAM, bytes, offset, length);
-    final Compression compression;
-    // currently only gzip and off are supported
-    // this needs to be updated once more compression types are added
+  /** @return the compressor of the type, {@code null} when the recordings are not compressed */
+  private static StreamUtils.Compressor getCompressor(final CompressionType type, final int level) {
+    log.debug("Uploader compression type={}, level={}", type, level);
     switch (type) {
       case GZIP:
-        {
-          compression = (is, expectedSize) -> StreamUtils.gzipStream(is, expectedSize, consumer);
-          break;
+        return StreamUtils.gzip(level);
+      case ZSTD:
+        if (level != StreamUtils.DEFAULT_COMPRESSION_LEVEL) {
+          log.debug("Compression level {} is not supported by zstd, using the default one", level);
         }
+        return StreamUtils.zstd();
       case OFF:
-        {
-          compression = (is, expectedSize) -> StreamUtils.readStream(is, expectedSize, consumer);
-          break;
-        }
+        return null;
       case ON:
       case LZ4:
       default:
-        {
-          compression = (is, expectedSize) -> StreamUtils.lz4Stream(is, expectedSize, consumer);
-          break;
-        }
+        return StreamUtils.lz4(level);
+    }
+  }
+
+  private static Compression getCompression(final StreamUtils.Compressor compressor) {
+    final StreamUtils.BytesConsumer<RequestBody> consumer =
+        (bytes, offset, length) -> RequestBody.create(OCTET_STREAM, bytes, offset, length);
+    if (compressor == null) {
+      return (is, expectedSize) -> StreamUtils.readStream(is, expectedSize, consumer);
     }
-    return compression;
+    return (is, expectedSize) -> StreamUtils.compressStream(is, compressor, expectedSize, consumer);
+  }
+
+  private static StreamingRecordingBody.StreamCompression getStreamCompression(
+      final StreamUtils.Compressor compressor) {
+    if (compressor == null) {
+      return StreamUtils::copyStream;
+    }
+    return (is, os, buffer) -> StreamUtils.compressStream(is, os, compressor, buffer);
   }
 
   private void makeUploadRequest(final RecordingType type, final RecordingData data)
       throws IOException {
     final int expectedRequestSize = getExpectedRequestSize();
-    // TODO: it would be really nice to avoid copy here, but:
+    // Note: the recording is copied here because:
     // * if JFR doesn't write file to disk we seem to not be able to get size of the recording
     // without reading whole stream
     // * OkHTTP doesn't provide direct way to send uploads from streams - and workarounds would
     // require stream that allows 'repeatable reads' because we may need to resend that data.
+    // The streaming mode avoids this copy, see uploadStreaming.
     final RequestBody body = compression.compress(data.getStream(), expectedRequestSize);
     log.debug(
         "Uploading recording {} [{}] (Size={}/{} bytes)",
@@ -286,6 +337,11 @@ public final class RecordingUploader {
     // The body data is stored in byte array so we naturally get size limit that will fit into int
     updateUploadSizesHistory((int) body.contentLength());
 
+    client.newCall(makeRequest(type, data, body)).enqueue(RESPONSE_CALLBACK);
+  }
+
+  private Request makeRequest(
+      final RecordingType type, final RecordingData data, final RequestBody body) {
     final MultipartBody.Builder bodyBuilder =
         new MultipartBody.Builder()
             .setType(MultipartBody.FORM)
@@ -302,16 +358,13 @@ public final class RecordingUploader {
     bodyBuilder.addPart(DATA_HEADERS, body);
     final RequestBody requestBody = bodyBuilder.build();
 
-    final Request request =
-        new Request.Builder()
-            .url(url)
-            .addHeader(HEADER_DD_API_KEY, apiKey)
-            // Note: this header is used to disable tracing of profiling requests
-            .addHeader(DATADOG_META_LANG, JAVA_LANG)
-            .post(requestBody)
-            .build();
-
-    client.newCall(request).enqueue(RESPONSE_CALLBACK);
+    return new Request.Builder()
+        .url(url)
+        .addHeader(HEADER_DD_API_KEY, apiKey)
+        // Note: this header is used to disable tracing of profiling requests
+        .addHeader(DATADOG_META_LANG, JAVA_LANG)
+        .post(requestBody)
+        .build();
   }
 
   private int getExpectedRequestSize() {
@@ -340,6 +393,33 @@ public final class RecordingUploader {
     return client.dispatcher().queuedCallsCount() < MAX_ENQUEUED_REQUESTS;
   }
 
+  /** Releases the recording and the temporary file of a streaming upload once the call is done */
+  private static final class StreamingCallback implements Callback {
+    private final StreamingRecordingBody body;
+
+    StreamingCallback(final StreamingRecordingBody body) {
+      this.body = body;
+    }
+
+    @Override
+    public void onFailure(final Call call, final IOException e) {
+      try {
+        RESPONSE_CALLBACK.onFailure(call, e);
+      } finally {
+        body.close();
+      }
+    }
+
+    @Override
+    public void onResponse(final Call call, final Response response) throws IOException {
+      try {
+        RESPONSE_CALLBACK.onResponse(call, response);
+      } finally {
+        body.close();
+      }
+    }
+  }
+
   private List<String> tagsToList(final Map<String, String> tags) {
     return tags.entrySet()
         .stream()
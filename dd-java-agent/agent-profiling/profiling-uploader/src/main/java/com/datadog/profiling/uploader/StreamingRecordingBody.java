@@ -0,0 +1,295 @@
+/*
+ * Copyright 2020 Datadog
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datadog.profiling.uploader;
+
+import com.datadog.profiling.controller.RecordingData;
+import com.datadog.profiling.uploader.util.BufferPool;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Request body compressing the recording while it is written to the connection, so the recording
+ * is never held on heap.
+ *
+ * <p>OkHttp has to write the body again when an authenticating proxy asks for credentials, but the
+ * recording stream can only be read once. When that can happen the compressed bytes are also
+ * spilled to a temporary file, readable by the current user only, which is replayed by the
+ * subsequent writes. Otherwise the body can only be written once, and any other attempt to resend
+ * it (redirect, retry of a dropped connection) fails the upload. The recording is released as soon
+ * as it has been read, the temporary file when the body is closed.
+ */
+@Slf4j
+final class StreamingRecordingBody extends RequestBody implements Closeable {
+
+  /** Compresses the input stream into the output stream */
+  @FunctionalInterface
+  interface StreamCompression {
+    void compress(InputStream is, OutputStream os, byte[] buffer) throws IOException;
+  }
+
+  private final RecordingData data;
+  private final StreamCompression compression;
+  private final BufferPool bufferPool;
+  private final boolean replayable;
+
+  // guarded by this
+  private boolean released;
+  private boolean written;
+  private boolean closed;
+  private File spillFile;
+  private boolean spillComplete;
+  private long compressedSize;
+  private long allocatedBytes = -1;
+
+  /** @param replayable whether the body may have to be written again, see the class doc */
+  StreamingRecordingBody(
+      final RecordingData data,
+      final StreamCompression compression,
+      final BufferPool bufferPool,
+      final boolean replayable) {
+    this.data = data;
+    this.compression = compression;
+    this.bufferPool = bufferPool;
+    this.replayable = replayable;
+  }
+
+  @Override
+  public MediaType contentType() {
+    return RecordingUploader.OCTET_STREAM;
+  }
+
+  @Override
+  public long contentLength() {
+    // unknown until compressed, sent with chunked encoding
+    return -1;
+  }
+
+  @Override
+  public synchronized void writeTo(final BufferedSink sink) throws IOException {
+    if (closed) {
+      throw new IOException("Recording " + data.getName() + " was already uploaded");
+    }
+    if (written) {
+      replay(sink);
+    } else {
+      written = true;
+      compressTo(sink);
+    }
+  }
+
+  private void compressTo(final BufferedSink sink) throws IOException {
+    // Only measured when it is logged, looking up the thread MXBean initializes JMX
+    final boolean measure = log.isDebugEnabled();
+    final long allocatedBefore = measure ? ThreadAllocation.allocatedBytes() : -1;
+    final byte[] buffer = bufferPool.acquire();
+    try (final SpillingOutputStream out = new SpillingOutputStream(sink.outputStream())) {
+      try (final InputStream is = data.getStream()) {
+        compression.compress(is, out, buffer);
+      } catch (final IllegalStateException e) {
+        // the recording is not available, OkHttp only handles IOExceptions
+        throw new IOException(e);
+      }
+      out.flush();
+      spillComplete = out.spill != null;
+      compressedSize = out.written;
+      out.rethrowSinkFailure();
+    } finally {
+      bufferPool.release(buffer);
+      release();
+      if (allocatedBefore >= 0) {
+        allocatedBytes = ThreadAllocation.allocatedBytes() - allocatedBefore;
+      }
+    }
+  }
+
+  private void replay(final BufferedSink sink) throws IOException {
+    if (!spillComplete) {
+      throw new IOException("Recording " + data.getName() + " can't be sent again");
+    }
+    try (final Source source = Okio.source(spillFile)) {
+      sink.writeAll(source);
+    }
+  }
+
+  /** Releases the recording and deletes the temporary file. Must be called once the call is done */
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    release();
+    if (spillFile != null && !spillFile.delete()) {
+      log.debug("Unable to delete {}", spillFile);
+    }
+    log.debug(
+        "Recording {} upload done (Size={} bytes, heap allocated while compressing={} bytes)",
+        data.getName(),
+        compressedSize,
+        allocatedBytes);
+  }
+
+  private void release() {
+    if (!released) {
+      released = true;
+      data.release();
+    }
+  }
+
+  /**
+   * @return the bytes allocated on heap by the thread compressing the recording while it was
+   *     compressed, -1 if not measured
+   */
+  synchronized long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  /** Lazy holder, the MXBean is only looked up once allocations are measured. */
+  private static final class ThreadAllocation {
+    private static final com.sun.management.ThreadMXBean THREADS = threadMXBean();
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+      try {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+          final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+          if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+            return bean;
+          }
+        }
+      } catch (final Throwable e) {
+        log.debug("Unable to measure the allocations of recording uploads", e);
+      }
+      return null;
+    }
+
+    /** @return the bytes allocated by the current thread so far, -1 if unknown */
+    static long allocatedBytes() {
+      return THREADS == null ? -1 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+  }
+
+  /**
+   * Writes to the connection and, if the body is replayable, to the temporary file. A connection
+   * failure doesn't stop the compression, so the temporary file is complete when the body is sent
+   * again. A failure to write the temporary file only prevents sending the body again.
+   */
+  private final class SpillingOutputStream extends OutputStream {
+    private final OutputStream sink;
+    private OutputStream spill;
+    private IOException sinkFailure;
+    private long written;
+
+    SpillingOutputStream(final OutputStream sink) {
+      this.sink = sink;
+      if (!replayable) {
+        return;
+      }
+      try {
+        // Recordings contain system properties and environment variables, the file is created
+        // readable by the owner only
+        spillFile = Files.createTempFile("dd-profiling-upload-", ".tmp").toFile();
+        spill = new FileOutputStream(spillFile);
+      } catch (final IOException | UnsupportedOperationException e) {
+        log.debug("Unable to create the temporary file of recording {}", data.getName(), e);
+      }
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      if (spill != null) {
+        try {
+          spill.write(b, off, len);
+        } catch (final IOException e) {
+          log.debug("Unable to write the temporary file of recording {}", data.getName(), e);
+          closeSpill();
+        }
+      }
+      if (sinkFailure == null) {
+        try {
+          sink.write(b, off, len);
+        } catch (final IOException e) {
+          sinkFailure = e;
+        }
+      }
+      if (spill == null) {
+        // nothing left to write to
+        rethrowSinkFailure();
+      }
+      written += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (spill != null) {
+        try {
+          spill.flush();
+        } catch (final IOException e) {
+          log.debug("Unable to write the temporary file of recording {}", data.getName(), e);
+          closeSpill();
+        }
+      }
+      if (sinkFailure == null) {
+        try {
+          sink.flush();
+        } catch (final IOException e) {
+          sinkFailure = e;
+        }
+      }
+    }
+
+    void rethrowSinkFailure() throws IOException {
+      if (sinkFailure != null) {
+        throw sinkFailure;
+      }
+    }
+
+    private void closeSpill() {
+      try {
+        spill.close();
+      } catch (final IOException e) {
+        // ignore
+      }
+      spill = null;
+    }
+
+    /** Doesn't close the connection, which is still used by OkHttp */
+    @Override
+    public void close() {
+      if (spill != null) {
+        closeSpill();
+      }
+    }
+  }
+}
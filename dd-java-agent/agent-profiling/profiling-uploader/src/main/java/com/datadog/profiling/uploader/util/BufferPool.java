@@ -0,0 +1,27 @@
+package com.datadog.profiling.uploader.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Bounded pool of byte buffers of the same size. Buffers are allocated when the pool is empty and
+ * dropped when it is full, so it never blocks.
+ */
+public final class BufferPool {
+  private final int bufferSize;
+  private final BlockingQueue<byte[]> buffers;
+
+  public BufferPool(final int bufferSize, final int maxPooledBuffers) {
+    this.bufferSize = bufferSize;
+    buffers = new ArrayBlockingQueue<>(maxPooledBuffers);
+  }
+
+  public byte[] acquire() {
+    final byte[] buffer = buffers.poll();
+    return buffer != null ? buffer : new byte[bufferSize];
+  }
+
+  public void release(final byte[] buffer) {
+    buffers.offer(buffer);
+  }
+}
@@ -1,14 +1,21 @@
 package com.datadog.profiling.uploader.util;
 
+import io.airlift.compress.zstd.ZstdOutputStream;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPOutputStream;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
 import net.jpountz.lz4.LZ4FrameOutputStream;
+import net.jpountz.xxhash.XXHash32;
+import net.jpountz.xxhash.XXHashFactory;
 import org.openjdk.jmc.common.io.IOToolkit;
 
 /** A collection of I/O stream related helper methods */
@@ -20,6 +27,16 @@ public final class StreamUtils {
   // JMC's IOToolkit hides this from us...
   static final int ZIP_MAGIC[] = new int[] {80, 75, 3, 4};
   static final int GZ_MAGIC[] = new int[] {31, 139};
+  // https://github.com/facebook/zstd/blob/dev/doc/zstd_compression_format.md#zstandard-frames
+  static final int[] ZSTD_MAGIC = new int[] {0x28, 0xB5, 0x2F, 0xFD};
+
+  /** Lets the codec pick its own compression level */
+  public static final int DEFAULT_COMPRESSION_LEVEL = -1;
+
+  // LZ4 levels below this one use the fast compressor, the others the high compression one
+  static final int LZ4_HC_MIN_LEVEL = 3;
+  static final int LZ4_MAX_LEVEL = 17;
+
   /**
    * Consumes array or bytes along with offset and length and turns it into something usable.
    *
@@ -35,22 +52,90 @@ public final class StreamUtils {
   }
 
   /**
-   * Read a stream into a consumer gzip-compressing content. If the stream is already compressed
-   * (gzip, zip, lz4) the original data will be returned.
+   * Wraps an output stream into a compressing one. Closing the compressing stream must write the
+   * compression trailer and close the wrapped stream.
+   */
+  @FunctionalInterface
+  public interface Compressor {
+    OutputStream compress(OutputStream os) throws IOException;
+  }
+
+  /**
+   * @param level the deflate level, from 0 (no compression) to 9 (best compression); {@link
+   *     #DEFAULT_COMPRESSION_LEVEL} for the default
+   * @return a gzip compressor
+   */
+  public static Compressor gzip(final int level) {
+    if (level < 0) {
+      return GZIPOutputStream::new;
+    }
+    final int deflateLevel = Math.min(level, Deflater.BEST_COMPRESSION);
+    return os ->
+        new GZIPOutputStream(os) {
+          {
+            def.setLevel(deflateLevel);
+          }
+        };
+  }
+
+  /**
+   * @param level levels below {@value #LZ4_HC_MIN_LEVEL} use the fast compressor, higher levels
+   *     (up to {@value #LZ4_MAX_LEVEL}) the high compression one; {@link
+   *     #DEFAULT_COMPRESSION_LEVEL} for the default
+   * @return a lz4 frame compressor
+   */
+  public static Compressor lz4(final int level) {
+    if (level < 0) {
+      return LZ4FrameOutputStream::new;
+    }
+    final LZ4Factory factory = LZ4Factory.fastestInstance();
+    final LZ4Compressor compressor =
+        level < LZ4_HC_MIN_LEVEL
+            ? factory.fastCompressor()
+            : factory.highCompressor(Math.min(level, LZ4_MAX_LEVEL));
+    final XXHash32 checksum = XXHashFactory.fastestInstance().hash32();
+    return os ->
+        new LZ4FrameOutputStream(
+            os,
+            LZ4FrameOutputStream.BLOCKSIZE.SIZE_64KB,
+            -1L,
+            compressor,
+            checksum,
+            LZ4FrameOutputStream.FLG.Bits.BLOCK_INDEPENDENCE);
+  }
+
+  /**
+   * The pure Java zstd implementation only supports its default level (3), which compresses
+   * better than gzip at lz4-like speeds.
+   *
+   * @return a zstd frame compressor
+   */
+  public static Compressor zstd() {
+    return ZstdOutputStream::new;
+  }
+
+  /**
+   * Read a stream into a consumer compressing content. If the stream is already compressed (gzip,
+   * zip, lz4, zstd) the original data will be returned.
    *
    * @param is the input stream
-   * @return gzipped contents of the input stream or the the original content if the stream is
+   * @param compressor the compression to apply
+   * @return compressed contents of the input stream or the the original content if the stream is
    *     already compressed
    * @throws IOException
    */
-  public static <T> T gzipStream(
-      InputStream is, final int expectedSize, final BytesConsumer<T> consumer) throws IOException {
+  public static <T> T compressStream(
+      InputStream is,
+      final Compressor compressor,
+      final int expectedSize,
+      final BytesConsumer<T> consumer)
+      throws IOException {
     is = ensureMarkSupported(is);
     if (isCompressed(is)) {
       return readStream(is, expectedSize, consumer);
     } else {
       final FastByteArrayOutputStream baos = new FastByteArrayOutputStream(expectedSize);
-      try (final OutputStream zipped = new GZIPOutputStream(baos)) {
+      try (final OutputStream zipped = compressor.compress(baos)) {
         copy(is, zipped);
       }
       return baos.consume(consumer);
@@ -58,28 +143,99 @@ public final class StreamUtils {
   }
 
   /**
-   * Read a stream into a consumer lz4-compressing content. If the stream is already compressed
-   * (gzip, zip, lz4) the original data will be returned.
+   * Compress a stream into another one, without holding the whole content in memory. If the stream
+   * is already compressed (gzip, zip, lz4, zstd) the original data is copied.
    *
    * @param is the input stream
-   * @return lz4ed contents of the input stream or the the original content if the stream is already
-   *     compressed
+   * @param os the output stream; it is not closed
+   * @param compressor the compression to apply
+   * @param buffer the buffer to copy the data with
    * @throws IOException
    */
-  public static <T> T lz4Stream(
-      InputStream is, final int expectedSize, final BytesConsumer<T> consumer) throws IOException {
+  public static void compressStream(
+      InputStream is, final OutputStream os, final Compressor compressor, final byte[] buffer)
+      throws IOException {
     is = ensureMarkSupported(is);
     if (isCompressed(is)) {
-      return readStream(is, expectedSize, consumer);
+      copy(is, os, buffer);
     } else {
-      final FastByteArrayOutputStream baos = new FastByteArrayOutputStream(expectedSize);
-      try (final OutputStream zipped = new LZ4FrameOutputStream(baos)) {
-        copy(is, zipped);
+      try (final OutputStream zipped = compressor.compress(new NonClosingOutputStream(os))) {
+        copy(is, zipped, buffer);
       }
-      return baos.consume(consumer);
     }
   }
 
+  /**
+   * Read a stream into a consumer gzip-compressing content. If the stream is already compressed
+   * (gzip, zip, lz4, zstd) the original data will be returned.
+   *
+   * @param is the input stream
+   * @return gzipped contents of the input stream or the the original content if the stream is
+   *     already compressed
+   * @throws IOException
+   */
+  public static <T> T gzipStream(
+      final InputStream is, final int expectedSize, final BytesConsumer<T> consumer)
+      throws IOException {
+    return compressStream(is, gzip(DEFAULT_COMPRESSION_LEVEL), expectedSize, consumer);
+  }
+
+  /**
+   * Read a stream into a consumer lz4-compressing content. If the stream is already compressed
+   * (gzip, zip, lz4, zstd) the original data will be returned.
+   *
+   * @param is the input stream
+   * @return lz4ed contents of the input stream or the the original content if the stream is already
+   *     compressed
+   * @throws IOException
+   */
+  public static <T> T lz4Stream(
+      final InputStream is, final int expectedSize, final BytesConsumer<T> consumer)
+      throws IOException {
+    return compressStream(is, lz4(DEFAULT_COMPRESSION_LEVEL), expectedSize, consumer);
+  }
+
+  /**
+   * Gzip-compress a stream into another one, without holding the whole content in memory. If the
+   * stream is already compressed (gzip, zip, lz4, zstd) the original data is copied.
+   *
+   * @param is the input stream
+   * @param os the output stream; it is not closed
+   * @param buffer the buffer to copy the data with
+   * @throws IOException
+   */
+  public static void gzipStream(final InputStream is, final OutputStream os, final byte[] buffer)
+      throws IOException {
+    compressStream(is, os, gzip(DEFAULT_COMPRESSION_LEVEL), buffer);
+  }
+
+  /**
+   * Lz4-compress a stream into another one, without holding the whole content in memory. If the
+   * stream is already compressed (gzip, zip, lz4, zstd) the original data is copied.
+   *
+   * @param is the input stream
+   * @param os the output stream; it is not closed
+   * @param buffer the buffer to copy the data with
+   * @throws IOException
+   */
+  public static void lz4Stream(final InputStream is, final OutputStream os, final byte[] buffer)
+      throws IOException {
+    compressStream(is, os, lz4(DEFAULT_COMPRESSION_LEVEL), buffer);
+  }
+
+  /**
+   * Copy a stream into another one.
+   *
+   * @param is the input stream
+   * @param os the output stream; it is not closed
+   * @param buffer the buffer to copy the data with
+   * @throws IOException
+   */
+  public static void copyStream(final InputStream is, final OutputStream os, final byte[] buffer)
+      throws IOException {
+    copy(is, os, buffer);
+  }
+
   /**
    * Read a stream into a consumer.
    *
@@ -179,13 +335,35 @@ public final class StreamUtils {
    * @throws IOException
    */
   private static void copy(final InputStream is, final OutputStream os) throws IOException {
+    copy(is, os, new byte[8192]);
+  }
+
+  private static void copy(final InputStream is, final OutputStream os, final byte[] buffer)
+      throws IOException {
     int length;
-    final byte[] buffer = new byte[8192];
     while ((length = is.read(buffer)) > 0) {
       os.write(buffer, 0, length);
     }
   }
 
+  /** Lets compressing streams write their trailer on close without closing the target stream */
+  private static final class NonClosingOutputStream extends FilterOutputStream {
+
+    NonClosingOutputStream(final OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+
   /**
    * Check whether the stream is compressed using a supported format
    *
@@ -195,7 +373,7 @@ public final class StreamUtils {
    */
   private static boolean isCompressed(final InputStream is) throws IOException {
     checkMarkSupported(is);
-    return isGzip(is) || isLz4(is) || isZip(is);
+    return isGzip(is) || isLz4(is) || isZip(is) || isZstd(is);
   }
 
   /**
@@ -249,6 +427,23 @@ public final class StreamUtils {
     }
   }
 
+  /**
+   * Check whether the stream represents zstd data
+   *
+   * @param is input stream; must support {@linkplain InputStream#mark(int)}
+   * @return {@literal true} if the stream represents zstd data
+   * @throws IOException
+   */
+  private static boolean isZstd(final InputStream is) throws IOException {
+    checkMarkSupported(is);
+    is.mark(ZSTD_MAGIC.length);
+    try {
+      return IOToolkit.hasMagic(is, ZSTD_MAGIC);
+    } finally {
+      is.reset();
+    }
+  }
+
   private static InputStream ensureMarkSupported(InputStream is) {
     if (!is.markSupported()) {
       is = new BufferedInputStream(is);
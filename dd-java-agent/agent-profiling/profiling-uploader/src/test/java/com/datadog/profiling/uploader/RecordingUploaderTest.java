@@ -21,6 +21,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -37,6 +38,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
 import com.google.common.io.ByteStreams;
 import datadog.trace.api.Config;
+import io.airlift.compress.zstd.ZstdInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -139,7 +141,7 @@ public class RecordingUploaderTest {
   }
 
   @ParameterizedTest
-  @ValueSource(strings = {"on", "lz4", "gzip", "off", "invalid"})
+  @ValueSource(strings = {"on", "lz4", "gzip", "zstd", "off", "invalid"})
   public void testRequestParameters(final String compression)
       throws IOException, InterruptedException {
     when(config.getProfilingUploadCompression()).thenReturn(compression);
@@ -187,6 +189,8 @@ public class RecordingUploaderTest {
         (byte[]) Iterables.getFirst(parameters.get(RecordingUploader.DATA_PARAM), new byte[] {});
     if (compression.equals("gzip")) {
       uploadedBytes = unGzip(uploadedBytes);
+    } else if (compression.equals("zstd")) {
+      uploadedBytes = unZstd(uploadedBytes);
     } else if (compression.equals("on")
         || compression.equals("lz4")
         || compression.equals("invalid")) {
@@ -254,6 +258,98 @@ public class RecordingUploaderTest {
         Credentials.basic("username", ""), recordedSecondRequest.getHeader("Proxy-Authorization"));
   }
 
+  @ParameterizedTest
+  @ValueSource(strings = {"on", "lz4", "gzip", "zstd", "off", "invalid"})
+  public void testStreamingRequestParameters(final String compression)
+      throws IOException, InterruptedException {
+    when(config.getProfilingUploadCompression()).thenReturn(compression);
+    when(config.isProfilingUploadStreaming()).thenReturn(true);
+    uploader = new RecordingUploader(config);
+
+    server.enqueue(new MockResponse().setResponseCode(200));
+
+    final RecordingData recording = mockRecordingData(RECORDING_RESOURCE);
+    uploader.upload(RECORDING_TYPE, recording);
+
+    final RecordedRequest recordedRequest = server.takeRequest(5, TimeUnit.SECONDS);
+    assertEquals(url, recordedRequest.getRequestUrl());
+    assertEquals(API_KEY_VALUE, recordedRequest.getHeader("DD-API-KEY"));
+
+    final Multimap<String, Object> parameters =
+        ProfilingTestUtils.parseProfilingRequestParameters(recordedRequest);
+    assertEquals(
+        ImmutableList.of(RECODING_NAME_PREFIX + SEQUENCE_NUMBER),
+        parameters.get(RecordingUploader.RECORDING_NAME_PARAM));
+    assertEquals(
+        EXPECTED_TAGS, ProfilingTestUtils.parseTags(parameters.get(RecordingUploader.TAGS_PARAM)));
+
+    final byte[] expectedBytes =
+        ByteStreams.toByteArray(
+            Thread.currentThread().getContextClassLoader().getResourceAsStream(RECORDING_RESOURCE));
+
+    byte[] uploadedBytes =
+        (byte[]) Iterables.getFirst(parameters.get(RecordingUploader.DATA_PARAM), new byte[] {});
+    if (compression.equals("gzip")) {
+      uploadedBytes = unGzip(uploadedBytes);
+    } else if (compression.equals("zstd")) {
+      uploadedBytes = unZstd(uploadedBytes);
+    } else if (compression.equals("on")
+        || compression.equals("lz4")
+        || compression.equals("invalid")) {
+      uploadedBytes = unLz4(uploadedBytes);
+    }
+    assertArrayEquals(expectedBytes, uploadedBytes);
+
+    verify(recording.getStream(), timeout(5000)).close();
+    verify(recording, timeout(5000)).release();
+  }
+
+  @Test
+  public void testStreamingRequestWithProxy() throws IOException, InterruptedException {
+    when(config.getFinalProfilingUrl())
+        .thenReturn("http://intake.profiling.datadoghq.com:1234" + URL_PATH);
+    when(config.getProfilingProxyHost()).thenReturn(server.url("").host());
+    when(config.getProfilingProxyPort()).thenReturn(server.url("").port());
+    when(config.getProfilingProxyUsername()).thenReturn("username");
+    when(config.getProfilingProxyPassword()).thenReturn("password");
+    when(config.isProfilingUploadStreaming()).thenReturn(true);
+
+    uploader = new RecordingUploader(config);
+
+    server.enqueue(new MockResponse().setResponseCode(407).addHeader("Proxy-Authenticate: Basic"));
+    server.enqueue(new MockResponse().setResponseCode(200));
+
+    final RecordingData recording = mockRecordingData(RECORDING_RESOURCE);
+    uploader.upload(RECORDING_TYPE, recording);
+
+    final RecordedRequest recordedFirstRequest = server.takeRequest(5, TimeUnit.SECONDS);
+    assertNull(recordedFirstRequest.getHeader("Proxy-Authorization"));
+
+    // The recording can only be read once, the second request replays the temporary file
+    final RecordedRequest recordedSecondRequest = server.takeRequest(5, TimeUnit.SECONDS);
+    assertEquals(
+        Credentials.basic("username", "password"),
+        recordedSecondRequest.getHeader("Proxy-Authorization"));
+    assertArrayEquals(
+        recordedFirstRequest.getBody().readByteArray(),
+        recordedSecondRequest.getBody().readByteArray());
+
+    verify(recording, timeout(5000)).release();
+    verify(recording, times(1)).getStream();
+  }
+
+  @Test
+  public void testStreamingConnectionRefused() throws IOException, InterruptedException {
+    when(config.isProfilingUploadStreaming()).thenReturn(true);
+    uploader = new RecordingUploader(config);
+    server.shutdown();
+
+    final RecordingData recording = mockRecordingData(RECORDING_RESOURCE);
+    uploader.upload(RECORDING_TYPE, recording);
+
+    verify(recording, timeout(5000)).release();
+  }
+
   @Test
   public void testRecordingClosed() throws IOException {
     server.enqueue(new MockResponse().setResponseCode(200));
@@ -445,4 +541,11 @@ public class RecordingUploaderTest {
     ByteStreams.copy(stream, result);
     return result.toByteArray();
   }
+
+  private byte[] unZstd(final byte[] compressed) throws IOException {
+    final InputStream stream = new ZstdInputStream(new ByteArrayInputStream(compressed));
+    final ByteArrayOutputStream result = new ByteArrayOutputStream();
+    ByteStreams.copy(stream, result);
+    return result.toByteArray();
+  }
 }
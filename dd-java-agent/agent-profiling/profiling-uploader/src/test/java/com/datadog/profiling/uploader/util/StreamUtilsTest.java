@@ -1,8 +1,11 @@
 package com.datadog.profiling.uploader.util;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.google.common.io.ByteStreams;
+import io.airlift.compress.zstd.ZstdInputStream;
+import io.airlift.compress.zstd.ZstdOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -17,6 +20,8 @@ import net.jpountz.lz4.LZ4FrameInputStream;
 import net.jpountz.lz4.LZ4FrameOutputStream;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 class StreamUtilsTest {
 
@@ -28,6 +33,7 @@ class StreamUtilsTest {
   private static byte[] testRecordingGzippedBytes;
   private static byte[] testRecordingZippedBytes;
   private static byte[] testRecordingLz4edBytes;
+  private static byte[] testRecordingZstdBytes;
 
   @BeforeAll
   public static void setupClass() throws IOException {
@@ -44,6 +50,12 @@ class StreamUtilsTest {
     final ByteArrayOutputStream zl4edStream = new ByteArrayOutputStream();
     ByteStreams.copy(testRecordingStream(), new LZ4FrameOutputStream(zl4edStream));
     testRecordingLz4edBytes = zl4edStream.toByteArray();
+
+    final ByteArrayOutputStream zstdStream = new ByteArrayOutputStream();
+    try (final OutputStream zstd = new ZstdOutputStream(zstdStream)) {
+      ByteStreams.copy(testRecordingStream(), zstd);
+    }
+    testRecordingZstdBytes = zstdStream.toByteArray();
   }
 
   @Test
@@ -164,6 +176,128 @@ class StreamUtilsTest {
     assertArrayEquals(testRecordingLz4edBytes, bytes);
   }
 
+  @Test
+  public void gzipStreamToStream() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    StreamUtils.gzipStream(testRecordingStream(), out, new byte[16]);
+
+    assertArrayEquals(testRecordingBytes, uncompressGzip(out.toByteArray()));
+  }
+
+  @Test
+  public void gzipAlreadyLz4edStreamToStream() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    StreamUtils.gzipStream(new ByteArrayInputStream(testRecordingLz4edBytes), out, new byte[16]);
+
+    assertArrayEquals(testRecordingLz4edBytes, out.toByteArray());
+  }
+
+  @Test
+  public void lz4StreamToStream() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    StreamUtils.lz4Stream(testRecordingStream(), out, new byte[16]);
+
+    assertArrayEquals(testRecordingBytes, uncompressLz4(out.toByteArray()));
+  }
+
+  @Test
+  public void lz4AlreadyGzippedStreamToStream() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    StreamUtils.lz4Stream(new ByteArrayInputStream(testRecordingGzippedBytes), out, new byte[16]);
+
+    assertArrayEquals(testRecordingGzippedBytes, out.toByteArray());
+  }
+
+  @Test
+  public void copyStreamToStream() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    StreamUtils.copyStream(testRecordingStream(), out, new byte[16]);
+
+    assertArrayEquals(testRecordingBytes, out.toByteArray());
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {StreamUtils.DEFAULT_COMPRESSION_LEVEL, 0, 1, 6, 9, 42})
+  public void gzipStreamWithLevel(final int level) throws IOException {
+    final byte[] bytes =
+        StreamUtils.compressStream(
+            testRecordingStream(),
+            StreamUtils.gzip(level),
+            DEFAULT_EXPECTED_SIZE,
+            CONSUME_TO_BYTES);
+
+    assertArrayEquals(testRecordingBytes, uncompressGzip(bytes));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {StreamUtils.DEFAULT_COMPRESSION_LEVEL, 0, 1, 3, 9, 17, 42})
+  public void lz4StreamWithLevel(final int level) throws IOException {
+    final byte[] bytes =
+        StreamUtils.compressStream(
+            testRecordingStream(), StreamUtils.lz4(level), DEFAULT_EXPECTED_SIZE, CONSUME_TO_BYTES);
+
+    assertArrayEquals(testRecordingBytes, uncompressLz4(bytes));
+  }
+
+  @Test
+  public void higherLevelsCompressBetter() throws IOException {
+    final byte[] gzipFast =
+        StreamUtils.compressStream(
+            testRecordingStream(), StreamUtils.gzip(1), DEFAULT_EXPECTED_SIZE, CONSUME_TO_BYTES);
+    final byte[] gzipBest =
+        StreamUtils.compressStream(
+            testRecordingStream(), StreamUtils.gzip(9), DEFAULT_EXPECTED_SIZE, CONSUME_TO_BYTES);
+    assertTrue(gzipBest.length < gzipFast.length);
+
+    final byte[] lz4Fast =
+        StreamUtils.compressStream(
+            testRecordingStream(), StreamUtils.lz4(1), DEFAULT_EXPECTED_SIZE, CONSUME_TO_BYTES);
+    final byte[] lz4High =
+        StreamUtils.compressStream(
+            testRecordingStream(), StreamUtils.lz4(9), DEFAULT_EXPECTED_SIZE, CONSUME_TO_BYTES);
+    assertTrue(lz4High.length < lz4Fast.length);
+  }
+
+  @Test
+  public void zstdStream() throws IOException {
+    final byte[] bytes =
+        StreamUtils.compressStream(
+            testRecordingStream(), StreamUtils.zstd(), DEFAULT_EXPECTED_SIZE, CONSUME_TO_BYTES);
+
+    assertArrayEquals(testRecordingBytes, uncompressZstd(bytes));
+  }
+
+  @Test
+  public void zstdStreamToStream() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    StreamUtils.compressStream(testRecordingStream(), out, StreamUtils.zstd(), new byte[16]);
+
+    assertArrayEquals(testRecordingBytes, uncompressZstd(out.toByteArray()));
+  }
+
+  @Test
+  public void zstdAlreadyGzippedStream() throws IOException {
+    final byte[] bytes =
+        StreamUtils.compressStream(
+            new ByteArrayInputStream(testRecordingGzippedBytes),
+            StreamUtils.zstd(),
+            DEFAULT_EXPECTED_SIZE,
+            CONSUME_TO_BYTES);
+
+    assertArrayEquals(testRecordingGzippedBytes, bytes);
+  }
+
+  @Test
+  public void lz4AlreadyZstdStream() throws IOException {
+    final byte[] bytes =
+        StreamUtils.lz4Stream(
+            new ByteArrayInputStream(testRecordingZstdBytes),
+            DEFAULT_EXPECTED_SIZE,
+            CONSUME_TO_BYTES);
+
+    assertArrayEquals(testRecordingZstdBytes, bytes);
+  }
+
   private static InputStream testRecordingStream() {
     return StreamUtilsTest.class.getResourceAsStream("/test-recording.jfr");
   }
@@ -182,4 +316,8 @@ class StreamUtilsTest {
   private static byte[] uncompressLz4(final byte[] bytes) throws IOException {
     return ByteStreams.toByteArray(new LZ4FrameInputStream(new ByteArrayInputStream(bytes)));
   }
+
+  private static byte[] uncompressZstd(final byte[] bytes) throws IOException {
+    return ByteStreams.toByteArray(new ZstdInputStream(new ByteArrayInputStream(bytes)));
+  }
 }
@@ -58,7 +58,8 @@ public class ProfilingAgent {
                 startupDelay,
                 startupDelayRandomRange,
                 uploadPeriod,
-                config.isProfilingStartForceFirst());
+                config.isProfilingStartForceFirst(),
+                config.isProfilingChunkedUpload());
         PROFILER.start();
         log.info("Profiling has started!");
 
@@ -0,0 +1,63 @@
+package datadog.trace.agent.tooling;
+
+import datadog.trace.bootstrap.ContextStoreFallbackMap;
+import datadog.trace.bootstrap.WeakMap;
+import java.util.concurrent.ThreadLocalRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Context store fallback usage under concurrent context propagation: a context is attached to a
+ * new key (as to a new Runnable or Future) then read back, while long lived keys are looked up.
+ * Compares the weak map suppliers with the fallback map the context stores use.
+ */
+@State(Scope.Benchmark)
+@Threads(8)
+public class WeakMapBenchmark {
+  private static final int LONG_LIVED_KEYS = 1024;
+
+  @Param({"WeakConcurrent", "WeakInline", "Guava", "ContextStoreFallback"})
+  String implementation;
+
+  private WeakMap<Object, Object> map;
+  private Object[] keys;
+
+  @Setup
+  public void setup() {
+    map = newWeakMap(implementation);
+    keys = new Object[LONG_LIVED_KEYS];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = new Object();
+      map.put(keys[i], "context");
+    }
+  }
+
+  private static WeakMap<Object, Object> newWeakMap(final String implementation) {
+    switch (implementation) {
+      case "WeakConcurrent":
+        return new WeakMapSuppliers.WeakConcurrent().get();
+      case "WeakInline":
+        return new WeakMapSuppliers.WeakConcurrent.Inline().get();
+      case "Guava":
+        return new WeakMapSuppliers.Guava().get();
+      default:
+        return new ContextStoreFallbackMap<>();
+    }
+  }
+
+  @Benchmark
+  public Object getExisting() {
+    return map.get(keys[ThreadLocalRandom.current().nextInt(LONG_LIVED_KEYS)]);
+  }
+
+  @Benchmark
+  public Object putAndGetNew() {
+    final Object key = new Object();
+    map.putIfAbsent(key, "context");
+    return map.get(key);
+  }
+}
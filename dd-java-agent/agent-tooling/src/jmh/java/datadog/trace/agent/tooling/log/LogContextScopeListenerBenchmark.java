@@ -0,0 +1,128 @@
+package datadog.trace.agent.tooling.log;
+
+import datadog.opentracing.DDTracer;
+import datadog.trace.api.CorrelationIdentifier;
+import datadog.trace.api.GlobalTracer;
+import datadog.trace.common.writer.ListWriter;
+import datadog.trace.context.ScopeListener;
+import io.opentracing.Scope;
+import io.opentracing.Span;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Scope transitions with log injection, in a log context copying its map on every update as
+ * logback and log4j 2 do. A scope of a child span and a nested scope of the active span are
+ * activated and closed under an active root scope. Compares the listener with the reflective one
+ * it replaces.
+ */
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+public class LogContextScopeListenerBenchmark {
+
+  @Param({"Reflective", "MethodHandle"})
+  String implementation;
+
+  private DDTracer tracer;
+  private Span root;
+  private Span child;
+  private Scope rootScope;
+
+  @Setup
+  public void setup() throws Exception {
+    tracer = DDTracer.builder().writer(new ListWriter()).build();
+    GlobalTracer.registerIfAbsent(tracer);
+    final Method putMethod = LogContext.class.getMethod("put", String.class, String.class);
+    final Method removeMethod = LogContext.class.getMethod("remove", String.class);
+    tracer.addScopeListener(
+        "Reflective".equals(implementation)
+            ? new ReflectiveListener(putMethod, removeMethod)
+            : new LogContextScopeListener(
+                putMethod, removeMethod, LogContext.class.getMethod("get", String.class)));
+    root = tracer.buildSpan("root").start();
+    child = tracer.buildSpan("child").asChildOf(root).start();
+    rootScope = tracer.activateSpan(root);
+  }
+
+  @TearDown
+  public void tearDown() {
+    rootScope.close();
+    child.finish();
+    root.finish();
+  }
+
+  @Benchmark
+  public void childSpanScope() {
+    tracer.activateSpan(child).close();
+  }
+
+  @Benchmark
+  public void nestedScope() {
+    tracer.activateSpan(root).close();
+  }
+
+  /** Copy on write log context */
+  public static final class LogContext {
+    private static final ThreadLocal<Map<String, String>> CONTEXT = new ThreadLocal<>();
+
+    public static void put(final String key, final String value) {
+      final Map<String, String> current = CONTEXT.get();
+      final Map<String, String> copy =
+          current == null ? new HashMap<String, String>() : new HashMap<>(current);
+      copy.put(key, value);
+      CONTEXT.set(copy);
+    }
+
+    public static void remove(final String key) {
+      final Map<String, String> current = CONTEXT.get();
+      if (current != null) {
+        final Map<String, String> copy = new HashMap<>(current);
+        copy.remove(key);
+        CONTEXT.set(copy);
+      }
+    }
+
+    public static String get(final String key) {
+      final Map<String, String> current = CONTEXT.get();
+      return current == null ? null : current.get(key);
+    }
+  }
+
+  /** The listener invoking the log context methods reflectively */
+  static final class ReflectiveListener implements ScopeListener {
+    private final Method putMethod;
+    private final Method removeMethod;
+
+    ReflectiveListener(final Method putMethod, final Method removeMethod) {
+      this.putMethod = putMethod;
+      this.removeMethod = removeMethod;
+    }
+
+    @Override
+    public void afterScopeActivated() {
+      try {
+        putMethod.invoke(
+            null, CorrelationIdentifier.getTraceIdKey(), CorrelationIdentifier.getTraceId());
+        putMethod.invoke(
+            null, CorrelationIdentifier.getSpanIdKey(), CorrelationIdentifier.getSpanId());
+      } catch (final Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public void afterScopeClosed() {
+      try {
+        removeMethod.invoke(null, CorrelationIdentifier.getTraceIdKey());
+        removeMethod.invoke(null, CorrelationIdentifier.getSpanIdKey());
+      } catch (final Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+}
@@ -88,9 +88,17 @@ public class AgentInstaller {
     for (final AgentBuilder.Listener listener : listeners) {
       agentBuilder = agentBuilder.with(listener);
     }
-    int numInstrumenters = 0;
+    final List<Instrumenter> instrumenters = new ArrayList<>();
     for (final Instrumenter instrumenter :
         ServiceLoader.load(Instrumenter.class, AgentInstaller.class.getClassLoader())) {
+      instrumenters.add(instrumenter);
+    }
+    if (Config.get().isTypeMatcherIndexEnabled()) {
+      TypeMatcherIndex.install(instrumenters);
+    }
+
+    int numInstrumenters = 0;
+    for (final Instrumenter instrumenter : instrumenters) {
       log.debug("Loading instrumentation {}", instrumenter.getClass().getName());
 
       try {
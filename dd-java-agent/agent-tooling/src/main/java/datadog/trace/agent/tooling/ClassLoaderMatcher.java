@@ -1,5 +1,6 @@
 package datadog.trace.agent.tooling;
 
+import datadog.trace.agent.tooling.muzzle.MuzzleCache;
 import datadog.trace.bootstrap.PatchLogger;
 import datadog.trace.bootstrap.WeakCache;
 import io.opentracing.util.GlobalTracer;
@@ -113,12 +114,16 @@ public final class ClassLoaderMatcher {
     private final WeakCache<ClassLoader, Boolean> cache = AgentTooling.newWeakCache(25);
 
     private final String[] resources;
+    private final String persistentKey;
 
     private ClassLoaderHasClassesNamedMatcher(final String... classNames) {
       resources = classNames;
+      final StringBuilder key = new StringBuilder("classes:");
       for (int i = 0; i < resources.length; i++) {
         resources[i] = resources[i].replace(".", "/") + ".class";
+        key.append(i == 0 ? "" : ",").append(resources[i]);
       }
+      persistentKey = key.toString();
     }
 
     private boolean hasResources(final ClassLoader cl) {
@@ -140,7 +145,14 @@ public final class ClassLoaderMatcher {
       if ((cached = cache.getIfPresent(cl)) != null) {
         return cached;
       }
-      final boolean value = hasResources(cl);
+      final MuzzleCache persistentCache = MuzzleCache.get();
+      Boolean value = persistentCache == null ? null : persistentCache.get(cl, persistentKey);
+      if (value == null) {
+        value = hasResources(cl);
+        if (persistentCache != null) {
+          persistentCache.put(cl, persistentKey, value);
+        }
+      }
       cache.put(cl, value);
       return value;
     }
@@ -53,6 +53,9 @@ public interface Instrumenter {
     public static final Junction<AnnotationSource> NOT_DECORATOR_MATCHER =
         not(isAnnotatedWith(named("javax.decorator.Decorator")));
 
+    /** Restricts the type matcher to the candidate types, set when type matchers are indexed. */
+    ElementMatcher<? super TypeDescription> candidateMatcher;
+
     private final SortedSet<String> instrumentationNames;
     private final String instrumentationPrimaryName;
     private final InstrumentationContextProvider contextProvider;
@@ -84,9 +87,11 @@ public interface Instrumenter {
       AgentBuilder.Identified.Extendable agentBuilder =
           parentAgentBuilder
               .type(
-                  failSafe(
-                      typeMatcher(),
-                      "Instrumentation type matcher unexpected exception: " + getClass().getName()),
+                  indexed(
+                      failSafe(
+                          typeMatcher(),
+                          "Instrumentation type matcher unexpected exception: "
+                              + getClass().getName())),
                   failSafe(
                       classLoaderMatcher(),
                       "Instrumentation class loader matcher unexpected exception: "
@@ -102,6 +107,15 @@ public interface Instrumenter {
       return agentBuilder;
     }
 
+    private ElementMatcher<? super TypeDescription> indexed(
+        final ElementMatcher<? super TypeDescription> typeMatcher) {
+      if (candidateMatcher == null) {
+        return typeMatcher;
+      }
+      return new ElementMatcher.Junction.Conjunction<TypeDescription>(
+          candidateMatcher, typeMatcher);
+    }
+
     private AgentBuilder.Identified.Extendable injectHelperClasses(
         AgentBuilder.Identified.Extendable agentBuilder) {
       final String[] helperClassNames = helperClassNames();
@@ -128,6 +142,9 @@ public interface Instrumenter {
 
     /** Matches classes for which instrumentation is not muzzled. */
     private class MuzzleMatcher implements AgentBuilder.RawMatcher {
+      private final String persistentKey =
+          "muzzle:" + Instrumenter.Default.this.getClass().getName();
+
       @Override
       public boolean matches(
           final TypeDescription typeDescription,
@@ -141,7 +158,7 @@ public interface Instrumenter {
          */
         final ReferenceMatcher muzzle = getInstrumentationMuzzle();
         if (null != muzzle) {
-          final boolean isMatch = muzzle.matches(classLoader);
+          final boolean isMatch = muzzle.matches(classLoader, persistentKey);
           if (!isMatch) {
             if (log.isDebugEnabled()) {
               final List<Reference.Mismatch> mismatches =
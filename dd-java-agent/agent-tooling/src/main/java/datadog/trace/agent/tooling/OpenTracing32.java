@@ -203,8 +203,8 @@ public final class OpenTracing32 implements TracerAPI {
       if (otherAgentSpan instanceof OT32Span) {
         final Span otherSpan = ((OT32Span) otherAgentSpan).span;
         if (span instanceof DDSpan && otherSpan instanceof DDSpan) {
-          // minor optimization to avoid BigInteger.toString()
-          return ((DDSpan) span).getTraceId().equals(((DDSpan) otherSpan).getTraceId());
+          // minor optimization to avoid building the id strings
+          return ((DDSpan) span).getTraceIdAsLong() == ((DDSpan) otherSpan).getTraceIdAsLong();
         } else {
           return span.context().toTraceId().equals(otherSpan.context().toTraceId());
         }
@@ -2,7 +2,9 @@ package datadog.trace.agent.tooling;
 
 import datadog.opentracing.DDTracer;
 import datadog.trace.api.Config;
+import datadog.trace.bootstrap.ContextStoreFallbackMap;
 import datadog.trace.bootstrap.instrumentation.api.AgentTracer;
+import datadog.trace.common.writer.ddagent.Monitor;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -11,6 +13,8 @@ public class TracerInstaller {
   public static synchronized void installGlobalTracer() {
     if (Config.get().isTraceEnabled()) {
       if (!io.opentracing.util.GlobalTracer.isRegistered()) {
+        Monitor.StatsD.registerCounter(
+            "context_store.fallback_stores", new ContextStoreFallbackCounter());
         final DDTracer tracer = DDTracer.builder().build();
         try {
           io.opentracing.util.GlobalTracer.register(tracer);
@@ -27,6 +31,14 @@ public class TracerInstaller {
     }
   }
 
+  /** Contexts stored in the fallback maps because their key class has no context field. */
+  private static final class ContextStoreFallbackCounter implements Monitor.Counter {
+    @Override
+    public long total() {
+      return ContextStoreFallbackMap.getStoreCount();
+    }
+  }
+
   public static void logVersionInfo() {
     VersionLogger.logAllVersions();
     log.debug(
@@ -0,0 +1,184 @@
+package datadog.trace.agent.tooling;
+
+import datadog.trace.agent.tooling.bytebuddy.matcher.TypeMatcherHint;
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+
+/**
+ * Indexes the instrumentations by the names, name prefixes and super types their type matchers
+ * declare, see {@link TypeMatcherHint}. For each type being loaded, the candidate instrumentations
+ * are computed once and the type matchers of the other instrumentations are skipped. The hierarchy
+ * of the type is only walked if a candidate needs it, and then only once for all of them.
+ */
+@Slf4j
+final class TypeMatcherIndex {
+  private final BitSet hierarchyIds = new BitSet();
+  private final Map<String, BitSet> byName = new HashMap<>();
+  private final Map<String, BitSet> byPrefix = new HashMap<>();
+  private final Map<String, BitSet> bySuperName = new HashMap<>();
+  private final Map<String, BitSet> bySuperPrefix = new HashMap<>();
+
+  private final ThreadLocal<Candidates> lastCandidates =
+      new ThreadLocal<Candidates>() {
+        @Override
+        protected Candidates initialValue() {
+          return new Candidates();
+        }
+      };
+
+  private TypeMatcherIndex() {}
+
+  /**
+   * Analyzes the type matchers of the enabled instrumentations and restricts each of them to the
+   * types which can match.
+   */
+  static void install(final List<Instrumenter> instrumenters) {
+    final TypeMatcherIndex index = new TypeMatcherIndex();
+    int id = 0;
+    for (final Instrumenter instrumenter : instrumenters) {
+      if (!(instrumenter instanceof Instrumenter.Default)) {
+        continue;
+      }
+      final Instrumenter.Default instrumentation = (Instrumenter.Default) instrumenter;
+      if (!instrumentation.enabled) {
+        continue;
+      }
+      final TypeMatcherHint hint;
+      try {
+        hint = TypeMatcherHint.of(instrumentation.typeMatcher());
+      } catch (final Exception | LinkageError e) {
+        log.debug("Unable to index instrumentation {}", instrumenter.getClass().getName(), e);
+        continue;
+      }
+      if (hint.isAny()) {
+        log.debug("Type matcher of {} is not indexed", instrumenter.getClass().getName());
+        continue;
+      }
+      index.add(id, hint);
+      instrumentation.candidateMatcher = new CandidateMatcher(index, id);
+      id++;
+    }
+    log.debug("Indexed {} of {} type matchers", id, instrumenters.size());
+  }
+
+  private void add(final int id, final TypeMatcherHint hint) {
+    add(byName, hint.getNames(), id);
+    add(byPrefix, hint.getPrefixes(), id);
+    add(bySuperName, hint.getSuperNames(), id);
+    add(bySuperPrefix, hint.getSuperPrefixes(), id);
+    if (hint.needsHierarchy()) {
+      hierarchyIds.set(id);
+    }
+  }
+
+  private static void add(final Map<String, BitSet> index, final Set<String> keys, final int id) {
+    for (final String key : keys) {
+      BitSet ids = index.get(key);
+      if (ids == null) {
+        ids = new BitSet();
+        index.put(key, ids);
+      }
+      ids.set(id);
+    }
+  }
+
+  boolean mayMatch(final int id, final TypeDescription type) {
+    final Candidates candidates = candidates(type);
+    if (candidates.byName.get(id)) {
+      return true;
+    }
+    if (!hierarchyIds.get(id)) {
+      return false;
+    }
+    if (candidates.byHierarchy == null) {
+      candidates.byHierarchy = byHierarchy(type);
+    }
+    return candidates.byHierarchy.get(id);
+  }
+
+  /**
+   * ByteBuddy checks the type matchers of all the instrumentations one after the other on the same
+   * thread, so the candidates are computed once per type.
+   */
+  private Candidates candidates(final TypeDescription type) {
+    final Candidates candidates = lastCandidates.get();
+    if (candidates.type.get() != type) {
+      candidates.type = new WeakReference<>(type);
+      candidates.byName = byName(type.getActualName());
+      candidates.byHierarchy = null;
+    }
+    return candidates;
+  }
+
+  private BitSet byName(final String name) {
+    final BitSet ids = new BitSet();
+    or(ids, byName.get(name));
+    orPrefixes(ids, byPrefix, name);
+    return ids;
+  }
+
+  private BitSet byHierarchy(final TypeDescription type) {
+    final Set<String> hierarchyNames = new HashSet<>();
+    if (!TypeMatcherHint.collectHierarchyNames(type, hierarchyNames)) {
+      // Let the type matchers deal with the types which can't be resolved.
+      return hierarchyIds;
+    }
+    final BitSet ids = new BitSet();
+    for (final String name : hierarchyNames) {
+      or(ids, bySuperName.get(name));
+      orPrefixes(ids, bySuperPrefix, name);
+    }
+    return ids;
+  }
+
+  private static void orPrefixes(
+      final BitSet ids, final Map<String, BitSet> byPrefix, final String name) {
+    for (final Map.Entry<String, BitSet> entry : byPrefix.entrySet()) {
+      if (name.startsWith(entry.getKey())) {
+        ids.or(entry.getValue());
+      }
+    }
+  }
+
+  private static void or(final BitSet ids, final BitSet other) {
+    if (other != null) {
+      ids.or(other);
+    }
+  }
+
+  private static final class Candidates {
+    WeakReference<TypeDescription> type = new WeakReference<TypeDescription>(null);
+    BitSet byName;
+    BitSet byHierarchy;
+  }
+
+  /** Rejects the types which can't be matched by the type matcher of an instrumentation. */
+  static final class CandidateMatcher
+      extends ElementMatcher.Junction.AbstractBase<TypeDescription> {
+    private final TypeMatcherIndex index;
+    private final int id;
+
+    CandidateMatcher(final TypeMatcherIndex index, final int id) {
+      this.index = index;
+      this.id = id;
+    }
+
+    @Override
+    public boolean matches(final TypeDescription target) {
+      return index.mayMatch(id, target);
+    }
+
+    @Override
+    public String toString() {
+      return "indexedCandidate(" + id + ")";
+    }
+  }
+}
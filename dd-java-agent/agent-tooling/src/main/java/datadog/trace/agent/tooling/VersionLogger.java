@@ -17,10 +17,7 @@ public class VersionLogger {
     log.info(
         "dd-trace-api - version: {}",
         getVersionString(Utils.getAgentClassLoader().getResourceAsStream("dd-trace-api.version")));
-    log.info(
-        "dd-java-agent - version: {}",
-        getVersionString(
-            ClassLoader.getSystemClassLoader().getResourceAsStream("dd-java-agent.version")));
+    log.info("dd-java-agent - version: {}", getAgentVersion());
     log.debug(
         "Running on Java {}. JVM {} - {} - {}",
         System.getProperty("java.version"),
@@ -29,6 +26,12 @@ public class VersionLogger {
         System.getProperty("java.vm.version"));
   }
 
+  /** @return the version of dd-java-agent, or "unknown" */
+  public static String getAgentVersion() {
+    return getVersionString(
+        ClassLoader.getSystemClassLoader().getResourceAsStream("dd-java-agent.version"));
+  }
+
   private static String getVersionString(InputStream stream) {
     String v;
     try {
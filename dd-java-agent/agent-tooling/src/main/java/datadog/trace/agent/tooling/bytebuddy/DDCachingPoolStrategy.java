@@ -34,8 +34,9 @@ import net.bytebuddy.pool.TypePool;
  * <p>This design was chosen to create a single limited size cache that can be adjusted for the
  * entire application -- without having to create a large number of WeakReference objects.
  *
- * <p>Eviction is handled almost entirely through a size restriction; however, softValues are still
- * used as a further safeguard.
+ * <p>The resolution cache starts at {@link #TYPE_CAPACITY} entries and grows up to {@link
+ * #MAX_TYPE_CAPACITY} when types are loaded faster than it can hold them, see {@link
+ * TypeResolutionCache}.
  */
 @Slf4j
 public class DDCachingPoolStrategy implements PoolStrategy {
@@ -43,8 +44,9 @@ public class DDCachingPoolStrategy implements PoolStrategy {
   // others to avoid creation of synthetic accessors
 
   static final int CONCURRENCY_LEVEL = 8;
-  static final int LOADER_CAPACITY = 64;
+  static final int LOADER_CAPACITY = 256;
   static final int TYPE_CAPACITY = 64;
+  static final int MAX_TYPE_CAPACITY = 8192;
 
   static final int BOOTSTRAP_HASH = 7236344; // Just a random number
 
@@ -67,13 +69,8 @@ public class DDCachingPoolStrategy implements PoolStrategy {
   /**
    * Single shared Type.Resolution cache -- uses a composite key -- conceptually of loader & name
    */
-  final Cache<TypeCacheKey, TypePool.Resolution> sharedResolutionCache =
-      CacheBuilder.newBuilder()
-          .softValues()
-          .concurrencyLevel(CONCURRENCY_LEVEL)
-          .initialCapacity(TYPE_CAPACITY)
-          .maximumSize(TYPE_CAPACITY)
-          .build();
+  final TypeResolutionCache sharedResolutionCache =
+      new TypeResolutionCache(TYPE_CAPACITY, MAX_TYPE_CAPACITY);
 
   /** Fast path for bootstrap */
   final SharedResolutionCacheAdapter bootstrapCacheProvider =
@@ -122,6 +119,24 @@ public class DDCachingPoolStrategy implements PoolStrategy {
     return sharedResolutionCache.size();
   }
 
+  public final long hitCount() {
+    return sharedResolutionCache.hitCount();
+  }
+
+  public final long missCount() {
+    return sharedResolutionCache.missCount();
+  }
+
+  /** Cached types replaced by a more frequently used type */
+  public final long evictionCount() {
+    return sharedResolutionCache.evictionCount();
+  }
+
+  /** Types not cached because they were less frequently used than the cached ones */
+  public final long rejectionCount() {
+    return sharedResolutionCache.rejectionCount();
+  }
+
   /**
    * TypeCacheKey is key for the sharedResolutionCache. Conceptually, it is a mix of ClassLoader &
    * class name.
@@ -147,6 +162,11 @@ public class DDCachingPoolStrategy implements PoolStrategy {
       hashCode = 31 * this.loaderHash + className.hashCode();
     }
 
+    /** @return false once the ClassLoader was garbage collected -- the entry can't be used */
+    boolean isLoaderAlive() {
+      return loaderRef == null || loaderRef.get() != null;
+    }
+
     @Override
     public final int hashCode() {
       return hashCode;
@@ -205,12 +225,12 @@ public class DDCachingPoolStrategy implements PoolStrategy {
 
     private final int loaderHash;
     private final WeakReference<ClassLoader> loaderRef;
-    private final Cache<TypeCacheKey, TypePool.Resolution> sharedResolutionCache;
+    private final TypeResolutionCache sharedResolutionCache;
 
     SharedResolutionCacheAdapter(
         final int loaderHash,
         final WeakReference<ClassLoader> loaderRef,
-        final Cache<TypeCacheKey, TypePool.Resolution> sharedResolutionCache) {
+        final TypeResolutionCache sharedResolutionCache) {
       this.loaderHash = loaderHash;
       this.loaderRef = loaderRef;
       this.sharedResolutionCache = sharedResolutionCache;
@@ -219,7 +239,7 @@ public class DDCachingPoolStrategy implements PoolStrategy {
     @Override
     public TypePool.Resolution find(final String className) {
       final TypePool.Resolution existingResolution =
-          sharedResolutionCache.getIfPresent(new TypeCacheKey(loaderHash, loaderRef, className));
+          sharedResolutionCache.get(new TypeCacheKey(loaderHash, loaderRef, className));
       if (existingResolution != null) {
         return existingResolution;
       }
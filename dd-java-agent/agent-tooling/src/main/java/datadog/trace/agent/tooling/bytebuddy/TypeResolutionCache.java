@@ -0,0 +1,325 @@
+package datadog.trace.agent.tooling.bytebuddy;
+
+import datadog.trace.agent.tooling.bytebuddy.DDCachingPoolStrategy.TypeCacheKey;
+import java.lang.ref.SoftReference;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import lombok.extern.slf4j.Slf4j;
+import net.bytebuddy.pool.TypePool;
+
+/**
+ * Type resolution cache shared by all ClassLoaders, with a capacity that adapts to the class
+ * loading rate and the heap headroom.
+ *
+ * <ul>
+ *   Entries are stored in a set associative table...
+ *   <li>a key can only be stored in one of the {@link #WAYS} slots of its set, so neither lookups
+ *       nor updates lock
+ *   <li>slots of unloaded ClassLoaders and of cleared resolutions are reused first
+ *   <li>otherwise the least frequently looked up entry of the set is the eviction candidate, and
+ *       it is only replaced when the new type was looked up at least as often (TinyLFU admission)
+ *       -- so one-off types don't evict the hot ones
+ * </ul>
+ *
+ * <p>Every {@link #ADAPT_INTERVAL} lookups, the capacity doubles if a significant part of the
+ * lookups displaced a cached type and the heap has room to spare, and halves when the heap is
+ * running low. Resolutions are still softly referenced as a further safeguard.
+ */
+@Slf4j
+final class TypeResolutionCache {
+  static final int WAYS = 8;
+  static final int ADAPT_INTERVAL = 4096; // must be a power of 2
+
+  /** Grow when at least 1/8th of the lookups displaced a type (evicted or rejected) */
+  static final int DISPLACED_RATIO = 8;
+  /** Shrink below this fraction of free heap, only grow above the high one */
+  static final double LOW_HEAP_HEADROOM = 0.1;
+  static final double HIGH_HEAP_HEADROOM = 0.3;
+
+  private final int minCapacity;
+  private final int maxCapacity;
+
+  private volatile AtomicReferenceArray<Entry> table;
+  private volatile FrequencySketch sketch;
+  private final AtomicInteger size = new AtomicInteger();
+
+  private final AtomicLong lookups = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong rejections = new AtomicLong();
+
+  private final AtomicBoolean adapting = new AtomicBoolean();
+  // Only accessed while adapting
+  private long lastDisplaced;
+
+  /** Capacities must be powers of 2 and at least {@link #WAYS} */
+  TypeResolutionCache(final int minCapacity, final int maxCapacity) {
+    this.minCapacity = minCapacity;
+    this.maxCapacity = maxCapacity;
+    table = new AtomicReferenceArray<>(minCapacity);
+    sketch = new FrequencySketch(minCapacity);
+  }
+
+  TypePool.Resolution get(final TypeCacheKey key) {
+    final int hash = key.hashCode();
+    sketch.increment(hash);
+
+    TypePool.Resolution resolution = null;
+    final AtomicReferenceArray<Entry> table = this.table;
+    final int set = setIndex(hash, table.length());
+    for (int i = set; i < set + WAYS; i++) {
+      final Entry entry = table.get(i);
+      if (entry != null && entry.key.hashCode() == hash && entry.key.equals(key)) {
+        resolution = entry.get();
+        break;
+      }
+    }
+
+    if (resolution == null) {
+      misses.incrementAndGet();
+    }
+    if ((lookups.incrementAndGet() & (ADAPT_INTERVAL - 1)) == 0) {
+      adapt();
+    }
+    return resolution;
+  }
+
+  void put(final TypeCacheKey key, final TypePool.Resolution resolution) {
+    final int hash = key.hashCode();
+    final FrequencySketch sketch = this.sketch;
+    final AtomicReferenceArray<Entry> table = this.table;
+    final int set = setIndex(hash, table.length());
+
+    int slot = -1;
+    int slotFrequency = Integer.MAX_VALUE;
+    boolean evicting = true;
+    for (int i = set; i < set + WAYS; i++) {
+      final Entry entry = table.get(i);
+      if (entry == null || !entry.isLive() || entry.key.equals(key)) {
+        slot = i;
+        evicting = false;
+        break;
+      }
+      final int frequency = sketch.frequency(entry.key.hashCode());
+      if (frequency < slotFrequency) {
+        slot = i;
+        slotFrequency = frequency;
+      }
+    }
+
+    if (evicting && sketch.frequency(hash) < slotFrequency) {
+      rejections.incrementAndGet();
+      return;
+    }
+
+    final Entry previous = table.getAndSet(slot, new Entry(key, resolution));
+    if (previous == null) {
+      size.incrementAndGet();
+    } else if (evicting) {
+      evictions.incrementAndGet();
+    }
+  }
+
+  private void adapt() {
+    if (!adapting.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      final long displaced = evictions.get() + rejections.get();
+      final int capacity = table.length();
+      final int newCapacity =
+          nextCapacity(
+              capacity,
+              minCapacity,
+              maxCapacity,
+              ADAPT_INTERVAL,
+              displaced - lastDisplaced,
+              heapHeadroom());
+      lastDisplaced = displaced;
+
+      if (newCapacity != capacity) {
+        resize(newCapacity);
+        log.debug(
+            "Type resolution cache resized from {} to {} -- hits: {}, misses: {}, evictions: {}",
+            capacity,
+            newCapacity,
+            hitCount(),
+            missCount(),
+            evictionCount());
+      }
+    } finally {
+      adapting.set(false);
+    }
+  }
+
+  static int nextCapacity(
+      final int capacity,
+      final int minCapacity,
+      final int maxCapacity,
+      final long lookups,
+      final long displaced,
+      final double heapHeadroom) {
+    if (heapHeadroom < LOW_HEAP_HEADROOM) {
+      return Math.max(minCapacity, capacity / 2);
+    }
+    if (heapHeadroom >= HIGH_HEAP_HEADROOM && displaced * DISPLACED_RATIO >= lookups) {
+      return Math.min(maxCapacity, capacity * 2);
+    }
+    return capacity;
+  }
+
+  private static double heapHeadroom() {
+    final Runtime runtime = Runtime.getRuntime();
+    final long max =
+        runtime.maxMemory() == Long.MAX_VALUE ? runtime.totalMemory() : runtime.maxMemory();
+    final long used = runtime.totalMemory() - runtime.freeMemory();
+    return (double) (max - used) / max;
+  }
+
+  /** Live entries are rehashed into the new table; the ones which don't fit are dropped. */
+  private void resize(final int capacity) {
+    final AtomicReferenceArray<Entry> oldTable = table;
+    final AtomicReferenceArray<Entry> newTable = new AtomicReferenceArray<>(capacity);
+    int count = 0;
+    for (int i = 0; i < oldTable.length(); i++) {
+      final Entry entry = oldTable.get(i);
+      if (entry != null && entry.isLive()) {
+        final int set = setIndex(entry.key.hashCode(), capacity);
+        for (int j = set; j < set + WAYS; j++) {
+          if (newTable.get(j) == null) {
+            newTable.set(j, entry);
+            count++;
+            break;
+          }
+        }
+      }
+    }
+    sketch = new FrequencySketch(capacity);
+    table = newTable;
+    size.set(count);
+  }
+
+  private static int setIndex(final int hash, final int capacity) {
+    int h = hash * 0x9E3779B9;
+    h ^= h >>> 16;
+    return (h & (capacity / WAYS - 1)) * WAYS;
+  }
+
+  int capacity() {
+    return table.length();
+  }
+
+  /** Approximate, includes entries which were cleared but not reused yet */
+  int size() {
+    return size.get();
+  }
+
+  long hitCount() {
+    return lookups.get() - misses.get();
+  }
+
+  long missCount() {
+    return misses.get();
+  }
+
+  long evictionCount() {
+    return evictions.get();
+  }
+
+  long rejectionCount() {
+    return rejections.get();
+  }
+
+  private static final class Entry extends SoftReference<TypePool.Resolution> {
+    final TypeCacheKey key;
+
+    Entry(final TypeCacheKey key, final TypePool.Resolution resolution) {
+      super(resolution);
+      this.key = key;
+    }
+
+    boolean isLive() {
+      return get() != null && key.isLoaderAlive();
+    }
+  }
+
+  /**
+   * Count-min sketch of 4 bit counters estimating how often each key was looked up. Counters are
+   * halved periodically so old popularity fades. Updates are deliberately not synchronized -- a
+   * lost increment only makes the estimate slightly less accurate.
+   */
+  static final class FrequencySketch {
+    private static final long[] SEEDS = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private final long[] table;
+    private final int sampleSize;
+    private int additions;
+
+    /** @param capacity a power of 2 */
+    FrequencySketch(final int capacity) {
+      table = new long[capacity];
+      sampleSize = 10 * capacity;
+    }
+
+    int frequency(final int key) {
+      final int hash = spread(key);
+      final int start = (hash & 3) << 2;
+      int frequency = Integer.MAX_VALUE;
+      for (int i = 0; i < 4; i++) {
+        final int offset = (start + i) << 2;
+        final int count = (int) ((table[indexOf(hash, i)] >>> offset) & 0xFL);
+        frequency = Math.min(frequency, count);
+      }
+      return frequency;
+    }
+
+    void increment(final int key) {
+      final int hash = spread(key);
+      final int start = (hash & 3) << 2;
+      boolean added = false;
+      for (int i = 0; i < 4; i++) {
+        added |= incrementAt(indexOf(hash, i), (start + i) << 2);
+      }
+      if (added && ++additions >= sampleSize) {
+        reset();
+      }
+    }
+
+    private boolean incrementAt(final int index, final int offset) {
+      final long mask = 0xFL << offset;
+      if ((table[index] & mask) != mask) {
+        table[index] += 1L << offset;
+        return true;
+      }
+      return false;
+    }
+
+    /** Halves all the counters */
+    private void reset() {
+      int odd = 0;
+      for (int i = 0; i < table.length; i++) {
+        odd += Long.bitCount(table[i] & ONE_MASK);
+        table[i] = (table[i] >>> 1) & RESET_MASK;
+      }
+      additions = (additions - (odd >>> 2)) >>> 1;
+    }
+
+    private int indexOf(final int hash, final int i) {
+      long h = (hash + SEEDS[i]) * SEEDS[i];
+      h += h >>> 32;
+      return ((int) h) & (table.length - 1);
+    }
+
+    private static int spread(int x) {
+      x = ((x >>> 16) ^ x) * 0x45d9f3b;
+      x = ((x >>> 16) ^ x) * 0x45d9f3b;
+      return (x >>> 16) ^ x;
+    }
+  }
+}
@@ -48,6 +48,14 @@ class LoggingFailSafeMatcher<T> extends ElementMatcher.Junction.AbstractBase<T>
     }
   }
 
+  ElementMatcher<? super T> getMatcher() {
+    return matcher;
+  }
+
+  boolean getFallback() {
+    return fallback;
+  }
+
   @Override
   public String toString() {
     return "failSafe(try(" + matcher + ") or " + fallback + ")";
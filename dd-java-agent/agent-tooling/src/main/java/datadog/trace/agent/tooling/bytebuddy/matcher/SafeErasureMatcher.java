@@ -56,6 +56,10 @@ class SafeErasureMatcher<T extends TypeDefinition> extends ElementMatcher.Juncti
     }
   }
 
+  ElementMatcher<? super TypeDescription> getMatcher() {
+    return matcher;
+  }
+
   @Override
   public String toString() {
     return "safeErasure(" + matcher + ")";
@@ -126,6 +126,10 @@ class SafeHasSuperTypeMatcher<T extends TypeDescription>
     }
   }
 
+  ElementMatcher<? super TypeDescription.Generic> getMatcher() {
+    return matcher;
+  }
+
   @Override
   public String toString() {
     return "safeHasSuperType(" + matcher + ")";
@@ -0,0 +1,274 @@
+package datadog.trace.agent.tooling.bytebuddy.matcher;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import net.bytebuddy.description.type.TypeDefinition;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.matcher.BooleanMatcher;
+import net.bytebuddy.matcher.ElementMatcher;
+import net.bytebuddy.matcher.ErasureMatcher;
+import net.bytebuddy.matcher.NameMatcher;
+import net.bytebuddy.matcher.StringMatcher;
+
+/**
+ * Necessary condition for a type matcher to match, derived from the names the matcher declares.
+ *
+ * <p>A type can only be matched if its name is one of the {@link #getNames() names} or starts with
+ * one of the {@link #getPrefixes() prefixes}, or if one of its super types (or itself) has one of
+ * the {@link #getSuperNames() super names} or starts with one of the {@link #getSuperPrefixes()
+ * super prefixes}. Matchers which can't be analyzed give {@link #isAny() any}, so the hint never
+ * rejects a type the matcher would match.
+ */
+@Slf4j
+public final class TypeMatcherHint {
+  private static final TypeMatcherHint ANY =
+      new TypeMatcherHint(
+          true,
+          Collections.<String>emptySet(),
+          Collections.<String>emptySet(),
+          Collections.<String>emptySet(),
+          Collections.<String>emptySet());
+
+  private static final TypeMatcherHint NONE =
+      new TypeMatcherHint(
+          false,
+          Collections.<String>emptySet(),
+          Collections.<String>emptySet(),
+          Collections.<String>emptySet(),
+          Collections.<String>emptySet());
+
+  private final boolean any;
+  private final Set<String> names;
+  private final Set<String> prefixes;
+  private final Set<String> superNames;
+  private final Set<String> superPrefixes;
+
+  private TypeMatcherHint(
+      final boolean any,
+      final Set<String> names,
+      final Set<String> prefixes,
+      final Set<String> superNames,
+      final Set<String> superPrefixes) {
+    this.any = any;
+    this.names = names;
+    this.prefixes = prefixes;
+    this.superNames = superNames;
+    this.superPrefixes = superPrefixes;
+  }
+
+  public static TypeMatcherHint of(final ElementMatcher<?> matcher) {
+    try {
+      return analyze(matcher);
+    } catch (final Exception e) {
+      log.debug("Unable to analyze type matcher {}", matcher, e);
+      return ANY;
+    }
+  }
+
+  /** @return true if any type can match */
+  public boolean isAny() {
+    return any;
+  }
+
+  public Set<String> getNames() {
+    return names;
+  }
+
+  public Set<String> getPrefixes() {
+    return prefixes;
+  }
+
+  public Set<String> getSuperNames() {
+    return superNames;
+  }
+
+  public Set<String> getSuperPrefixes() {
+    return superPrefixes;
+  }
+
+  /** @return true if the super types of a type must be known to check this hint */
+  public boolean needsHierarchy() {
+    return !superNames.isEmpty() || !superPrefixes.isEmpty();
+  }
+
+  /**
+   * Adds the names of the type, its super classes and all their interfaces.
+   *
+   * @return false if part of the hierarchy couldn't be resolved
+   */
+  public static boolean collectHierarchyNames(
+      final TypeDescription type, final Set<String> hierarchyNames) {
+    TypeDefinition typeDefinition = type;
+    try {
+      while (typeDefinition != null) {
+        hierarchyNames.add(typeDefinition.asErasure().getActualName());
+        collectInterfaceNames(typeDefinition, hierarchyNames);
+        typeDefinition = typeDefinition.getSuperClass();
+      }
+      return true;
+    } catch (final Exception e) {
+      log.debug(
+          "{} trying to get the hierarchy of {}: {}",
+          e.getClass().getSimpleName(),
+          type.getName(),
+          e.getMessage());
+      return false;
+    }
+  }
+
+  private static void collectInterfaceNames(
+      final TypeDefinition typeDefinition, final Set<String> hierarchyNames) {
+    for (final TypeDescription.Generic interfaceType : typeDefinition.getInterfaces()) {
+      if (hierarchyNames.add(interfaceType.asErasure().getActualName())) {
+        collectInterfaceNames(interfaceType, hierarchyNames);
+      }
+    }
+  }
+
+  private static TypeMatcherHint analyze(final Object matcher) throws Exception {
+    final Class<?> matcherClass = matcher.getClass();
+    if (matcherClass == LoggingFailSafeMatcher.class) {
+      final LoggingFailSafeMatcher<?> failSafe = (LoggingFailSafeMatcher<?>) matcher;
+      return failSafe.getFallback() ? ANY : analyze(failSafe.getMatcher());
+    } else if (matcherClass == SafeErasureMatcher.class) {
+      return analyze(((SafeErasureMatcher<?>) matcher).getMatcher());
+    } else if (matcherClass == SafeHasSuperTypeMatcher.class) {
+      return superTypes(analyze(((SafeHasSuperTypeMatcher<?>) matcher).getMatcher()));
+    } else if (matcherClass == SafeExtendsClassMatcher.class) {
+      return superTypes(analyze(((SafeExtendsClassMatcher<?>) matcher).getMatcher()));
+    } else if (matcherClass == ErasureMatcher.class) {
+      return analyze(field(matcher, "matcher"));
+    } else if (matcherClass == NameMatcher.class) {
+      return name(field(matcher, "matcher"));
+    } else if (matcherClass == BooleanMatcher.class) {
+      return (Boolean) field(matcher, "matches") ? ANY : NONE;
+    } else if (matcherClass == ElementMatcher.Junction.Conjunction.class) {
+      TypeMatcherHint hint = ANY;
+      for (final Object operand : operands(matcher)) {
+        hint = and(hint, analyze(operand));
+      }
+      return hint;
+    } else if (matcherClass == ElementMatcher.Junction.Disjunction.class) {
+      TypeMatcherHint hint = NONE;
+      for (final Object operand : operands(matcher)) {
+        hint = or(hint, analyze(operand));
+      }
+      return hint;
+    }
+    return ANY;
+  }
+
+  private static TypeMatcherHint name(final Object stringMatcher) throws Exception {
+    if (stringMatcher.getClass() == StringMatcher.class) {
+      final String value = (String) field(stringMatcher, "value");
+      final Object mode = field(stringMatcher, "mode");
+      if (mode == StringMatcher.Mode.EQUALS_FULLY) {
+        return new TypeMatcherHint(
+            false,
+            Collections.singleton(value),
+            Collections.<String>emptySet(),
+            Collections.<String>emptySet(),
+            Collections.<String>emptySet());
+      } else if (mode == StringMatcher.Mode.STARTS_WITH) {
+        return new TypeMatcherHint(
+            false,
+            Collections.<String>emptySet(),
+            Collections.singleton(value),
+            Collections.<String>emptySet(),
+            Collections.<String>emptySet());
+      }
+    }
+    return ANY;
+  }
+
+  /** The hint of a matcher applied to every super type. */
+  private static TypeMatcherHint superTypes(final TypeMatcherHint hint) {
+    if (hint.any || hint.needsHierarchy()) {
+      return ANY;
+    }
+    return new TypeMatcherHint(
+        false,
+        Collections.<String>emptySet(),
+        Collections.<String>emptySet(),
+        hint.names,
+        hint.prefixes);
+  }
+
+  /** Either hint is necessary for both, keep the one which doesn't need the hierarchy. */
+  private static TypeMatcherHint and(final TypeMatcherHint left, final TypeMatcherHint right) {
+    if (left.any) {
+      return right;
+    } else if (right.any) {
+      return left;
+    }
+    return left.needsHierarchy() && !right.needsHierarchy() ? right : left;
+  }
+
+  private static TypeMatcherHint or(final TypeMatcherHint left, final TypeMatcherHint right) {
+    if (left.any || right.any) {
+      return ANY;
+    }
+    return new TypeMatcherHint(
+        false,
+        union(left.names, right.names),
+        union(left.prefixes, right.prefixes),
+        union(left.superNames, right.superNames),
+        union(left.superPrefixes, right.superPrefixes));
+  }
+
+  private static Set<String> union(final Set<String> left, final Set<String> right) {
+    if (left.isEmpty()) {
+      return right;
+    } else if (right.isEmpty()) {
+      return left;
+    }
+    final Set<String> union = new LinkedHashSet<>(left);
+    union.addAll(right);
+    return union;
+  }
+
+  /** Operands of a ByteBuddy conjunction or disjunction, whatever the ByteBuddy version. */
+  private static List<Object> operands(final Object junction) throws IllegalAccessException {
+    final List<Object> operands = new ArrayList<>();
+    for (final Field field : junction.getClass().getDeclaredFields()) {
+      field.setAccessible(true);
+      final Object value = field.get(junction);
+      if (value instanceof ElementMatcher) {
+        operands.add(value);
+      } else if (value instanceof Collection) {
+        operands.addAll((Collection<?>) value);
+      }
+    }
+    if (operands.isEmpty()) {
+      throw new IllegalStateException("No operand found in " + junction);
+    }
+    return operands;
+  }
+
+  private static Object field(final Object target, final String name) throws Exception {
+    final Field field = target.getClass().getDeclaredField(name);
+    field.setAccessible(true);
+    return field.get(target);
+  }
+
+  @Override
+  public String toString() {
+    if (any) {
+      return "any";
+    }
+    return "names="
+        + names
+        + " prefixes="
+        + prefixes
+        + " superNames="
+        + superNames
+        + " superPrefixes="
+        + superPrefixes;
+  }
+}
@@ -10,9 +10,9 @@ import datadog.trace.agent.tooling.Instrumenter.Default;
 import datadog.trace.agent.tooling.Utils;
 import datadog.trace.api.Config;
 import datadog.trace.bootstrap.ContextStore;
+import datadog.trace.bootstrap.ContextStoreFallbackMap;
 import datadog.trace.bootstrap.FieldBackedContextStoreAppliedMarker;
 import datadog.trace.bootstrap.InstrumentationContext;
-import datadog.trace.bootstrap.WeakMap;
 import java.lang.reflect.Method;
 import java.security.ProtectionDomain;
 import java.util.Arrays;
@@ -864,16 +864,16 @@ public class FieldBackedProvider implements InstrumentationContextProvider {
 
   /**
    * Template class used to generate the class that accesses stored context using either key
-   * instance's own injected field or global hash map if field is not available.
+   * instance's own injected field or global weak map if field is not available.
    */
   private static final class ContextStoreImplementationTemplate
       implements ContextStore<Object, Object> {
     private static final ContextStoreImplementationTemplate INSTANCE =
-        new ContextStoreImplementationTemplate(WeakMap.Provider.newWeakMap());
+        new ContextStoreImplementationTemplate(new ContextStoreFallbackMap<>());
 
-    private final WeakMap map;
+    private final ContextStoreFallbackMap<Object, Object> map;
 
-    private ContextStoreImplementationTemplate(final WeakMap map) {
+    private ContextStoreImplementationTemplate(final ContextStoreFallbackMap<Object, Object> map) {
       this.map = map;
     }
 
@@ -943,7 +943,7 @@ public class FieldBackedProvider implements InstrumentationContextProvider {
     }
 
     private Object mapSynchronizeInstance(final Object key) {
-      return map;
+      return map.lockFor(key);
     }
 
     public static ContextStore getContextStore(final Class keyClass, final Class contextClass) {
@@ -1,36 +1,59 @@
 package datadog.trace.agent.tooling.log;
 
+import static java.lang.invoke.MethodType.methodType;
+
 import datadog.trace.api.CorrelationIdentifier;
 import datadog.trace.context.ScopeListener;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * A scope listener that receives the MDC/ThreadContext put and receive methods and update the trace
- * and span reference anytime a new scope is activated or closed.
+ * A scope listener that receives the MDC/ThreadContext put, remove and get methods and update the
+ * trace and span reference anytime a new scope is activated or closed.
+ *
+ * <p>The methods are bound as method handles rather than invoked reflectively. Ids already in the
+ * log context aren't put again, which is the case of nested scopes of the same trace or span, and
+ * of child spans for the trace id. The ids are only removed when the last scope of the thread is
+ * closed, otherwise the scope restored by the close is activated right after and updates them.
+ *
+ * <p>Failures of the log context are logged and ignored, as they were when the methods were
+ * invoked reflectively, only fatal errors of the virtual machine are rethrown.
  */
 @Slf4j
 public class LogContextScopeListener implements ScopeListener {
+  /** The id returned by {@link CorrelationIdentifier} when no span is active */
+  private static final String NO_ID = "0";
+
+  /** A handle on the log context method that sets a new attribute in the log context */
+  private final MethodHandle putMethod;
 
-  /** A reference to the log context method that sets a new attribute in the log context */
-  private final Method putMethod;
+  /** A handle on the log context method that removes an attribute from the log context */
+  private final MethodHandle removeMethod;
 
-  /** A reference to the log context method that removes an attribute from the log context */
-  private final Method removeMethod;
+  /** A handle on the log context method that gets an attribute of the log context */
+  private final MethodHandle getMethod;
 
-  public LogContextScopeListener(final Method putMethod, final Method removeMethod) {
-    this.putMethod = putMethod;
-    this.removeMethod = removeMethod;
+  public LogContextScopeListener(
+      final Method putMethod, final Method removeMethod, final Method getMethod)
+      throws IllegalAccessException {
+    final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+    // adapted to a single signature, as the value is an Object in some log contexts
+    this.putMethod =
+        lookup.unreflect(putMethod).asType(methodType(void.class, String.class, String.class));
+    this.removeMethod = lookup.unreflect(removeMethod).asType(methodType(void.class, String.class));
+    this.getMethod = lookup.unreflect(getMethod).asType(methodType(Object.class, String.class));
   }
 
   @Override
   public void afterScopeActivated() {
     try {
-      putMethod.invoke(
-          null, CorrelationIdentifier.getTraceIdKey(), CorrelationIdentifier.getTraceId());
-      putMethod.invoke(
-          null, CorrelationIdentifier.getSpanIdKey(), CorrelationIdentifier.getSpanId());
-    } catch (final Exception e) {
+      putIfChanged(CorrelationIdentifier.getTraceIdKey(), CorrelationIdentifier.getTraceId());
+      putIfChanged(CorrelationIdentifier.getSpanIdKey(), CorrelationIdentifier.getSpanId());
+    } catch (final VirtualMachineError e) {
+      throw e;
+    } catch (final Throwable e) {
       log.debug("Exception setting log context context", e);
     }
   }
@@ -38,10 +61,29 @@ public class LogContextScopeListener implements ScopeListener {
   @Override
   public void afterScopeClosed() {
     try {
-      removeMethod.invoke(null, CorrelationIdentifier.getTraceIdKey());
-      removeMethod.invoke(null, CorrelationIdentifier.getSpanIdKey());
-    } catch (final Exception e) {
+      // The restored scope, if any, is already active. It keeps the ids in the log context if
+      // they are its own, or replaces them when it is activated right after.
+      if (NO_ID.equals(CorrelationIdentifier.getTraceId())) {
+        removeIfPresent(CorrelationIdentifier.getTraceIdKey());
+        removeIfPresent(CorrelationIdentifier.getSpanIdKey());
+      }
+    } catch (final VirtualMachineError e) {
+      throw e;
+    } catch (final Throwable e) {
       log.debug("Exception removing log context context", e);
     }
   }
+
+  private void putIfChanged(final String key, final String value) throws Throwable {
+    // Some log contexts copy the whole context on every update, a lookup is much cheaper
+    if (!value.equals((Object) getMethod.invokeExact(key))) {
+      putMethod.invokeExact(key, value);
+    }
+  }
+
+  private void removeIfPresent(final String key) throws Throwable {
+    if ((Object) getMethod.invokeExact(key) != null) {
+      removeMethod.invokeExact(key);
+    }
+  }
 }
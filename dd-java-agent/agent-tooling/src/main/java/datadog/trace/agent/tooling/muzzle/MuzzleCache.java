@@ -0,0 +1,400 @@
+package datadog.trace.agent.tooling.muzzle;
+
+import datadog.common.exec.CommonTaskExecutor;
+import datadog.common.exec.CommonTaskExecutor.Task;
+import datadog.trace.agent.tooling.AgentTooling;
+import datadog.trace.agent.tooling.Utils;
+import datadog.trace.agent.tooling.VersionLogger;
+import datadog.trace.api.Config;
+import datadog.trace.bootstrap.Agent;
+import datadog.trace.bootstrap.WeakCache;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.lang.ref.WeakReference;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Opt-in cache of the muzzle and class loader matching results, persisted across restarts.
+ *
+ * <p>Results are keyed by a fingerprint of the class loader: the path, size and modification time
+ * of every jar on its class path and on the class path of its parents, down to the bootstrap class
+ * path appended with {@code -Xbootclasspath/a} and the agent jar. Replacing a jar changes the
+ * fingerprint, so stale results are never used, and they are dropped the next time the cache is
+ * saved. Class loaders whose contents can't be fingerprinted (directories, non URL class loaders)
+ * are not cached. The cache file is specific to the agent version.
+ *
+ * <p>The cache decides what gets instrumented, so it is only kept in the configured directory or
+ * in a private (0700) directory owned by the current user, and a cache file that doesn't parse is
+ * ignored as a whole.
+ */
+@Slf4j
+public final class MuzzleCache {
+  private static final long SAVE_PERIOD_SECONDS = 30;
+  private static final String UNCACHEABLE = "";
+  private static final char SEPARATOR = '\t';
+  private static final Set<PosixFilePermission> PRIVATE_DIRECTORY =
+      PosixFilePermissions.fromString("rwx------");
+
+  private static volatile MuzzleCache instance;
+  private static volatile boolean initialized;
+
+  private final File file;
+  /** fingerprint + SEPARATOR + key -> result, from the previous runs and this one */
+  private final Map<String, Boolean> results = new ConcurrentHashMap<>();
+  /** The subset of results used or computed in this run, the only ones saved */
+  private final Map<String, Boolean> usedResults = new ConcurrentHashMap<>();
+
+  private final AtomicBoolean dirty = new AtomicBoolean();
+  private final WeakCache<ClassLoader, String> fingerprints = AgentTooling.newWeakCache();
+
+  MuzzleCache(final File file) {
+    this.file = file;
+    load();
+  }
+
+  /** @return the cache, or null if it is disabled */
+  public static MuzzleCache get() {
+    if (!initialized) {
+      synchronized (MuzzleCache.class) {
+        if (!initialized) {
+          instance = create();
+          initialized = true;
+        }
+      }
+    }
+    return instance;
+  }
+
+  private static MuzzleCache create() {
+    final Config config = Config.get();
+    if (!config.isMuzzleCacheEnabled()) {
+      return null;
+    }
+    final String agentVersion = VersionLogger.getAgentVersion();
+    if ("unknown".equals(agentVersion)) {
+      log.debug("Muzzle cache disabled, unknown agent version");
+      return null;
+    }
+    final File directory;
+    if (config.getMuzzleCacheDirectory() != null) {
+      directory = new File(config.getMuzzleCacheDirectory());
+    } else {
+      directory =
+          privateDirectory(
+              new File(
+                  System.getProperty("java.io.tmpdir"),
+                  "dd-java-agent-muzzle-cache-" + System.getProperty("user.name")));
+      if (directory == null) {
+        return null;
+      }
+    }
+    final MuzzleCache cache =
+        new MuzzleCache(new File(directory, "muzzle-" + agentVersion + ".cache"));
+    CommonTaskExecutor.INSTANCE.scheduleAtFixedRate(
+        SaveTask.INSTANCE,
+        cache,
+        SAVE_PERIOD_SECONDS,
+        SAVE_PERIOD_SECONDS,
+        TimeUnit.SECONDS,
+        "Muzzle cache save");
+    try {
+      // Short lived JVMs would otherwise never get to save.
+      Runtime.getRuntime().addShutdownHook(new ShutdownHook(cache));
+    } catch (final IllegalStateException ex) {
+      // The JVM is already shutting down.
+    }
+    return cache;
+  }
+
+  /**
+   * Creates the directory readable and writable by the current user only, or checks an existing
+   * one is.
+   *
+   * @return the directory, or null if it is shared with other users or can't be created
+   */
+  static File privateDirectory(final File directory) {
+    final Path path = directory.toPath();
+    try {
+      try {
+        Files.createDirectory(path, PosixFilePermissions.asFileAttribute(PRIVATE_DIRECTORY));
+      } catch (final FileAlreadyExistsException e) {
+        // Checked below.
+      }
+      final PosixFileAttributes attributes =
+          Files.readAttributes(path, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+      final UserPrincipal user =
+          path.getFileSystem()
+              .getUserPrincipalLookupService()
+              .lookupPrincipalByName(System.getProperty("user.name"));
+      if (!attributes.isDirectory()
+          || !attributes.owner().equals(user)
+          || !attributes.permissions().equals(PRIVATE_DIRECTORY)) {
+        log.debug("Muzzle cache disabled, {} is not a private directory", directory);
+        return null;
+      }
+      return directory;
+    } catch (final IOException | UnsupportedOperationException e) {
+      log.debug("Muzzle cache disabled, unable to create a private directory {}", directory, e);
+      return null;
+    }
+  }
+
+  /** @return the cached result, or null if unknown */
+  public Boolean get(final ClassLoader loader, final String key) {
+    final String fingerprint = fingerprint(loader);
+    if (fingerprint == UNCACHEABLE) {
+      return null;
+    }
+    final String entry = fingerprint + SEPARATOR + key;
+    final Boolean result = results.get(entry);
+    if (result != null && usedResults.put(entry, result) == null) {
+      dirty.set(true);
+    }
+    return result;
+  }
+
+  public void put(final ClassLoader loader, final String key, final boolean result) {
+    final String fingerprint = fingerprint(loader);
+    if (fingerprint == UNCACHEABLE) {
+      return;
+    }
+    final String entry = fingerprint + SEPARATOR + key;
+    results.put(entry, result);
+    usedResults.put(entry, result);
+    dirty.set(true);
+  }
+
+  private String fingerprint(final ClassLoader loader) {
+    return fingerprints.getIfPresentOrCompute(
+        loader == null ? Utils.getBootstrapProxy() : loader,
+        new Callable<String>() {
+          @Override
+          public String call() {
+            try {
+              final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+              return addClassPath(digest, loader) ? toHex(digest.digest()) : UNCACHEABLE;
+            } catch (final Exception e) {
+              log.debug("Unable to fingerprint class loader {}", loader, e);
+              return UNCACHEABLE;
+            }
+          }
+        });
+  }
+
+  /** @return false if the classes available to the loader can't be fingerprinted */
+  private static boolean addClassPath(final MessageDigest digest, final ClassLoader loader)
+      throws UnsupportedEncodingException, URISyntaxException {
+    if (loader == null || loader == Utils.getBootstrapProxy()) {
+      // The bootstrap classes depend on the JVM, the appended boot class path and the agent jar.
+      add(digest, System.getProperty("java.home"));
+      add(digest, System.getProperty("java.vm.version"));
+      // Java 8 lists the whole boot class path, -Xbootclasspath/a included, later versions only
+      // the appended part.
+      if (!addPath(digest, System.getProperty("sun.boot.class.path"))
+          || !addPath(digest, System.getProperty("jdk.boot.class.path.append"))) {
+        return false;
+      }
+      final URL agentClass = Agent.class.getResource("Agent.class");
+      return agentClass != null && addUrl(digest, agentClass);
+    }
+    if (loader == ClassLoader.getSystemClassLoader()) {
+      return addPath(digest, System.getProperty("java.class.path"))
+          && addClassPath(digest, loader.getParent());
+    }
+    if (loader == ClassLoader.getSystemClassLoader().getParent()) {
+      // extension or platform class loader
+      add(digest, System.getProperty("java.ext.dirs"));
+      return addClassPath(digest, null);
+    }
+    if (!(loader instanceof URLClassLoader)) {
+      return false;
+    }
+    for (final URL url : ((URLClassLoader) loader).getURLs()) {
+      if (!addUrl(digest, url)) {
+        return false;
+      }
+    }
+    return addClassPath(digest, loader.getParent());
+  }
+
+  private static boolean addPath(final MessageDigest digest, final String path)
+      throws UnsupportedEncodingException {
+    add(digest, path);
+    if (path != null) {
+      for (final String entry : path.split(File.pathSeparator)) {
+        if (!entry.isEmpty() && !addFile(digest, new File(entry))) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static boolean addUrl(final MessageDigest digest, URL url)
+      throws UnsupportedEncodingException, URISyntaxException {
+    add(digest, url.toString());
+    // Nested jars, as in Spring Boot: the outer jar changes when the nested one does
+    while ("jar".equals(url.getProtocol())) {
+      final String path = url.getPath();
+      final int separator = path.indexOf("!/");
+      try {
+        url = new URL(separator < 0 ? path : path.substring(0, separator));
+      } catch (final IOException e) {
+        return false;
+      }
+    }
+    return "file".equals(url.getProtocol()) && addFile(digest, new File(url.toURI()));
+  }
+
+  private static boolean addFile(final MessageDigest digest, final File file)
+      throws UnsupportedEncodingException {
+    // The content of a directory can change without changing its modification time.
+    if (!file.isFile()) {
+      return !file.exists();
+    }
+    add(digest, file.getAbsolutePath());
+    add(digest, Long.toString(file.length()));
+    add(digest, Long.toString(file.lastModified()));
+    return true;
+  }
+
+  private static void add(final MessageDigest digest, final String value)
+      throws UnsupportedEncodingException {
+    digest.update(String.valueOf(value).getBytes("UTF-8"));
+    digest.update((byte) 0);
+  }
+
+  private static String toHex(final byte[] bytes) {
+    final StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (final byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+  private void load() {
+    if (!file.isFile()) {
+      return;
+    }
+    try (final BufferedReader reader =
+        new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        // fingerprint, key and result, a truncated or corrupted file must not disable anything
+        final int keyStart = line.indexOf(SEPARATOR) + 1;
+        final int separator = line.lastIndexOf(SEPARATOR);
+        final String result = line.substring(separator + 1);
+        if (keyStart <= 1 || separator <= keyStart) {
+          throw new IOException("Malformed muzzle cache line: " + line);
+        } else if ("true".equals(result)) {
+          results.put(line.substring(0, separator), Boolean.TRUE);
+        } else if ("false".equals(result)) {
+          results.put(line.substring(0, separator), Boolean.FALSE);
+        } else {
+          throw new IOException("Malformed muzzle cache line: " + line);
+        }
+      }
+      log.debug("Loaded {} muzzle results from {}", results.size(), file);
+    } catch (final IOException e) {
+      log.debug("Unable to load the muzzle cache {}", file, e);
+      results.clear();
+    }
+  }
+
+  /**
+   * Writes the results used in this run to a temporary file which then replaces the cache. Several
+   * JVMs may save at the same time, each one writes its own temporary file.
+   */
+  synchronized void save() {
+    if (!dirty.getAndSet(false)) {
+      return;
+    }
+    final File directory = file.getParentFile();
+    Path temporary = null;
+    try {
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("Unable to create " + directory);
+      }
+      temporary = Files.createTempFile(directory.toPath(), file.getName(), ".tmp");
+      try (final BufferedWriter writer =
+          new BufferedWriter(
+              new OutputStreamWriter(Files.newOutputStream(temporary), "UTF-8"))) {
+        for (final Map.Entry<String, Boolean> entry : usedResults.entrySet()) {
+          writer.write(entry.getKey());
+          writer.write(SEPARATOR);
+          writer.write(entry.getValue().toString());
+          writer.newLine();
+        }
+      }
+      Files.move(
+          temporary,
+          file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      log.debug("Saved {} muzzle results to {}", usedResults.size(), file);
+    } catch (final IOException | UnsupportedOperationException e) {
+      log.debug("Unable to save the muzzle cache {}", file, e);
+      if (temporary != null) {
+        try {
+          Files.deleteIfExists(temporary);
+        } catch (final IOException ignored) {
+        }
+      }
+    }
+  }
+
+  /*
+   * Important to use explicit class to avoid implicit hard references to the cache from within the
+   * executor.
+   */
+  private static class SaveTask implements Task<MuzzleCache> {
+    static final SaveTask INSTANCE = new SaveTask();
+
+    @Override
+    public void run(final MuzzleCache target) {
+      target.save();
+    }
+  }
+
+  private static class ShutdownHook extends Thread {
+    private final WeakReference<MuzzleCache> reference;
+
+    private ShutdownHook(final MuzzleCache cache) {
+      super("dd-muzzle-cache-shutdown-hook");
+      reference = new WeakReference<>(cache);
+    }
+
+    @Override
+    public void run() {
+      final MuzzleCache cache = reference.get();
+      if (cache != null) {
+        cache.save();
+      }
+    }
+  }
+}
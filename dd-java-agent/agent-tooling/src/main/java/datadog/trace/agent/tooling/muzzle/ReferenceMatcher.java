@@ -46,7 +46,17 @@ public final class ReferenceMatcher {
    * @param loader Classloader to validate against (or null for bootstrap)
    * @return true if all references match the classpath of loader
    */
-  public boolean matches(ClassLoader loader) {
+  public boolean matches(final ClassLoader loader) {
+    return matches(loader, null);
+  }
+
+  /**
+   * Same as {@link #matches(ClassLoader)}, also looking up and storing the result in the {@link
+   * MuzzleCache} when it is enabled.
+   *
+   * @param persistentKey identifies these references across restarts, null to not persist
+   */
+  public boolean matches(ClassLoader loader, final String persistentKey) {
     if (loader == BOOTSTRAP_LOADER) {
       loader = Utils.getBootstrapProxy();
     }
@@ -56,7 +66,16 @@ public final class ReferenceMatcher {
         new Callable<Boolean>() {
           @Override
           public Boolean call() {
-            return doesMatch(cl);
+            final MuzzleCache persistentCache = persistentKey == null ? null : MuzzleCache.get();
+            if (persistentCache == null) {
+              return doesMatch(cl);
+            }
+            Boolean result = persistentCache.get(cl, persistentKey);
+            if (result == null) {
+              result = doesMatch(cl);
+              persistentCache.put(cl, persistentKey, result);
+            }
+            return result;
           }
         });
   }
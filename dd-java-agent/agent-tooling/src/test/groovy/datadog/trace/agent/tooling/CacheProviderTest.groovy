@@ -185,8 +185,9 @@ class CacheProviderTest extends DDSpecification {
     }
 
     then:
-    // cache will start to proactively free slots & size calc is approximate
-    poolStrat.approximateSize() > 0.8 * capacity
+    // types colliding in a full set are evicted
+    poolStrat.approximateSize() <= capacity
+    poolStrat.approximateSize() > 0.5 * capacity
 
     when:
     10.times {
@@ -196,8 +197,9 @@ class CacheProviderTest extends DDSpecification {
     }
 
     then:
-    // cache will start to proactively free slots & size calc is approximate
-    poolStrat.approximateSize() > 0.8 * capacity
+    poolStrat.approximateSize() <= capacity
+    poolStrat.approximateSize() > 0.5 * capacity
+    poolStrat.evictionCount() > 0
   }
 
   static newVoid() {
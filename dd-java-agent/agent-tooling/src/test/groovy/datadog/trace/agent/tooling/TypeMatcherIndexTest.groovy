@@ -0,0 +1,106 @@
+package datadog.trace.agent.tooling
+
+import datadog.trace.agent.tooling.bytebuddy.matcher.testclasses.A
+import datadog.trace.agent.tooling.bytebuddy.matcher.testclasses.B
+import datadog.trace.agent.tooling.bytebuddy.matcher.testclasses.E
+import datadog.trace.agent.tooling.bytebuddy.matcher.testclasses.F
+import datadog.trace.agent.tooling.bytebuddy.matcher.testclasses.G
+import datadog.trace.util.test.DDSpecification
+import net.bytebuddy.description.method.MethodDescription
+import net.bytebuddy.description.type.TypeDescription
+import net.bytebuddy.matcher.ElementMatcher
+import spock.lang.Shared
+
+import static datadog.trace.agent.tooling.bytebuddy.matcher.DDElementMatchers.implementsInterface
+import static datadog.trace.agent.tooling.bytebuddy.matcher.DDElementMatchers.safeHasSuperType
+import static net.bytebuddy.matcher.ElementMatchers.isAbstract
+import static net.bytebuddy.matcher.ElementMatchers.nameStartsWith
+import static net.bytebuddy.matcher.ElementMatchers.named
+
+class TypeMatcherIndexTest extends DDSpecification {
+  @Shared
+  def typePool =
+    AgentTooling.poolStrategy()
+      .typePool(AgentTooling.locationStrategy().classFileLocator(this.class.classLoader, null), this.class.classLoader)
+
+  def "candidates of #type.simpleName"() {
+    setup:
+    def instrumenters = [
+      instrumenter(named(A.name)),
+      instrumenter(nameStartsWith(F.package.name + ".G")),
+      instrumenter(safeHasSuperType(named(B.name))),
+      instrumenter(implementsInterface(named(E.name))),
+      instrumenter(isAbstract()),
+      instrumenter(named("unknown"))
+    ]
+    TypeMatcherIndex.install(instrumenters)
+    def description = typePool.describe(type.name).resolve()
+
+    expect:
+    instrumenters.collect { candidate(it, description) } == candidates
+    // the real matchers are still applied after the candidate check
+    instrumenters.findAll { it.typeMatcher().matches(description) }.every { candidate(it, description) }
+
+    where:
+    type | candidates
+    A    | [true, false, false, false, true, false]
+    B    | [false, false, true, false, true, false]
+    E    | [false, false, true, true, true, false]
+    F    | [false, false, true, true, true, false]
+    G    | [false, true, true, true, true, false]
+  }
+
+  def "disabled instrumentations are not indexed"() {
+    setup:
+    def instrumenter = new DisabledInstrumenter(named(A.name))
+
+    when:
+    TypeMatcherIndex.install([instrumenter])
+
+    then:
+    instrumenter.candidateMatcher == null
+  }
+
+  static boolean candidate(Instrumenter.Default instrumenter, TypeDescription type) {
+    return instrumenter.candidateMatcher == null || instrumenter.candidateMatcher.matches(type)
+  }
+
+  static Instrumenter.Default instrumenter(ElementMatcher<? super TypeDescription> matcher) {
+    return new TestInstrumenter(matcher)
+  }
+
+  static class TestInstrumenter extends Instrumenter.Default {
+    final ElementMatcher<? super TypeDescription> matcher
+
+    TestInstrumenter(ElementMatcher<? super TypeDescription> matcher) {
+      super("test")
+      this.matcher = matcher
+    }
+
+    @Override
+    protected boolean defaultEnabled() {
+      return true
+    }
+
+    @Override
+    ElementMatcher<? super TypeDescription> typeMatcher() {
+      return matcher
+    }
+
+    @Override
+    Map<? extends ElementMatcher<? super MethodDescription>, String> transformers() {
+      return [:]
+    }
+  }
+
+  static class DisabledInstrumenter extends TestInstrumenter {
+    DisabledInstrumenter(ElementMatcher<? super TypeDescription> matcher) {
+      super(matcher)
+    }
+
+    @Override
+    protected boolean defaultEnabled() {
+      return false
+    }
+  }
+}
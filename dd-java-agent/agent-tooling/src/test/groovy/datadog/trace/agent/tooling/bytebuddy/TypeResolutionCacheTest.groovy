@@ -0,0 +1,103 @@
+package datadog.trace.agent.tooling.bytebuddy
+
+import datadog.trace.util.test.DDSpecification
+import net.bytebuddy.description.type.TypeDescription
+import net.bytebuddy.pool.TypePool
+
+import java.lang.ref.WeakReference
+
+class TypeResolutionCacheTest extends DDSpecification {
+  def "hot types are not evicted by one-off types"() {
+    setup:
+    def cache = new TypeResolutionCache(64, 64)
+    def hotKeys = (1..16).collect { key("hot$it") }
+    def id = 0
+
+    when:
+    50.times {
+      hotKeys.each { lookup(cache, it) }
+      16.times { lookup(cache, key("one-off${id++}")) }
+    }
+
+    then:
+    hotKeys.every { cache.get(it) != null }
+    cache.rejectionCount() > 0
+    cache.size() <= cache.capacity()
+  }
+
+  def "counters"() {
+    setup:
+    def cache = new TypeResolutionCache(64, 64)
+
+    when:
+    lookup(cache, key("foo"))
+    lookup(cache, key("foo"))
+    lookup(cache, key("bar"))
+
+    then:
+    cache.hitCount() == 1
+    cache.missCount() == 2
+    cache.evictionCount() == 0
+    cache.size() == 2
+  }
+
+  def "entries of unloaded class loaders are replaced"() {
+    setup:
+    def cache = new TypeResolutionCache(TypeResolutionCache.WAYS, TypeResolutionCache.WAYS)
+    def loaderRef = new WeakReference<ClassLoader>(new URLClassLoader([] as URL[], (ClassLoader) null))
+    TypeResolutionCache.WAYS.times {
+      cache.put(new DDCachingPoolStrategy.TypeCacheKey(1, loaderRef, "foo$it"), resolution())
+    }
+
+    when:
+    loaderRef.clear()
+    cache.put(key("bar"), resolution())
+
+    then:
+    cache.get(key("bar")) != null
+    cache.evictionCount() == 0
+    cache.rejectionCount() == 0
+  }
+
+  def "capacity #capacity with #displaced displaced lookups and #headroom heap headroom -> #expected"() {
+    expect:
+    TypeResolutionCache.nextCapacity(capacity, 64, 1024, 4096, displaced, headroom) == expected
+
+    where:
+    capacity | displaced | headroom | expected
+    64       | 0         | 0.9      | 64
+    64       | 512       | 0.9      | 128
+    1024     | 4096      | 0.9      | 1024
+    128      | 4096      | 0.2      | 128
+    128      | 0         | 0.05     | 64
+    64       | 4096      | 0.05     | 64
+  }
+
+  def "capacity stays within bounds under churn"() {
+    setup:
+    def cache = new TypeResolutionCache(64, 256)
+
+    when:
+    (4 * TypeResolutionCache.ADAPT_INTERVAL).times { lookup(cache, key("type$it")) }
+
+    then:
+    cache.capacity() >= 64
+    cache.capacity() <= 256
+    cache.size() <= cache.capacity()
+    cache.missCount() == 4 * TypeResolutionCache.ADAPT_INTERVAL
+  }
+
+  static void lookup(TypeResolutionCache cache, DDCachingPoolStrategy.TypeCacheKey key) {
+    if (cache.get(key) == null) {
+      cache.put(key, resolution())
+    }
+  }
+
+  static key(String name) {
+    return new DDCachingPoolStrategy.TypeCacheKey(DDCachingPoolStrategy.BOOTSTRAP_HASH, null, name)
+  }
+
+  static resolution() {
+    return new TypePool.Resolution.Simple(TypeDescription.VOID)
+  }
+}
@@ -0,0 +1,106 @@
+package datadog.trace.agent.tooling.bytebuddy.matcher
+
+import datadog.trace.agent.tooling.AgentTooling
+import datadog.trace.agent.tooling.bytebuddy.matcher.testclasses.A
+import datadog.trace.agent.tooling.bytebuddy.matcher.testclasses.B
+import datadog.trace.agent.tooling.bytebuddy.matcher.testclasses.E
+import datadog.trace.agent.tooling.bytebuddy.matcher.testclasses.F
+import datadog.trace.agent.tooling.bytebuddy.matcher.testclasses.G
+import datadog.trace.util.test.DDSpecification
+import spock.lang.Shared
+
+import static datadog.trace.agent.tooling.bytebuddy.matcher.DDElementMatchers.extendsClass
+import static datadog.trace.agent.tooling.bytebuddy.matcher.DDElementMatchers.failSafe
+import static datadog.trace.agent.tooling.bytebuddy.matcher.DDElementMatchers.hasInterface
+import static datadog.trace.agent.tooling.bytebuddy.matcher.DDElementMatchers.implementsInterface
+import static datadog.trace.agent.tooling.bytebuddy.matcher.DDElementMatchers.safeHasSuperType
+import static net.bytebuddy.matcher.ElementMatchers.any
+import static net.bytebuddy.matcher.ElementMatchers.declaresMethod
+import static net.bytebuddy.matcher.ElementMatchers.isAbstract
+import static net.bytebuddy.matcher.ElementMatchers.nameEndsWith
+import static net.bytebuddy.matcher.ElementMatchers.nameStartsWith
+import static net.bytebuddy.matcher.ElementMatchers.named
+import static net.bytebuddy.matcher.ElementMatchers.none
+import static net.bytebuddy.matcher.ElementMatchers.not
+
+class TypeMatcherHintTest extends DDSpecification {
+  @Shared
+  def typePool =
+    AgentTooling.poolStrategy()
+      .typePool(AgentTooling.locationStrategy().classFileLocator(this.class.classLoader, null), this.class.classLoader)
+
+  def "hint of #matcher"() {
+    setup:
+    def hint = TypeMatcherHint.of(matcher)
+
+    expect:
+    hint.any == any
+    hint.names == names as Set
+    hint.prefixes == prefixes as Set
+    hint.superNames == superNames as Set
+    hint.superPrefixes == superPrefixes as Set
+
+    where:
+    matcher                                                 | any   | names    | prefixes | superNames | superPrefixes
+    named("a.A")                                            | false | ["a.A"]  | []       | []         | []
+    nameStartsWith("a.")                                    | false | []       | ["a."]   | []         | []
+    named("a.A").or(named("b.B"))                           | false | ["a.A", "b.B"] | []  | []         | []
+    named("a.A").or(nameStartsWith("b."))                   | false | ["a.A"]  | ["b."]   | []         | []
+    nameStartsWith("a.").and(not(isAbstract()))             | false | []       | ["a."]   | []         | []
+    failSafe(named("a.A"), "description")                   | false | ["a.A"]  | []       | []         | []
+    safeHasSuperType(named("a.A"))                          | false | []       | []       | ["a.A"]    | []
+    implementsInterface(named("a.A").or(named("b.B")))      | false | []       | []       | ["a.A", "b.B"] | []
+    hasInterface(nameStartsWith("a."))                      | false | []       | []       | []         | ["a."]
+    extendsClass(named("a.A"))                              | false | []       | []       | ["a.A"]    | []
+    named("a.A").and(safeHasSuperType(named("b.B")))        | false | ["a.A"]  | []       | []         | []
+    named("a.A").or(safeHasSuperType(named("b.B")))         | false | ["a.A"]  | []       | ["b.B"]    | []
+    none()                                                  | false | []       | []       | []         | []
+    any()                                                   | true  | []       | []       | []         | []
+    not(named("a.A"))                                       | true  | []       | []       | []         | []
+    nameEndsWith("A")                                       | true  | []       | []       | []         | []
+    named("a.A").or(nameEndsWith("A"))                     | true  | []       | []       | []         | []
+    safeHasSuperType(declaresMethod(named("m")))            | true  | []       | []       | []         | []
+  }
+
+  def "hint never rejects a matched type: #matcher -> #type.simpleName"() {
+    setup:
+    def description = typePool.describe(type.name).resolve()
+    def hint = TypeMatcherHint.of(matcher)
+    def hierarchy = new HashSet<String>()
+    TypeMatcherHint.collectHierarchyNames(description, hierarchy)
+
+    def allowed = hint.any ||
+      hint.names.contains(description.actualName) ||
+      hint.prefixes.any { description.actualName.startsWith(it) } ||
+      hierarchy.any { name -> hint.superNames.contains(name) || hint.superPrefixes.any { name.startsWith(it) } }
+
+    expect:
+    !matcher.matches(description) || allowed
+
+    where:
+    [matcher, type] << [
+      [
+        named(A.name),
+        safeHasSuperType(named(A.name)),
+        safeHasSuperType(named(B.name)),
+        implementsInterface(named(E.name)),
+        hasInterface(named(A.name)),
+        extendsClass(named(F.name)),
+        safeHasSuperType(nameStartsWith(A.package.name))
+      ],
+      [A, B, E, F, G]
+    ].combinations()
+  }
+
+  def "hierarchy names include the type, super classes and interfaces"() {
+    setup:
+    def names = new HashSet<String>()
+
+    when:
+    def complete = TypeMatcherHint.collectHierarchyNames(typePool.describe(G.name).resolve(), names)
+
+    then:
+    complete
+    names.containsAll([G.name, F.name, E.name, B.name, A.name, Object.name])
+  }
+}
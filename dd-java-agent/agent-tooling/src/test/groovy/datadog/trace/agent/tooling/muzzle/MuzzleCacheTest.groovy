@@ -0,0 +1,148 @@
+package datadog.trace.agent.tooling.muzzle
+
+import datadog.trace.util.test.DDSpecification
+import spock.lang.Shared
+
+import java.nio.file.Files
+import java.nio.file.attribute.PosixFilePermissions
+import java.util.jar.JarOutputStream
+
+class MuzzleCacheTest extends DDSpecification {
+  @Shared
+  File directory = Files.createTempDirectory("muzzle-cache-test").toFile()
+
+  def cleanupSpec() {
+    directory.deleteDir()
+  }
+
+  def "results are persisted for unchanged jars"() {
+    setup:
+    def jar = createJar("unchanged.jar")
+    def file = new File(directory, "unchanged.cache")
+    def cache = new MuzzleCache(file)
+    def loader = new URLClassLoader([jar.toURI().toURL()] as URL[], (ClassLoader) null)
+
+    when:
+    cache.put(loader, "muzzle:first", true)
+    cache.put(loader, "muzzle:second", false)
+    cache.save()
+    def reloaded = new MuzzleCache(file)
+    def otherLoader = new URLClassLoader([jar.toURI().toURL()] as URL[], (ClassLoader) null)
+
+    then:
+    reloaded.get(otherLoader, "muzzle:first") == true
+    reloaded.get(otherLoader, "muzzle:second") == false
+    reloaded.get(otherLoader, "muzzle:unknown") == null
+  }
+
+  def "results are invalidated when a jar changes"() {
+    setup:
+    def jar = createJar("changed.jar")
+    def file = new File(directory, "changed.cache")
+    def cache = new MuzzleCache(file)
+    cache.put(new URLClassLoader([jar.toURI().toURL()] as URL[], (ClassLoader) null), "muzzle:first", true)
+    cache.save()
+
+    when:
+    jar << "more content"
+    def reloaded = new MuzzleCache(file)
+    def loader = new URLClassLoader([jar.toURI().toURL()] as URL[], (ClassLoader) null)
+
+    then:
+    reloaded.get(loader, "muzzle:first") == null
+
+    when: "the stale result isn't used"
+    reloaded.put(loader, "muzzle:second", true)
+    reloaded.save()
+
+    then:
+    file.readLines().size() == 1
+  }
+
+  def "class directories are not cached"() {
+    setup:
+    def cache = new MuzzleCache(new File(directory, "directories.cache"))
+    def loader = new URLClassLoader([directory.toURI().toURL()] as URL[], (ClassLoader) null)
+
+    when:
+    cache.put(loader, "muzzle:first", true)
+
+    then:
+    cache.get(loader, "muzzle:first") == null
+  }
+
+  def "parent class loaders are part of the fingerprint"() {
+    setup:
+    def cache = new MuzzleCache(new File(directory, "parents.cache"))
+    def jar = createJar("child.jar")
+    def parent = new URLClassLoader([createJar("parent.jar").toURI().toURL()] as URL[], (ClassLoader) null)
+    def otherParent = new URLClassLoader([createJar("other-parent.jar").toURI().toURL()] as URL[], (ClassLoader) null)
+
+    when:
+    cache.put(new URLClassLoader([jar.toURI().toURL()] as URL[], parent), "muzzle:first", true)
+
+    then:
+    cache.get(new URLClassLoader([jar.toURI().toURL()] as URL[], parent), "muzzle:first") == true
+    cache.get(new URLClassLoader([jar.toURI().toURL()] as URL[], otherParent), "muzzle:first") == null
+  }
+
+  def "a malformed cache file is ignored as a whole"() {
+    setup:
+    def jar = createJar("malformed.jar")
+    def file = new File(directory, "malformed.cache")
+    def cache = new MuzzleCache(file)
+    def loader = new URLClassLoader([jar.toURI().toURL()] as URL[], (ClassLoader) null)
+    cache.put(loader, "muzzle:first", true)
+    cache.put(loader, "muzzle:second", true)
+    cache.save()
+
+    when:
+    file << lastLine
+    def reloaded = new MuzzleCache(file)
+
+    then:
+    reloaded.get(loader, "muzzle:first") == null
+    reloaded.get(loader, "muzzle:second") == null
+
+    where:
+    lastLine << ["truncated", "fingerprint\tmuzzle:third\tfals", "fingerprint\tmuzzle:third\tTRUE", "\tmuzzle:third\tfalse"]
+  }
+
+  def "saving doesn't leave temporary files behind"() {
+    setup:
+    def saveDirectory = new File(directory, "save")
+    def file = new File(saveDirectory, "save.cache")
+    def cache = new MuzzleCache(file)
+    cache.put(new URLClassLoader([createJar("save.jar").toURI().toURL()] as URL[], (ClassLoader) null), "muzzle:first", true)
+
+    when:
+    cache.save()
+
+    then:
+    saveDirectory.list().toList() == ["save.cache"]
+  }
+
+  def "the default directory is private to the current user"() {
+    setup:
+    def privateDirectory = new File(directory, "private")
+
+    when:
+    def created = MuzzleCache.privateDirectory(privateDirectory)
+
+    then:
+    created == privateDirectory
+    Files.getPosixFilePermissions(privateDirectory.toPath()) == PosixFilePermissions.fromString("rwx------")
+
+    when: "someone else can write to it"
+    Files.setPosixFilePermissions(privateDirectory.toPath(), PosixFilePermissions.fromString("rwxrwxrwx"))
+
+    then:
+    MuzzleCache.privateDirectory(privateDirectory) == null
+  }
+
+  File createJar(String name) {
+    def jar = new File(directory, name)
+    new JarOutputStream(new FileOutputStream(jar)).close()
+    return jar
+  }
+}
@@ -0,0 +1,94 @@
+package datadog.benchmark;
+
+import datadog.benchmark.classes.TracedClass;
+import datadog.benchmark.classes.UntracedClass;
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import net.bytebuddy.agent.ByteBuddyAgent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Same workload as {@link ClassRetransformingBenchmark}, but spread over many class loaders each
+ * defining their own copy of the benchmark classes -- as on an application server with many
+ * webapps. Every loader has its own entries in the agent type resolution cache.
+ */
+public class ClassLoaderRetransformingBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+    @Param({"1", "10", "100", "1000"})
+    int loaders;
+
+    private final Instrumentation inst = ByteBuddyAgent.install();
+    private Class<?>[][] classes;
+    private int next;
+
+    @Setup
+    public void setup() throws ClassNotFoundException {
+      final URL location = TracedClass.class.getProtectionDomain().getCodeSource().getLocation();
+      classes = new Class<?>[loaders][];
+      for (int i = 0; i < loaders; i++) {
+        final ClassLoader loader =
+            new ChildFirstClassLoader(new URL[] {location}, TracedClass.class.getClassLoader());
+        classes[i] =
+            new Class<?>[] {
+              loader.loadClass(TracedClass.class.getName()),
+              loader.loadClass(UntracedClass.class.getName())
+            };
+      }
+    }
+
+    Class<?>[] nextClasses() {
+      next = (next + 1) % loaders;
+      return classes[next];
+    }
+  }
+
+  @Benchmark
+  public void testRetransformAcrossClassLoaders(final BenchmarkState state)
+      throws UnmodifiableClassException {
+    state.inst.retransformClasses(state.nextClasses());
+  }
+
+  /** Defines its own copy of the benchmark classes, delegates everything else to the parent. */
+  static class ChildFirstClassLoader extends URLClassLoader {
+    private static final String CLASSES_PACKAGE = TracedClass.class.getPackage().getName() + ".";
+
+    ChildFirstClassLoader(final URL[] urls, final ClassLoader parent) {
+      super(urls, parent);
+    }
+
+    @Override
+    protected Class<?> loadClass(final String name, final boolean resolve)
+        throws ClassNotFoundException {
+      if (!name.startsWith(CLASSES_PACKAGE)) {
+        return super.loadClass(name, resolve);
+      }
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> loaded = findLoadedClass(name);
+        if (loaded == null) {
+          loaded = findClass(name);
+        }
+        if (resolve) {
+          resolveClass(loaded);
+        }
+        return loaded;
+      }
+    }
+  }
+
+  @Fork(jvmArgsAppend = "-javaagent:/path/to/dd-java-agent-master.jar")
+  public static class WithAgentMaster extends ClassLoaderRetransformingBenchmark {}
+
+  @Fork(
+      jvmArgsAppend =
+          "-javaagent:/path/to/dd-trace-java/dd-java-agent/build/libs/dd-java-agent.jar")
+  public static class WithAgent extends ClassLoaderRetransformingBenchmark {}
+}
@@ -0,0 +1,66 @@
+package datadog.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Overhead of exception construction when the exception profiling instrumentation counts every
+ * exception created, as with exceptions used for control flow.
+ */
+@State(Scope.Benchmark)
+@Threads(8)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ExceptionProfilingBenchmark {
+
+  /** Doesn't fill in its stack trace so the profiling overhead isn't hidden behind it */
+  static class ControlFlowException extends RuntimeException {
+    ControlFlowException() {
+      super(null, null, false, false);
+    }
+  }
+
+  static class OtherControlFlowException extends ControlFlowException {}
+
+  @Benchmark
+  public Exception createException() {
+    return new ControlFlowException();
+  }
+
+  @Benchmark
+  public Exception createExceptionsOfTwoTypes() {
+    return Thread.currentThread().getId() % 2 == 0
+        ? new ControlFlowException()
+        : new OtherControlFlowException();
+  }
+
+  @Benchmark
+  public Exception createExceptionWithStackTrace() {
+    return new RuntimeException();
+  }
+
+  @Fork(
+      jvmArgsAppend =
+          "-javaagent:/path/to/dd-trace-java/dd-java-agent/build/libs/dd-java-agent.jar")
+  public static class WithAgent extends ExceptionProfilingBenchmark {}
+
+  @Fork(
+      jvmArgsAppend = {
+        "-javaagent:/path/to/dd-java-agent-master.jar",
+        "-Ddd.profiling.enabled=true",
+        "-XX:StartFlightRecording"
+      })
+  public static class WithProfilingMaster extends ExceptionProfilingBenchmark {}
+
+  @Fork(
+      jvmArgsAppend = {
+        "-javaagent:/path/to/dd-trace-java/dd-java-agent/build/libs/dd-java-agent.jar",
+        "-Ddd.profiling.enabled=true",
+        "-XX:StartFlightRecording"
+      })
+  public static class WithProfiling extends ExceptionProfilingBenchmark {}
+}
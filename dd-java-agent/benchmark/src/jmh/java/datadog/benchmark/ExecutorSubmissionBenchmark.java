@@ -0,0 +1,80 @@
+package datadog.benchmark;
+
+import datadog.trace.api.Trace;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Overhead of submitting tiny tasks to executors from a traced method, which propagates the trace
+ * context to every task. Run with {@code -prof gc} to see the allocations per task.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ExecutorSubmissionBenchmark {
+  private static final int TASKS = 1000;
+
+  @Param({"ThreadPoolExecutor", "ForkJoinPool"})
+  String executorType;
+
+  private ExecutorService executor;
+  private final Future<?>[] futures = new Future<?>[TASKS];
+
+  private static final Runnable TASK =
+      new Runnable() {
+        @Override
+        public void run() {}
+      };
+
+  @Setup
+  public void setup() {
+    executor =
+        "ForkJoinPool".equals(executorType)
+            ? new ForkJoinPool(4)
+            : new ThreadPoolExecutor(
+                4, 4, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(TASKS)
+  public void submitTasks() throws ExecutionException, InterruptedException {
+    submitTraced();
+  }
+
+  /** The scope of the trace annotation propagates to the submitted tasks */
+  @Trace
+  private void submitTraced() throws ExecutionException, InterruptedException {
+    for (int i = 0; i < TASKS; i++) {
+      futures[i] = executor.submit(TASK);
+    }
+    for (int i = 0; i < TASKS; i++) {
+      futures[i].get();
+    }
+  }
+
+  @Fork(jvmArgsAppend = "-javaagent:/path/to/dd-java-agent-master.jar")
+  public static class WithAgentMaster extends ExecutorSubmissionBenchmark {}
+
+  @Fork(
+      jvmArgsAppend =
+          "-javaagent:/path/to/dd-trace-java/dd-java-agent/build/libs/dd-java-agent.jar")
+  public static class WithAgent extends ExecutorSubmissionBenchmark {}
+}
@@ -0,0 +1,106 @@
+package datadog.benchmark;
+
+import datadog.trace.api.Trace;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Request throughput of a server running every request on its own virtual thread, the traced
+ * request handler fanning out to child virtual threads which block briefly, as on a downstream
+ * call. Requires Java 21, the executor is looked up reflectively as the benchmarks are compiled
+ * for Java 7.
+ *
+ * <p>The agent doesn't instrument virtual threads yet, so the child calls start traces of their
+ * own. This measures what the agent costs a virtual thread server today, as the baseline for
+ * virtual thread support.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class VirtualThreadBenchmark {
+  private static final int REQUESTS = 1000;
+  private static final int CHILDREN = 4;
+  private static final long BLOCKING_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private ExecutorService executor;
+  private final Future<?>[] requests = new Future<?>[REQUESTS];
+
+  @Setup
+  public void setup() throws Exception {
+    executor =
+        (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(REQUESTS)
+  public void serveRequests() throws ExecutionException, InterruptedException {
+    for (int i = 0; i < REQUESTS; i++) {
+      requests[i] =
+          executor.submit(
+              new Runnable() {
+                @Override
+                public void run() {
+                  try {
+                    handleRequest();
+                  } catch (final Exception e) {
+                    throw new IllegalStateException(e);
+                  }
+                }
+              });
+    }
+    for (int i = 0; i < REQUESTS; i++) {
+      requests[i].get();
+    }
+  }
+
+  @Trace
+  private void handleRequest() throws ExecutionException, InterruptedException {
+    final Future<?>[] children = new Future<?>[CHILDREN];
+    for (int i = 0; i < CHILDREN; i++) {
+      children[i] =
+          executor.submit(
+              new Runnable() {
+                @Override
+                public void run() {
+                  downstreamCall();
+                }
+              });
+    }
+    for (int i = 0; i < CHILDREN; i++) {
+      children[i].get();
+    }
+  }
+
+  @Trace
+  private static void downstreamCall() {
+    // unmounts the virtual thread
+    LockSupport.parkNanos(BLOCKING_NANOS);
+  }
+
+  @Fork(jvmArgsAppend = "-javaagent:/path/to/dd-java-agent-master.jar")
+  public static class WithAgentMaster extends VirtualThreadBenchmark {}
+
+  @Fork(
+      jvmArgsAppend =
+          "-javaagent:/path/to/dd-trace-java/dd-java-agent/build/libs/dd-java-agent.jar")
+  public static class WithAgent extends VirtualThreadBenchmark {}
+}
@@ -0,0 +1,42 @@
+package com.datadog.profiling.exceptions;
+
+import datadog.common.exec.CommonTaskExecutor;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Sampling decisions of many threads throwing exceptions at once. A single stripe is equivalent to
+ * the shared sample counter, the other stripe counts spread the sampling budget over leases.
+ */
+@State(Scope.Benchmark)
+@Threads(8)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StreamingSamplerBenchmark {
+
+  @Param({"1", "8", "64"})
+  int stripes;
+
+  @Param({"16", "1000"})
+  int samplesPerWindow;
+
+  private StreamingSampler sampler;
+
+  @Setup
+  public void setup() {
+    sampler =
+        new StreamingSampler(
+            Duration.ofMillis(500), samplesPerWindow, 120, stripes, CommonTaskExecutor.INSTANCE);
+  }
+
+  @Benchmark
+  public boolean sample() {
+    return sampler.sample();
+  }
+}
@@ -48,6 +48,8 @@ public final class ExceptionInstrumentation extends Instrumenter.Default {
           "com.datadog.profiling.exceptions.StreamingSampler$RollWindowTask",
           "com.datadog.profiling.exceptions.ExceptionCountEvent",
           "com.datadog.profiling.exceptions.ExceptionHistogram",
+          "com.datadog.profiling.exceptions.ExceptionHistogram$Counter",
+          "com.datadog.profiling.exceptions.ExceptionHistogram$Counters",
           "com.datadog.profiling.exceptions.ExceptionHistogram$Pair",
           "com.datadog.profiling.exceptions.ExceptionProfiling",
           "com.datadog.profiling.exceptions.ExceptionSampleEvent",
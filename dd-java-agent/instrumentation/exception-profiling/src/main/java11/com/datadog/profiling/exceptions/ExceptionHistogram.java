@@ -5,11 +5,14 @@ import jdk.jfr.EventType;
 import jdk.jfr.FlightRecorder;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.LongAdder;
-import java.util.stream.Stream;
 
 /**
  * A simple exception type histogram implementation.<br>
@@ -19,14 +22,20 @@ import java.util.stream.Stream;
  *
  * An {@linkplain ExceptionHistogram} instance is registered with JFR to call {@linkplain ExceptionHistogram#emit()}
  * method at chunk end, as specified in {@linkplain ExceptionCountEvent} class. This callback will then emit a number
- * of {@linkplain ExceptionCountEvent} events.
+ * of {@linkplain ExceptionCountEvent} events.<br>
+ *
+ * Recording is allocation free: the counter of an exception type is cached in a {@linkplain ClassValue} and the
+ * type names are only resolved when emitting the events of the top exception types.
  */
 @Slf4j
 public class ExceptionHistogram {
 
   static final String CLIPPED_ENTRY_TYPE_NAME = "TOO-MANY-EXCEPTIONS";
 
-  private final Map<String, AtomicLong> histogram = new ConcurrentHashMap<>();
+  // The exception types counted since the last emit
+  private final Map<Class<?>, Counter> histogram = new ConcurrentHashMap<>();
+  private final Counters counters = new Counters();
+  private final Counter clipped = new Counter();
   private final int maxTopItems;
   private final int maxSize;
   private final EventType exceptionCountEventType;
@@ -56,32 +65,40 @@ public class ExceptionHistogram {
     if (exception == null) {
       return false;
     }
-    return record(exception.getClass().getCanonicalName());
+    return record(exception.getClass());
   }
 
-  private boolean record(String typeName) {
+  private boolean record(final Class<?> type) {
     if (!exceptionCountEventType.isEnabled()) {
       return false;
     }
-    if (!histogram.containsKey(typeName) && histogram.size() >= maxSize) {
-      log.debug("Histogram is too big, skipping adding new entry: {}", typeName);
-      // Overwrite type name to limit total number of entries in the histogram
-      typeName = CLIPPED_ENTRY_TYPE_NAME;
+    Counter counter = counters.get(type);
+    if (!counter.tracked) {
+      counter = track(type, counter);
     }
-
-    long count = histogram
-      .computeIfAbsent(
-        typeName,
-        k -> new AtomicLong()
-      )
-      .getAndIncrement();
+    counter.count.increment();
 
     /*
      * This is supposed to signal that a particular exception type was seen the first time in a particular time span.
      * !ATTENTION! This will work on best-effort basis - namely all overflowing exception which are recorded
      * as 'TOO-MANY-EXCEPTIONS' will receive only one common 'first hit'.
      */
-    return count == 0;
+    return !counter.hit.get() && counter.hit.compareAndSet(false, true);
+  }
+
+  /**
+   * Adds the counter to the histogram, unless the histogram is full
+   * @return the counter to increment
+   */
+  private Counter track(final Class<?> type, final Counter counter) {
+    if (histogram.size() >= maxSize) {
+      log.debug("Histogram is too big, skipping adding new entry: {}", type);
+      // Count the type as clipped to limit total number of entries in the histogram
+      return clipped;
+    }
+    histogram.putIfAbsent(type, counter);
+    counter.tracked = true;
+    return counter;
   }
 
   private void emit() {
@@ -93,28 +110,58 @@ public class ExceptionHistogram {
   }
 
   void doEmit() {
-    Stream<Pair<String, Long>> items =
-      histogram
-        .entrySet()
-        .stream()
-        .map(e -> Pair.of(e.getKey(), e.getValue().getAndSet(0)))
-        .filter(p -> p.getValue() != 0)
-        .sorted((l1, l2) -> Long.compare(l2.getValue(), l1.getValue()));
+    // min-heap of the top items, only the top items are sorted and have their name resolved
+    final PriorityQueue<Pair<Class<?>, Long>> top =
+      new PriorityQueue<>((l1, l2) -> Long.compare(l1.getValue(), l2.getValue()));
+    for (final Map.Entry<Class<?>, Counter> entry : histogram.entrySet()) {
+      final long count = entry.getValue().reset();
+      if (count == 0) {
+        // Not seen since the last emit, stop tracking it
+        entry.getValue().tracked = false;
+        histogram.remove(entry.getKey(), entry.getValue());
+      } else {
+        offer(top, entry.getKey(), count);
+      }
+    }
+    final long clippedCount = clipped.reset();
+    if (clippedCount != 0) {
+      offer(top, null, clippedCount);
+    }
 
-    if (maxTopItems > 0) {
-      items = items.limit(maxTopItems);
+    final List<Pair<String, Long>> items = new ArrayList<>(top.size());
+    while (!top.isEmpty()) {
+      final Pair<Class<?>, Long> item = top.poll();
+      items.add(Pair.of(typeName(item.getKey()), item.getValue()));
     }
+    Collections.reverse(items);
 
     emitEvents(items);
+  }
 
-    // Stream is 'materialized' by `forEach` call above so we have to do clean up after that
-    // Otherwise we would keep entries for one extra iteration
-    histogram.entrySet().removeIf(e -> e.getValue().get() == 0L);
+  private void offer(
+    final PriorityQueue<Pair<Class<?>, Long>> top, final Class<?> type, final long count) {
+    if (maxTopItems <= 0 || top.size() < maxTopItems) {
+      top.offer(Pair.of(type, count));
+    } else if (count > top.peek().getValue()) {
+      top.poll();
+      top.offer(Pair.of(type, count));
+    }
+  }
+
+  private static String typeName(final Class<?> type) {
+    if (type == null) {
+      return CLIPPED_ENTRY_TYPE_NAME;
+    }
+    final String name = type.getCanonicalName();
+    // anonymous and local classes don't have a canonical name
+    return name != null ? name : type.getName();
   }
 
   // important that this is non-final and package private; allows concurrency tests
-  void emitEvents(Stream<Pair<String, Long>> items) {
-    items.forEach(e -> createAndCommitEvent(e.getKey(), e.getValue()));
+  void emitEvents(final List<Pair<String, Long>> items) {
+    for (final Pair<String, Long> item : items) {
+      createAndCommitEvent(item.getKey(), item.getValue());
+    }
   }
 
   private void createAndCommitEvent(final String type, final long count) {
@@ -124,6 +171,33 @@ public class ExceptionHistogram {
     }
   }
 
+  /** The number of exceptions of a type since the last emit */
+  static final class Counter {
+
+    final LongAdder count = new LongAdder();
+    // whether the type was seen since the last emit
+    final AtomicBoolean hit = new AtomicBoolean();
+    // whether the counter is in the histogram
+    volatile boolean tracked;
+
+    /**
+     * @return the count since the last reset
+     */
+    long reset() {
+      hit.set(false);
+      return count.sumThenReset();
+    }
+  }
+
+  /** Caches the counter of each exception type */
+  static final class Counters extends ClassValue<Counter> {
+
+    @Override
+    protected Counter computeValue(final Class<?> type) {
+      return new Counter();
+    }
+  }
+
   static class Pair<K, V> {
 
     final K key;
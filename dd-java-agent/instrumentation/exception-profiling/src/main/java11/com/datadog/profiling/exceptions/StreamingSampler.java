@@ -6,6 +6,7 @@ import java.time.Duration;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.LongAdder;
 
@@ -39,16 +40,107 @@ class StreamingSampler {
    */
   private static final int CARRIED_OVER_BUDGET_LOOK_BACK = 16;
 
+  /*
+   * Upper bound of the number of budget stripes - more stripes than cores would not remove any more contention.
+   */
+  private static final int MAX_STRIPES = 64;
+
+  /*
+   * Upper bound of the number of samples a stripe claims from the window budget at once.
+   */
+  private static final int MAX_LEASE = 8;
+
+  /*
+   * Stripes are spaced by this many longs (a 64 byte cache line) so that they do not share cache lines.
+   */
+  private static final int STRIPE_PADDING = 8;
+
+  /*
+   * The window budget is handed out to the sampling threads in small leases. A thread takes its samples from the
+   * stripe it maps to and only goes to the shared leased counter once the stripe runs dry - so that the threads
+   * throwing exceptions do not all update one counter. Whatever is left in the stripes at the end of the window
+   * is reconciled by the window maintenance and does not count as sampled.
+   */
   private static final class Counts {
     private final LongAdder testCounter = new LongAdder();
-    private final AtomicLong sampleCounter = new AtomicLong(0L);
+    private final AtomicLong leasedCounter = new AtomicLong(0L);
+    // stripe i is at index i * STRIPE_PADDING
+    private final AtomicLongArray stripes;
+    private final int stripeCount;
+    private final int lease;
+
+    // set once the budget is gone and there is nothing left to take from the other stripes
+    private volatile boolean exhausted;
+
+    Counts(final int stripeCount, final int lease) {
+      stripes = new AtomicLongArray(stripeCount * STRIPE_PADDING);
+      this.stripeCount = stripeCount;
+      this.lease = lease;
+    }
 
     void addTest() {
       testCounter.increment();
     }
 
     boolean addSample(final long limit) {
-      return sampleCounter.getAndUpdate(s -> s + (s < limit ? 1 : 0)) < limit;
+      final int stripe = stripeIndex();
+      if (take(stripe)) {
+        return true;
+      }
+      final long granted = claimLease(limit);
+      if (granted > 0) {
+        if (granted > 1) {
+          stripes.addAndGet(stripe, granted - 1);
+        }
+        return true;
+      }
+      if (!exhausted) {
+        // do not let the budget leased to the other stripes go to waste
+        for (int other = 0; other < stripes.length(); other += STRIPE_PADDING) {
+          if (take(other)) {
+            return true;
+          }
+        }
+        exhausted = true;
+      }
+      return false;
+    }
+
+    long sampledCount() {
+      long unused = 0;
+      for (int stripe = 0; stripe < stripes.length(); stripe += STRIPE_PADDING) {
+        unused += stripes.get(stripe);
+      }
+      return leasedCounter.get() - unused;
+    }
+
+    /** @return the index of the stripe of the current thread in {@link #stripes} */
+    private int stripeIndex() {
+      // thread ids are sequential, so the threads spread evenly over the stripes
+      return (int) (Thread.currentThread().getId() & (stripeCount - 1)) * STRIPE_PADDING;
+    }
+
+    private long claimLease(final long limit) {
+      long leased = leasedCounter.get();
+      while (leased < limit) {
+        final long claimed = Math.min(leased + lease, limit);
+        if (leasedCounter.compareAndSet(leased, claimed)) {
+          return claimed - leased;
+        }
+        leased = leasedCounter.get();
+      }
+      return 0;
+    }
+
+    private boolean take(final int stripe) {
+      long available = stripes.get(stripe);
+      while (available > 0) {
+        if (stripes.compareAndSet(stripe, available, available - 1)) {
+          return true;
+        }
+        available = stripes.get(stripe);
+      }
+      return false;
     }
   }
 
@@ -64,6 +156,8 @@ class StreamingSampler {
    */
   private final double emaAlpha;
   private final int samplesPerWindow;
+  private final int stripeCount;
+  private final int lease;
 
   private final AtomicReference<Counts> countsRef;
 
@@ -84,19 +178,25 @@ class StreamingSampler {
    * @param windowDuration the sampling window duration
    * @param samplesPerWindow the maximum number of samples in the sampling window
    * @param lookback the number of windows to consider in averaging the sampling rate
+   * @param stripes the number of stripes the sampling budget is spread over, rounded to a power of
+   *     two
    * @param taskExecutor common task executor to use for periodic rolls
    */
   StreamingSampler(
       final Duration windowDuration,
       final int samplesPerWindow,
       final int lookback,
+      final int stripes,
       final CommonTaskExecutor taskExecutor) {
 
     this.samplesPerWindow = samplesPerWindow;
+    stripeCount = Integer.highestOneBit(Math.max(1, Math.min(stripes, MAX_STRIPES)));
+    // small enough leases for the unused leftovers not to matter when the budget is short
+    lease = Math.max(1, Math.min(MAX_LEASE, samplesPerWindow / (stripeCount * 4)));
     samplesBudget = samplesPerWindow + CARRIED_OVER_BUDGET_LOOK_BACK * samplesPerWindow;
     emaAlpha = computeIntervalAlpha(lookback);
     budgetAlpha = computeIntervalAlpha(CARRIED_OVER_BUDGET_LOOK_BACK);
-    countsRef = new AtomicReference<>(new Counts());
+    countsRef = new AtomicReference<>(new Counts(stripeCount, lease));
 
     taskExecutor.scheduleAtFixedRate(
         RollWindowTask.INSTANCE,
@@ -107,6 +207,27 @@ class StreamingSampler {
         "exception sampling window roll");
   }
 
+  /**
+   * Create a new sampler instance with the budget striped by the number of available processors.
+   *
+   * @param windowDuration the sampling window duration
+   * @param samplesPerWindow the maximum number of samples in the sampling window
+   * @param lookback the number of windows to consider in averaging the sampling rate
+   * @param taskExecutor common task executor to use for periodic rolls
+   */
+  StreamingSampler(
+      final Duration windowDuration,
+      final int samplesPerWindow,
+      final int lookback,
+      final CommonTaskExecutor taskExecutor) {
+    this(
+        windowDuration,
+        samplesPerWindow,
+        lookback,
+        Runtime.getRuntime().availableProcessors(),
+        taskExecutor);
+  }
+
   /**
    * Create a new sampler instance with automatic window roll.
    *
@@ -139,9 +260,9 @@ class StreamingSampler {
      * Atomically replace the Counts instance such that sample requests during window maintenance will be
      * using the newly created counts instead of the ones currently processed by the maintenance routine.
      */
-    final Counts counts = countsRef.getAndSet(new Counts());
+    final Counts counts = countsRef.getAndSet(new Counts(stripeCount, lease));
     final long totalCount = counts.testCounter.sum();
-    final long sampledCount = counts.sampleCounter.get();
+    final long sampledCount = counts.sampledCount();
 
     samplesBudget = calculateBudgetEma(sampledCount);
 
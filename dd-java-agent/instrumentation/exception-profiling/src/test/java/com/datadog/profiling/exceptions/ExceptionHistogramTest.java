@@ -9,11 +9,12 @@ import com.google.common.collect.ImmutableSortedMap;
 import datadog.trace.api.Config;
 import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Phaser;
-import java.util.stream.Stream;
 import jdk.jfr.FlightRecorder;
 import jdk.jfr.Recording;
 import org.junit.jupiter.api.AfterEach;
@@ -85,7 +86,7 @@ public class ExceptionHistogramTest {
     ExceptionHistogram histogram =
         new ExceptionHistogram(Config.get()) {
           @Override
-          void emitEvents(Stream<ExceptionHistogram.Pair<String, Long>> items) {
+          void emitEvents(List<ExceptionHistogram.Pair<String, Long>> items) {
             super.emitEvents(items);
             // #1 - histo sums are reset but 0 entries not removed yet
             phaser.arriveAndAwaitAdvance();
@@ -114,6 +115,47 @@ public class ExceptionHistogramTest {
     assertFalse(histogram.record(new NullPointerException()));
   }
 
+  @Test
+  public void testTopItemsAreEmittedInOrder() {
+    final List<ExceptionHistogram.Pair<String, Long>> emitted = new ArrayList<>();
+    final Properties properties = new Properties();
+    properties.setProperty(
+        Config.PROFILING_EXCEPTION_HISTOGRAM_TOP_ITEMS, Integer.toString(MAX_ITEMS));
+    final ExceptionHistogram histogram =
+        new ExceptionHistogram(Config.get(properties)) {
+          @Override
+          void emitEvents(final List<ExceptionHistogram.Pair<String, Long>> items) {
+            emitted.addAll(items);
+          }
+        };
+    histogram.deregister();
+    final Exception anonymous = new Exception() {};
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals(i == 0, histogram.record(new IllegalStateException()));
+    }
+    assertTrue(histogram.record(new NullPointerException()));
+    for (int i = 0; i < 7; i++) {
+      assertEquals(i == 0, histogram.record(anonymous));
+    }
+    histogram.doEmit();
+
+    assertEquals(MAX_ITEMS, emitted.size());
+    assertEquals(anonymous.getClass().getName(), emitted.get(0).getKey());
+    assertEquals(7L, emitted.get(0).getValue());
+    assertEquals(IllegalStateException.class.getCanonicalName(), emitted.get(1).getKey());
+    assertEquals(3L, emitted.get(1).getValue());
+
+    // counts are reset
+    emitted.clear();
+    assertTrue(histogram.record(new NullPointerException()));
+    histogram.doEmit();
+
+    assertEquals(1, emitted.size());
+    assertEquals(NullPointerException.class.getCanonicalName(), emitted.get(0).getKey());
+    assertEquals(1L, emitted.get(0).getValue());
+  }
+
   @Test
   public void testExceptionsRecorded()
       throws IOException, CouldNotLoadRecordingException, InterruptedException {
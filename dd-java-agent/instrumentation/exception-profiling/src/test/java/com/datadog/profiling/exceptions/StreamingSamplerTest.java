@@ -21,6 +21,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.math3.distribution.PoissonDistribution;
+import org.apache.commons.math3.stat.inference.KolmogorovSmirnovTest;
 import org.apache.commons.math3.stat.descriptive.moment.Mean;
 import org.apache.commons.math3.stat.descriptive.moment.StandardDeviation;
 import org.apache.commons.math3.util.Pair;
@@ -259,6 +260,88 @@ class StreamingSamplerTest {
     testSampler(new RepeatingWindowsEventsSupplier(0, 1000, 0, 1000, 0, 1000), 15);
   }
 
+  @Test
+  public void testStripedBudgetKeepsDistribution() throws Exception {
+    final Supplier<Integer> windowEventsSupplier = new ConstantWindowsEventsSupplier(500);
+    // with a single stripe all the threads share one budget, as with the former shared counter,
+    // although it is still claimed in leases of min(8, samplesPerWindow / 4) samples
+    final SamplingDistribution shared = sampleDistribution(1, windowEventsSupplier);
+    final SamplingDistribution striped = sampleDistribution(4, windowEventsSupplier);
+
+    final double sharedMean = MEAN.evaluate(shared.samplesPerWindow);
+    final double stripedMean = MEAN.evaluate(striped.samplesPerWindow);
+    final double pValue =
+        new KolmogorovSmirnovTest()
+            .kolmogorovSmirnovTest(shared.samplePositions, striped.samplePositions);
+    log.info(
+        "> samples per window (shared: {}, striped: {}), sample positions p-value: {}",
+        sharedMean,
+        stripedMean,
+        pValue);
+
+    assertTrue(
+        abs(stripedMean - sharedMean) / sharedMean <= 0.05,
+        "samples per window: " + stripedMean + " != " + sharedMean);
+    assertTrue(pValue > 0.001, "sample positions are distributed differently: " + pValue);
+  }
+
+  private static final class SamplingDistribution {
+    final double[] samplesPerWindow;
+    final double[] samplePositions;
+
+    SamplingDistribution(final double[] samplesPerWindow, final double[] samplePositions) {
+      this.samplesPerWindow = samplesPerWindow;
+      this.samplePositions = samplePositions;
+    }
+  }
+
+  /**
+   * Sample on concurrent threads and capture the number of samples per window and the relative
+   * positions of the samples in the windows once the sampler has settled.
+   */
+  private SamplingDistribution sampleDistribution(
+      final int stripes, final Supplier<Integer> windowEventsSupplier) throws Exception {
+    final int threadCount = 8;
+    final StreamingSampler sampler =
+        new StreamingSampler(WINDOW_DURATION, SAMPLES_PER_WINDOW, LOOKBACK, stripes, taskExecutor);
+
+    final double[] samplesPerWindow = new double[WINDOWS - LOOKBACK];
+    final List<Double> samplePositions = new ArrayList<>();
+    for (int w = 0; w < WINDOWS; w++) {
+      final int events = windowEventsSupplier.get();
+      final AtomicLong samples = new AtomicLong(0);
+      final List<List<Double>> threadPositions = new ArrayList<>();
+      final Thread[] threads = new Thread[threadCount];
+      for (int i = 0; i < threadCount; i++) {
+        final List<Double> positions = new ArrayList<>();
+        threadPositions.add(positions);
+        threads[i] =
+            new Thread(
+                () -> {
+                  for (int e = 0; e < events; e++) {
+                    if (sampler.sample()) {
+                      positions.add(e / (double) events);
+                      samples.incrementAndGet();
+                    }
+                  }
+                });
+      }
+      for (final Thread t : threads) {
+        t.start();
+      }
+      for (final Thread t : threads) {
+        t.join();
+      }
+      rollWindow();
+
+      if (w >= LOOKBACK) {
+        samplesPerWindow[w - LOOKBACK] = samples.get();
+        threadPositions.forEach(samplePositions::addAll);
+      }
+    }
+    return new SamplingDistribution(samplesPerWindow, toDoubleArray(samplePositions));
+  }
+
   private void testSampler(final Supplier<Integer> windowEventsSupplier, final int maxErrorPercent)
       throws Exception {
     int iterations =
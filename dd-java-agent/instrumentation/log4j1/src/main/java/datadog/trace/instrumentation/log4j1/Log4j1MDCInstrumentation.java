@@ -56,8 +56,10 @@ public class Log4j1MDCInstrumentation extends Instrumenter.Default {
         Class<?> mdcClass = instance.getClass();
         final Method putMethod = mdcClass.getMethod("put", String.class, Object.class);
         final Method removeMethod = mdcClass.getMethod("remove", String.class);
-        GlobalTracer.get().addScopeListener(new LogContextScopeListener(putMethod, removeMethod));
-      } catch (final NoSuchMethodException e) {
+        final Method getMethod = mdcClass.getMethod("get", String.class);
+        GlobalTracer.get()
+            .addScopeListener(new LogContextScopeListener(putMethod, removeMethod, getMethod));
+      } catch (final NoSuchMethodException | IllegalAccessException e) {
         org.slf4j.LoggerFactory.getLogger(instance.getClass())
             .debug("Failed to add log4j ThreadContext span listener", e);
       }
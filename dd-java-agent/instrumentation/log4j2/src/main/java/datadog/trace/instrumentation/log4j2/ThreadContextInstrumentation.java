@@ -51,8 +51,10 @@ public class ThreadContextInstrumentation extends Instrumenter.Default {
       try {
         final Method putMethod = threadClass.getMethod("put", String.class, String.class);
         final Method removeMethod = threadClass.getMethod("remove", String.class);
-        GlobalTracer.get().addScopeListener(new LogContextScopeListener(putMethod, removeMethod));
-      } catch (final NoSuchMethodException e) {
+        final Method getMethod = threadClass.getMethod("get", String.class);
+        GlobalTracer.get()
+            .addScopeListener(new LogContextScopeListener(putMethod, removeMethod, getMethod));
+      } catch (final NoSuchMethodException | IllegalAccessException e) {
         org.slf4j.LoggerFactory.getLogger(threadClass)
             .debug("Failed to add log4j ThreadContext span listener", e);
       }
@@ -69,8 +69,10 @@ public class MDCInjectionInstrumentation extends Instrumenter.Default {
       try {
         final Method putMethod = mdcClass.getMethod("put", String.class, String.class);
         final Method removeMethod = mdcClass.getMethod("remove", String.class);
-        GlobalTracer.get().addScopeListener(new LogContextScopeListener(putMethod, removeMethod));
-      } catch (final NoSuchMethodException e) {
+        final Method getMethod = mdcClass.getMethod("get", String.class);
+        GlobalTracer.get()
+            .addScopeListener(new LogContextScopeListener(putMethod, removeMethod, getMethod));
+      } catch (final NoSuchMethodException | IllegalAccessException e) {
         org.slf4j.LoggerFactory.getLogger(mdcClass).debug("Failed to add MDC span listener", e);
       }
     }
@@ -37,6 +37,12 @@ public class LoadGenerator implements Callable<Integer> {
       description = "Total spans deep per trace, including parent (default: ${DEFAULT-VALUE})")
   private int depth;
 
+  @Option(
+      names = "--tags",
+      defaultValue = "0",
+      description = "Number of extra tags added to every span (default: ${DEFAULT-VALUE})")
+  private int tags;
+
   @Option(
       names = "--warmup",
       defaultValue = "5",
@@ -95,13 +101,16 @@ public class LoadGenerator implements Callable<Integer> {
       while (true) {
         rateLimiter.acquire();
         final Span parent = tracer.buildSpan("parentSpan").start();
+        addTags(parent);
 
         try (final Scope scope = tracer.activateSpan(parent)) {
           for (int i = 0; i < width; i++) {
             final Span widthSpan = tracer.buildSpan("span-" + i).start();
+            addTags(widthSpan);
             try (final Scope widthScope = tracer.activateSpan(widthSpan)) {
               for (int j = 0; j < depth - 2; j++) {
                 final Span depthSpan = tracer.buildSpan("span-" + i + "-" + j).start();
+                addTags(depthSpan);
                 try (final Scope depthScope = tracer.activateSpan(depthSpan)) {
                   // do nothing.  Maybe sleep? but that will mean we need more threads to keep the
                   // effective rate
@@ -120,5 +129,11 @@ public class LoadGenerator implements Callable<Integer> {
         tracesSent.getAndIncrement();
       }
     }
+
+    private void addTags(final Span span) {
+      for (int i = 0; i < tags; i++) {
+        span.setTag("tag-" + i, "value-" + i);
+      }
+    }
   }
 }
@@ -70,6 +70,25 @@ abstract class LogContextInjectionTestBase extends AgentTestRunner {
     get("foo") == "bar"
   }
 
+  def "Log context ids changed outside of a scope are set again by a nested scope"() {
+    setup:
+    AgentSpan rootSpan = startSpan("root")
+    AgentScope rootScope = activateSpan(rootSpan, true)
+
+    when:
+    put(CorrelationIdentifier.getTraceIdKey(), "other")
+    put(CorrelationIdentifier.getSpanIdKey(), "other")
+    AgentScope nestedScope = activateSpan(rootSpan, false)
+
+    then:
+    get(CorrelationIdentifier.getTraceIdKey()) == CorrelationIdentifier.getTraceId()
+    get(CorrelationIdentifier.getSpanIdKey()) == CorrelationIdentifier.getSpanId()
+
+    cleanup:
+    nestedScope?.close()
+    rootScope?.close()
+  }
+
   def "Log context is scoped by thread"() {
     setup:
     ConfigUtils.updateConfig {
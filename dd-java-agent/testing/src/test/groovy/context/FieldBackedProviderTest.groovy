@@ -3,6 +3,7 @@ package context
 import datadog.trace.agent.test.AgentTestRunner
 import datadog.trace.agent.test.utils.ClasspathUtils
 import datadog.trace.api.Config
+import datadog.trace.bootstrap.ContextStoreFallbackMap
 import datadog.trace.util.gc.GCUtils
 import net.bytebuddy.agent.ByteBuddyAgent
 import net.bytebuddy.utility.JavaModule
@@ -168,6 +169,17 @@ class FieldBackedProviderTest extends AgentTestRunner {
     new UntransformableKeyClass().incrementContextCount() == 1
   }
 
+  def "untransformable key classes use the fallback map"() {
+    setup:
+    def stores = ContextStoreFallbackMap.getStoreCount()
+
+    when:
+    new UntransformableKeyClass().incrementContextCount()
+
+    then:
+    ContextStoreFallbackMap.getStoreCount() > stores
+  }
+
   def "incorrect key class usage fails at class load time"() {
     expect:
     !new IncorrectKeyClassUsageKeyClass().isInstrumented()
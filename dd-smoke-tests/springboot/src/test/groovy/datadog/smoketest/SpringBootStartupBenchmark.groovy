@@ -0,0 +1,100 @@
+package datadog.smoketest
+
+import spock.lang.Requires
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+/**
+ * Compares the startup time of the Spring Boot smoke app with and without the agent startup
+ * optimizations. Most of the agent overhead at startup is spent matching and transforming the
+ * loaded classes.
+ *
+ * <p>Startup is measured as the wall clock time from launching the JVM until the application logs
+ * that it started. Spring Boot's own "Started ... in X seconds" figure can't be used, it starts
+ * counting in main, after the agent premain and the type matcher index build.
+ *
+ * <p>Only runs when the DD_STARTUP_BENCHMARK environment variable is set, its value being the
+ * number of runs per configuration.
+ */
+@Requires({ System.getenv("DD_STARTUP_BENCHMARK") != null })
+class SpringBootStartupBenchmark extends Specification {
+  static final STARTED = ~/Started SpringbootApplication in /
+
+  @Shared
+  String buildDirectory = System.getProperty("datadog.smoketest.builddir")
+  @Shared
+  String shadowJarPath = System.getProperty("datadog.smoketest.agent.shadowJar.path")
+  @Shared
+  String springBootShadowJar = System.getProperty("datadog.smoketest.springboot.shadowJar.path")
+  @Shared
+  int runs = Integer.parseInt(System.getenv("DD_STARTUP_BENCHMARK") ?: "5")
+
+  def "startup time with type matcher index enabled=#indexEnabled"() {
+    expect:
+    benchmark("type matcher index enabled=$indexEnabled", [
+      "dd.trace.type.matcher.index.enabled": indexEnabled
+    ])
+
+    where:
+    indexEnabled << [false, true]
+  }
+
+  def "startup time with muzzle cache enabled=#cacheEnabled"() {
+    setup:
+    def cacheDirectory = File.createTempDir("muzzle-cache", "")
+
+    expect:
+    // the first run also fills the cache, results are saved when the application stops
+    benchmark("muzzle cache enabled=$cacheEnabled", [
+      "dd.trace.muzzle.cache.enabled"  : cacheEnabled,
+      "dd.trace.muzzle.cache.directory": cacheDirectory.absolutePath
+    ])
+
+    cleanup:
+    cacheDirectory.deleteDir()
+
+    where:
+    cacheEnabled << [false, true]
+  }
+
+  boolean benchmark(String name, Map<String, Object> properties) {
+    // first run warms up the file system caches
+    startupSeconds(properties)
+    def times = (1..runs).collect { startupSeconds(properties) }.sort()
+    println "$name: median=${times[times.size().intdiv(2)]}s min=${times.first()}s max=${times.last()}s"
+    return times.every { it > 0 }
+  }
+
+  double startupSeconds(Map<String, Object> properties) {
+    def command = [
+      System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+      "-javaagent:${shadowJarPath}",
+      "-Ddd.writer.type=LoggingWriter"
+    ] + properties.collect { "-D${it.key}=${it.value}" } + [
+      "-jar",
+      springBootShadowJar,
+      "--server.port=0"
+    ]
+    command = command*.toString()
+    def launchNanos = System.nanoTime()
+    def process = new ProcessBuilder(command)
+      .directory(new File(buildDirectory))
+      .redirectErrorStream(true)
+      .start()
+    try {
+      def reader = new BufferedReader(new InputStreamReader(process.inputStream))
+      String line
+      while ((line = reader.readLine()) != null) {
+        if (STARTED.matcher(line).find()) {
+          return (System.nanoTime() - launchNanos) / (double) TimeUnit.SECONDS.toNanos(1)
+        }
+      }
+      throw new AssertionError("Application exited before starting")
+    } finally {
+      process.destroy()
+      process.waitFor(10, TimeUnit.SECONDS)
+    }
+  }
+}
@@ -97,6 +97,9 @@ public class Config {
   public static final String PARTIAL_FLUSH_MIN_SPANS = "trace.partial.flush.min.spans";
   public static final String RUNTIME_CONTEXT_FIELD_INJECTION =
       "trace.runtime.context.field.injection";
+  public static final String TYPE_MATCHER_INDEX_ENABLED = "trace.type.matcher.index.enabled";
+  public static final String MUZZLE_CACHE_ENABLED = "trace.muzzle.cache.enabled";
+  public static final String MUZZLE_CACHE_DIRECTORY = "trace.muzzle.cache.directory";
   public static final String PROPAGATION_STYLE_EXTRACT = "propagation.style.extract";
   public static final String PROPAGATION_STYLE_INJECT = "propagation.style.inject";
 
@@ -112,6 +115,17 @@ public class Config {
   public static final String HEALTH_METRICS_ENABLED = "trace.health.metrics.enabled";
   public static final String HEALTH_METRICS_STATSD_HOST = "trace.health.metrics.statsd.host";
   public static final String HEALTH_METRICS_STATSD_PORT = "trace.health.metrics.statsd.port";
+  public static final String TRACE_SERIALIZATION_BUFFER_POOL_ENABLED =
+      "trace.serialization.buffer-pool.enabled";
+  public static final String TRACE_SERIALIZATION_BUFFER_POOL_DIRECT =
+      "trace.serialization.buffer-pool.direct";
+  public static final String TRACE_SERIALIZATION_DIRECT_ENCODER_ENABLED =
+      "trace.serialization.direct-encoder.enabled";
+  public static final String TRACE_PROCESSING_WORKERS = "trace.processing.workers";
+  public static final String TRACE_SPILL_ENABLED = "trace.spill.enabled";
+  public static final String TRACE_SPILL_DIRECTORY = "trace.spill.directory";
+  public static final String TRACE_SPILL_MAX_SIZE = "trace.spill.max-size";
+  public static final String TRACE_SPILL_MAX_AGE = "trace.spill.max-age";
 
   public static final String LOGS_INJECTION_ENABLED = "logs.injection";
 
@@ -132,11 +146,15 @@ public class Config {
   // Not intended for production use
   public static final String PROFILING_START_FORCE_FIRST =
       "profiling.experimental.start-force-first";
+  public static final String PROFILING_CHUNKED_UPLOAD = "profiling.experimental.chunked-upload";
   public static final String PROFILING_UPLOAD_PERIOD = "profiling.upload.period";
   public static final String PROFILING_TEMPLATE_OVERRIDE_FILE =
       "profiling.jfr-template-override-file";
   public static final String PROFILING_UPLOAD_TIMEOUT = "profiling.upload.timeout";
   public static final String PROFILING_UPLOAD_COMPRESSION = "profiling.upload.compression";
+  public static final String PROFILING_UPLOAD_COMPRESSION_LEVEL =
+      "profiling.upload.compression.level";
+  public static final String PROFILING_UPLOAD_STREAMING = "profiling.upload.streaming";
   public static final String PROFILING_PROXY_HOST = "profiling.proxy.host";
   public static final String PROFILING_PROXY_PORT = "profiling.proxy.port";
   public static final String PROFILING_PROXY_USERNAME = "profiling.proxy.username";
@@ -168,6 +186,8 @@ public class Config {
   public static final String DEFAULT_AGENT_UNIX_DOMAIN_SOCKET = null;
 
   private static final boolean DEFAULT_RUNTIME_CONTEXT_FIELD_INJECTION = true;
+  private static final boolean DEFAULT_TYPE_MATCHER_INDEX_ENABLED = true;
+  private static final boolean DEFAULT_MUZZLE_CACHE_ENABLED = false;
 
   private static final boolean DEFAULT_PRIORITY_SAMPLING_ENABLED = true;
   private static final boolean DEFAULT_TRACE_RESOLVER_ENABLED = true;
@@ -191,14 +211,25 @@ public class Config {
   public static final boolean DEFAULT_METRICS_ENABLED = false;
   // No default constants for metrics statsd support -- falls back to jmxfetch values
 
+  public static final boolean DEFAULT_TRACE_SERIALIZATION_BUFFER_POOL_ENABLED = false;
+  public static final boolean DEFAULT_TRACE_SERIALIZATION_BUFFER_POOL_DIRECT = false;
+  public static final boolean DEFAULT_TRACE_SERIALIZATION_DIRECT_ENCODER_ENABLED = false;
+  public static final int DEFAULT_TRACE_PROCESSING_WORKERS = 1;
+  public static final boolean DEFAULT_TRACE_SPILL_ENABLED = false;
+  public static final int DEFAULT_TRACE_SPILL_MAX_SIZE = 64 * 1024 * 1024;
+  public static final int DEFAULT_TRACE_SPILL_MAX_AGE = 3600;
+
   public static final boolean DEFAULT_LOGS_INJECTION_ENABLED = false;
 
   public static final boolean DEFAULT_PROFILING_ENABLED = false;
   public static final int DEFAULT_PROFILING_START_DELAY = 10;
   public static final boolean DEFAULT_PROFILING_START_FORCE_FIRST = false;
+  public static final boolean DEFAULT_PROFILING_CHUNKED_UPLOAD = false;
   public static final int DEFAULT_PROFILING_UPLOAD_PERIOD = 60; // 1 min
   public static final int DEFAULT_PROFILING_UPLOAD_TIMEOUT = 30; // seconds
   public static final String DEFAULT_PROFILING_UPLOAD_COMPRESSION = "on";
+  public static final int DEFAULT_PROFILING_UPLOAD_COMPRESSION_LEVEL = -1; // codec default
+  public static final boolean DEFAULT_PROFILING_UPLOAD_STREAMING = false;
   public static final int DEFAULT_PROFILING_PROXY_PORT = 8080;
   public static final int DEFAULT_PROFILING_EXCEPTION_SAMPLE_LIMIT = 10_000;
   public static final int DEFAULT_PROFILING_EXCEPTION_HISTOGRAM_TOP_ITEMS = 50;
@@ -279,6 +310,9 @@ public class Config {
   @Getter private final Integer scopeDepthLimit;
   @Getter private final Integer partialFlushMinSpans;
   @Getter private final boolean runtimeContextFieldInjection;
+  @Getter private final boolean typeMatcherIndexEnabled;
+  @Getter private final boolean muzzleCacheEnabled;
+  @Getter private final String muzzleCacheDirectory;
   @Getter private final Set<PropagationStyle> propagationStylesToExtract;
   @Getter private final Set<PropagationStyle> propagationStylesToInject;
 
@@ -295,6 +329,14 @@ public class Config {
   @Getter private final boolean healthMetricsEnabled;
   @Getter private final String healthMetricsStatsdHost;
   @Getter private final Integer healthMetricsStatsdPort;
+  @Getter private final boolean traceSerializationBufferPoolEnabled;
+  @Getter private final boolean traceSerializationBufferPoolDirect;
+  @Getter private final boolean traceSerializationDirectEncoderEnabled;
+  @Getter private final int traceProcessingWorkers;
+  @Getter private final boolean traceSpillEnabled;
+  @Getter private final String traceSpillDirectory;
+  @Getter private final int traceSpillMaxSize;
+  @Getter private final int traceSpillMaxAge;
 
   @Getter private final boolean logsInjectionEnabled;
   @Getter private final boolean reportHostName;
@@ -318,10 +360,13 @@ public class Config {
   private final Map<String, String> profilingTags;
   @Getter private final int profilingStartDelay;
   @Getter private final boolean profilingStartForceFirst;
+  @Getter private final boolean profilingChunkedUpload;
   @Getter private final int profilingUploadPeriod;
   @Getter private final String profilingTemplateOverrideFile;
   @Getter private final int profilingUploadTimeout;
   @Getter private final String profilingUploadCompression;
+  @Getter private final int profilingUploadCompressionLevel;
+  @Getter private final boolean profilingUploadStreaming;
   @Getter private final String profilingProxyHost;
   @Getter private final int profilingProxyPort;
   @Getter private final String profilingProxyUsername;
@@ -425,6 +470,14 @@ public class Config {
         getBooleanSettingFromEnvironment(
             RUNTIME_CONTEXT_FIELD_INJECTION, DEFAULT_RUNTIME_CONTEXT_FIELD_INJECTION);
 
+    typeMatcherIndexEnabled =
+        getBooleanSettingFromEnvironment(
+            TYPE_MATCHER_INDEX_ENABLED, DEFAULT_TYPE_MATCHER_INDEX_ENABLED);
+
+    muzzleCacheEnabled =
+        getBooleanSettingFromEnvironment(MUZZLE_CACHE_ENABLED, DEFAULT_MUZZLE_CACHE_ENABLED);
+    muzzleCacheDirectory = getSettingFromEnvironment(MUZZLE_CACHE_DIRECTORY, null);
+
     propagationStylesToExtract =
         getPropagationStyleSetSettingFromEnvironmentOrDefault(
             PROPAGATION_STYLE_EXTRACT, DEFAULT_PROPAGATION_STYLE_EXTRACT);
@@ -449,6 +502,27 @@ public class Config {
         getBooleanSettingFromEnvironment(HEALTH_METRICS_ENABLED, DEFAULT_METRICS_ENABLED);
     healthMetricsStatsdHost = getSettingFromEnvironment(HEALTH_METRICS_STATSD_HOST, null);
     healthMetricsStatsdPort = getIntegerSettingFromEnvironment(HEALTH_METRICS_STATSD_PORT, null);
+    traceSerializationBufferPoolEnabled =
+        getBooleanSettingFromEnvironment(
+            TRACE_SERIALIZATION_BUFFER_POOL_ENABLED,
+            DEFAULT_TRACE_SERIALIZATION_BUFFER_POOL_ENABLED);
+    traceSerializationBufferPoolDirect =
+        getBooleanSettingFromEnvironment(
+            TRACE_SERIALIZATION_BUFFER_POOL_DIRECT, DEFAULT_TRACE_SERIALIZATION_BUFFER_POOL_DIRECT);
+    traceSerializationDirectEncoderEnabled =
+        getBooleanSettingFromEnvironment(
+            TRACE_SERIALIZATION_DIRECT_ENCODER_ENABLED,
+            DEFAULT_TRACE_SERIALIZATION_DIRECT_ENCODER_ENABLED);
+    traceProcessingWorkers =
+        getIntegerSettingFromEnvironment(
+            TRACE_PROCESSING_WORKERS, DEFAULT_TRACE_PROCESSING_WORKERS);
+    traceSpillEnabled =
+        getBooleanSettingFromEnvironment(TRACE_SPILL_ENABLED, DEFAULT_TRACE_SPILL_ENABLED);
+    traceSpillDirectory = getSettingFromEnvironment(TRACE_SPILL_DIRECTORY, null);
+    traceSpillMaxSize =
+        getIntegerSettingFromEnvironment(TRACE_SPILL_MAX_SIZE, DEFAULT_TRACE_SPILL_MAX_SIZE);
+    traceSpillMaxAge =
+        getIntegerSettingFromEnvironment(TRACE_SPILL_MAX_AGE, DEFAULT_TRACE_SPILL_MAX_AGE);
 
     logsInjectionEnabled =
         getBooleanSettingFromEnvironment(LOGS_INJECTION_ENABLED, DEFAULT_LOGS_INJECTION_ENABLED);
@@ -515,6 +589,9 @@ public class Config {
     profilingStartForceFirst =
         getBooleanSettingFromEnvironment(
             PROFILING_START_FORCE_FIRST, DEFAULT_PROFILING_START_FORCE_FIRST);
+    profilingChunkedUpload =
+        getBooleanSettingFromEnvironment(
+            PROFILING_CHUNKED_UPLOAD, DEFAULT_PROFILING_CHUNKED_UPLOAD);
     profilingUploadPeriod =
         getIntegerSettingFromEnvironment(PROFILING_UPLOAD_PERIOD, DEFAULT_PROFILING_UPLOAD_PERIOD);
     profilingTemplateOverrideFile =
@@ -525,6 +602,12 @@ public class Config {
     profilingUploadCompression =
         getSettingFromEnvironment(
             PROFILING_UPLOAD_COMPRESSION, DEFAULT_PROFILING_UPLOAD_COMPRESSION);
+    profilingUploadCompressionLevel =
+        getIntegerSettingFromEnvironment(
+            PROFILING_UPLOAD_COMPRESSION_LEVEL, DEFAULT_PROFILING_UPLOAD_COMPRESSION_LEVEL);
+    profilingUploadStreaming =
+        getBooleanSettingFromEnvironment(
+            PROFILING_UPLOAD_STREAMING, DEFAULT_PROFILING_UPLOAD_STREAMING);
     profilingProxyHost = getSettingFromEnvironment(PROFILING_PROXY_HOST, null);
     profilingProxyPort =
         getIntegerSettingFromEnvironment(PROFILING_PROXY_PORT, DEFAULT_PROFILING_PROXY_PORT);
@@ -623,6 +706,15 @@ public class Config {
         getPropertyBooleanValue(
             properties, RUNTIME_CONTEXT_FIELD_INJECTION, parent.runtimeContextFieldInjection);
 
+    typeMatcherIndexEnabled =
+        getPropertyBooleanValue(
+            properties, TYPE_MATCHER_INDEX_ENABLED, parent.typeMatcherIndexEnabled);
+
+    muzzleCacheEnabled =
+        getPropertyBooleanValue(properties, MUZZLE_CACHE_ENABLED, parent.muzzleCacheEnabled);
+    muzzleCacheDirectory =
+        properties.getProperty(MUZZLE_CACHE_DIRECTORY, parent.muzzleCacheDirectory);
+
     final Set<PropagationStyle> parsedPropagationStylesToExtract =
         getPropagationStyleSetFromPropertyValue(properties, PROPAGATION_STYLE_EXTRACT);
     propagationStylesToExtract =
@@ -658,6 +750,31 @@ public class Config {
     healthMetricsStatsdPort =
         getPropertyIntegerValue(
             properties, HEALTH_METRICS_STATSD_PORT, parent.healthMetricsStatsdPort);
+    traceSerializationBufferPoolEnabled =
+        getPropertyBooleanValue(
+            properties,
+            TRACE_SERIALIZATION_BUFFER_POOL_ENABLED,
+            parent.traceSerializationBufferPoolEnabled);
+    traceSerializationBufferPoolDirect =
+        getPropertyBooleanValue(
+            properties,
+            TRACE_SERIALIZATION_BUFFER_POOL_DIRECT,
+            parent.traceSerializationBufferPoolDirect);
+    traceSerializationDirectEncoderEnabled =
+        getPropertyBooleanValue(
+            properties,
+            TRACE_SERIALIZATION_DIRECT_ENCODER_ENABLED,
+            parent.traceSerializationDirectEncoderEnabled);
+    traceProcessingWorkers =
+        getPropertyIntegerValue(
+            properties, TRACE_PROCESSING_WORKERS, parent.traceProcessingWorkers);
+    traceSpillEnabled =
+        getPropertyBooleanValue(properties, TRACE_SPILL_ENABLED, parent.traceSpillEnabled);
+    traceSpillDirectory = properties.getProperty(TRACE_SPILL_DIRECTORY, parent.traceSpillDirectory);
+    traceSpillMaxSize =
+        getPropertyIntegerValue(properties, TRACE_SPILL_MAX_SIZE, parent.traceSpillMaxSize);
+    traceSpillMaxAge =
+        getPropertyIntegerValue(properties, TRACE_SPILL_MAX_AGE, parent.traceSpillMaxAge);
 
     logsInjectionEnabled =
         getBooleanSettingFromEnvironment(LOGS_INJECTION_ENABLED, DEFAULT_LOGS_INJECTION_ENABLED);
@@ -693,6 +810,9 @@ public class Config {
     profilingStartForceFirst =
         getPropertyBooleanValue(
             properties, PROFILING_START_FORCE_FIRST, parent.profilingStartForceFirst);
+    profilingChunkedUpload =
+        getPropertyBooleanValue(
+            properties, PROFILING_CHUNKED_UPLOAD, parent.profilingChunkedUpload);
     profilingUploadPeriod =
         getPropertyIntegerValue(properties, PROFILING_UPLOAD_PERIOD, parent.profilingUploadPeriod);
     profilingTemplateOverrideFile =
@@ -703,6 +823,14 @@ public class Config {
             properties, PROFILING_UPLOAD_TIMEOUT, parent.profilingUploadTimeout);
     profilingUploadCompression =
         properties.getProperty(PROFILING_UPLOAD_COMPRESSION, parent.profilingUploadCompression);
+    profilingUploadCompressionLevel =
+        getPropertyIntegerValue(
+            properties,
+            PROFILING_UPLOAD_COMPRESSION_LEVEL,
+            parent.profilingUploadCompressionLevel);
+    profilingUploadStreaming =
+        getPropertyBooleanValue(
+            properties, PROFILING_UPLOAD_STREAMING, parent.profilingUploadStreaming);
     profilingProxyHost = properties.getProperty(PROFILING_PROXY_HOST, parent.profilingProxyHost);
     profilingProxyPort =
         getPropertyIntegerValue(properties, PROFILING_PROXY_PORT, parent.profilingProxyPort);
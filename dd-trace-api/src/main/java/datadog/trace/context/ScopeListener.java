@@ -10,6 +10,11 @@ public interface ScopeListener {
    */
   void afterScopeActivated();
 
-  /** Called just after a scope is closed. */
+  /**
+   * Called just after a scope is closed.
+   *
+   * <p>The scope it restores, if any, is already the active scope. {@link #afterScopeActivated()}
+   * is called for it right after.
+   */
   void afterScopeClosed();
 }
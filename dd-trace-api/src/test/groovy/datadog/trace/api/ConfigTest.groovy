@@ -39,6 +39,7 @@ import static datadog.trace.api.Config.PREFIX
 import static datadog.trace.api.Config.PRIORITY_SAMPLING
 import static datadog.trace.api.Config.PROFILING_API_KEY_FILE_OLD
 import static datadog.trace.api.Config.PROFILING_API_KEY_FILE_VERY_OLD
+import static datadog.trace.api.Config.PROFILING_CHUNKED_UPLOAD
 import static datadog.trace.api.Config.PROFILING_ENABLED
 import static datadog.trace.api.Config.PROFILING_EXCEPTION_HISTOGRAM_MAX_COLLECTION_SIZE
 import static datadog.trace.api.Config.PROFILING_EXCEPTION_HISTOGRAM_TOP_ITEMS
@@ -52,6 +53,8 @@ import static datadog.trace.api.Config.PROFILING_START_FORCE_FIRST
 import static datadog.trace.api.Config.PROFILING_TAGS
 import static datadog.trace.api.Config.PROFILING_TEMPLATE_OVERRIDE_FILE
 import static datadog.trace.api.Config.PROFILING_UPLOAD_COMPRESSION
+import static datadog.trace.api.Config.PROFILING_UPLOAD_COMPRESSION_LEVEL
+import static datadog.trace.api.Config.PROFILING_UPLOAD_STREAMING
 import static datadog.trace.api.Config.PROFILING_UPLOAD_PERIOD
 import static datadog.trace.api.Config.PROFILING_UPLOAD_TIMEOUT
 import static datadog.trace.api.Config.PROFILING_URL
@@ -68,12 +71,20 @@ import static datadog.trace.api.Config.SPLIT_BY_TAGS
 import static datadog.trace.api.Config.TAGS
 import static datadog.trace.api.Config.TRACE_AGENT_PORT
 import static datadog.trace.api.Config.TRACE_ENABLED
+import static datadog.trace.api.Config.TRACE_PROCESSING_WORKERS
 import static datadog.trace.api.Config.TRACE_RATE_LIMIT
 import static datadog.trace.api.Config.TRACE_REPORT_HOSTNAME
 import static datadog.trace.api.Config.TRACE_RESOLVER_ENABLED
 import static datadog.trace.api.Config.TRACE_SAMPLE_RATE
 import static datadog.trace.api.Config.TRACE_SAMPLING_OPERATION_RULES
 import static datadog.trace.api.Config.TRACE_SAMPLING_SERVICE_RULES
+import static datadog.trace.api.Config.TRACE_SERIALIZATION_BUFFER_POOL_DIRECT
+import static datadog.trace.api.Config.TRACE_SERIALIZATION_BUFFER_POOL_ENABLED
+import static datadog.trace.api.Config.TRACE_SERIALIZATION_DIRECT_ENCODER_ENABLED
+import static datadog.trace.api.Config.TRACE_SPILL_DIRECTORY
+import static datadog.trace.api.Config.TRACE_SPILL_ENABLED
+import static datadog.trace.api.Config.TRACE_SPILL_MAX_AGE
+import static datadog.trace.api.Config.TRACE_SPILL_MAX_SIZE
 import static datadog.trace.api.Config.WRITER_TYPE
 
 class ConfigTest extends DDSpecification {
@@ -145,15 +156,25 @@ class ConfigTest extends DDSpecification {
     config.healthMetricsEnabled == false
     config.healthMetricsStatsdHost == null
     config.healthMetricsStatsdPort == null
+    config.traceSerializationBufferPoolEnabled == false
+    config.traceSerializationBufferPoolDirect == false
+    config.traceSerializationDirectEncoderEnabled == false
+    config.traceProcessingWorkers == 1
+    config.traceSpillEnabled == false
+    config.traceSpillDirectory == null
+    config.traceSpillMaxSize == 64 * 1024 * 1024
+    config.traceSpillMaxAge == 3600
 
     config.profilingEnabled == false
     config.profilingUrl == null
     config.mergedProfilingTags == [(HOST_TAG): config.getHostName(), (RUNTIME_ID_TAG): config.getRuntimeId(), (SERVICE_TAG): config.serviceName, (LANGUAGE_TAG_KEY): LANGUAGE_TAG_VALUE]
     config.profilingStartDelay == 10
     config.profilingStartForceFirst == false
+    config.profilingChunkedUpload == false
     config.profilingUploadPeriod == 60
     config.profilingTemplateOverrideFile == null
     config.profilingUploadTimeout == 30
+    config.profilingUploadCompressionLevel == -1
     config.profilingProxyHost == null
     config.profilingProxyPort == Config.DEFAULT_PROFILING_PROXY_PORT
     config.profilingProxyUsername == null
@@ -210,6 +231,14 @@ class ConfigTest extends DDSpecification {
     prop.setProperty(HEALTH_METRICS_ENABLED, "true")
     prop.setProperty(HEALTH_METRICS_STATSD_HOST, "metrics statsd host")
     prop.setProperty(HEALTH_METRICS_STATSD_PORT, "654")
+    prop.setProperty(TRACE_SERIALIZATION_BUFFER_POOL_ENABLED, "true")
+    prop.setProperty(TRACE_SERIALIZATION_BUFFER_POOL_DIRECT, "true")
+    prop.setProperty(TRACE_SERIALIZATION_DIRECT_ENCODER_ENABLED, "true")
+    prop.setProperty(TRACE_PROCESSING_WORKERS, "4")
+    prop.setProperty(TRACE_SPILL_ENABLED, "true")
+    prop.setProperty(TRACE_SPILL_DIRECTORY, "/tmp/spill")
+    prop.setProperty(TRACE_SPILL_MAX_SIZE, "1024")
+    prop.setProperty(TRACE_SPILL_MAX_AGE, "60")
     prop.setProperty(TRACE_SAMPLING_SERVICE_RULES, "a:1")
     prop.setProperty(TRACE_SAMPLING_OPERATION_RULES, "b:1")
     prop.setProperty(TRACE_SAMPLE_RATE, ".5")
@@ -220,10 +249,13 @@ class ConfigTest extends DDSpecification {
     prop.setProperty(PROFILING_TAGS, "f:6,host:test-host")
     prop.setProperty(PROFILING_START_DELAY, "1111")
     prop.setProperty(PROFILING_START_FORCE_FIRST, "true")
+    prop.setProperty(PROFILING_CHUNKED_UPLOAD, "true")
     prop.setProperty(PROFILING_UPLOAD_PERIOD, "1112")
     prop.setProperty(PROFILING_TEMPLATE_OVERRIDE_FILE, "/path")
     prop.setProperty(PROFILING_UPLOAD_TIMEOUT, "1116")
     prop.setProperty(PROFILING_UPLOAD_COMPRESSION, "off")
+    prop.setProperty(PROFILING_UPLOAD_COMPRESSION_LEVEL, "6")
+    prop.setProperty(PROFILING_UPLOAD_STREAMING, "true")
     prop.setProperty(PROFILING_PROXY_HOST, "proxy-host")
     prop.setProperty(PROFILING_PROXY_PORT, "1118")
     prop.setProperty(PROFILING_PROXY_USERNAME, "proxy-username")
@@ -270,6 +302,14 @@ class ConfigTest extends DDSpecification {
     config.healthMetricsEnabled == true
     config.healthMetricsStatsdHost == "metrics statsd host"
     config.healthMetricsStatsdPort == 654
+    config.traceSerializationBufferPoolEnabled == true
+    config.traceSerializationBufferPoolDirect == true
+    config.traceSerializationDirectEncoderEnabled == true
+    config.traceProcessingWorkers == 4
+    config.traceSpillEnabled == true
+    config.traceSpillDirectory == "/tmp/spill"
+    config.traceSpillMaxSize == 1024
+    config.traceSpillMaxAge == 60
     config.traceSamplingServiceRules == [a: "1"]
     config.traceSamplingOperationRules == [b: "1"]
     config.traceSampleRate == 0.5
@@ -280,8 +320,11 @@ class ConfigTest extends DDSpecification {
     config.mergedProfilingTags == [b: "2", f: "6", (HOST_TAG): "test-host", (RUNTIME_ID_TAG): config.getRuntimeId(), (SERVICE_TAG): config.serviceName, (LANGUAGE_TAG_KEY): LANGUAGE_TAG_VALUE]
     config.profilingStartDelay == 1111
     config.profilingStartForceFirst == true
+    config.profilingChunkedUpload == true
     config.profilingUploadPeriod == 1112
     config.profilingUploadCompression == "off"
+    config.profilingUploadCompressionLevel == 6
+    config.profilingUploadStreaming
     config.profilingTemplateOverrideFile == "/path"
     config.profilingUploadTimeout == 1116
     config.profilingProxyHost == "proxy-host"
@@ -330,6 +373,14 @@ class ConfigTest extends DDSpecification {
     System.setProperty(PREFIX + HEALTH_METRICS_ENABLED, "true")
     System.setProperty(PREFIX + HEALTH_METRICS_STATSD_HOST, "metrics statsd host")
     System.setProperty(PREFIX + HEALTH_METRICS_STATSD_PORT, "654")
+    System.setProperty(PREFIX + TRACE_SERIALIZATION_BUFFER_POOL_ENABLED, "true")
+    System.setProperty(PREFIX + TRACE_SERIALIZATION_BUFFER_POOL_DIRECT, "true")
+    System.setProperty(PREFIX + TRACE_SERIALIZATION_DIRECT_ENCODER_ENABLED, "true")
+    System.setProperty(PREFIX + TRACE_PROCESSING_WORKERS, "4")
+    System.setProperty(PREFIX + TRACE_SPILL_ENABLED, "true")
+    System.setProperty(PREFIX + TRACE_SPILL_DIRECTORY, "/tmp/spill")
+    System.setProperty(PREFIX + TRACE_SPILL_MAX_SIZE, "1024")
+    System.setProperty(PREFIX + TRACE_SPILL_MAX_AGE, "60")
     System.setProperty(PREFIX + TRACE_SAMPLING_SERVICE_RULES, "a:1")
     System.setProperty(PREFIX + TRACE_SAMPLING_OPERATION_RULES, "b:1")
     System.setProperty(PREFIX + TRACE_SAMPLE_RATE, ".5")
@@ -340,10 +391,13 @@ class ConfigTest extends DDSpecification {
     System.setProperty(PREFIX + PROFILING_TAGS, "f:6,host:test-host")
     System.setProperty(PREFIX + PROFILING_START_DELAY, "1111")
     System.setProperty(PREFIX + PROFILING_START_FORCE_FIRST, "true")
+    System.setProperty(PREFIX + PROFILING_CHUNKED_UPLOAD, "true")
     System.setProperty(PREFIX + PROFILING_UPLOAD_PERIOD, "1112")
     System.setProperty(PREFIX + PROFILING_TEMPLATE_OVERRIDE_FILE, "/path")
     System.setProperty(PREFIX + PROFILING_UPLOAD_TIMEOUT, "1116")
     System.setProperty(PREFIX + PROFILING_UPLOAD_COMPRESSION, "off")
+    System.setProperty(PREFIX + PROFILING_UPLOAD_COMPRESSION_LEVEL, "6")
+    System.setProperty(PREFIX + PROFILING_UPLOAD_STREAMING, "true")
     System.setProperty(PREFIX + PROFILING_PROXY_HOST, "proxy-host")
     System.setProperty(PREFIX + PROFILING_PROXY_PORT, "1118")
     System.setProperty(PREFIX + PROFILING_PROXY_USERNAME, "proxy-username")
@@ -390,6 +444,14 @@ class ConfigTest extends DDSpecification {
     config.healthMetricsEnabled == true
     config.healthMetricsStatsdHost == "metrics statsd host"
     config.healthMetricsStatsdPort == 654
+    config.traceSerializationBufferPoolEnabled == true
+    config.traceSerializationBufferPoolDirect == true
+    config.traceSerializationDirectEncoderEnabled == true
+    config.traceProcessingWorkers == 4
+    config.traceSpillEnabled == true
+    config.traceSpillDirectory == "/tmp/spill"
+    config.traceSpillMaxSize == 1024
+    config.traceSpillMaxAge == 60
     config.traceSamplingServiceRules == [a: "1"]
     config.traceSamplingOperationRules == [b: "1"]
     config.traceSampleRate == 0.5
@@ -400,10 +462,13 @@ class ConfigTest extends DDSpecification {
     config.mergedProfilingTags == [b: "2", f: "6", (HOST_TAG): "test-host", (RUNTIME_ID_TAG): config.getRuntimeId(), (SERVICE_TAG): config.serviceName, (LANGUAGE_TAG_KEY): LANGUAGE_TAG_VALUE]
     config.profilingStartDelay == 1111
     config.profilingStartForceFirst == true
+    config.profilingChunkedUpload == true
     config.profilingUploadPeriod == 1112
     config.profilingTemplateOverrideFile == "/path"
     config.profilingUploadTimeout == 1116
     config.profilingUploadCompression == "off"
+    config.profilingUploadCompressionLevel == 6
+    config.profilingUploadStreaming
     config.profilingProxyHost == "proxy-host"
     config.profilingProxyPort == 1118
     config.profilingProxyUsername == "proxy-username"
@@ -1,6 +1,7 @@
 package datadog.opentracing.jfr.openjdk;
 
 import datadog.opentracing.DDSpanContext;
+import datadog.opentracing.IdUtils;
 import datadog.opentracing.jfr.DDScopeEvent;
 import datadog.trace.common.util.ThreadCpuTimeAccess;
 import jdk.jfr.Category;
@@ -18,8 +19,6 @@ import jdk.jfr.Timespan;
 @StackTrace(false)
 public final class ScopeEvent extends Event implements DDScopeEvent {
 
-  private static final int IDS_RADIX = 16;
-
   private final transient DDSpanContext spanContext;
 
   @Label("Trace Id")
@@ -64,9 +63,9 @@ public final class ScopeEvent extends Event implements DDScopeEvent {
       if (cpuTime > 0) {
         cpuTime = ThreadCpuTimeAccess.getCurrentThreadCpuTime() - cpuTime;
       }
-      traceId = spanContext.getTraceId().toString(IDS_RADIX);
-      spanId = spanContext.getSpanId().toString(IDS_RADIX);
-      parentId = spanContext.getParentId().toString(IDS_RADIX);
+      traceId = IdUtils.toHexString(spanContext.getTraceIdAsLong());
+      spanId = IdUtils.toHexString(spanContext.getSpanIdAsLong());
+      parentId = IdUtils.toHexString(spanContext.getParentIdAsLong());
       serviceName = spanContext.getServiceName();
       resourceName = spanContext.getResourceName();
       operationName = spanContext.getOperationName();
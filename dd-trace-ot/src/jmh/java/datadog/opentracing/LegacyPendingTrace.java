@@ -0,0 +1,142 @@
+package datadog.opentracing;
+
+import datadog.opentracing.scopemanager.ContinuableScope;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Baseline for {@link PendingTraceBenchmark}: the trace assembly {@link PendingTrace} did before
+ * spans carried their pending state. Each span and continuation gets a weak reference while
+ * pending, registering and expiring lock it, and partial flushes lock the whole trace.
+ *
+ * <p>The references used to be kept in a field of the span and in a concurrent set, they are now
+ * kept in a concurrent map, which costs the same single map operation per registration. The
+ * periodic cleaning of collected references isn't reproduced, it ran off the measured threads.
+ */
+final class LegacyPendingTrace extends PendingTrace {
+  private final DDTracer tracer;
+  private final long traceId;
+
+  private final ReferenceQueue<Object> referenceQueue = new ReferenceQueue<>();
+  private final ConcurrentHashMap<Object, WeakReference<Object>> weakReferences =
+      new ConcurrentHashMap<>();
+
+  private final ConcurrentLinkedDeque<DDSpan> finishedSpans = new ConcurrentLinkedDeque<>();
+  private final AtomicInteger pendingReferenceCount = new AtomicInteger(0);
+  private final AtomicInteger completedSpanCount = new AtomicInteger(0);
+  private final AtomicReference<WeakReference<DDSpan>> rootSpan = new AtomicReference<>();
+  private final AtomicBoolean isWritten = new AtomicBoolean(false);
+
+  LegacyPendingTrace(final DDTracer tracer, final long traceId) {
+    super(tracer, traceId);
+    this.tracer = tracer;
+    this.traceId = traceId;
+  }
+
+  @Override
+  public void registerSpan(final DDSpan span) {
+    if (traceId != span.context().getTraceIdAsLong()) {
+      return;
+    }
+    rootSpan.compareAndSet(null, new WeakReference<>(span));
+    register(span);
+  }
+
+  @Override
+  public void addSpan(final DDSpan span) {
+    if (span.getDurationNano() == 0 || traceId != span.getTraceIdAsLong()) {
+      return;
+    }
+    if (!isWritten.get()) {
+      finishedSpans.addFirst(span);
+      completedSpanCount.incrementAndGet();
+    }
+    expire(span);
+  }
+
+  @Override
+  public DDSpan getRootSpan() {
+    final WeakReference<DDSpan> rootRef = rootSpan.get();
+    return rootRef == null ? null : rootRef.get();
+  }
+
+  @Override
+  public void registerContinuation(final ContinuableScope.Continuation continuation) {
+    register(continuation);
+  }
+
+  @Override
+  public void cancelContinuation(final ContinuableScope.Continuation continuation) {
+    expire(continuation);
+  }
+
+  private void register(final Object pending) {
+    synchronized (pending) {
+      if (weakReferences.putIfAbsent(pending, new WeakReference<>(pending, referenceQueue))
+          == null) {
+        pendingReferenceCount.incrementAndGet();
+      }
+    }
+  }
+
+  private void expire(final Object pending) {
+    synchronized (pending) {
+      final WeakReference<Object> ref = weakReferences.remove(pending);
+      if (ref != null) {
+        ref.clear();
+        expireReference();
+      }
+    }
+  }
+
+  private void expireReference() {
+    final int count = pendingReferenceCount.decrementAndGet();
+    if (count == 0) {
+      write();
+    } else {
+      final int partialFlushMinSpans = tracer.getPartialFlushMinSpans();
+      if (partialFlushMinSpans > 0 && size() > partialFlushMinSpans) {
+        synchronized (this) {
+          if (size() > partialFlushMinSpans) {
+            final DDSpan rootSpan = getRootSpan();
+            final List<DDSpan> partialTrace = new ArrayList<>(size());
+            final Iterator<DDSpan> it = finishedSpans.iterator();
+            while (it.hasNext()) {
+              final DDSpan span = it.next();
+              if (span != rootSpan) {
+                partialTrace.add(span);
+                completedSpanCount.decrementAndGet();
+                it.remove();
+              }
+            }
+            tracer.write(partialTrace);
+          }
+        }
+      }
+    }
+  }
+
+  private synchronized void write() {
+    if (isWritten.compareAndSet(false, true) && !isEmpty()) {
+      tracer.write(this);
+    }
+  }
+
+  @Override
+  public Iterator<DDSpan> iterator() {
+    return finishedSpans.iterator();
+  }
+
+  @Override
+  public int size() {
+    return completedSpanCount.get();
+  }
+}
@@ -0,0 +1,102 @@
+package datadog.opentracing;
+
+import datadog.trace.api.Config;
+import datadog.trace.api.sampling.PrioritySampling;
+import datadog.trace.common.writer.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Fan-out trace assembly: many threads starting and finishing children of the same root span, so
+ * they all register and complete spans on the same {@link PendingTrace}. The {@code legacy}
+ * implementation is the previous trace assembly, kept in {@link LegacyPendingTrace} as a baseline.
+ */
+@State(Scope.Benchmark)
+@Threads(8)
+public class PendingTraceBenchmark {
+
+  /** Bounds the trace size, the root span is never finished. */
+  @Param({"100", "1000"})
+  public int partialFlushMinSpans;
+
+  @Param({"chunked", "legacy"})
+  public String implementation;
+
+  private DDTracer tracer;
+  private DDSpan rootSpan;
+
+  @Setup(Level.Iteration)
+  public void setup() {
+    final Properties properties = new Properties();
+    properties.setProperty(Config.PARTIAL_FLUSH_MIN_SPANS, String.valueOf(partialFlushMinSpans));
+    tracer = DDTracer.builder().config(Config.get(properties)).writer(new NoopWriter()).build();
+    final DDSpan span = (DDSpan) tracer.buildSpan("root").start();
+    rootSpan = "legacy".equals(implementation) ? legacyRootSpan(span) : span;
+  }
+
+  /** Same root span, but in a trace assembled by the baseline, which its children then join. */
+  private DDSpan legacyRootSpan(final DDSpan span) {
+    final DDSpanContext context = span.context();
+    return new DDSpan(
+        0,
+        new DDSpanContext(
+            context.getTraceIdAsLong(),
+            context.getSpanIdAsLong(),
+            0,
+            context.getServiceName(),
+            context.getOperationName(),
+            context.getResourceName(),
+            PrioritySampling.UNSET,
+            null,
+            null,
+            false,
+            null,
+            null,
+            new LegacyPendingTrace(tracer, context.getTraceIdAsLong()),
+            tracer,
+            Collections.<String, String>emptyMap()));
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    tracer.close();
+  }
+
+  @Benchmark
+  public Object finishChildSpan() {
+    final DDSpan span = (DDSpan) tracer.buildSpan("child").asChildOf(rootSpan).start();
+    span.finish();
+    return span;
+  }
+
+  @Benchmark
+  public Object finishChildSpanWithGrandChild() {
+    final DDSpan span = (DDSpan) tracer.buildSpan("child").asChildOf(rootSpan).start();
+    tracer.buildSpan("grandchild").asChildOf(span).start().finish();
+    span.finish();
+    return span;
+  }
+
+  private static final class NoopWriter implements Writer {
+    @Override
+    public void write(final List<DDSpan> trace) {}
+
+    @Override
+    public void start() {}
+
+    @Override
+    public void close() {}
+
+    @Override
+    public void incrementTraceCount() {}
+  }
+}
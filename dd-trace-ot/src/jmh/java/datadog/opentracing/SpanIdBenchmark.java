@@ -0,0 +1,64 @@
+package datadog.opentracing;
+
+import datadog.trace.common.writer.ListWriter;
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMapAdapter;
+import java.util.HashMap;
+import java.util.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Span creation and propagation paths that generate, copy, parse or print trace and span ids.
+ * Spans are not finished so only the id handling and the span construction are measured.
+ */
+@State(Scope.Thread)
+public class SpanIdBenchmark {
+  private static final String SPAN_NAME = "span-id-benchmark";
+
+  private final ListWriter writer = new ListWriter();
+  private final DDTracer tracer = new DDTracer(writer);
+
+  private Span parent;
+  private Map<String, String> headers;
+
+  @Setup(Level.Iteration)
+  public void setup() {
+    writer.clear();
+    parent = tracer.buildSpan(SPAN_NAME).start();
+    headers = new HashMap<>();
+    tracer.inject(parent.context(), Format.Builtin.HTTP_HEADERS, new TextMapAdapter(headers));
+  }
+
+  @Benchmark
+  public Object startRootSpan() {
+    return tracer.buildSpan(SPAN_NAME).ignoreActiveSpan().start();
+  }
+
+  @Benchmark
+  public Object startChildSpan() {
+    return tracer.buildSpan(SPAN_NAME).asChildOf(parent).start();
+  }
+
+  @Benchmark
+  public Object injectHeaders() {
+    final Map<String, String> carrier = new HashMap<>();
+    tracer.inject(
+        tracer.buildSpan(SPAN_NAME).ignoreActiveSpan().start().context(),
+        Format.Builtin.HTTP_HEADERS,
+        new TextMapAdapter(carrier));
+    return carrier;
+  }
+
+  @Benchmark
+  public Object extractHeaders() {
+    final SpanContext context =
+        tracer.extract(Format.Builtin.HTTP_HEADERS, new TextMapAdapter(headers));
+    return tracer.buildSpan(SPAN_NAME).asChildOf(context).start();
+  }
+}
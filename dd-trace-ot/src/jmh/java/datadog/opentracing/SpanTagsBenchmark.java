@@ -0,0 +1,66 @@
+package datadog.opentracing;
+
+import datadog.trace.common.writer.ListWriter;
+import io.opentracing.Span;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Builds, tags and finishes spans, then reads their tags as the trace processor and the
+ * serialization do. Run with {@code -prof gc} to compare the allocation rate of the tag storage.
+ */
+@State(Scope.Thread)
+public class SpanTagsBenchmark {
+  private static final String SPAN_NAME = "span-tags-benchmark";
+
+  @Param({"0", "4", "12"})
+  public int tagCount;
+
+  private final ListWriter writer = new ListWriter();
+  private final DDTracer tracer = new DDTracer(writer);
+
+  private String[] keys;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    keys = new String[tagCount];
+    for (int i = 0; i < tagCount; i++) {
+      keys[i] = "tag." + i;
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void clear() {
+    writer.clear();
+  }
+
+  @Benchmark
+  public Object buildAndFinish() {
+    final Span span = tracer.buildSpan(SPAN_NAME).ignoreActiveSpan().start();
+    for (int i = 0; i < keys.length; i++) {
+      span.setTag(keys[i], i);
+    }
+    span.finish();
+    writer.clear();
+    return span;
+  }
+
+  @Benchmark
+  public long buildFinishAndReadTags() {
+    final DDSpan span = (DDSpan) tracer.buildSpan(SPAN_NAME).ignoreActiveSpan().start();
+    for (int i = 0; i < keys.length; i++) {
+      span.setTag(keys[i], "value");
+    }
+    span.finish();
+    writer.clear();
+    long hash = 0;
+    for (final Object value : span.getTags().values()) {
+      hash += value.hashCode();
+    }
+    return hash + span.getTags().size();
+  }
+}
@@ -0,0 +1,65 @@
+package datadog.trace.common.sampling;
+
+import datadog.opentracing.DDSpan;
+import datadog.opentracing.DDTracer;
+import datadog.trace.common.sampling.SamplingRule.OperationSamplingRule;
+import datadog.trace.common.sampling.SamplingRule.ServiceSamplingRule;
+import datadog.trace.common.writer.ListWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Finds the sampling rule of a span matching only the last rule, which is the worst case of the
+ * linear scan. Rules alternate between service and operation rules, either exact names or patterns.
+ */
+@State(Scope.Thread)
+public class SamplingRuleBenchmark {
+
+  @Param({"1", "10", "100", "1000"})
+  public int ruleCount;
+
+  @Param({"true", "false"})
+  public boolean literal;
+
+  private List<SamplingRule> rules;
+  private SamplingRuleIndex index;
+  private DDSpan span;
+
+  @Setup
+  public void setup() {
+    rules = new ArrayList<>(ruleCount);
+    for (int i = 0; i < ruleCount; i++) {
+      final String name = literal ? "name-" + i : "name-" + i + "[a-z]*";
+      final RateSampler sampler = new DeterministicSampler(0.5);
+      rules.add(
+          i % 2 == 0
+              ? new ServiceSamplingRule(name, sampler)
+              : new OperationSamplingRule(name, sampler));
+    }
+    index = new SamplingRuleIndex(rules);
+
+    final DDTracer tracer = DDTracer.builder().writer(new ListWriter()).build();
+    span = (DDSpan) tracer.buildSpan("name-" + (ruleCount - 1)).start();
+    span.setServiceName("name-" + (ruleCount - 1));
+  }
+
+  @Benchmark
+  public Object linearScan() {
+    for (final SamplingRule rule : rules) {
+      if (rule.matches(span)) {
+        return rule;
+      }
+    }
+    return null;
+  }
+
+  @Benchmark
+  public Object index() {
+    return index.findFirstMatch(span);
+  }
+}
@@ -0,0 +1,96 @@
+package datadog.trace.common.serialization;
+
+import static datadog.trace.common.serialization.DirectMsgpackFormatWriter.DIRECT_MSGPACK_WRITER;
+import static datadog.trace.common.serialization.MsgpackFormatWriter.MSGPACK_WRITER;
+
+import datadog.opentracing.DDSpan;
+import datadog.opentracing.DDTracer;
+import datadog.trace.common.writer.ListWriter;
+import io.opentracing.Span;
+import java.io.IOException;
+import java.util.List;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.buffer.ArrayBufferOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the generic msgpack writer with the direct span encoder on a few realistic trace
+ * shapes. Both write into the same reused buffer, so only the encoding cost is measured.
+ */
+@State(Scope.Thread)
+public class MsgpackFormatWriterBenchmark {
+
+  @Param({"single", "web", "fanout"})
+  public String shape;
+
+  private final ArrayBufferOutput output = new ArrayBufferOutput(64 * 1024);
+  private final MessagePacker packer = MessagePack.newDefaultPacker(output);
+
+  private List<DDSpan> trace;
+
+  @Setup
+  public void setup() {
+    final ListWriter writer = new ListWriter();
+    final DDTracer tracer = new DDTracer(writer);
+    if ("single".equals(shape)) {
+      final Span span = tracer.buildSpan("custom.operation").start();
+      span.setTag("component", "trace");
+      span.finish();
+    } else if ("web".equals(shape)) {
+      final Span root = tracer.buildSpan("servlet.request").start();
+      root.setTag("span.kind", "server");
+      root.setTag("component", "java-web-servlet");
+      root.setTag("http.method", "GET");
+      root.setTag("http.url", "http://localhost:8080/users/12345");
+      root.setTag("http.status_code", 200);
+      for (int i = 0; i < 10; i++) {
+        final Span child = tracer.buildSpan("database.query").asChildOf(root).start();
+        child.setTag("span.kind", "client");
+        child.setTag("component", "java-jdbc-prepared_statement");
+        child.setTag("db.type", "postgresql");
+        child.setTag("db.instance", "users");
+        child.setTag("db.statement", "SELECT * FROM users WHERE id = ? AND tenant = ?");
+        child.finish();
+      }
+      root.finish();
+    } else {
+      final Span root = tracer.buildSpan("worker.batch").start();
+      root.setBaggageItem("tenant", "benchmark");
+      root.setBaggageItem("request-origin", "scheduler");
+      for (int i = 0; i < 99; i++) {
+        final Span child = tracer.buildSpan("http.request").asChildOf(root).start();
+        child.setTag("span.kind", "client");
+        child.setTag("component", "okhttp");
+        child.setTag("http.method", "POST");
+        child.setTag("http.url", "http://backend:9000/items/" + i);
+        child.setTag("http.status_code", 201);
+        child.finish();
+      }
+      root.finish();
+    }
+    trace = writer.firstTrace();
+  }
+
+  @Benchmark
+  public long genericWriter() throws IOException {
+    return write(MSGPACK_WRITER);
+  }
+
+  @Benchmark
+  public long directWriter() throws IOException {
+    return write(DIRECT_MSGPACK_WRITER);
+  }
+
+  private long write(final MsgpackFormatWriter formatWriter) throws IOException {
+    formatWriter.writeTrace(trace, packer);
+    packer.flush();
+    final long size = output.getSize();
+    output.clear();
+    return size;
+  }
+}
@@ -0,0 +1,88 @@
+package datadog.trace.common.writer.ddagent;
+
+import static datadog.trace.common.serialization.MsgpackFormatWriter.MSGPACK_WRITER;
+
+import datadog.opentracing.DDSpan;
+import datadog.opentracing.DDTracer;
+import datadog.trace.common.writer.ListWriter;
+import io.opentracing.Span;
+import java.io.IOException;
+import java.util.List;
+import okio.Buffer;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares serializing a trace to a standalone byte array against serializing it into pooled
+ * buffers, including the write to the request body.
+ *
+ * <p>Run with {@code -prof gc} and compare {@code gc.alloc.rate.norm} to get the bytes allocated
+ * per trace for each mode.
+ */
+@State(Scope.Thread)
+public class TraceSerializationBenchmark {
+
+  @Param({"1", "10", "100"})
+  public int spansPerTrace;
+
+  @Param({"false", "true"})
+  public boolean direct;
+
+  private final DDAgentApi api = new DDAgentApi("localhost", 8126, null);
+  private final Buffer sink = new Buffer();
+
+  private List<DDSpan> trace;
+  private PooledBufferOutput pooledOutput;
+  private MessagePacker pooledPacker;
+
+  @Setup
+  public void setup() {
+    final ListWriter writer = new ListWriter();
+    final DDTracer tracer = new DDTracer(writer);
+    final Span root = tracer.buildSpan("servlet.request").start();
+    root.setTag("http.method", "GET");
+    root.setTag("http.url", "http://localhost:8080/benchmark");
+    root.setTag("http.status_code", 200);
+    for (int i = 1; i < spansPerTrace; i++) {
+      final Span child = tracer.buildSpan("database.query").asChildOf(root).start();
+      child.setTag("db.statement", "SELECT * FROM benchmark WHERE id = ?");
+      child.setTag("db.type", "postgresql");
+      child.finish();
+    }
+    root.finish();
+    trace = writer.firstTrace();
+
+    pooledOutput = new PooledBufferOutput(new BufferPool(64 * 1024, 128, direct));
+    pooledPacker = MessagePack.newDefaultPacker(pooledOutput);
+  }
+
+  @Benchmark
+  public long byteArrays() throws IOException {
+    final SerializedTrace serializedTrace = SerializedTrace.wrap(api.serializeTrace(trace));
+    return send(serializedTrace);
+  }
+
+  @Benchmark
+  public long pooledBuffers() throws IOException {
+    MSGPACK_WRITER.writeTrace(trace, pooledPacker);
+    pooledPacker.flush();
+    final SerializedTrace serializedTrace = pooledOutput.finishTrace();
+    try {
+      return send(serializedTrace);
+    } finally {
+      serializedTrace.release();
+    }
+  }
+
+  private long send(final SerializedTrace serializedTrace) throws IOException {
+    serializedTrace.writeTo(sink);
+    final long size = sink.size();
+    sink.clear();
+    return size;
+  }
+}
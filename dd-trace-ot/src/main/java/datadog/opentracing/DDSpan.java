@@ -8,7 +8,6 @@ import io.opentracing.Span;
 import io.opentracing.tag.Tag;
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.lang.ref.WeakReference;
 import java.math.BigInteger;
 import java.util.HashMap;
 import java.util.Map;
@@ -50,8 +49,8 @@ public class DDSpan implements Span, MutableSpan {
   /** Delegates to for handling the logs if present. */
   private final LogHandler logHandler;
 
-  /** Implementation detail. Stores the weak reference to this span. Used by TraceCollection. */
-  volatile WeakReference<DDSpan> ref;
+  /** Implementation detail. Whether this span is still pending in its {@link PendingTrace}. */
+  volatile int pendingState;
 
   /**
    * Spans should be constructed using the builder, not by calling the constructor directly.
@@ -130,7 +129,7 @@ public class DDSpan implements Span, MutableSpan {
    * @return true if root, false otherwise
    */
   public final boolean isRootSpan() {
-    return BigInteger.ZERO.equals(context.getParentId());
+    return context.getParentIdAsLong() == 0;
   }
 
   @Override
@@ -329,18 +328,33 @@ public class DDSpan implements Span, MutableSpan {
     return context.getServiceName();
   }
 
+  /** Allocates, prefer {@link #getTraceIdAsLong()}. */
   public BigInteger getTraceId() {
     return context.getTraceId();
   }
 
+  public long getTraceIdAsLong() {
+    return context.getTraceIdAsLong();
+  }
+
+  /** Allocates, prefer {@link #getSpanIdAsLong()}. */
   public BigInteger getSpanId() {
     return context.getSpanId();
   }
 
+  public long getSpanIdAsLong() {
+    return context.getSpanIdAsLong();
+  }
+
+  /** Allocates, prefer {@link #getParentIdAsLong()}. */
   public BigInteger getParentId() {
     return context.getParentId();
   }
 
+  public long getParentIdAsLong() {
+    return context.getParentIdAsLong();
+  }
+
   @Override
   public String getResourceName() {
     return context.getResourceName();
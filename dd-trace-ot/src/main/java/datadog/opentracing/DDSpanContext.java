@@ -1,15 +1,14 @@
 package datadog.opentracing;
 
 import datadog.opentracing.decorators.AbstractDecorator;
+import datadog.opentracing.propagation.InjectedHeaders;
+import datadog.trace.api.Config;
 import datadog.trace.api.DDTags;
 import datadog.trace.api.sampling.PrioritySampling;
 import java.math.BigInteger;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicReference;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -26,8 +25,6 @@ public class DDSpanContext implements io.opentracing.SpanContext {
   public static final String SAMPLE_RATE_KEY = "_sample_rate";
   public static final String ORIGIN_KEY = "_dd.origin";
 
-  private static final Map<String, Number> EMPTY_METRICS = Collections.emptyMap();
-
   // Shared with other span contexts
   /** For technical reasons, the ref to the original tracer */
   private final DDTracer tracer;
@@ -36,15 +33,25 @@ public class DDSpanContext implements io.opentracing.SpanContext {
   private final PendingTrace trace;
 
   /** Baggage is associated with the whole trace and shared with other spans */
-  private final Map<String, String> baggageItems;
+  private final TagMap<String> baggageItems;
+  /** Incremented on every baggage change, to detect stale injected headers */
+  private volatile int baggageVersion;
+
+  /** Headers last injected by each propagation style, see {@link InjectedHeaders} */
+  private volatile InjectedHeaders[] injectedHeaders;
 
   // Not Shared with other span contexts
-  private final BigInteger traceId;
-  private final BigInteger spanId;
-  private final BigInteger parentId;
+  /** Unsigned 64 bit ids, see {@link IdUtils} */
+  private final long traceId;
+  private final long spanId;
+  private final long parentId;
+
+  /** Decimal representations of the ids, computed on first use */
+  private String traceIdString;
+  private String spanIdString;
 
   /** Tags are associated to the current span, they will not propagate to the children span */
-  private final Map<String, Object> tags = new ConcurrentHashMap<>();
+  private final TagMap<Object> tags;
 
   /** The service name is required, otherwise the span are dropped by the agent */
   private volatile String serviceName;
@@ -66,7 +73,7 @@ public class DDSpanContext implements io.opentracing.SpanContext {
   /** The origin of the trace. (eg. Synthetics) */
   private final String origin;
   /** Metrics on the span */
-  private final AtomicReference<Map<String, Number>> metrics = new AtomicReference<>();
+  private final TagMap<Number> metrics = new TagMap<>();
 
   // Additional Metadata
   private final String threadName = Thread.currentThread().getName();
@@ -74,6 +81,7 @@ public class DDSpanContext implements io.opentracing.SpanContext {
 
   private final Map<String, String> serviceNameMappings;
 
+  /** Adapter for callers still using {@link BigInteger} ids. */
   public DDSpanContext(
       final BigInteger traceId,
       final BigInteger spanId,
@@ -90,28 +98,53 @@ public class DDSpanContext implements io.opentracing.SpanContext {
       final PendingTrace trace,
       final DDTracer tracer,
       final Map<String, String> serviceNameMappings) {
+    this(
+        IdUtils.fromBigInteger(traceId),
+        IdUtils.fromBigInteger(spanId),
+        IdUtils.fromBigInteger(parentId),
+        serviceName,
+        operationName,
+        resourceName,
+        samplingPriority,
+        origin,
+        baggageItems,
+        errorFlag,
+        spanType,
+        tags,
+        trace,
+        tracer,
+        serviceNameMappings);
+  }
+
+  public DDSpanContext(
+      final long traceId,
+      final long spanId,
+      final long parentId,
+      final String serviceName,
+      final String operationName,
+      final String resourceName,
+      final int samplingPriority,
+      final String origin,
+      final Map<String, String> baggageItems,
+      final boolean errorFlag,
+      final String spanType,
+      final Map<String, Object> tags,
+      final PendingTrace trace,
+      final DDTracer tracer,
+      final Map<String, String> serviceNameMappings) {
 
     assert tracer != null;
     assert trace != null;
     this.tracer = tracer;
     this.trace = trace;
 
-    assert traceId != null;
-    assert spanId != null;
-    assert parentId != null;
     this.traceId = traceId;
     this.spanId = spanId;
     this.parentId = parentId;
 
-    if (baggageItems == null) {
-      this.baggageItems = new ConcurrentHashMap<>(0);
-    } else {
-      this.baggageItems = new ConcurrentHashMap<>(baggageItems);
-    }
-
-    if (tags != null) {
-      this.tags.putAll(tags);
-    }
+    this.baggageItems =
+        baggageItems == null ? new TagMap<String>() : new TagMap<String>(baggageItems);
+    this.tags = tags == null ? new TagMap<>() : new TagMap<>(tags);
 
     this.serviceNameMappings = serviceNameMappings;
     setServiceName(serviceName);
@@ -126,32 +159,58 @@ public class DDSpanContext implements io.opentracing.SpanContext {
     }
 
     if (origin != null) {
-      this.tags.put(ORIGIN_KEY, origin);
+      this.tags.set(ORIGIN_KEY, origin);
     }
-    this.tags.put(DDTags.THREAD_NAME, threadName);
-    this.tags.put(DDTags.THREAD_ID, threadId);
+    this.tags.set(DDTags.THREAD_NAME, threadName);
+    this.tags.set(DDTags.THREAD_ID, threadId);
   }
 
+  /** Allocates, prefer {@link #getTraceIdAsLong()}. */
   public BigInteger getTraceId() {
+    return IdUtils.toBigInteger(traceId);
+  }
+
+  public long getTraceIdAsLong() {
     return traceId;
   }
 
   @Override
   public String toTraceId() {
-    return traceId.toString();
+    // Racy but idempotent, like String.hashCode()
+    String traceIdString = this.traceIdString;
+    if (traceIdString == null) {
+      traceIdString = IdUtils.toString(traceId);
+      this.traceIdString = traceIdString;
+    }
+    return traceIdString;
   }
 
+  /** Allocates, prefer {@link #getParentIdAsLong()}. */
   public BigInteger getParentId() {
+    return IdUtils.toBigInteger(parentId);
+  }
+
+  public long getParentIdAsLong() {
     return parentId;
   }
 
+  /** Allocates, prefer {@link #getSpanIdAsLong()}. */
   public BigInteger getSpanId() {
+    return IdUtils.toBigInteger(spanId);
+  }
+
+  public long getSpanIdAsLong() {
     return spanId;
   }
 
   @Override
   public String toSpanId() {
-    return spanId.toString();
+    String spanIdString = this.spanIdString;
+    if (spanIdString == null) {
+      spanIdString = IdUtils.toString(spanId);
+      this.spanIdString = spanIdString;
+    }
+    return spanIdString;
   }
 
   public String getServiceName() {
@@ -285,7 +344,11 @@ public class DDSpanContext implements io.opentracing.SpanContext {
   }
 
   public void setBaggageItem(final String key, final String value) {
-    baggageItems.put(key, value);
+    // the version is bumped after the change, so headers rendered in between are re-rendered
+    synchronized (baggageItems) {
+      baggageItems.set(key, value);
+      baggageVersion++;
+    }
   }
 
   public String getBaggageItem(final String key) {
@@ -304,6 +367,27 @@ public class DDSpanContext implements io.opentracing.SpanContext {
     return baggageItems.entrySet();
   }
 
+  public int getBaggageVersion() {
+    return baggageVersion;
+  }
+
+  /** @return the headers last injected by the propagation style, or null */
+  public InjectedHeaders getInjectedHeaders(final Config.PropagationStyle style) {
+    final InjectedHeaders[] injectedHeaders = this.injectedHeaders;
+    return injectedHeaders == null ? null : injectedHeaders[style.ordinal()];
+  }
+
+  public void setInjectedHeaders(
+      final Config.PropagationStyle style, final InjectedHeaders headers) {
+    // Racy but idempotent: a lost update only means rendering the headers again
+    InjectedHeaders[] injectedHeaders = this.injectedHeaders;
+    if (injectedHeaders == null) {
+      injectedHeaders = new InjectedHeaders[Config.PropagationStyle.values().length];
+      this.injectedHeaders = injectedHeaders;
+    }
+    injectedHeaders[style.ordinal()] = headers;
+  }
+
   public PendingTrace getTrace() {
     return trace;
   }
@@ -313,19 +397,16 @@ public class DDSpanContext implements io.opentracing.SpanContext {
     return tracer;
   }
 
+  /** @return a read only view of the metrics */
   public Map<String, Number> getMetrics() {
-    final Map<String, Number> metrics = this.metrics.get();
-    return metrics == null ? EMPTY_METRICS : metrics;
+    return metrics;
   }
 
   public void setMetric(final String key, final Number value) {
-    if (metrics.get() == null) {
-      metrics.compareAndSet(null, new ConcurrentHashMap<String, Number>());
-    }
     if (value instanceof Float) {
-      metrics.get().put(key, value.doubleValue());
+      metrics.set(key, value.doubleValue());
     } else {
-      metrics.get().put(key, value);
+      metrics.set(key, value);
     }
   }
   /**
@@ -334,9 +415,9 @@ public class DDSpanContext implements io.opentracing.SpanContext {
    * @param tag the tag-name
    * @param value the value of the tag. tags with null values are ignored.
    */
-  public synchronized void setTag(final String tag, final Object value) {
+  public void setTag(final String tag, final Object value) {
     if (value == null || (value instanceof String && ((String) value).isEmpty())) {
-      tags.remove(tag);
+      tags.delete(tag);
       return;
     }
 
@@ -358,12 +439,13 @@ public class DDSpanContext implements io.opentracing.SpanContext {
     }
 
     if (addTag) {
-      tags.put(tag, value);
+      tags.set(tag, value);
     }
   }
 
-  public synchronized Map<String, Object> getTags() {
-    return Collections.unmodifiableMap(tags);
+  /** @return a read only view of the tags */
+  public Map<String, Object> getTags() {
+    return tags;
   }
 
   @Override
@@ -371,11 +453,11 @@ public class DDSpanContext implements io.opentracing.SpanContext {
     final StringBuilder s =
         new StringBuilder()
             .append("DDSpan [ t_id=")
-            .append(traceId)
+            .append(toTraceId())
             .append(", s_id=")
-            .append(spanId)
+            .append(toSpanId())
             .append(", p_id=")
-            .append(parentId)
+            .append(IdUtils.toString(parentId))
             .append("] trace=")
             .append(getServiceName())
             .append("/")
@@ -45,7 +45,6 @@ import java.util.ServiceLoader;
 import java.util.SortedSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.ThreadLocalRandom;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -495,11 +494,19 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
     writer.incrementTraceCount();
   }
 
+  /** Counts a trace that was garbage collected before being written, it is not reported. */
+  void onAbandonedTrace() {
+    incrementTraceCount();
+    if (writer instanceof DDAgentWriter) {
+      ((DDAgentWriter) writer).onAbandonedTrace();
+    }
+  }
+
   @Override
   public String getTraceId() {
     final Span activeSpan = activeSpan();
     if (activeSpan instanceof DDSpan) {
-      return ((DDSpan) activeSpan).getTraceId().toString();
+      return ((DDSpan) activeSpan).context().toTraceId();
     }
     return "0";
   }
@@ -508,7 +515,7 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
   public String getSpanId() {
     final Span activeSpan = activeSpan();
     if (activeSpan instanceof DDSpan) {
-      return ((DDSpan) activeSpan).getSpanId().toString();
+      return ((DDSpan) activeSpan).context().toSpanId();
     }
     return "0";
   }
@@ -719,17 +726,6 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
       return this;
     }
 
-    private BigInteger generateNewId() {
-      // It is **extremely** unlikely to generate the value "0" but we still need to handle that
-      // case
-      BigInteger value;
-      do {
-        value = new StringCachingBigInteger(63, ThreadLocalRandom.current());
-      } while (value.signum() == 0);
-
-      return value;
-    }
-
     /**
      * Build the SpanContext, if the actual span has a parent, the following attributes must be
      * propagated: - ServiceName - Baggage - Trace (a list of all spans related) - SpanType
@@ -737,9 +733,9 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
      * @return the context
      */
     private DDSpanContext buildSpanContext() {
-      final BigInteger traceId;
-      final BigInteger spanId = generateNewId();
-      final BigInteger parentSpanId;
+      final long traceId;
+      final long spanId = IdUtils.generateId();
+      final long parentSpanId;
       final Map<String, String> baggage;
       final PendingTrace parentTrace;
       final int samplingPriority;
@@ -760,8 +756,8 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
       // root span, parentContext will be null at this point.
       if (parentContext instanceof DDSpanContext) {
         final DDSpanContext ddsc = (DDSpanContext) parentContext;
-        traceId = ddsc.getTraceId();
-        parentSpanId = ddsc.getSpanId();
+        traceId = ddsc.getTraceIdAsLong();
+        parentSpanId = ddsc.getSpanIdAsLong();
         baggage = ddsc.getBaggageItems();
         parentTrace = ddsc.getTrace();
         samplingPriority = PrioritySampling.UNSET;
@@ -774,14 +770,14 @@ public class DDTracer implements io.opentracing.Tracer, Closeable, datadog.trace
         if (parentContext instanceof ExtractedContext) {
           // Propagate external trace
           final ExtractedContext extractedContext = (ExtractedContext) parentContext;
-          traceId = extractedContext.getTraceId();
-          parentSpanId = extractedContext.getSpanId();
+          traceId = extractedContext.getTraceIdAsLong();
+          parentSpanId = extractedContext.getSpanIdAsLong();
           samplingPriority = extractedContext.getSamplingPriority();
           baggage = extractedContext.getBaggage();
         } else {
           // Start a new trace
-          traceId = generateNewId();
-          parentSpanId = BigInteger.ZERO;
+          traceId = IdUtils.generateId();
+          parentSpanId = 0;
           samplingPriority = PrioritySampling.UNSET;
           baggage = null;
         }
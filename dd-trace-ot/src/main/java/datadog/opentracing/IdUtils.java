@@ -0,0 +1,95 @@
+package datadog.opentracing;
+
+import java.math.BigInteger;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Trace and span ids are unsigned 64 bit integers, stored in a {@code long}: ids above {@link
+ * Long#MAX_VALUE} are negative. Java 7 doesn't have the unsigned helpers of {@link Long}, hence
+ * this class.
+ */
+public final class IdUtils {
+  private static final BigInteger TWO_POW_64 = BigInteger.ONE.shiftLeft(64);
+
+  private IdUtils() {}
+
+  /** @return a random, non zero, 63 bit id. */
+  public static long generateId() {
+    // It is **extremely** unlikely to generate the value "0" but we still need to handle that case
+    long id;
+    do {
+      id = ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE;
+    } while (id == 0);
+    return id;
+  }
+
+  /** @return the unsigned decimal representation of the id. */
+  public static String toString(final long id) {
+    if (id >= 0) {
+      return Long.toString(id);
+    }
+    final long quotient = (id >>> 1) / 5;
+    final long remainder = id - quotient * 10;
+    return Long.toString(quotient) + remainder;
+  }
+
+  /** @return the unsigned lowercase hexadecimal representation of the id. */
+  public static String toHexString(final long id) {
+    return Long.toHexString(id);
+  }
+
+  public static BigInteger toBigInteger(final long id) {
+    final BigInteger value = BigInteger.valueOf(id);
+    return id >= 0 ? value : value.add(TWO_POW_64);
+  }
+
+  /** @throws IllegalArgumentException if the value doesn't fit in 64 unsigned bits. */
+  public static long fromBigInteger(final BigInteger value) {
+    if (value.signum() < 0 || value.bitLength() > 64) {
+      throw new IllegalArgumentException(
+          "ID out of range, must be between 0 and 2^64-1, got: " + value);
+    }
+    return value.longValue();
+  }
+
+  /**
+   * Parses an unsigned 64 bit id. Leading zeros are accepted, signs are not.
+   *
+   * @throws NumberFormatException if the value is not a number or doesn't fit in 64 unsigned bits.
+   */
+  public static long parseUnsigned(final String value, final int radix)
+      throws NumberFormatException {
+    final int length = value.length();
+    if (length == 0) {
+      throw new NumberFormatException("Empty ID");
+    }
+    // (2^64 - 1) / radix and (2^64 - 1) % radix, with unsigned arithmetic.
+    long maxQuotient = ((-1L >>> 1) / radix) << 1;
+    long maxRemainder = -1L - maxQuotient * radix;
+    if (compareUnsigned(maxRemainder, radix) >= 0) {
+      maxQuotient++;
+      maxRemainder -= radix;
+    }
+
+    long result = 0;
+    for (int i = 0; i < length; i++) {
+      final int digit = Character.digit(value.charAt(i), radix);
+      if (digit < 0) {
+        throw new NumberFormatException("Invalid ID: " + value);
+      }
+      final int comparison = compareUnsigned(result, maxQuotient);
+      if (comparison > 0 || (comparison == 0 && digit > maxRemainder)) {
+        throw new NumberFormatException(
+            "ID out of range, must be between 0 and 2^64-1, got: " + value);
+      }
+      result = result * radix + digit;
+    }
+    return result;
+  }
+
+  private static int compareUnsigned(final long left, final long right) {
+    final long flippedLeft = left ^ Long.MIN_VALUE;
+    final long flippedRight = right ^ Long.MIN_VALUE;
+    return flippedLeft < flippedRight ? -1 : (flippedLeft == flippedRight ? 0 : 1);
+  }
+}
@@ -1,7 +1,6 @@
 package datadog.opentracing;
 
-import datadog.common.exec.CommonTaskExecutor;
-import datadog.common.exec.CommonTaskExecutor.Task;
+import datadog.common.exec.DaemonThreadFactory;
 import datadog.opentracing.scopemanager.ContinuableScope;
 import datadog.trace.common.util.Clock;
 import java.io.Closeable;
@@ -9,25 +8,53 @@ import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.math.BigInteger;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Collects the finished spans of a trace, and writes them once none of its spans or continuations
+ * is pending anymore.
+ *
+ * <ul>
+ *   <li>Pending spans and continuations are only counted, each of them carries its own state so
+ *       registering doesn't allocate or lock.
+ *   <li>Finished spans are appended to a chunked buffer. Partial flushes detach whole chunks rather
+ *       than removing spans one by one.
+ *   <li>A single weak reference to the trace, rather than one per span, tells when the trace was
+ *       garbage collected with unfinished spans. Such traces are dropped.
+ * </ul>
+ *
+ * Iterating gives a snapshot of the finished spans, most recently finished first.
+ */
 @Slf4j
-public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
+public class PendingTrace extends AbstractCollection<DDSpan> {
   private static final AtomicReference<SpanCleaner> SPAN_CLEANER = new AtomicReference<>();
 
+  private static final int NEW = 0;
+  private static final int PENDING = 1;
+  private static final int DONE = 2;
+
+  private static final AtomicIntegerFieldUpdater<DDSpan> SPAN_STATE =
+      AtomicIntegerFieldUpdater.newUpdater(DDSpan.class, "pendingState");
+  private static final AtomicIntegerFieldUpdater<PendingReference> CONTINUATION_STATE =
+      AtomicIntegerFieldUpdater.newUpdater(PendingReference.class, "pendingState");
+  private static final AtomicReferenceFieldUpdater<PendingTrace, DDSpan> ROOT_SPAN =
+      AtomicReferenceFieldUpdater.newUpdater(PendingTrace.class, DDSpan.class, "rootSpan");
+
   private final DDTracer tracer;
-  private final BigInteger traceId;
+  private final long traceId;
 
   // TODO: consider moving these time fields into DDTracer to ensure that traces have precise
   // relative time
@@ -36,37 +63,55 @@ public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
   /** Nano second ticks value at trace start */
   private final long startNanoTicks;
 
-  private final ReferenceQueue referenceQueue = new ReferenceQueue();
-  private final Set<WeakReference<?>> weakReferences =
-      Collections.newSetFromMap(new ConcurrentHashMap<WeakReference<?>, Boolean>());
-
   private final AtomicInteger pendingReferenceCount = new AtomicInteger(0);
 
-  // We must maintain a separate count because ConcurrentLinkedDeque.size() is a linear operation.
+  /** Finished spans, the head is the chunk currently appended to. */
+  private final AtomicReference<SpanChunk> finishedSpans =
+      new AtomicReference<>(new SpanChunk(null));
+
+  // We must maintain a separate count because the chunks can't tell it without being walked.
   private final AtomicInteger completedSpanCount = new AtomicInteger(0);
+
   /**
    * During a trace there are cases where the root span must be accessed (e.g. priority sampling and
    * trace-search tags).
    *
-   * <p>Use a weak ref because we still need to handle buggy cases where the root span is not
-   * correctly closed (see SpanCleaner).
-   *
-   * <p>The root span will be available in non-buggy cases because it has either finished and
-   * strongly ref'd in this queue or is unfinished and ref'd in a ContinuableScope.
+   * <p>A strong reference is fine: the span and the trace reference each other, so it doesn't keep
+   * an abandoned trace from being garbage collected.
    */
-  private final AtomicReference<WeakReference<DDSpan>> rootSpan = new AtomicReference<>();
+  private volatile DDSpan rootSpan;
 
   /** Ensure a trace is never written multiple times */
   private final AtomicBoolean isWritten = new AtomicBoolean(false);
 
+  /**
+   * Set while a partial flush has the finished spans detached. The final write can't happen
+   * meanwhile without missing the root span, so it is handed over to the flushing thread.
+   */
+  private final AtomicBoolean isFlushing = new AtomicBoolean(false);
+
+  /**
+   * Set once the trace is complete, and cleared by the thread doing the final write: either the
+   * one completing the trace, or the partial flush it was handed over to.
+   */
+  private final AtomicBoolean isWriteRequested = new AtomicBoolean(false);
+
+  /** Registered with the cleaner until the trace is written. Null if there is no cleaner. */
+  private final TraceReference reference;
+
+  /** Adapter for callers still using {@link BigInteger} ids. */
   PendingTrace(final DDTracer tracer, final BigInteger traceId) {
+    this(tracer, IdUtils.fromBigInteger(traceId));
+  }
+
+  PendingTrace(final DDTracer tracer, final long traceId) {
     this.tracer = tracer;
     this.traceId = traceId;
 
     startTimeNano = Clock.currentNanoTime();
     startNanoTicks = Clock.currentNanoTicks();
 
-    addPendingTrace();
+    reference = addPendingTrace();
   }
 
   /**
@@ -84,48 +129,38 @@ public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
   }
 
   public void registerSpan(final DDSpan span) {
-    if (traceId == null || span.context() == null) {
-      log.error(
-          "Failed to register span ({}) due to null PendingTrace traceId or null span context",
-          span);
+    if (span.context() == null) {
+      log.error("Failed to register span ({}) due to null span context", span);
       return;
     }
-    if (!traceId.equals(span.context().getTraceId())) {
+    if (traceId != span.context().getTraceIdAsLong()) {
       log.debug("{} - span registered for wrong trace ({})", span, traceId);
       return;
     }
-    rootSpan.compareAndSet(null, new WeakReference<>(span));
-    synchronized (span) {
-      if (null == span.ref) {
-        span.ref = new WeakReference<DDSpan>(span, referenceQueue);
-        weakReferences.add(span.ref);
-        final int count = pendingReferenceCount.incrementAndGet();
+    ROOT_SPAN.compareAndSet(this, null, span);
+    if (SPAN_STATE.compareAndSet(span, NEW, PENDING)) {
+      final int count = pendingReferenceCount.incrementAndGet();
+      if (log.isDebugEnabled()) {
         log.debug("traceId: {} -- registered span {}. count = {}", traceId, span, count);
-      } else {
-        log.debug("span {} already registered in trace {}", span, traceId);
       }
+    } else {
+      log.debug("span {} already registered in trace {}", span, traceId);
     }
   }
 
   private void expireSpan(final DDSpan span) {
-    if (traceId == null || span.context() == null) {
-      log.error(
-          "Failed to expire span ({}) due to null PendingTrace traceId or null span context", span);
+    if (span.context() == null) {
+      log.error("Failed to expire span ({}) due to null span context", span);
       return;
     }
-    if (!traceId.equals(span.context().getTraceId())) {
+    if (traceId != span.context().getTraceIdAsLong()) {
       log.debug("{} - span expired for wrong trace ({})", span, traceId);
       return;
     }
-    synchronized (span) {
-      if (null == span.ref) {
-        log.debug("span {} not registered in trace {}", span, traceId);
-      } else {
-        weakReferences.remove(span.ref);
-        span.ref.clear();
-        span.ref = null;
-        expireReference();
-      }
+    if (SPAN_STATE.compareAndSet(span, PENDING, DONE)) {
+      expireReference();
+    } else {
+      log.debug("span {} not registered in trace {}", span, traceId);
     }
   }
 
@@ -134,18 +169,18 @@ public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
       log.debug("{} - added to trace, but not complete.", span);
       return;
     }
-    if (traceId == null || span.context() == null) {
-      log.error(
-          "Failed to add span ({}) due to null PendingTrace traceId or null span context", span);
+    if (span.context() == null) {
+      log.error("Failed to add span ({}) due to null span context", span);
       return;
     }
-    if (!traceId.equals(span.getTraceId())) {
+    if (traceId != span.getTraceIdAsLong()) {
       log.debug("{} - added to a mismatched trace.", span);
       return;
     }
 
     if (!isWritten.get()) {
-      addFirst(span);
+      append(span);
+      completedSpanCount.incrementAndGet();
     } else {
       log.debug("{} - finished after trace reported.", span);
     }
@@ -153,8 +188,7 @@ public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
   }
 
   public DDSpan getRootSpan() {
-    final WeakReference<DDSpan> rootRef = rootSpan.get();
-    return rootRef == null ? null : rootRef.get();
+    return rootSpan;
   }
 
   /**
@@ -162,30 +196,25 @@ public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
    * completed, so we need to wait till continuations are de-referenced before reporting.
    */
   public void registerContinuation(final ContinuableScope.Continuation continuation) {
-    synchronized (continuation) {
-      if (continuation.ref == null) {
-        continuation.ref =
-            new WeakReference<ContinuableScope.Continuation>(continuation, referenceQueue);
-        weakReferences.add(continuation.ref);
-        final int count = pendingReferenceCount.incrementAndGet();
+    if (CONTINUATION_STATE.compareAndSet(continuation, NEW, PENDING)) {
+      final int count = pendingReferenceCount.incrementAndGet();
+      if (log.isDebugEnabled()) {
         log.debug(
-            "traceId: {} -- registered continuation {}. count = {}", traceId, continuation, count);
-      } else {
-        log.debug("continuation {} already registered in trace {}", continuation, traceId);
+            "traceId: {} -- registered continuation {}. count = {}",
+            traceId,
+            continuation,
+            count);
       }
+    } else {
+      log.debug("continuation {} already registered in trace {}", continuation, traceId);
     }
   }
 
   public void cancelContinuation(final ContinuableScope.Continuation continuation) {
-    synchronized (continuation) {
-      if (continuation.ref == null) {
-        log.debug("continuation {} not registered in trace {}", continuation, traceId);
-      } else {
-        weakReferences.remove(continuation.ref);
-        continuation.ref.clear();
-        continuation.ref = null;
-        expireReference();
-      }
+    if (CONTINUATION_STATE.compareAndSet(continuation, PENDING, DONE)) {
+      expireReference();
+    } else {
+      log.debug("continuation {} not registered in trace {}", continuation, traceId);
     }
   }
 
@@ -194,67 +223,105 @@ public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
     if (count == 0) {
       write();
     } else {
-      if (tracer.getPartialFlushMinSpans() > 0 && size() > tracer.getPartialFlushMinSpans()) {
-        synchronized (this) {
-          if (size() > tracer.getPartialFlushMinSpans()) {
-            final DDSpan rootSpan = getRootSpan();
-            final List<DDSpan> partialTrace = new ArrayList(size());
-            final Iterator<DDSpan> it = iterator();
-            while (it.hasNext()) {
-              final DDSpan span = it.next();
-              if (span != rootSpan) {
-                partialTrace.add(span);
-                completedSpanCount.decrementAndGet();
-                it.remove();
-              }
-            }
-            log.debug("Writing partial trace {} of size {}", traceId, partialTrace.size());
-            tracer.write(partialTrace);
-          }
-        }
+      final int partialFlushMinSpans = tracer.getPartialFlushMinSpans();
+      if (partialFlushMinSpans > 0 && size() > partialFlushMinSpans) {
+        partialFlush(partialFlushMinSpans);
       }
     }
-    log.debug("traceId: {} -- Expired reference. count = {}", traceId, count);
+    if (log.isDebugEnabled()) {
+      log.debug("traceId: {} -- Expired reference. count = {}", traceId, count);
+    }
   }
 
-  private synchronized void write() {
+  private void partialFlush(final int partialFlushMinSpans) {
+    // Concurrent partial flushes would only find what the first one left, so skip them.
+    if (!isFlushing.compareAndSet(false, true)) {
+      return;
+    }
+    List<DDSpan> partialTrace = null;
+    try {
+      try {
+        partialTrace = detachPartialTrace(partialFlushMinSpans);
+      } finally {
+        isFlushing.set(false);
+      }
+      if (partialTrace != null) {
+        log.debug("Writing partial trace {} of size {}", traceId, partialTrace.size());
+        tracer.write(partialTrace);
+      }
+    } finally {
+      // The trace may have completed while the spans were detached, then its write is ours.
+      writeIfRequested();
+    }
+  }
+
+  /** @return the finished spans but the root span, or null if there aren't enough of them. */
+  private List<DDSpan> detachPartialTrace(final int partialFlushMinSpans) {
+    if (isWritten.get() || size() <= partialFlushMinSpans) {
+      return null;
+    }
+    final DDSpan rootSpan = getRootSpan();
+    final List<DDSpan> partialTrace = new ArrayList<>(size());
+    boolean rootSpanFinished = false;
+    // The chunks are detached, so spans finishing meanwhile go to a fresh chunk.
+    for (SpanChunk chunk = detachFinishedSpans(); chunk != null; chunk = chunk.previous) {
+      rootSpanFinished |= chunk.drainTo(partialTrace, rootSpan);
+    }
+    if (rootSpanFinished) {
+      append(rootSpan);
+    }
+    completedSpanCount.addAndGet(-partialTrace.size());
+    return partialTrace;
+  }
+
+  private void write() {
     if (isWritten.compareAndSet(false, true)) {
       removePendingTrace();
-      if (!isEmpty()) {
-        log.debug("Writing {} spans to {}.", size(), tracer.writer);
-        tracer.write(this);
+      isWriteRequested.set(true);
+      // Partial flushes check isWritten first thing, so a flush seen here is either finishing or
+      // giving up. Either way it calls writeIfRequested once done, so there's no need to wait.
+      if (!isFlushing.get()) {
+        writeIfRequested();
       }
     }
   }
 
-  public synchronized boolean clean() {
-    Reference ref;
-    int count = 0;
-    while ((ref = referenceQueue.poll()) != null) {
-      weakReferences.remove(ref);
-      if (isWritten.compareAndSet(false, true)) {
-        removePendingTrace();
-        // preserve throughput count.
-        // Don't report the trace because the data comes from buggy uses of the api and is suspect.
-        tracer.incrementTraceCount();
-      }
-      count++;
-      expireReference();
+  /**
+   * Does the final write, if it was requested and no other thread did it yet. Both the thread
+   * completing the trace and a partial flush call it, only the first to find the request does the
+   * write.
+   */
+  private void writeIfRequested() {
+    if (isWriteRequested.compareAndSet(true, false) && !isEmpty()) {
+      log.debug("Writing {} spans to {}.", size(), tracer.writer);
+      tracer.write(this);
     }
-    if (count > 0) {
-      // TODO attempt to flatten and report if top level spans are finished. (for accurate metrics)
-      log.debug(
-          "trace {} : {} unfinished spans garbage collected. Trace will not report.",
-          traceId,
-          count);
+  }
+
+  private void append(final DDSpan span) {
+    while (true) {
+      final SpanChunk chunk = finishedSpans.get();
+      if (chunk.tryAdd(span)) {
+        return;
+      }
+      // Losing the race is fine, the winner's chunk is used on the next attempt.
+      finishedSpans.compareAndSet(chunk, new SpanChunk(chunk));
     }
-    return count > 0;
+  }
+
+  private SpanChunk detachFinishedSpans() {
+    final SpanChunk detached = finishedSpans.getAndSet(new SpanChunk(null));
+    detached.seal();
+    return detached;
   }
 
   @Override
-  public void addFirst(final DDSpan span) {
-    super.addFirst(span);
-    completedSpanCount.incrementAndGet();
+  public Iterator<DDSpan> iterator() {
+    final List<DDSpan> spans = new ArrayList<>(size());
+    for (SpanChunk chunk = finishedSpans.get(); chunk != null; chunk = chunk.previous) {
+      chunk.copyTo(spans);
+    }
+    return Collections.unmodifiableList(spans).iterator();
   }
 
   @Override
@@ -262,20 +329,28 @@ public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
     return completedSpanCount.get();
   }
 
-  private void addPendingTrace() {
+  private TraceReference addPendingTrace() {
     final SpanCleaner cleaner = SPAN_CLEANER.get();
-    if (cleaner != null) {
-      cleaner.pendingTraces.add(this);
-    }
+    return cleaner == null ? null : cleaner.register(this);
   }
 
   private void removePendingTrace() {
-    final SpanCleaner cleaner = SPAN_CLEANER.get();
-    if (cleaner != null) {
-      cleaner.pendingTraces.remove(this);
+    if (reference != null) {
+      reference.unregister();
     }
   }
 
+  /**
+   * Drops the traces that were garbage collected while some of their spans or continuations were
+   * still pending. Done by the cleaner thread, exposed for tests.
+   *
+   * @return true if any trace was dropped
+   */
+  public static boolean clean() {
+    final SpanCleaner cleaner = SPAN_CLEANER.get();
+    return cleaner != null && cleaner.clean();
+  }
+
   static void initialize() {
     final SpanCleaner oldCleaner = SPAN_CLEANER.getAndSet(new SpanCleaner());
     if (oldCleaner != null) {
@@ -290,48 +365,174 @@ public class PendingTrace extends ConcurrentLinkedDeque<DDSpan> {
     }
   }
 
-  // FIXME: it should be possible to simplify this logic and avod having SpanCleaner and
-  // SpanCleanerTask
-  private static class SpanCleaner implements Runnable, Closeable {
-    private static final long CLEAN_FREQUENCY = 1;
+  /**
+   * Base class of the continuations, carrying their pending state. The state is only visible to
+   * this package, so that nothing else can corrupt the count of pending references.
+   */
+  public abstract static class PendingReference {
+    volatile int pendingState;
 
-    private final Set<PendingTrace> pendingTraces =
-        Collections.newSetFromMap(new ConcurrentHashMap<PendingTrace, Boolean>());
+    protected PendingReference() {}
+  }
 
-    public SpanCleaner() {
-      CommonTaskExecutor.INSTANCE.scheduleAtFixedRate(
-          SpanCleanerTask.INSTANCE,
-          this,
-          0,
-          CLEAN_FREQUENCY,
-          TimeUnit.SECONDS,
-          "Pending trace cleaner");
+  /**
+   * Block of finished spans, linked to the previous (older) block. Slots are claimed with an atomic
+   * counter, then filled, so appending never locks.
+   */
+  private static final class SpanChunk {
+    private static final int FIRST_CAPACITY = 8;
+    private static final int MAX_CAPACITY = 256;
+    // Far beyond any capacity, so that claiming a slot fails once sealed.
+    private static final int SEALED = Integer.MAX_VALUE / 2;
+
+    private final SpanChunk previous;
+    private final AtomicReferenceArray<DDSpan> spans;
+    private final AtomicInteger claimed = new AtomicInteger(0);
+    /** Slots claimed before sealing, only meaningful once sealed. */
+    private volatile int claimedWhenSealed = -1;
+
+    SpanChunk(final SpanChunk previous) {
+      this.previous = previous;
+      spans =
+          new AtomicReferenceArray<>(
+              previous == null
+                  ? FIRST_CAPACITY
+                  : Math.min(previous.spans.length() * 2, MAX_CAPACITY));
     }
 
-    @Override
-    public void run() {
-      for (final PendingTrace trace : pendingTraces) {
-        trace.clean();
+    /** @return false if the chunk is full or sealed. */
+    boolean tryAdd(final DDSpan span) {
+      final int index = claimed.getAndIncrement();
+      if (index < spans.length()) {
+        spans.set(index, span);
+        return true;
       }
+      return false;
     }
 
-    @Override
-    public void close() {
-      // Make sure that whatever was left over gets cleaned up
-      run();
+    void seal() {
+      claimedWhenSealed = claimed.getAndSet(SEALED);
+    }
+
+    private int filledSlots() {
+      final int sealed = claimedWhenSealed;
+      return Math.min(sealed < 0 ? claimed.get() : sealed, spans.length());
+    }
+
+    /**
+     * Copies the spans of a sealed (or full) chunk, waiting for the appenders that claimed a slot
+     * but didn't fill it yet. Only the head chunk is ever sealed, the previous ones are full.
+     *
+     * @return true if the excluded span was found, and left out.
+     */
+    boolean drainTo(final List<DDSpan> destination, final DDSpan excluded) {
+      boolean found = false;
+      for (int i = filledSlots() - 1; i >= 0; i--) {
+        DDSpan span;
+        while ((span = spans.get(i)) == null) {
+          Thread.yield();
+        }
+        if (span == excluded) {
+          found = true;
+        } else {
+          destination.add(span);
+        }
+      }
+      return found;
+    }
+
+    /** Snapshot copy, skipping the slots being filled. */
+    void copyTo(final List<DDSpan> destination) {
+      for (int i = filledSlots() - 1; i >= 0; i--) {
+        final DDSpan span = spans.get(i);
+        if (span != null) {
+          destination.add(span);
+        }
+      }
     }
   }
 
-  /*
-   * Important to use explicit class to avoid implicit hard references to cleaners from within executor.
+  /** Weak reference to a pending trace, enqueued if the trace is collected before being written. */
+  private static final class TraceReference extends WeakReference<PendingTrace> {
+    private final SpanCleaner cleaner;
+    private final DDTracer tracer;
+    private final long traceId;
+
+    TraceReference(final PendingTrace trace, final SpanCleaner cleaner) {
+      super(trace, cleaner.referenceQueue);
+      this.cleaner = cleaner;
+      tracer = trace.tracer;
+      traceId = trace.traceId;
+    }
+
+    void unregister() {
+      cleaner.pendingTraces.remove(this);
+      clear();
+    }
+  }
+
+  /**
+   * Drops the traces that were garbage collected before being written. A dedicated thread blocks on
+   * the reference queue, so the cost is proportional to the number of abandoned traces instead of
+   * the number of pending ones.
    */
-  private static class SpanCleanerTask implements Task<SpanCleaner> {
+  private static class SpanCleaner implements Runnable, Closeable {
+    private final ReferenceQueue<PendingTrace> referenceQueue = new ReferenceQueue<>();
+    private final Set<TraceReference> pendingTraces =
+        Collections.newSetFromMap(new ConcurrentHashMap<TraceReference, Boolean>());
+    private final Thread thread;
 
-    static final SpanCleanerTask INSTANCE = new SpanCleanerTask();
+    public SpanCleaner() {
+      thread = DaemonThreadFactory.TRACE_CLEANER.newThread(this);
+      thread.start();
+    }
+
+    TraceReference register(final PendingTrace trace) {
+      final TraceReference reference = new TraceReference(trace, this);
+      pendingTraces.add(reference);
+      return reference;
+    }
+
+    boolean clean() {
+      boolean cleaned = false;
+      Reference<? extends PendingTrace> polled;
+      while ((polled = referenceQueue.poll()) != null) {
+        cleaned |= onCollected((TraceReference) polled);
+      }
+      return cleaned;
+    }
+
+    private boolean onCollected(final TraceReference reference) {
+      if (!pendingTraces.remove(reference)) {
+        return false;
+      }
+      // preserve throughput count.
+      // Don't report the trace because the data comes from buggy uses of the api and is suspect.
+      reference.tracer.onAbandonedTrace();
+      log.debug(
+          "trace {} : unfinished spans garbage collected. Trace will not report.",
+          reference.traceId);
+      return true;
+    }
 
     @Override
-    public void run(final SpanCleaner target) {
-      target.run();
+    public void run() {
+      while (!Thread.currentThread().isInterrupted()) {
+        try {
+          onCollected((TraceReference) referenceQueue.remove());
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (final Throwable e) {
+          log.debug("Failed to clean up an abandoned trace", e);
+        }
+      }
+    }
+
+    @Override
+    public void close() {
+      thread.interrupt();
+      // Make sure that whatever was left over gets cleaned up
+      clean();
     }
   }
 }
@@ -0,0 +1,193 @@
+package datadog.opentracing;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Compact map used for the tags, metrics and baggage of a span. Keys and values are stored next to
+ * each other in an open addressed array, which is shared and empty until the first entry is set.
+ *
+ * <p>Spans are mostly written by a single thread, so writes take the (uncontended) lock of the map
+ * and reads don't lock. Adding an entry without growing writes into the current array, growing or
+ * removing copies it: readers either see an entry or not, never a partial table. Other threads see
+ * all the entries once the span is published, which happens when it is finished.
+ *
+ * <p>The {@link Map} view is read only, mutations go through {@link #set} and {@link #delete}.
+ */
+final class TagMap<V> extends AbstractMap<String, V> {
+  private static final Object[] EMPTY = new Object[0];
+  private static final int MIN_SLOTS = 8;
+
+  /** Key at even indexes, its value at the next one. At most half of the slots are used. */
+  private volatile Object[] table = EMPTY;
+
+  private volatile int size;
+
+  TagMap() {}
+
+  TagMap(final Map<String, ? extends V> entries) {
+    for (final Map.Entry<String, ? extends V> entry : entries.entrySet()) {
+      set(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /** Sets the value of the key, or removes the key when the value is null. */
+  synchronized void set(final String key, final V value) {
+    if (value == null) {
+      delete(key);
+      return;
+    }
+    Object[] table = this.table;
+    final int index = indexOf(table, key);
+    if (index >= 0) {
+      table[index + 1] = value;
+      return;
+    }
+    final boolean grow = (size + 1) * 2 > table.length / 2;
+    if (grow) {
+      table = copy(table, Math.max(MIN_SLOTS, table.length) * 2, null);
+    }
+    insert(table, key, value);
+    if (grow) {
+      this.table = table;
+    }
+    size++;
+  }
+
+  synchronized void delete(final String key) {
+    final Object[] table = this.table;
+    if (indexOf(table, key) < 0) {
+      return;
+    }
+    this.table = size == 1 ? EMPTY : copy(table, table.length, key);
+    size--;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V get(final Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    final Object[] table = this.table;
+    final int index = indexOf(table, key);
+    // The value can still be null if the entry is being added by another thread.
+    return index < 0 ? null : (V) table[index + 1];
+  }
+
+  @Override
+  public Set<Map.Entry<String, V>> entrySet() {
+    return new EntrySet();
+  }
+
+  private static int indexOf(final Object[] table, final Object key) {
+    if (table.length == 0) {
+      return -1;
+    }
+    final int mask = (table.length >> 1) - 1;
+    int slot = hash(key) & mask;
+    while (true) {
+      final Object candidate = table[slot << 1];
+      if (candidate == null) {
+        return -1;
+      }
+      if (candidate.equals(key)) {
+        return slot << 1;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  /** The key must not be in the table already. */
+  private static void insert(final Object[] table, final String key, final Object value) {
+    final int mask = (table.length >> 1) - 1;
+    int slot = hash(key) & mask;
+    while (table[slot << 1] != null) {
+      slot = (slot + 1) & mask;
+    }
+    // Value first, a reader finding the key with a null value ignores the entry.
+    table[(slot << 1) + 1] = value;
+    table[slot << 1] = key;
+  }
+
+  private static Object[] copy(final Object[] table, final int length, final Object excluded) {
+    final Object[] copy = new Object[length];
+    for (int i = 0; i < table.length; i += 2) {
+      final Object key = table[i];
+      if (key != null && !key.equals(excluded)) {
+        insert(copy, (String) key, table[i + 1]);
+      }
+    }
+    return copy;
+  }
+
+  private static int hash(final Object key) {
+    final int hash = key.hashCode();
+    return hash ^ (hash >>> 16);
+  }
+
+  private final class EntrySet extends AbstractSet<Map.Entry<String, V>> {
+    @Override
+    public Iterator<Map.Entry<String, V>> iterator() {
+      return new EntryIterator<>(table);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+
+  /** Iterates over the entries of a table, a snapshot if the map is only mutated by growing. */
+  private static final class EntryIterator<V> implements Iterator<Map.Entry<String, V>> {
+    private final Object[] table;
+    private int index = -2;
+
+    EntryIterator(final Object[] table) {
+      this.table = table;
+      advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return index < table.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map.Entry<String, V> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final Map.Entry<String, V> entry =
+          new SimpleImmutableEntry<>((String) table[index], (V) table[index + 1]);
+      advance();
+      return entry;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+
+    private void advance() {
+      do {
+        index += 2;
+      } while (index < table.length && (table[index] == null || table[index + 1] == null));
+    }
+  }
+}
@@ -3,13 +3,12 @@ package datadog.opentracing.propagation;
 import static datadog.opentracing.propagation.HttpCodec.validateUInt64BitsID;
 
 import datadog.opentracing.DDSpanContext;
+import datadog.opentracing.IdUtils;
+import datadog.trace.api.Config;
 import datadog.trace.api.sampling.PrioritySampling;
 import io.opentracing.SpanContext;
-import io.opentracing.propagation.TextMapExtract;
 import io.opentracing.propagation.TextMapInject;
-import java.math.BigInteger;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 
@@ -34,22 +33,20 @@ class B3HttpCodec {
     // This class should not be created. This also makes code coverage checks happy.
   }
 
-  public static class Injector implements HttpCodec.Injector {
+  public static class Injector extends HttpCodec.StyleInjector {
+
+    public Injector() {
+      super(Config.PropagationStyle.B3, true);
+    }
 
     @Override
-    public void inject(final DDSpanContext context, final TextMapInject carrier) {
-      try {
-        carrier.put(TRACE_ID_KEY, context.getTraceId().toString(HEX_RADIX).toLowerCase());
-        carrier.put(SPAN_ID_KEY, context.getSpanId().toString(HEX_RADIX).toLowerCase());
-
-        if (context.lockSamplingPriority()) {
-          carrier.put(
-              SAMPLING_PRIORITY_KEY, convertSamplingPriority(context.getSamplingPriority()));
-        }
-        log.debug("{} - B3 parent context injected", context.getTraceId());
-      } catch (final NumberFormatException e) {
-        log.debug(
-            "Cannot parse context id(s): {} {}", context.getTraceId(), context.getSpanId(), e);
+    void render(
+        final DDSpanContext context, final int samplingPriority, final TextMapInject carrier) {
+      carrier.put(TRACE_ID_KEY, IdUtils.toHexString(context.getTraceIdAsLong()));
+      carrier.put(SPAN_ID_KEY, IdUtils.toHexString(context.getSpanIdAsLong()));
+
+      if (samplingPriority != PrioritySampling.UNSET) {
+        carrier.put(SAMPLING_PRIORITY_KEY, convertSamplingPriority(samplingPriority));
       }
     }
 
@@ -58,84 +55,64 @@ class B3HttpCodec {
     }
   }
 
-  public static class Extractor implements HttpCodec.Extractor {
-
-    private final Map<String, String> taggedHeaders;
+  public static class Extractor extends HttpCodec.StyleExtractor {
+    private static final int TRACE_ID = 0;
+    private static final int SPAN_ID = 1;
+    private static final int SAMPLING_PRIORITY = 2;
 
     public Extractor(final Map<String, String> taggedHeaders) {
-      this.taggedHeaders = new HashMap<>();
-      for (final Map.Entry<String, String> mapping : taggedHeaders.entrySet()) {
-        this.taggedHeaders.put(mapping.getKey().trim().toLowerCase(), mapping.getValue());
-      }
+      super(taggedHeaders, null, TRACE_ID_KEY, SPAN_ID_KEY, SAMPLING_PRIORITY_KEY);
     }
 
     @Override
-    public SpanContext extract(final TextMapExtract carrier) {
-      try {
-        Map<String, String> tags = Collections.emptyMap();
-        BigInteger traceId = BigInteger.ZERO;
-        BigInteger spanId = BigInteger.ZERO;
-        int samplingPriority = PrioritySampling.UNSET;
-
-        for (final Map.Entry<String, String> entry : carrier) {
-          final String key = entry.getKey().toLowerCase();
-          final String value = entry.getValue();
-
-          if (value == null) {
-            continue;
-          }
-
-          if (TRACE_ID_KEY.equalsIgnoreCase(key)) {
-            final String trimmedValue;
-            final int length = value.length();
-            if (length > 32) {
-              log.debug("Header {} exceeded max length of 32: {}", TRACE_ID_KEY, value);
-              traceId = BigInteger.ZERO;
-              continue;
-            } else if (length > 16) {
-              trimmedValue = value.substring(length - 16);
-            } else {
-              trimmedValue = value;
-            }
-            traceId = validateUInt64BitsID(trimmedValue, HEX_RADIX);
-          } else if (SPAN_ID_KEY.equalsIgnoreCase(key)) {
-            spanId = validateUInt64BitsID(value, HEX_RADIX);
-          } else if (SAMPLING_PRIORITY_KEY.equalsIgnoreCase(key)) {
-            samplingPriority = convertSamplingPriority(value);
-          }
-
-          if (taggedHeaders.containsKey(key)) {
-            if (tags.isEmpty()) {
-              tags = new HashMap<>();
-            }
-            tags.put(taggedHeaders.get(key), HttpCodec.decode(value));
-          }
-        }
-
-        if (!BigInteger.ZERO.equals(traceId)) {
-          final ExtractedContext context =
-              new ExtractedContext(
-                  traceId,
-                  spanId,
-                  samplingPriority,
-                  null,
-                  Collections.<String, String>emptyMap(),
-                  tags);
-          context.lockSamplingPriority();
-
-          log.debug("{} - Parent context extracted", context.getTraceId());
-          return context;
-        } else if (!tags.isEmpty()) {
-          log.debug("Tags context extracted");
-          return new TagContext(null, tags);
-        }
-      } catch (final RuntimeException e) {
-        log.debug("Exception when extracting context", e);
+    SpanContext build(
+        final String[] values,
+        final int offset,
+        final Map<String, String> baggage,
+        final Map<String, String> tags) {
+      final String traceIdValue = values[offset + TRACE_ID];
+      final String spanIdValue = values[offset + SPAN_ID];
+      final String samplingPriorityValue = values[offset + SAMPLING_PRIORITY];
+      final long traceId = traceIdValue == null ? 0 : convertTraceId(traceIdValue);
+      final long spanId = spanIdValue == null ? 0 : validateUInt64BitsID(spanIdValue, HEX_RADIX);
+      final int samplingPriority =
+          samplingPriorityValue == null
+              ? PrioritySampling.UNSET
+              : convertSamplingPriority(samplingPriorityValue);
+
+      if (traceId != 0) {
+        final ExtractedContext context =
+            new ExtractedContext(
+                traceId,
+                spanId,
+                samplingPriority,
+                null,
+                Collections.<String, String>emptyMap(),
+                tags);
+        context.lockSamplingPriority();
+
+        log.debug("{} - Parent context extracted", context.getTraceIdAsLong());
+        return context;
+      } else if (!tags.isEmpty()) {
+        log.debug("Tags context extracted");
+        return new TagContext(null, tags);
       }
 
       return null;
     }
 
+    private long convertTraceId(final String value) {
+      final int length = value.length();
+      if (length > 32) {
+        log.debug("Header {} exceeded max length of 32: {}", TRACE_ID_KEY, value);
+        return 0;
+      } else if (length > 16) {
+        return validateUInt64BitsID(value.substring(length - 16), HEX_RADIX);
+      } else {
+        return validateUInt64BitsID(value, HEX_RADIX);
+      }
+    }
+
     private int convertSamplingPriority(final String samplingPriority) {
       return Integer.parseInt(samplingPriority) == 1
           ? PrioritySampling.SAMPLER_KEEP
@@ -3,13 +3,10 @@ package datadog.opentracing.propagation;
 import static datadog.opentracing.propagation.HttpCodec.validateUInt64BitsID;
 
 import datadog.opentracing.DDSpanContext;
+import datadog.trace.api.Config;
 import datadog.trace.api.sampling.PrioritySampling;
 import io.opentracing.SpanContext;
-import io.opentracing.propagation.TextMapExtract;
 import io.opentracing.propagation.TextMapInject;
-import java.math.BigInteger;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 
@@ -27,14 +24,19 @@ class DatadogHttpCodec {
     // This class should not be created. This also makes code coverage checks happy.
   }
 
-  public static class Injector implements HttpCodec.Injector {
+  public static class Injector extends HttpCodec.StyleInjector {
+
+    public Injector() {
+      super(Config.PropagationStyle.DATADOG, true);
+    }
 
     @Override
-    public void inject(final DDSpanContext context, final TextMapInject carrier) {
-      carrier.put(TRACE_ID_KEY, context.getTraceId().toString());
-      carrier.put(SPAN_ID_KEY, context.getSpanId().toString());
-      if (context.lockSamplingPriority()) {
-        carrier.put(SAMPLING_PRIORITY_KEY, String.valueOf(context.getSamplingPriority()));
+    void render(
+        final DDSpanContext context, final int samplingPriority, final TextMapInject carrier) {
+      carrier.put(TRACE_ID_KEY, context.toTraceId());
+      carrier.put(SPAN_ID_KEY, context.toSpanId());
+      if (samplingPriority != PrioritySampling.UNSET) {
+        carrier.put(SAMPLING_PRIORITY_KEY, String.valueOf(samplingPriority));
       }
       final String origin = context.getOrigin();
       if (origin != null) {
@@ -44,74 +46,58 @@ class DatadogHttpCodec {
       for (final Map.Entry<String, String> entry : context.baggageItems()) {
         carrier.put(OT_BAGGAGE_PREFIX + entry.getKey(), HttpCodec.encode(entry.getValue()));
       }
-      log.debug("{} - Datadog parent context injected", context.getTraceId());
     }
   }
 
-  public static class Extractor implements HttpCodec.Extractor {
-    private final Map<String, String> taggedHeaders;
+  public static class Extractor extends HttpCodec.StyleExtractor {
+    private static final int TRACE_ID = 0;
+    private static final int SPAN_ID = 1;
+    private static final int SAMPLING_PRIORITY = 2;
+    private static final int ORIGIN = 3;
 
     public Extractor(final Map<String, String> taggedHeaders) {
-      this.taggedHeaders = new HashMap<>();
-      for (final Map.Entry<String, String> mapping : taggedHeaders.entrySet()) {
-        this.taggedHeaders.put(mapping.getKey().trim().toLowerCase(), mapping.getValue());
-      }
+      super(
+          taggedHeaders,
+          OT_BAGGAGE_PREFIX,
+          TRACE_ID_KEY,
+          SPAN_ID_KEY,
+          SAMPLING_PRIORITY_KEY,
+          ORIGIN_KEY);
     }
 
     @Override
-    public SpanContext extract(final TextMapExtract carrier) {
-      try {
-        Map<String, String> baggage = Collections.emptyMap();
-        Map<String, String> tags = Collections.emptyMap();
-        BigInteger traceId = BigInteger.ZERO;
-        BigInteger spanId = BigInteger.ZERO;
-        int samplingPriority = PrioritySampling.UNSET;
-        String origin = null;
-
-        for (final Map.Entry<String, String> entry : carrier) {
-          final String key = entry.getKey().toLowerCase();
-          final String value = entry.getValue();
-
-          if (value == null) {
-            continue;
-          }
-
-          if (TRACE_ID_KEY.equalsIgnoreCase(key)) {
-            traceId = validateUInt64BitsID(value, 10);
-          } else if (SPAN_ID_KEY.equalsIgnoreCase(key)) {
-            spanId = validateUInt64BitsID(value, 10);
-          } else if (SAMPLING_PRIORITY_KEY.equalsIgnoreCase(key)) {
-            samplingPriority = Integer.parseInt(value);
-          } else if (ORIGIN_KEY.equalsIgnoreCase(key)) {
-            origin = value;
-          } else if (key.startsWith(OT_BAGGAGE_PREFIX)) {
-            if (baggage.isEmpty()) {
-              baggage = new HashMap<>();
-            }
-            baggage.put(key.replace(OT_BAGGAGE_PREFIX, ""), HttpCodec.decode(value));
-          }
-
-          if (taggedHeaders.containsKey(key)) {
-            if (tags.isEmpty()) {
-              tags = new HashMap<>();
-            }
-            tags.put(taggedHeaders.get(key), HttpCodec.decode(value));
-          }
-        }
-
-        if (!BigInteger.ZERO.equals(traceId)) {
-          final ExtractedContext context =
-              new ExtractedContext(traceId, spanId, samplingPriority, origin, baggage, tags);
-          context.lockSamplingPriority();
-
-          log.debug("{} - Parent context extracted", context.getTraceId());
-          return context;
-        } else if (origin != null || !tags.isEmpty()) {
-          log.debug("Tags context extracted");
-          return new TagContext(origin, tags);
-        }
-      } catch (final RuntimeException e) {
-        log.debug("Exception when extracting context", e);
+    SpanContext build(
+        final String[] values,
+        final int offset,
+        final Map<String, String> baggage,
+        final Map<String, String> tags) {
+      final String traceIdValue = values[offset + TRACE_ID];
+      final String spanIdValue = values[offset + SPAN_ID];
+      final String samplingPriorityValue = values[offset + SAMPLING_PRIORITY];
+      final long traceId = traceIdValue == null ? 0 : validateUInt64BitsID(traceIdValue, 10);
+      final long spanId = spanIdValue == null ? 0 : validateUInt64BitsID(spanIdValue, 10);
+      final int samplingPriority =
+          samplingPriorityValue == null
+              ? PrioritySampling.UNSET
+              : Integer.parseInt(samplingPriorityValue);
+      final String origin = values[offset + ORIGIN];
+
+      if (traceId != 0) {
+        final ExtractedContext context =
+            new ExtractedContext(
+                traceId,
+                spanId,
+                samplingPriority,
+                origin,
+                HttpCodec.decodeValues(baggage),
+                tags);
+        context.lockSamplingPriority();
+
+        log.debug("{} - Parent context extracted", context.getTraceIdAsLong());
+        return context;
+      } else if (origin != null || !tags.isEmpty()) {
+        log.debug("Tags context extracted");
+        return new TagContext(origin, tags);
       }
 
       return null;
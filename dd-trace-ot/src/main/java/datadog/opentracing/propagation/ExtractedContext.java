@@ -1,5 +1,6 @@
 package datadog.opentracing.propagation;
 
+import datadog.opentracing.IdUtils;
 import java.math.BigInteger;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -8,12 +9,13 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * Propagated data resulting from calling tracer.extract with header data from an incoming request.
  */
 public class ExtractedContext extends TagContext {
-  private final BigInteger traceId;
-  private final BigInteger spanId;
+  private final long traceId;
+  private final long spanId;
   private final int samplingPriority;
   private final Map<String, String> baggage;
   private final AtomicBoolean samplingPriorityLocked = new AtomicBoolean(false);
 
+  /** Adapter for callers still using {@link BigInteger} ids. */
   public ExtractedContext(
       final BigInteger traceId,
       final BigInteger spanId,
@@ -21,6 +23,22 @@ public class ExtractedContext extends TagContext {
       final String origin,
       final Map<String, String> baggage,
       final Map<String, String> tags) {
+    this(
+        IdUtils.fromBigInteger(traceId),
+        IdUtils.fromBigInteger(spanId),
+        samplingPriority,
+        origin,
+        baggage,
+        tags);
+  }
+
+  public ExtractedContext(
+      final long traceId,
+      final long spanId,
+      final int samplingPriority,
+      final String origin,
+      final Map<String, String> baggage,
+      final Map<String, String> tags) {
     super(origin, tags);
     this.traceId = traceId;
     this.spanId = spanId;
@@ -37,11 +55,21 @@ public class ExtractedContext extends TagContext {
     samplingPriorityLocked.set(true);
   }
 
+  /** Allocates, prefer {@link #getTraceIdAsLong()}. */
   public BigInteger getTraceId() {
+    return IdUtils.toBigInteger(traceId);
+  }
+
+  public long getTraceIdAsLong() {
     return traceId;
   }
 
+  /** Allocates, prefer {@link #getSpanIdAsLong()}. */
   public BigInteger getSpanId() {
+    return IdUtils.toBigInteger(spanId);
+  }
+
+  public long getSpanIdAsLong() {
     return spanId;
   }
 
@@ -3,13 +3,11 @@ package datadog.opentracing.propagation;
 import static datadog.opentracing.propagation.HttpCodec.validateUInt64BitsID;
 
 import datadog.opentracing.DDSpanContext;
+import datadog.opentracing.IdUtils;
+import datadog.trace.api.Config;
 import datadog.trace.api.sampling.PrioritySampling;
 import io.opentracing.SpanContext;
-import io.opentracing.propagation.TextMapExtract;
 import io.opentracing.propagation.TextMapInject;
-import java.math.BigInteger;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 
@@ -30,82 +28,63 @@ public class HaystackHttpCodec {
     // This class should not be created. This also makes code coverage checks happy.
   }
 
-  public static class Injector implements HttpCodec.Injector {
+  public static class Injector extends HttpCodec.StyleInjector {
+
+    public Injector() {
+      super(Config.PropagationStyle.HAYSTACK, false);
+    }
 
     @Override
-    public void inject(final DDSpanContext context, final TextMapInject carrier) {
-      carrier.put(TRACE_ID_KEY, context.getTraceId().toString());
-      carrier.put(SPAN_ID_KEY, context.getSpanId().toString());
-      carrier.put(PARENT_ID_KEY, context.getParentId().toString());
+    void render(
+        final DDSpanContext context, final int samplingPriority, final TextMapInject carrier) {
+      carrier.put(TRACE_ID_KEY, context.toTraceId());
+      carrier.put(SPAN_ID_KEY, context.toSpanId());
+      carrier.put(PARENT_ID_KEY, IdUtils.toString(context.getParentIdAsLong()));
 
       for (final Map.Entry<String, String> entry : context.baggageItems()) {
         carrier.put(OT_BAGGAGE_PREFIX + entry.getKey(), HttpCodec.encode(entry.getValue()));
       }
-      log.debug("{} - Haystack parent context injected", context.getTraceId());
     }
   }
 
-  public static class Extractor implements HttpCodec.Extractor {
-    private final Map<String, String> taggedHeaders;
+  public static class Extractor extends HttpCodec.StyleExtractor {
+    private static final int TRACE_ID = 0;
+    private static final int SPAN_ID = 1;
 
     /** Creates Header Extractor using Haystack propagation. */
     public Extractor(final Map<String, String> taggedHeaders) {
-      this.taggedHeaders = new HashMap<>();
-      for (final Map.Entry<String, String> mapping : taggedHeaders.entrySet()) {
-        this.taggedHeaders.put(mapping.getKey().trim().toLowerCase(), mapping.getValue());
-      }
+      super(taggedHeaders, OT_BAGGAGE_PREFIX, TRACE_ID_KEY, SPAN_ID_KEY);
     }
 
     @Override
-    public SpanContext extract(final TextMapExtract carrier) {
-      try {
-        Map<String, String> baggage = Collections.emptyMap();
-        Map<String, String> tags = Collections.emptyMap();
-        BigInteger traceId = BigInteger.ZERO;
-        BigInteger spanId = BigInteger.ZERO;
-        final int samplingPriority = PrioritySampling.SAMPLER_KEEP;
-        final String origin = null; // Always null
-
-        for (final Map.Entry<String, String> entry : carrier) {
-          final String key = entry.getKey().toLowerCase();
-          final String value = entry.getValue();
-
-          if (value == null) {
-            continue;
-          }
-
-          if (TRACE_ID_KEY.equalsIgnoreCase(key)) {
-            traceId = validateUInt64BitsID(value, 10);
-          } else if (SPAN_ID_KEY.equalsIgnoreCase(key)) {
-            spanId = validateUInt64BitsID(value, 10);
-          } else if (key.startsWith(OT_BAGGAGE_PREFIX.toLowerCase())) {
-            if (baggage.isEmpty()) {
-              baggage = new HashMap<>();
-            }
-            baggage.put(key.replace(OT_BAGGAGE_PREFIX.toLowerCase(), ""), HttpCodec.decode(value));
-          }
-
-          if (taggedHeaders.containsKey(key)) {
-            if (tags.isEmpty()) {
-              tags = new HashMap<>();
-            }
-            tags.put(taggedHeaders.get(key), HttpCodec.decode(value));
-          }
-        }
-
-        if (!BigInteger.ZERO.equals(traceId)) {
-          final ExtractedContext context =
-              new ExtractedContext(traceId, spanId, samplingPriority, origin, baggage, tags);
-          context.lockSamplingPriority();
-
-          log.debug("{} - Parent context extracted", context.getTraceId());
-          return context;
-        } else if (origin != null || !tags.isEmpty()) {
-          log.debug("Tags context extracted");
-          return new TagContext(origin, tags);
-        }
-      } catch (final RuntimeException e) {
-        log.debug("Exception when extracting context", e);
+    SpanContext build(
+        final String[] values,
+        final int offset,
+        final Map<String, String> baggage,
+        final Map<String, String> tags) {
+      final String traceIdValue = values[offset + TRACE_ID];
+      final String spanIdValue = values[offset + SPAN_ID];
+      final long traceId = traceIdValue == null ? 0 : validateUInt64BitsID(traceIdValue, 10);
+      final long spanId = spanIdValue == null ? 0 : validateUInt64BitsID(spanIdValue, 10);
+      final int samplingPriority = PrioritySampling.SAMPLER_KEEP;
+      final String origin = null; // Always null
+
+      if (traceId != 0) {
+        final ExtractedContext context =
+            new ExtractedContext(
+                traceId,
+                spanId,
+                samplingPriority,
+                origin,
+                HttpCodec.decodeValues(baggage),
+                tags);
+        context.lockSamplingPriority();
+
+        log.debug("{} - Parent context extracted", context.getTraceIdAsLong());
+        return context;
+      } else if (origin != null || !tags.isEmpty()) {
+        log.debug("Tags context extracted");
+        return new TagContext(origin, tags);
       }
 
       return null;
@@ -0,0 +1,70 @@
+package datadog.opentracing.propagation;
+
+import java.util.List;
+
+/**
+ * Case insensitive lookup of header names, which doesn't lower case (hence copy) the header names
+ * looked up. Immutable once created.
+ */
+final class HeaderTable {
+  static final int NOT_FOUND = -1;
+
+  // open addressing, the slots hold the names and their index in the names list
+  private final String[] names;
+  private final int[] indices;
+  private final int mask;
+
+  /** The index of a name in the list is returned when it is looked up, the first one wins. */
+  HeaderTable(final List<String> names) {
+    int capacity = 4;
+    while (capacity < names.size() * 2) {
+      capacity <<= 1;
+    }
+    this.names = new String[capacity];
+    indices = new int[capacity];
+    mask = capacity - 1;
+    for (int i = 0; i < names.size(); i++) {
+      final String name = names.get(i);
+      int slot = hash(name) & mask;
+      while (this.names[slot] != null && !matches(this.names[slot], name)) {
+        slot = (slot + 1) & mask;
+      }
+      if (this.names[slot] == null) {
+        this.names[slot] = name;
+        indices[slot] = i;
+      }
+    }
+  }
+
+  /** @return the index of the name, ignoring case, or {@link #NOT_FOUND} */
+  int indexOf(final String name) {
+    int slot = hash(name) & mask;
+    String candidate;
+    while ((candidate = names[slot]) != null) {
+      if (matches(candidate, name)) {
+        return indices[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return NOT_FOUND;
+  }
+
+  /** @return whether the name starts with the prefix, ignoring case */
+  static boolean startsWith(final String name, final String prefix) {
+    return name.regionMatches(true, 0, prefix, 0, prefix.length());
+  }
+
+  private static boolean matches(final String candidate, final String name) {
+    return candidate.length() == name.length()
+        && candidate.regionMatches(true, 0, name, 0, name.length());
+  }
+
+  private static int hash(final String name) {
+    int hash = 0;
+    for (int i = 0; i < name.length(); i++) {
+      hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+    }
+    // spread the low bits, which are the only ones used
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -1,19 +1,23 @@
 package datadog.opentracing.propagation;
 
 import datadog.opentracing.DDSpanContext;
-import datadog.opentracing.DDTracer;
-import datadog.opentracing.StringCachingBigInteger;
+import datadog.opentracing.IdUtils;
 import datadog.trace.api.Config;
+import datadog.trace.api.sampling.PrioritySampling;
 import io.opentracing.SpanContext;
 import io.opentracing.propagation.TextMapExtract;
 import io.opentracing.propagation.TextMapInject;
 import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -28,6 +32,50 @@ public class HttpCodec {
     SpanContext extract(final TextMapExtract carrier);
   }
 
+  /**
+   * Injector of one propagation style. The headers are rendered once per span context and injected
+   * again as long as the baggage and the sampling priority of the context don't change, so the ids
+   * are not printed and the baggage is not encoded on every outbound call.
+   */
+  abstract static class StyleInjector implements Injector {
+    private final Config.PropagationStyle style;
+    private final boolean propagatesSamplingPriority;
+
+    StyleInjector(final Config.PropagationStyle style, final boolean propagatesSamplingPriority) {
+      this.style = style;
+      this.propagatesSamplingPriority = propagatesSamplingPriority;
+    }
+
+    @Override
+    public void inject(final DDSpanContext context, final TextMapInject carrier) {
+      final int samplingPriority =
+          propagatesSamplingPriority && context.lockSamplingPriority()
+              ? context.getSamplingPriority()
+              : PrioritySampling.UNSET;
+      // read before rendering, so concurrent baggage changes invalidate the rendered headers
+      final int baggageVersion = context.getBaggageVersion();
+      InjectedHeaders headers = context.getInjectedHeaders(style);
+      if (headers == null || !headers.isCurrent(baggageVersion, samplingPriority)) {
+        final InjectedHeaders.Builder builder = new InjectedHeaders.Builder();
+        render(context, samplingPriority, builder);
+        headers = builder.build(baggageVersion, samplingPriority);
+        context.setInjectedHeaders(style, headers);
+      }
+      headers.injectInto(carrier);
+      log.debug("{} - {} parent context injected", context.toTraceId(), style);
+    }
+
+    /**
+     * Renders the headers of the style
+     *
+     * @param context the span context to propagate
+     * @param samplingPriority the locked sampling priority or {@link PrioritySampling#UNSET} if it
+     *     is not propagated
+     * @param carrier the carrier to put the headers in
+     */
+    abstract void render(DDSpanContext context, int samplingPriority, TextMapInject carrier);
+  }
+
   public static Injector createInjector(final Config config) {
     final List<Injector> injectors = new ArrayList<>();
     for (final Config.PropagationStyle style : config.getPropagationStylesToInject()) {
@@ -85,16 +133,70 @@ public class HttpCodec {
     }
   }
 
+  /**
+   * Extractor of one propagation style. The headers of all the styles are collected in a single
+   * pass over the carrier, then each style builds its context from the headers it declared.
+   */
+  abstract static class StyleExtractor implements Extractor {
+    private final Map<String, String> taggedHeaders;
+    private final String baggagePrefix;
+    private final List<String> headers;
+    private final CompoundExtractor extractor;
+
+    /**
+     * @param taggedHeaders the headers to extract as tags, by tag name
+     * @param baggagePrefix the prefix of the baggage headers, or {@literal null} if none
+     * @param headers the headers of the style, in the order their values are passed to {@link
+     *     #build}
+     */
+    StyleExtractor(
+        final Map<String, String> taggedHeaders,
+        final String baggagePrefix,
+        final String... headers) {
+      this.taggedHeaders = new HashMap<>();
+      for (final Map.Entry<String, String> mapping : taggedHeaders.entrySet()) {
+        this.taggedHeaders.put(mapping.getKey().trim().toLowerCase(), mapping.getValue());
+      }
+      this.baggagePrefix = baggagePrefix;
+      this.headers = Arrays.asList(headers);
+      extractor = new CompoundExtractor(Collections.<Extractor>singletonList(this));
+    }
+
+    @Override
+    public SpanContext extract(final TextMapExtract carrier) {
+      return extractor.extract(carrier);
+    }
+
+    /**
+     * Builds the context of the style from the extracted headers
+     *
+     * @param values the header values, starting at {@literal offset} in the order of the headers of
+     *     the style, {@literal null} for missing headers
+     * @param offset the index of the first header of the style
+     * @param baggage the baggage, keyed by lower case name without the prefix, not decoded yet
+     * @param tags the tags extracted from the tagged headers
+     * @return the context or {@literal null} if there is none
+     */
+    abstract SpanContext build(
+        String[] values, int offset, Map<String, String> baggage, Map<String, String> tags);
+  }
+
   public static class CompoundExtractor implements Extractor {
 
     private final List<Extractor> extractors;
+    // null unless the extractors can share a single pass over the headers
+    private final SinglePass singlePass;
 
     public CompoundExtractor(final List<Extractor> extractors) {
       this.extractors = extractors;
+      singlePass = SinglePass.of(extractors);
     }
 
     @Override
     public SpanContext extract(final TextMapExtract carrier) {
+      if (singlePass != null) {
+        return singlePass.extract(carrier);
+      }
       SpanContext context = null;
       for (final Extractor extractor : extractors) {
         context = extractor.extract(carrier);
@@ -107,25 +209,141 @@ public class HttpCodec {
     }
   }
 
+  /**
+   * Dispatches every header of the carrier, by case insensitive lookup, to the styles it belongs
+   * to. The headers are neither lower cased nor parsed during the pass, the styles only parse the
+   * headers they declared when they build their context.
+   */
+  private static final class SinglePass {
+    private final StyleExtractor[] styles;
+    private final int[] offsets;
+    private final int headerCount;
+    private final HeaderTable headers;
+    private final HeaderTable taggedHeaders;
+    private final String[] tagNames;
+
+    /**
+     * @return the single pass over the headers of the extractors, or {@literal null} if they are
+     *     not all distinct styles with the same tagged headers
+     */
+    static SinglePass of(final List<Extractor> extractors) {
+      if (extractors.isEmpty()) {
+        return null;
+      }
+      final StyleExtractor[] styles = new StyleExtractor[extractors.size()];
+      final Set<Class<?>> styleTypes = new HashSet<>();
+      for (int i = 0; i < styles.length; i++) {
+        final Extractor extractor = extractors.get(i);
+        if (!(extractor instanceof StyleExtractor) || !styleTypes.add(extractor.getClass())) {
+          return null;
+        }
+        styles[i] = (StyleExtractor) extractor;
+        if (!styles[i].taggedHeaders.equals(styles[0].taggedHeaders)) {
+          return null;
+        }
+      }
+      return new SinglePass(styles);
+    }
+
+    private SinglePass(final StyleExtractor[] styles) {
+      this.styles = styles;
+      offsets = new int[styles.length];
+      final List<String> names = new ArrayList<>();
+      for (int i = 0; i < styles.length; i++) {
+        offsets[i] = names.size();
+        names.addAll(styles[i].headers);
+      }
+      headerCount = names.size();
+      headers = new HeaderTable(names);
+
+      final List<String> taggedNames = new ArrayList<>();
+      final List<String> tags = new ArrayList<>();
+      for (final Map.Entry<String, String> mapping : styles[0].taggedHeaders.entrySet()) {
+        taggedNames.add(mapping.getKey());
+        tags.add(mapping.getValue());
+      }
+      taggedHeaders = new HeaderTable(taggedNames);
+      tagNames = tags.toArray(new String[0]);
+    }
+
+    @SuppressWarnings("unchecked")
+    SpanContext extract(final TextMapExtract carrier) {
+      final String[] values = new String[headerCount];
+      Map<String, String>[] baggage = null;
+      Map<String, String> tags = Collections.emptyMap();
+      try {
+        for (final Map.Entry<String, String> entry : carrier) {
+          final String key = entry.getKey();
+          final String value = entry.getValue();
+
+          if (value == null) {
+            continue;
+          }
+
+          final int index = headers.indexOf(key);
+          if (index != HeaderTable.NOT_FOUND) {
+            values[index] = value;
+          } else {
+            for (int i = 0; i < styles.length; i++) {
+              final String prefix = styles[i].baggagePrefix;
+              if (prefix != null && HeaderTable.startsWith(key, prefix)) {
+                if (baggage == null) {
+                  baggage = new Map[styles.length];
+                }
+                if (baggage[i] == null) {
+                  baggage[i] = new HashMap<>();
+                }
+                baggage[i].put(key.substring(prefix.length()).toLowerCase(), value);
+              }
+            }
+          }
+
+          final int tag = taggedHeaders.indexOf(key);
+          if (tag != HeaderTable.NOT_FOUND) {
+            if (tags.isEmpty()) {
+              tags = new HashMap<>();
+            }
+            tags.put(tagNames[tag], decode(value));
+          }
+        }
+      } catch (final RuntimeException e) {
+        log.debug("Exception when extracting context", e);
+        return null;
+      }
+
+      SpanContext context = null;
+      for (int i = 0; i < styles.length; i++) {
+        final Map<String, String> styleBaggage =
+            baggage == null || baggage[i] == null
+                ? Collections.<String, String>emptyMap()
+                : baggage[i];
+        try {
+          context = styles[i].build(values, offsets[i], styleBaggage, tags);
+        } catch (final RuntimeException e) {
+          log.debug("Exception when extracting context", e);
+          context = null;
+        }
+        // Use incomplete TagContext only as last resort
+        if (context instanceof ExtractedContext) {
+          return context;
+        }
+      }
+      return context;
+    }
+  }
+
   /**
    * Helper method to validate an ID String to verify within range
    *
    * @param value the String that contains the ID
    * @param radix radix to use to parse the ID
-   * @return the parsed ID
+   * @return the parsed ID, as an unsigned long
    * @throws IllegalArgumentException if value cannot be converted to integer or doesn't conform to
    *     required boundaries
    */
-  static BigInteger validateUInt64BitsID(final String value, final int radix)
+  static long validateUInt64BitsID(final String value, final int radix)
       throws IllegalArgumentException {
-    final BigInteger parsedValue = new StringCachingBigInteger(value, radix);
-    if (parsedValue.compareTo(DDTracer.TRACE_ID_MIN) < 0
-        || parsedValue.compareTo(DDTracer.TRACE_ID_MAX) > 0) {
-      throw new IllegalArgumentException(
-          "ID out of range, must be between 0 and 2^64-1, got: " + value);
-    }
-
-    return parsedValue;
+    return IdUtils.parseUnsigned(value, radix);
   }
 
   /** URL encode value */
@@ -139,6 +357,14 @@ public class HttpCodec {
     return encoded;
   }
 
+  /** URL decode the values of the map, in place */
+  static Map<String, String> decodeValues(final Map<String, String> map) {
+    for (final Map.Entry<String, String> entry : map.entrySet()) {
+      entry.setValue(decode(entry.getValue()));
+    }
+    return map;
+  }
+
   /** URL decode value */
   static String decode(final String value) {
     String decoded = value;
@@ -0,0 +1,50 @@
+package datadog.opentracing.propagation;
+
+import io.opentracing.propagation.TextMapInject;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Headers rendered by a propagation style for a span context. They are injected again as is until
+ * the baggage or the sampling priority of the context change.
+ */
+public final class InjectedHeaders {
+  private final int baggageVersion;
+  private final int samplingPriority;
+  /** Header names at even indexes, their value at the next one */
+  private final String[] headers;
+
+  private InjectedHeaders(
+      final int baggageVersion, final int samplingPriority, final String[] headers) {
+    this.baggageVersion = baggageVersion;
+    this.samplingPriority = samplingPriority;
+    this.headers = headers;
+  }
+
+  /** @return whether the headers were rendered from this baggage and sampling priority */
+  boolean isCurrent(final int baggageVersion, final int samplingPriority) {
+    return this.baggageVersion == baggageVersion && this.samplingPriority == samplingPriority;
+  }
+
+  void injectInto(final TextMapInject carrier) {
+    for (int i = 0; i < headers.length; i += 2) {
+      carrier.put(headers[i], headers[i + 1]);
+    }
+  }
+
+  /** Collects the headers rendered by a style, in order */
+  static final class Builder implements TextMapInject {
+    private final List<String> headers = new ArrayList<>();
+
+    @Override
+    public void put(final String key, final String value) {
+      headers.add(key);
+      headers.add(value);
+    }
+
+    InjectedHeaders build(final int baggageVersion, final int samplingPriority) {
+      return new InjectedHeaders(
+          baggageVersion, samplingPriority, headers.toArray(new String[headers.size()]));
+    }
+  }
+}
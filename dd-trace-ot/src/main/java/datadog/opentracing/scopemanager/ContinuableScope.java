@@ -8,13 +8,16 @@ import datadog.opentracing.jfr.DDScopeEventFactory;
 import datadog.trace.context.ScopeListener;
 import datadog.trace.context.TraceScope;
 import java.io.Closeable;
-import java.lang.ref.WeakReference;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class ContinuableScope implements DDScope, TraceScope {
+  private static final AtomicIntegerFieldUpdater<Continuation> USED =
+      AtomicIntegerFieldUpdater.newUpdater(Continuation.class, "used");
+
   /** ScopeManager holding the thread-local to this scope. */
   private final ContextualScopeManager scopeManager;
   /**
@@ -85,23 +88,26 @@ public class ContinuableScope implements DDScope, TraceScope {
       spanUnderScope.finish();
     }
 
-    for (final ScopeListener listener : scopeManager.scopeListeners) {
-      listener.afterScopeClosed();
-    }
-
-    if (scopeManager.tlsScope.get() == this) {
+    // The scope to restore is active by the time the listeners are told this one was closed.
+    final boolean restore = scopeManager.tlsScope.get() == this;
+    if (restore) {
       scopeManager.tlsScope.set(toRestore);
-      if (toRestore != null) {
-        for (final ScopeListener listener : scopeManager.scopeListeners) {
-          listener.afterScopeActivated();
-        }
-      }
     } else {
       log.debug(
           "Tried to close {} scope when {} is on top. Ignoring!",
           this,
           scopeManager.tlsScope.get());
     }
+
+    for (final ScopeListener listener : scopeManager.scopeListeners) {
+      listener.afterScopeClosed();
+    }
+
+    if (restore && toRestore != null) {
+      for (final ScopeListener listener : scopeManager.scopeListeners) {
+        listener.afterScopeActivated();
+      }
+    }
   }
 
   @Override
@@ -143,10 +149,15 @@ public class ContinuableScope implements DDScope, TraceScope {
     return super.toString() + "->" + spanUnderScope;
   }
 
-  public class Continuation implements Closeable, TraceScope.Continuation {
-    public WeakReference<Continuation> ref;
+  /**
+   * Continuations are created for every task handed over to another thread, so they are kept to a
+   * single object: the flags are updated through field updaters rather than atomic wrappers.
+   */
+  public class Continuation extends PendingTrace.PendingReference
+      implements Closeable, TraceScope.Continuation {
+    /** Set once the continuation is activated or closed. Not private for the field updater. */
+    volatile int used;
 
-    private final AtomicBoolean used = new AtomicBoolean(false);
     private final PendingTrace trace;
 
     private Continuation() {
@@ -158,7 +169,7 @@ public class ContinuableScope implements DDScope, TraceScope {
 
     @Override
     public ContinuableScope activate() {
-      if (used.compareAndSet(false, true)) {
+      if (USED.compareAndSet(this, 0, 1)) {
         final ContinuableScope scope =
             new ContinuableScope(
                 scopeManager, openCount, this, spanUnderScope, finishOnClose, eventFactory);
@@ -179,7 +190,7 @@ public class ContinuableScope implements DDScope, TraceScope {
 
     @Override
     public void close(final boolean closeContinuationScope) {
-      if (used.compareAndSet(false, true)) {
+      if (USED.compareAndSet(this, 0, 1)) {
         trace.cancelContinuation(this);
         if (closeContinuationScope) {
           ContinuableScope.this.close();
@@ -32,16 +32,19 @@ public class SimpleScope implements DDScope {
     if (finishOnClose) {
       spanUnderScope.finish();
     }
+    // The scope to restore is active by the time the listeners are told this one was closed.
+    final boolean restore = scopeManager.tlsScope.get() == this;
+    if (restore) {
+      scopeManager.tlsScope.set(toRestore);
+    }
+
     for (final ScopeListener listener : scopeManager.scopeListeners) {
       listener.afterScopeClosed();
     }
 
-    if (scopeManager.tlsScope.get() == this) {
-      scopeManager.tlsScope.set(toRestore);
-      if (toRestore != null) {
-        for (final ScopeListener listener : scopeManager.scopeListeners) {
-          listener.afterScopeActivated();
-        }
+    if (restore && toRestore != null) {
+      for (final ScopeListener listener : scopeManager.scopeListeners) {
+        listener.afterScopeActivated();
       }
     }
   }
@@ -3,7 +3,6 @@ package datadog.trace.common.sampling;
 import datadog.opentracing.DDSpan;
 import datadog.opentracing.DDTracer;
 import java.math.BigDecimal;
-import java.math.BigInteger;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -12,17 +11,19 @@ import lombok.extern.slf4j.Slf4j;
  */
 @Slf4j
 public class DeterministicSampler implements RateSampler {
-  private static final BigInteger KNUTH_FACTOR = new BigInteger("1111111111111111111");
+  private static final long KNUTH_FACTOR = 1111111111111111111L;
   private static final BigDecimal TRACE_ID_MAX_AS_BIG_DECIMAL =
       new BigDecimal(DDTracer.TRACE_ID_MAX);
-  private static final BigInteger MODULUS = new BigInteger("2").pow(64);
 
-  private final BigInteger cutoff;
+  /** Unsigned, offset by {@link Long#MIN_VALUE} so it can be compared with signed arithmetic */
+  private final long cutoff;
   private final double rate;
 
   public DeterministicSampler(final double rate) {
     this.rate = rate;
-    cutoff = new BigDecimal(rate).multiply(TRACE_ID_MAX_AS_BIG_DECIMAL).toBigInteger();
+    cutoff =
+        new BigDecimal(rate).multiply(TRACE_ID_MAX_AS_BIG_DECIMAL).toBigInteger().longValue()
+            + Long.MIN_VALUE;
 
     log.debug("Initializing the RateSampler, sampleRate: {} %", rate * 100);
   }
@@ -35,7 +36,8 @@ public class DeterministicSampler implements RateSampler {
     } else if (rate == 0) {
       sampled = false;
     } else {
-      sampled = span.getTraceId().multiply(KNUTH_FACTOR).mod(MODULUS).compareTo(cutoff) < 0;
+      // The overflowing multiplication is the modulo 2^64
+      sampled = span.getTraceIdAsLong() * KNUTH_FACTOR + Long.MIN_VALUE < cutoff;
     }
 
     log.debug("{} - Span is sampled: {}", span, sampled);
@@ -14,7 +14,7 @@ import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class RuleBasedSampler implements Sampler, PrioritySampler {
-  private final List<SamplingRule> samplingRules;
+  private final SamplingRuleIndex samplingRules;
   private final PrioritySampler fallbackSampler;
   private final RateLimiter rateLimiter;
   private final double rateLimit;
@@ -26,7 +26,7 @@ public class RuleBasedSampler implements Sampler, PrioritySampler {
       final List<SamplingRule> samplingRules,
       final double rateLimit,
       final PrioritySampler fallbackSampler) {
-    this.samplingRules = samplingRules;
+    this.samplingRules = new SamplingRuleIndex(samplingRules);
     this.fallbackSampler = fallbackSampler;
     rateLimiter = RateLimiter.create(rateLimit);
     this.rateLimit = rateLimit;
@@ -82,14 +82,7 @@ public class RuleBasedSampler implements Sampler, PrioritySampler {
 
   @Override
   public void setSamplingPriority(final DDSpan span) {
-    SamplingRule matchedRule = null;
-
-    for (final SamplingRule samplingRule : samplingRules) {
-      if (samplingRule.matches(span)) {
-        matchedRule = samplingRule;
-        break;
-      }
-    }
+    final SamplingRule matchedRule = samplingRules.findFirstMatch(span);
 
     if (matchedRule == null) {
       fallbackSampler.setSamplingPriority(span);
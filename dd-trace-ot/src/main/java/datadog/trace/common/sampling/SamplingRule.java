@@ -33,20 +33,51 @@ public abstract class SamplingRule {
   }
 
   public abstract static class PatternMatchSamplingRule extends SamplingRule {
+    private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    private final String literal;
     private final Pattern pattern;
 
     public PatternMatchSamplingRule(final String regex, final RateSampler sampler) {
       super(sampler);
-      this.pattern = Pattern.compile(regex);
+      if (isLiteral(regex)) {
+        literal = regex;
+        pattern = null;
+      } else {
+        literal = null;
+        pattern = Pattern.compile(regex);
+      }
     }
 
     @Override
     public boolean matches(final DDSpan span) {
-      final String relevantString = getRelevantString(span);
-      return relevantString != null && pattern.matcher(relevantString).matches();
+      return matches(getRelevantString(span));
+    }
+
+    boolean matches(final String relevantString) {
+      if (relevantString == null) {
+        return false;
+      }
+      return literal != null
+          ? literal.equals(relevantString)
+          : pattern.matcher(relevantString).matches();
+    }
+
+    /** @return the exact value matched by this rule, or null if the rule is a real pattern. */
+    String getLiteral() {
+      return literal;
     }
 
     protected abstract String getRelevantString(DDSpan span);
+
+    private static boolean isLiteral(final String regex) {
+      for (int i = 0; i < regex.length(); i++) {
+        if (REGEX_METACHARACTERS.indexOf(regex.charAt(i)) >= 0) {
+          return false;
+        }
+      }
+      return true;
+    }
   }
 
   public static class ServiceSamplingRule extends PatternMatchSamplingRule {
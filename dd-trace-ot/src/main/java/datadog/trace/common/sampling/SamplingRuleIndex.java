@@ -0,0 +1,160 @@
+package datadog.trace.common.sampling;
+
+import datadog.opentracing.DDSpan;
+import datadog.trace.common.sampling.SamplingRule.AlwaysMatchesSamplingRule;
+import datadog.trace.common.sampling.SamplingRule.OperationSamplingRule;
+import datadog.trace.common.sampling.SamplingRule.PatternMatchSamplingRule;
+import datadog.trace.common.sampling.SamplingRule.ServiceSamplingRule;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the first {@link SamplingRule} matching a span, with the same result as checking the rules
+ * in order.
+ *
+ * <p>When all rules only depend on the service and operation names, exact names are looked up in
+ * hash indexes, only the real patterns are evaluated, and the matched rule is memoized per
+ * (service, operation) pair. Otherwise the rules are checked in order.
+ */
+final class SamplingRuleIndex {
+  static final int MAX_CACHED_SERVICES = 256;
+  static final int MAX_CACHED_OPERATIONS_PER_SERVICE = 256;
+
+  private static final int NO_MATCH = Integer.MAX_VALUE;
+
+  private final SamplingRule[] rules;
+  private final boolean indexed;
+
+  /** Lowest index of the rules matching exactly a service or operation name. */
+  private final Map<String, Integer> serviceLiterals = new HashMap<>();
+
+  private final Map<String, Integer> operationLiterals = new HashMap<>();
+
+  /** Indexes of the rules which can't be looked up, in order. */
+  private final int[] scannedRules;
+
+  private final ConcurrentHashMap<String, ConcurrentHashMap<String, Integer>> cache =
+      new ConcurrentHashMap<>();
+
+  SamplingRuleIndex(final List<SamplingRule> samplingRules) {
+    rules = samplingRules.toArray(new SamplingRule[0]);
+
+    boolean indexable = true;
+    final List<Integer> scanned = new ArrayList<>();
+    for (int i = 0; i < rules.length; i++) {
+      final SamplingRule rule = rules[i];
+      final Class<?> ruleClass = rule.getClass();
+      if (ruleClass == ServiceSamplingRule.class) {
+        index(i, (PatternMatchSamplingRule) rule, serviceLiterals, scanned);
+      } else if (ruleClass == OperationSamplingRule.class) {
+        index(i, (PatternMatchSamplingRule) rule, operationLiterals, scanned);
+      } else if (ruleClass == AlwaysMatchesSamplingRule.class) {
+        scanned.add(i);
+      } else {
+        // Custom rules may depend on anything in the span.
+        indexable = false;
+      }
+    }
+    indexed = indexable;
+    scannedRules = new int[scanned.size()];
+    for (int i = 0; i < scannedRules.length; i++) {
+      scannedRules[i] = scanned.get(i);
+    }
+  }
+
+  /** @return the first rule matching the span, or null. */
+  SamplingRule findFirstMatch(final DDSpan span) {
+    if (!indexed) {
+      for (final SamplingRule rule : rules) {
+        if (rule.matches(span)) {
+          return rule;
+        }
+      }
+      return null;
+    }
+
+    final String service = span.getServiceName();
+    final String operation = span.getOperationName();
+    final int match;
+    if (service == null || operation == null) {
+      match = findFirstMatch(service, operation);
+    } else {
+      match = findFirstMatchCached(service, operation);
+    }
+    return match == NO_MATCH ? null : rules[match];
+  }
+
+  private int findFirstMatchCached(final String service, final String operation) {
+    ConcurrentHashMap<String, Integer> operations = cache.get(service);
+    if (operations == null) {
+      if (cache.size() >= MAX_CACHED_SERVICES) {
+        cache.clear();
+      }
+      operations = new ConcurrentHashMap<>();
+      final ConcurrentHashMap<String, Integer> existing = cache.putIfAbsent(service, operations);
+      if (existing != null) {
+        operations = existing;
+      }
+    }
+
+    final Integer cached = operations.get(operation);
+    if (cached != null) {
+      return cached;
+    }
+    if (operations.size() >= MAX_CACHED_OPERATIONS_PER_SERVICE) {
+      operations.clear();
+    }
+    final int match = findFirstMatch(service, operation);
+    operations.put(operation, match);
+    return match;
+  }
+
+  private int findFirstMatch(final String service, final String operation) {
+    int match = NO_MATCH;
+    if (service != null) {
+      match = lowest(match, serviceLiterals.get(service));
+    }
+    if (operation != null) {
+      match = lowest(match, operationLiterals.get(operation));
+    }
+    // Only the rules before the best exact match can change the result.
+    for (final int i : scannedRules) {
+      if (i >= match) {
+        break;
+      }
+      final SamplingRule rule = rules[i];
+      if (rule instanceof ServiceSamplingRule) {
+        if (((PatternMatchSamplingRule) rule).matches(service)) {
+          return i;
+        }
+      } else if (rule instanceof OperationSamplingRule) {
+        if (((PatternMatchSamplingRule) rule).matches(operation)) {
+          return i;
+        }
+      } else {
+        return i;
+      }
+    }
+    return match;
+  }
+
+  private static void index(
+      final int ruleIndex,
+      final PatternMatchSamplingRule rule,
+      final Map<String, Integer> literals,
+      final List<Integer> scanned) {
+    final String literal = rule.getLiteral();
+    if (literal == null) {
+      scanned.add(ruleIndex);
+    } else if (!literals.containsKey(literal)) {
+      literals.put(literal, ruleIndex);
+    }
+  }
+
+  private static int lowest(final int match, final Integer candidate) {
+    return candidate != null && candidate < match ? candidate : match;
+  }
+}
@@ -0,0 +1,206 @@
+package datadog.trace.common.serialization;
+
+import datadog.opentracing.DDSpan;
+import datadog.trace.api.Config;
+import datadog.trace.api.DDTags;
+import io.opentracing.tag.Tags;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+
+/**
+ * Msgpack writer specialized for {@link DDSpan}. Instead of going through the generic key/value
+ * callbacks of {@link FormatWriter} it writes the span fields straight to the packer:
+ *
+ * <ul>
+ *   <li>field names are encoded once up front
+ *   <li>tag and metric keys, service names, operation names, span types and the values of a few
+ *       low cardinality tags are encoded once and then cached
+ *   <li>meta is written from the baggage and tags directly rather than from a merged copy
+ * </ul>
+ *
+ * The encoded payload is equivalent to the one produced by {@link MsgpackFormatWriter}, except for
+ * the order of the meta entries.
+ */
+public class DirectMsgpackFormatWriter extends MsgpackFormatWriter {
+  public static final DirectMsgpackFormatWriter DIRECT_MSGPACK_WRITER =
+      new DirectMsgpackFormatWriter();
+
+  private static final byte[] SERVICE = encodeKey("service");
+  private static final byte[] NAME = encodeKey("name");
+  private static final byte[] RESOURCE = encodeKey("resource");
+  private static final byte[] TRACE_ID = encodeKey("trace_id");
+  private static final byte[] SPAN_ID = encodeKey("span_id");
+  private static final byte[] PARENT_ID = encodeKey("parent_id");
+  private static final byte[] START = encodeKey("start");
+  private static final byte[] DURATION = encodeKey("duration");
+  private static final byte[] TYPE = encodeKey("type");
+  private static final byte[] ERROR = encodeKey("error");
+  private static final byte[] METRICS = encodeKey("metrics");
+  private static final byte[] META = encodeKey("meta");
+
+  /** Tags whose values are expected to repeat a lot, so are worth caching. */
+  private static final Set<String> LOW_CARDINALITY_TAGS =
+      new HashSet<>(
+          Arrays.asList(
+              Tags.SPAN_KIND.getKey(),
+              Tags.COMPONENT.getKey(),
+              Tags.HTTP_METHOD.getKey(),
+              Tags.DB_TYPE.getKey(),
+              DDTags.THREAD_NAME,
+              Config.RUNTIME_ID_TAG,
+              Config.LANGUAGE_TAG_KEY,
+              "env",
+              "version"));
+
+  private final EncodedStringCache keys = new EncodedStringCache(512);
+  private final EncodedStringCache values = new EncodedStringCache(512);
+
+  @Override
+  public void writeDDSpan(final DDSpan span, final MessagePacker packer) throws IOException {
+    // Same fields and order as FormatWriter.writeDDSpan
+    packer.packMapHeader(12);
+    packer.writePayload(SERVICE);
+    writeCached(span.getServiceName(), values, packer);
+    packer.writePayload(NAME);
+    writeCached(span.getOperationName(), values, packer);
+    packer.writePayload(RESOURCE);
+    writeString(span.getResourceName(), packer);
+    packer.writePayload(TRACE_ID);
+    packId(span.getTraceIdAsLong(), packer);
+    packer.writePayload(SPAN_ID);
+    packId(span.getSpanIdAsLong(), packer);
+    packer.writePayload(PARENT_ID);
+    packId(span.getParentIdAsLong(), packer);
+    packer.writePayload(START);
+    packer.packLong(span.getStartTime());
+    packer.writePayload(DURATION);
+    packer.packLong(span.getDurationNano());
+    packer.writePayload(TYPE);
+    writeCached(span.getType(), values, packer);
+    packer.writePayload(ERROR);
+    packer.packInt(span.getError());
+    packer.writePayload(METRICS);
+    writeMetrics(span.getMetrics(), packer);
+    packer.writePayload(META);
+    writeMeta(span.context().getBaggageItems(), span.getTags(), packer);
+  }
+
+  private void writeMetrics(final Map<String, Number> metrics, final MessagePacker packer)
+      throws IOException {
+    final int size = metrics.size();
+    packer.packMapHeader(size);
+    int written = 0;
+    for (final Map.Entry<String, Number> entry : metrics.entrySet()) {
+      checkNotOverflowing(++written, size);
+      writeCached(entry.getKey(), keys, packer);
+      writeNumber(entry.getValue(), packer);
+    }
+    checkComplete(written, size);
+  }
+
+  /** Equivalent to writing {@link DDSpan#getMeta()}, without building the merged map. */
+  private void writeMeta(
+      final Map<String, String> baggage, final Map<String, Object> tags, final MessagePacker packer)
+      throws IOException {
+    int size = tags.size();
+    for (final String key : baggage.keySet()) {
+      if (!tags.containsKey(key)) {
+        size++;
+      }
+    }
+    packer.packMapHeader(size);
+    int written = 0;
+    for (final Map.Entry<String, String> entry : baggage.entrySet()) {
+      if (!tags.containsKey(entry.getKey())) {
+        checkNotOverflowing(++written, size);
+        writeCached(entry.getKey(), keys, packer);
+        writeString(entry.getValue(), packer);
+      }
+    }
+    for (final Map.Entry<String, Object> entry : tags.entrySet()) {
+      checkNotOverflowing(++written, size);
+      final String key = entry.getKey();
+      final String value = String.valueOf(entry.getValue());
+      writeCached(key, keys, packer);
+      if (LOW_CARDINALITY_TAGS.contains(key)) {
+        writeCached(value, values, packer);
+      } else {
+        writeString(value, packer);
+      }
+    }
+    checkComplete(written, size);
+  }
+
+  private static void writeNumber(final Number value, final MessagePacker packer)
+      throws IOException {
+    if (value instanceof Double) {
+      packer.packDouble(value.doubleValue());
+    } else if (value instanceof Long) {
+      packer.packLong(value.longValue());
+    } else if (value instanceof Integer) {
+      packer.packInt(value.intValue());
+    } else if (value instanceof Float) {
+      packer.packFloat(value.floatValue());
+    } else if (value instanceof Byte) {
+      packer.packByte(value.byteValue());
+    } else if (value instanceof Short) {
+      packer.packShort(value.shortValue());
+    } else {
+      // Anything else would leave the map one value short.
+      packer.packDouble(value.doubleValue());
+    }
+  }
+
+  private static void writeCached(
+      final String value, final EncodedStringCache cache, final MessagePacker packer)
+      throws IOException {
+    if (value == null) {
+      packer.packNil();
+      return;
+    }
+    final byte[] encoded = cache.get(value);
+    if (encoded == null) {
+      packer.packString(value);
+    } else {
+      packer.writePayload(encoded);
+    }
+  }
+
+  private static void writeString(final String value, final MessagePacker packer)
+      throws IOException {
+    if (value == null) {
+      packer.packNil();
+    } else {
+      packer.packString(value);
+    }
+  }
+
+  // The map headers are written before the entries, so a span modified concurrently must not
+  // produce a payload with a mismatched entry count.
+  private static void checkNotOverflowing(final int written, final int size) throws IOException {
+    if (written > size) {
+      throw new IOException("Span modified while being serialized");
+    }
+  }
+
+  private static void checkComplete(final int written, final int size) throws IOException {
+    if (written != size) {
+      throw new IOException("Span modified while being serialized");
+    }
+  }
+
+  /** Field names are short ASCII strings, so they always fit in a fixstr. */
+  private static byte[] encodeKey(final String key) {
+    final byte[] chars = key.getBytes(StandardCharsets.US_ASCII);
+    final byte[] encoded = new byte[chars.length + 1];
+    encoded[0] = (byte) (MessagePack.Code.FIXSTR_PREFIX | chars.length);
+    System.arraycopy(chars, 0, encoded, 1, chars.length);
+    return encoded;
+  }
+}
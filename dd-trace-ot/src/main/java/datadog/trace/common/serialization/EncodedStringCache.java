@@ -0,0 +1,95 @@
+package datadog.trace.common.serialization;
+
+import java.nio.charset.StandardCharsets;
+import org.msgpack.core.MessagePack;
+
+/**
+ * Fixed size, two way set associative cache of msgpack encoded strings (header included). The
+ * cache never grows: a string missing from a full set replaces the least recently added entry of
+ * the set. A miss costs the encoding of the string and one small entry, a high cardinality value
+ * keeps missing but never costs more than that.
+ *
+ * <p>Entries are immutable, so the cache can be shared between threads without locking: a racing
+ * reader either sees a complete entry or misses.
+ */
+final class EncodedStringCache {
+  private static final int MAX_CACHED_LENGTH = 128;
+  private static final int WAYS = 2;
+
+  private final Entry[] entries;
+  private final int setMask;
+
+  EncodedStringCache(final int capacity) {
+    final int size = Integer.highestOneBit(Math.max(WAYS, capacity) - 1) << 1; // Next power of 2
+    entries = new Entry[size];
+    setMask = size - WAYS;
+  }
+
+  /** @return the encoded form of the string, or null if it is too long to be worth caching. */
+  byte[] get(final String value) {
+    if (value.length() > MAX_CACHED_LENGTH) {
+      return null;
+    }
+    final int hash = value.hashCode();
+    // The set's first slot holds the most recently added entry.
+    final int set = (hash ^ (hash >>> 16)) & setMask;
+    final Entry first = entries[set];
+    if (first != null && first.hash == hash && value.equals(first.value)) {
+      return first.encoded;
+    }
+    final Entry second = entries[set + 1];
+    if (second != null && second.hash == hash && value.equals(second.value)) {
+      return second.encoded;
+    }
+    final byte[] encoded = encode(value);
+    entries[set + 1] = first;
+    entries[set] = new Entry(value, hash, encoded);
+    return encoded;
+  }
+
+  /** Encodes the same way {@link org.msgpack.core.MessagePacker#packString} does. */
+  static byte[] encode(final String value) {
+    final byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+    final int length = utf8.length;
+    final byte[] encoded;
+    final int offset;
+    if (length < (1 << 5)) {
+      encoded = new byte[length + 1];
+      encoded[0] = (byte) (MessagePack.Code.FIXSTR_PREFIX | length);
+      offset = 1;
+    } else if (length < (1 << 8)) {
+      encoded = new byte[length + 2];
+      encoded[0] = MessagePack.Code.STR8;
+      encoded[1] = (byte) length;
+      offset = 2;
+    } else if (length < (1 << 16)) {
+      encoded = new byte[length + 3];
+      encoded[0] = MessagePack.Code.STR16;
+      encoded[1] = (byte) (length >>> 8);
+      encoded[2] = (byte) length;
+      offset = 3;
+    } else {
+      encoded = new byte[length + 5];
+      encoded[0] = MessagePack.Code.STR32;
+      encoded[1] = (byte) (length >>> 24);
+      encoded[2] = (byte) (length >>> 16);
+      encoded[3] = (byte) (length >>> 8);
+      encoded[4] = (byte) length;
+      offset = 5;
+    }
+    System.arraycopy(utf8, 0, encoded, offset, length);
+    return encoded;
+  }
+
+  private static final class Entry {
+    final String value;
+    final int hash;
+    final byte[] encoded;
+
+    private Entry(final String value, final int hash, final byte[] encoded) {
+      this.value = value;
+      this.hash = hash;
+      this.encoded = encoded;
+    }
+  }
+}
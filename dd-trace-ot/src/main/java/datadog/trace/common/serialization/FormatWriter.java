@@ -34,6 +34,9 @@ public abstract class FormatWriter<DEST> {
   public abstract void writeBigInteger(String key, BigInteger value, DEST destination)
       throws IOException;
 
+  /** Writes an unsigned 64 bit trace or span id, see {@link datadog.opentracing.IdUtils}. */
+  public abstract void writeId(String key, long id, DEST destination) throws IOException;
+
   public void writeNumber(final String key, final Number value, final DEST destination)
       throws IOException {
     if (value instanceof Double) {
@@ -87,9 +90,9 @@ public abstract class FormatWriter<DEST> {
     /* 1  */ writeString("service", span.getServiceName(), destination);
     /* 2  */ writeString("name", span.getOperationName(), destination);
     /* 3  */ writeString("resource", span.getResourceName(), destination);
-    /* 4  */ writeBigInteger("trace_id", span.getTraceId(), destination);
-    /* 5  */ writeBigInteger("span_id", span.getSpanId(), destination);
-    /* 6  */ writeBigInteger("parent_id", span.getParentId(), destination);
+    /* 4  */ writeId("trace_id", span.getTraceIdAsLong(), destination);
+    /* 5  */ writeId("span_id", span.getSpanIdAsLong(), destination);
+    /* 6  */ writeId("parent_id", span.getParentIdAsLong(), destination);
     /* 7  */ writeLong("start", span.getStartTime(), destination);
     /* 8  */ writeLong("duration", span.getDurationNano(), destination);
     /* 9  */ writeString("type", span.getType(), destination);
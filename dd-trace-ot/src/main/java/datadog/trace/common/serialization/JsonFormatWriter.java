@@ -6,6 +6,7 @@ import com.squareup.moshi.JsonWriter;
 import com.squareup.moshi.Moshi;
 import com.squareup.moshi.Types;
 import datadog.opentracing.DDSpan;
+import datadog.opentracing.IdUtils;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
@@ -103,6 +104,17 @@ public class JsonFormatWriter extends FormatWriter<JsonWriter> {
     destination.value(value);
   }
 
+  @Override
+  public void writeId(final String key, final long id, final JsonWriter destination)
+      throws IOException {
+    destination.name(key);
+    if (id >= 0) {
+      destination.value(id);
+    } else {
+      destination.value(IdUtils.toBigInteger(id));
+    }
+  }
+
   static class DDSpanAdapter extends JsonAdapter<DDSpan> {
     public static final JsonAdapter.Factory FACTORY =
         new JsonAdapter.Factory() {
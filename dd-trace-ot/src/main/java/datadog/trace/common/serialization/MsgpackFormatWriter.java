@@ -1,5 +1,6 @@
 package datadog.trace.common.serialization;
 
+import datadog.opentracing.IdUtils;
 import java.io.IOException;
 import java.math.BigInteger;
 import org.msgpack.core.MessagePacker;
@@ -92,4 +93,20 @@ public class MsgpackFormatWriter extends FormatWriter<MessagePacker> {
       destination.packBigInteger(value);
     }
   }
+
+  @Override
+  public void writeId(final String key, final long id, final MessagePacker destination)
+      throws IOException {
+    destination.packString(key);
+    packId(id, destination);
+  }
+
+  static void packId(final long id, final MessagePacker packer) throws IOException {
+    if (id >= 0) {
+      packer.packLong(id);
+    } else {
+      // Above 2^63 - 1, only possible with propagated ids: needs the uint64 encoding.
+      packer.packBigInteger(IdUtils.toBigInteger(id));
+    }
+  }
 }
@@ -3,14 +3,23 @@ package datadog.trace.common.writer;
 import static datadog.trace.api.Config.DEFAULT_AGENT_HOST;
 import static datadog.trace.api.Config.DEFAULT_AGENT_UNIX_DOMAIN_SOCKET;
 import static datadog.trace.api.Config.DEFAULT_TRACE_AGENT_PORT;
+import static datadog.trace.api.Config.DEFAULT_TRACE_SPILL_MAX_AGE;
+import static datadog.trace.api.Config.DEFAULT_TRACE_SPILL_MAX_SIZE;
+import static datadog.trace.common.serialization.DirectMsgpackFormatWriter.DIRECT_MSGPACK_WRITER;
+import static datadog.trace.common.serialization.MsgpackFormatWriter.MSGPACK_WRITER;
 
 import datadog.opentracing.DDSpan;
 import datadog.trace.common.writer.ddagent.BatchWritingDisruptor;
+import datadog.trace.common.writer.ddagent.BufferPool;
 import datadog.trace.common.writer.ddagent.DDAgentApi;
 import datadog.trace.common.writer.ddagent.DDAgentResponseListener;
 import datadog.trace.common.writer.ddagent.Monitor;
+import datadog.trace.common.writer.ddagent.SpillBuffer;
 import datadog.trace.common.writer.ddagent.TraceProcessingDisruptor;
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import lombok.extern.slf4j.Slf4j;
 
@@ -27,15 +36,22 @@ import lombok.extern.slf4j.Slf4j;
  *
  * <p>If the buffer is filled traces are discarded before serializing. Once serialized every effort
  * is made to keep, to avoid wasting the serialization effort.
+ *
+ * <p>Optionally, payloads the agent could not accept are spilled to disk and replayed once the
+ * agent is back, see {@link SpillBuffer}.
  */
 @Slf4j
 public class DDAgentWriter implements Writer {
 
   private static final int DISRUPTOR_BUFFER_SIZE = 1024;
+  private static final int SERIALIZATION_CHUNK_SIZE = 64 * 1024; // 64 KB
+  // Enough chunks to hold a full payload (see BatchWritingDisruptor) plus some in flight.
+  private static final int MAX_POOLED_SERIALIZATION_CHUNKS = 128;
 
   private final DDAgentApi api;
   private final TraceProcessingDisruptor traceProcessingDisruptor;
   private final BatchWritingDisruptor batchWritingDisruptor;
+  private final SpillBuffer spillBuffer;
 
   private final AtomicInteger traceCount = new AtomicInteger(0);
 
@@ -49,6 +65,14 @@ public class DDAgentWriter implements Writer {
     int traceBufferSize = DISRUPTOR_BUFFER_SIZE;
     Monitor monitor = new Monitor.Noop();
     int flushFrequencySeconds = 1;
+    boolean serializationBufferPoolEnabled = false;
+    boolean serializationBufferPoolDirect = false;
+    boolean serializationDirectEncoderEnabled = false;
+    int traceProcessingWorkers = 1;
+    boolean spillEnabled = false;
+    String spillDirectory = null;
+    int spillMaxSizeBytes = DEFAULT_TRACE_SPILL_MAX_SIZE;
+    int spillMaxAgeSeconds = DEFAULT_TRACE_SPILL_MAX_AGE;
   }
 
   @Deprecated
@@ -63,11 +87,19 @@ public class DDAgentWriter implements Writer {
   public DDAgentWriter(final DDAgentApi api, final Monitor monitor) {
     this.api = api;
     this.monitor = monitor;
+    spillBuffer = null;
 
     batchWritingDisruptor = new BatchWritingDisruptor(DISRUPTOR_BUFFER_SIZE, 1, api, monitor, this);
     traceProcessingDisruptor =
         new TraceProcessingDisruptor(
-            DISRUPTOR_BUFFER_SIZE, api, batchWritingDisruptor, monitor, this);
+            DISRUPTOR_BUFFER_SIZE,
+            api,
+            batchWritingDisruptor,
+            monitor,
+            this,
+            null,
+            1,
+            MSGPACK_WRITER);
   }
 
   @lombok.Builder
@@ -79,7 +111,15 @@ public class DDAgentWriter implements Writer {
       final String unixDomainSocket,
       final int traceBufferSize,
       final Monitor monitor,
-      final int flushFrequencySeconds) {
+      final int flushFrequencySeconds,
+      final boolean serializationBufferPoolEnabled,
+      final boolean serializationBufferPoolDirect,
+      final boolean serializationDirectEncoderEnabled,
+      final int traceProcessingWorkers,
+      final boolean spillEnabled,
+      final String spillDirectory,
+      final int spillMaxSizeBytes,
+      final int spillMaxAgeSeconds) {
     if (agentApi != null) {
       api = agentApi;
     } else {
@@ -87,10 +127,52 @@ public class DDAgentWriter implements Writer {
     }
     this.monitor = monitor;
 
+    final BufferPool bufferPool =
+        serializationBufferPoolEnabled
+            ? new BufferPool(
+                SERIALIZATION_CHUNK_SIZE,
+                MAX_POOLED_SERIALIZATION_CHUNKS,
+                serializationBufferPoolDirect)
+            : null;
+
+    spillBuffer =
+        spillEnabled
+            ? createSpillBuffer(spillDirectory, spillMaxSizeBytes, spillMaxAgeSeconds)
+            : null;
+
     batchWritingDisruptor =
-        new BatchWritingDisruptor(traceBufferSize, flushFrequencySeconds, api, monitor, this);
+        new BatchWritingDisruptor(
+            traceBufferSize, flushFrequencySeconds, api, monitor, this, spillBuffer);
     traceProcessingDisruptor =
-        new TraceProcessingDisruptor(traceBufferSize, api, batchWritingDisruptor, monitor, this);
+        new TraceProcessingDisruptor(
+            traceBufferSize,
+            api,
+            batchWritingDisruptor,
+            monitor,
+            this,
+            bufferPool,
+            traceProcessingWorkers,
+            serializationDirectEncoderEnabled ? DIRECT_MSGPACK_WRITER : MSGPACK_WRITER);
+  }
+
+  private SpillBuffer createSpillBuffer(
+      final String spillDirectory, final int spillMaxSizeBytes, final int spillMaxAgeSeconds) {
+    final File directory =
+        spillDirectory != null
+            ? new File(spillDirectory)
+            : new File(System.getProperty("java.io.tmpdir"), "dd-trace-spill");
+    try {
+      return new SpillBuffer(
+          directory,
+          spillMaxSizeBytes,
+          TimeUnit.SECONDS.toMillis(spillMaxAgeSeconds),
+          api,
+          monitor,
+          this);
+    } catch (final IOException e) {
+      log.warn("Unable to spill traces to {}, spilling disabled: {}", directory, e.getMessage());
+      return null;
+    }
   }
 
   public void addResponseListener(final DDAgentResponseListener listener) {
@@ -148,12 +230,20 @@ public class DDAgentWriter implements Writer {
     traceCount.incrementAndGet();
   }
 
+  /** Reports a trace dropped because it was garbage collected before all its spans finished. */
+  public void onAbandonedTrace() {
+    monitor.onAbandonedTrace(this);
+  }
+
   public DDAgentApi getApi() {
     return api;
   }
 
   @Override
   public void start() {
+    if (spillBuffer != null) {
+      spillBuffer.start();
+    }
     batchWritingDisruptor.start();
     traceProcessingDisruptor.start();
     monitor.onStart(this);
@@ -165,7 +255,13 @@ public class DDAgentWriter implements Writer {
     try {
       traceProcessingDisruptor.close();
     } finally { // in case first close fails.
-      batchWritingDisruptor.close();
+      try {
+        batchWritingDisruptor.close();
+      } finally {
+        if (spillBuffer != null) {
+          spillBuffer.close();
+        }
+      }
     }
     monitor.onShutdown(this, flushSuccess);
   }
@@ -67,6 +67,14 @@ public interface Writer extends Closeable {
       return DDAgentWriter.builder()
           .agentApi(createApi(config))
           .monitor(createMonitor(config))
+          .serializationBufferPoolEnabled(config.isTraceSerializationBufferPoolEnabled())
+          .serializationBufferPoolDirect(config.isTraceSerializationBufferPoolDirect())
+          .serializationDirectEncoderEnabled(config.isTraceSerializationDirectEncoderEnabled())
+          .traceProcessingWorkers(config.getTraceProcessingWorkers())
+          .spillEnabled(config.isTraceSpillEnabled())
+          .spillDirectory(config.getTraceSpillDirectory())
+          .spillMaxSizeBytes(config.getTraceSpillMaxSize())
+          .spillMaxAgeSeconds(config.getTraceSpillMaxAge())
           .build();
     }
 
@@ -23,6 +23,12 @@ abstract class AbstractDisruptor<T> implements Closeable {
       new DisruptorEvent.DataTranslator<>();
 
   public AbstractDisruptor(final int disruptorSize, final EventHandler<DisruptorEvent<T>> handler) {
+    this(disruptorSize);
+    disruptor.handleEventsWith(handler);
+  }
+
+  /** Subclasses using this constructor are responsible for setting up the event handlers. */
+  protected AbstractDisruptor(final int disruptorSize) {
     disruptor =
         new Disruptor<>(
             new DisruptorEvent.Factory<T>(),
@@ -30,7 +36,6 @@ abstract class AbstractDisruptor<T> implements Closeable {
             getThreadFactory(),
             ProducerType.MULTI,
             new SleepingWaitStrategy(0, TimeUnit.MILLISECONDS.toNanos(5)));
-    disruptor.handleEventsWith(handler);
   }
 
   protected abstract DaemonThreadFactory getThreadFactory();
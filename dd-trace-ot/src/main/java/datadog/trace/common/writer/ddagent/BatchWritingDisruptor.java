@@ -1,6 +1,7 @@
 package datadog.trace.common.writer.ddagent;
 
 import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.RingBuffer;
 import datadog.common.exec.CommonTaskExecutor;
 import datadog.common.exec.CommonTaskExecutor.Task;
 import datadog.common.exec.DaemonThreadFactory;
@@ -8,34 +9,48 @@ import datadog.trace.common.writer.DDAgentWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Disruptor that takes serialized traces and batches them into appropriately sized requests.
+ * Disruptor that takes serialized traces and batches them into appropriately sized requests. The
+ * flush interval and the payload size adapt to how the agent responds, see {@link FlushPolicy}.
  *
  * <p>publishing to the buffer will block if the buffer is full.
  */
 @Slf4j
-public class BatchWritingDisruptor extends AbstractDisruptor<byte[]> {
+public class BatchWritingDisruptor extends AbstractDisruptor<SerializedTrace> {
+  // Upper bound for the payload size picked by the FlushPolicy.
   private static final int FLUSH_PAYLOAD_BYTES = 5_000_000; // 5 MB
 
-  private final DisruptorEvent.HeartbeatTranslator<byte[]> heartbeatTranslator =
-      new DisruptorEvent.HeartbeatTranslator();
-
   public BatchWritingDisruptor(
       final int disruptorSize,
       final int flushFrequencySeconds,
       final DDAgentApi api,
       final Monitor monitor,
       final DDAgentWriter writer) {
-    super(disruptorSize, new BatchWritingHandler(flushFrequencySeconds, api, monitor, writer));
+    this(disruptorSize, flushFrequencySeconds, api, monitor, writer, null);
+  }
 
-    if (0 < flushFrequencySeconds) {
-      // This provides a steady stream of events to enable flushing with a low throughput.
-      CommonTaskExecutor.INSTANCE.scheduleAtFixedRate(
-          new HeartbeatTask(), this, 100, 100, TimeUnit.MILLISECONDS, "disruptor heartbeat");
+  /** @param spillBuffer when not null, payloads the agent could not accept are spilled to it. */
+  public BatchWritingDisruptor(
+      final int disruptorSize,
+      final int flushFrequencySeconds,
+      final DDAgentApi api,
+      final Monitor monitor,
+      final DDAgentWriter writer,
+      final SpillBuffer spillBuffer) {
+    super(disruptorSize);
+    final FlushPolicy flushPolicy =
+        new FlushPolicy(TimeUnit.SECONDS.toNanos(flushFrequencySeconds), FLUSH_PAYLOAD_BYTES);
+    if (spillBuffer != null) {
+      // Replayed payloads say as much about the agent as the ones sent from here.
+      spillBuffer.setFlushPolicy(flushPolicy);
     }
+    disruptor.handleEventsWith(
+        new BatchWritingHandler(
+            flushPolicy, api, monitor, writer, spillBuffer, disruptor.getRingBuffer()));
   }
 
   @Override
@@ -44,59 +59,66 @@ public class BatchWritingDisruptor extends AbstractDisruptor<byte[]> {
   }
 
   @Override
-  public boolean publish(final byte[] data, final int representativeCount) {
+  public boolean publish(final SerializedTrace data, final int representativeCount) {
     // blocking call to ensure serialized traces aren't discarded and apply back pressure.
     disruptor.getRingBuffer().publishEvent(dataTranslator, data, representativeCount);
     return true;
   }
 
-  private void heartbeat() {
-    if (running && getCurrentCount() == 0) {
-      disruptor.getRingBuffer().tryPublishEvent(heartbeatTranslator);
-    }
-  }
-
   // Intentionally not thread safe.
-  private static class BatchWritingHandler implements EventHandler<DisruptorEvent<byte[]>> {
+  private static class BatchWritingHandler
+      implements EventHandler<DisruptorEvent<SerializedTrace>> {
 
-    private final long flushFrequencyNanos;
+    private final FlushPolicy flushPolicy;
     private final DDAgentApi api;
     private final Monitor monitor;
     private final DDAgentWriter writer;
-    private final List<byte[]> serializedTraces = new ArrayList<>();
+    private final SpillBuffer spillBuffer;
+    private final RingBuffer<DisruptorEvent<SerializedTrace>> ringBuffer;
+    private final DisruptorEvent.HeartbeatTranslator<SerializedTrace> heartbeatTranslator =
+        new DisruptorEvent.HeartbeatTranslator<>();
+    private final List<SerializedTrace> serializedTraces = new ArrayList<>();
     private int representativeCount = 0;
     private int sizeInBytes = 0;
-    private long nextScheduledFlush;
+    // Read by the flush deadline task, Long.MAX_VALUE while there is nothing to flush.
+    private volatile long nextScheduledFlush = Long.MAX_VALUE;
+    private ScheduledFuture<?> flushDeadline = null;
 
     private BatchWritingHandler(
-        final int flushFrequencySeconds,
+        final FlushPolicy flushPolicy,
         final DDAgentApi api,
         final Monitor monitor,
-        final DDAgentWriter writer) {
-      flushFrequencyNanos = TimeUnit.SECONDS.toNanos(flushFrequencySeconds);
-      scheduleNextFlush();
+        final DDAgentWriter writer,
+        final SpillBuffer spillBuffer,
+        final RingBuffer<DisruptorEvent<SerializedTrace>> ringBuffer) {
+      this.flushPolicy = flushPolicy;
       this.api = api;
       this.monitor = monitor;
       this.writer = writer;
+      this.spillBuffer = spillBuffer;
+      this.ringBuffer = ringBuffer;
     }
 
-    // TODO: reduce byte[] garbage by keeping the byte[] on the event and copy before returning.
     @Override
     public void onEvent(
-        final DisruptorEvent<byte[]> event, final long sequence, final boolean endOfBatch) {
+        final DisruptorEvent<SerializedTrace> event,
+        final long sequence,
+        final boolean endOfBatch) {
       try {
         if (event.data != null) {
-          sizeInBytes += event.data.length;
+          if (serializedTraces.isEmpty()) {
+            scheduleNextFlush();
+          }
+          sizeInBytes += event.data.sizeInBytes();
           serializedTraces.add(event.data);
         }
 
         // Flush events might increase this with no data.
         representativeCount += event.representativeCount;
 
-        if (event.flushLatch != null
-            || FLUSH_PAYLOAD_BYTES <= sizeInBytes
-            || nextScheduledFlush <= System.nanoTime()) {
-          flush(event.flushLatch, FLUSH_PAYLOAD_BYTES <= sizeInBytes);
+        final boolean full = flushPolicy.getTargetPayloadBytes() <= sizeInBytes;
+        if (event.flushLatch != null || full || nextScheduledFlush <= System.nanoTime()) {
+          flush(event.flushLatch, full);
         }
       } finally {
         event.reset();
@@ -111,9 +133,24 @@ public class BatchWritingDisruptor extends AbstractDisruptor<byte[]> {
           return;
         }
 
-        // TODO add retry and rate limiting
+        if (spillBuffer != null && !spillBuffer.isEmpty()) {
+          // The agent is still failing or catching up with the spilled backlog: queue behind it
+          // rather than waiting on the agent here.
+          monitor.onFlush(writer, early);
+          spillBuffer.spill(representativeCount, serializedTraces);
+          return;
+        }
+
+        // TODO add rate limiting
+        final long start = System.nanoTime();
         final DDAgentApi.Response response =
             api.sendSerializedTraces(representativeCount, sizeInBytes, serializedTraces);
+        if (flushPolicy.onResponse(sizeInBytes, System.nanoTime() - start, response.success())) {
+          monitor.onFlushPolicyChange(
+              writer,
+              TimeUnit.NANOSECONDS.toMillis(flushPolicy.getFlushIntervalNanos()),
+              flushPolicy.getTargetPayloadBytes());
+        }
 
         monitor.onFlush(writer, early);
 
@@ -129,6 +166,9 @@ public class BatchWritingDisruptor extends AbstractDisruptor<byte[]> {
               sizeInBytes);
 
           monitor.onFailedSend(writer, representativeCount, sizeInBytes, response);
+          if (spillBuffer != null && SpillBuffer.isRetryable(response)) {
+            spillBuffer.spill(representativeCount, serializedTraces);
+          }
         }
       } catch (final Throwable e) {
         log.debug("Failed to send traces to the API: {}", e.getMessage());
@@ -140,10 +180,19 @@ public class BatchWritingDisruptor extends AbstractDisruptor<byte[]> {
         monitor.onFailedSend(
             writer, representativeCount, sizeInBytes, DDAgentApi.Response.failed(e));
       } finally {
+        // Hand pooled buffers back regardless of the outcome.
+        for (final SerializedTrace serializedTrace : serializedTraces) {
+          serializedTrace.release();
+        }
         serializedTraces.clear();
         sizeInBytes = 0;
         representativeCount = 0;
-        scheduleNextFlush();
+        // Nothing left to flush until the next trace comes in.
+        nextScheduledFlush = Long.MAX_VALUE;
+        if (flushDeadline != null) {
+          flushDeadline.cancel(false);
+          flushDeadline = null;
+        }
 
         if (flushLatch != null) {
           flushLatch.countDown();
@@ -152,20 +201,35 @@ public class BatchWritingDisruptor extends AbstractDisruptor<byte[]> {
     }
 
     private void scheduleNextFlush() {
-      // TODO: adjust this depending on responsiveness of the agent.
-      if (0 < flushFrequencyNanos) {
-        nextScheduledFlush = System.nanoTime() + flushFrequencyNanos;
+      final long flushIntervalNanos = flushPolicy.getFlushIntervalNanos();
+      if (flushIntervalNanos != Long.MAX_VALUE) {
+        nextScheduledFlush = System.nanoTime() + flushIntervalNanos;
+        // Wakes the handler up at the deadline in case no other event comes in before it.
+        flushDeadline =
+            CommonTaskExecutor.INSTANCE.schedule(
+                new FlushDeadlineTask(),
+                this,
+                flushIntervalNanos,
+                TimeUnit.NANOSECONDS,
+                "disruptor flush deadline");
       } else {
         nextScheduledFlush = Long.MAX_VALUE;
       }
     }
+
+    private void onFlushDeadline() {
+      // The batch may have been flushed in the meantime, by size or explicitly.
+      if (nextScheduledFlush <= System.nanoTime()) {
+        ringBuffer.tryPublishEvent(heartbeatTranslator);
+      }
+    }
   }
 
-  // Important to use explicit class to avoid implicit hard references to BatchWritingDisruptor
-  private static final class HeartbeatTask implements Task<BatchWritingDisruptor> {
+  // Important to use explicit class to avoid implicit hard references to BatchWritingHandler
+  private static final class FlushDeadlineTask implements Task<BatchWritingHandler> {
     @Override
-    public void run(final BatchWritingDisruptor target) {
-      target.heartbeat();
+    public void run(final BatchWritingHandler target) {
+      target.onFlushDeadline();
     }
   }
 }
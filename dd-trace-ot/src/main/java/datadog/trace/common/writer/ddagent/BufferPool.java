@@ -0,0 +1,84 @@
+package datadog.trace.common.writer.ddagent;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of fixed size {@link ByteBuffer} chunks that traces are serialized into.
+ *
+ * <p>Several serialized traces usually share a chunk, so chunks are reference counted and only
+ * returned to the pool once the serializer has moved on and every trace written into it has been
+ * sent. Requests for more than a chunk's worth of space are satisfied with an unpooled buffer.
+ */
+public final class BufferPool {
+  private final int chunkSize;
+  private final boolean direct;
+  private final BlockingQueue<ByteBuffer> available;
+
+  public BufferPool(final int chunkSize, final int maxPooledChunks, final boolean direct) {
+    this.chunkSize = chunkSize;
+    this.direct = direct;
+    available = new ArrayBlockingQueue<>(Math.max(1, maxPooledChunks));
+  }
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  public boolean isDirect() {
+    return direct;
+  }
+
+  /** @return number of chunks currently available for reuse. */
+  public int getAvailableChunks() {
+    return available.size();
+  }
+
+  Chunk acquire(final int minimumSize) {
+    if (minimumSize > chunkSize) {
+      return new Chunk(allocate(minimumSize), null);
+    }
+    ByteBuffer buffer = available.poll();
+    if (buffer == null) {
+      buffer = allocate(chunkSize);
+    }
+    return new Chunk(buffer, this);
+  }
+
+  private ByteBuffer allocate(final int size) {
+    return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+  }
+
+  private void recycle(final ByteBuffer buffer) {
+    buffer.clear();
+    // If the pool is already full the buffer is simply left to the GC.
+    available.offer(buffer);
+  }
+
+  /**
+   * A buffer handed out by the pool. The creator holds the initial reference, each serialized trace
+   * backed by the chunk holds another.
+   */
+  static final class Chunk {
+    final ByteBuffer buffer;
+    private final BufferPool pool;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private Chunk(final ByteBuffer buffer, final BufferPool pool) {
+      this.buffer = buffer;
+      this.pool = pool;
+    }
+
+    void retain() {
+      references.incrementAndGet();
+    }
+
+    void release() {
+      if (references.decrementAndGet() == 0 && pool != null) {
+        pool.recycle(buffer);
+      }
+    }
+  }
+}
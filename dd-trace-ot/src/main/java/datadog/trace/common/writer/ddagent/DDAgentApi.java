@@ -9,10 +9,10 @@ import datadog.common.exec.CommonTaskExecutor;
 import datadog.opentracing.ContainerInfo;
 import datadog.opentracing.DDSpan;
 import datadog.opentracing.DDTraceOTInfo;
+import datadog.trace.common.serialization.MsgpackFormatWriter;
 import datadog.trace.common.writer.unixdomainsockets.UnixDomainSocketFactory;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -86,13 +86,13 @@ public class DDAgentApi {
    *     parsing
    */
   Response sendTraces(final List<List<DDSpan>> traces) {
-    final List<byte[]> serializedTraces = new ArrayList<>(traces.size());
+    final List<SerializedTrace> serializedTraces = new ArrayList<>(traces.size());
     int sizeInBytes = 0;
     for (final List<DDSpan> trace : traces) {
       try {
         final byte[] serializedTrace = serializeTrace(trace);
         sizeInBytes += serializedTrace.length;
-        serializedTraces.add(serializedTrace);
+        serializedTraces.add(SerializedTrace.wrap(serializedTrace));
       } catch (final IOException e) {
         log.warn("Error serializing trace", e);
 
@@ -104,16 +104,23 @@ public class DDAgentApi {
   }
 
   byte[] serializeTrace(final List<DDSpan> trace) throws IOException {
-    // TODO: reuse byte array buffer
+    return serializeTrace(trace, MSGPACK_WRITER);
+  }
+
+  byte[] serializeTrace(final List<DDSpan> trace, final MsgpackFormatWriter formatWriter)
+      throws IOException {
+    // See PooledBufferOutput for the variant that reuses buffers.
     final ArrayBufferOutput output = new ArrayBufferOutput();
     final MessagePacker packer = MessagePack.newDefaultPacker(output);
-    MSGPACK_WRITER.writeTrace(trace, packer);
+    formatWriter.writeTrace(trace, packer);
     packer.flush();
     return output.toByteArray();
   }
 
   Response sendSerializedTraces(
-      final int representativeCount, final Integer sizeInBytes, final List<byte[]> traces) {
+      final int representativeCount,
+      final Integer sizeInBytes,
+      final List<SerializedTrace> traces) {
     if (httpClient == null) {
       detectEndpointAndBuildClient();
     }
@@ -141,14 +148,10 @@ public class DDAgentApi {
 
             @Override
             public void writeTo(final BufferedSink sink) throws IOException {
-              final OutputStream out = sink.outputStream();
-              final MessagePacker packer = MessagePack.newDefaultPacker(out);
-              packer.packArrayHeader(traces.size());
-              for (final byte[] trace : traces) {
-                packer.writePayload(trace);
+              writeArrayHeader(traces.size(), sink);
+              for (final SerializedTrace trace : traces) {
+                trace.writeTo(sink);
               }
-              packer.close();
-              out.close();
             }
           };
       final Request request =
@@ -226,6 +229,20 @@ public class DDAgentApi {
     }
   }
 
+  // Same encoding as MessagePacker.packArrayHeader, without going through an intermediate packer.
+  private static void writeArrayHeader(final int size, final BufferedSink sink)
+      throws IOException {
+    if (size < (1 << 4)) {
+      sink.writeByte(MessagePack.Code.FIXARRAY_PREFIX | size);
+    } else if (size < (1 << 16)) {
+      sink.writeByte(MessagePack.Code.ARRAY16);
+      sink.writeShort(size);
+    } else {
+      sink.writeByte(MessagePack.Code.ARRAY32);
+      sink.writeInt(size);
+    }
+  }
+
   private static final byte[] EMPTY_LIST = new byte[] {MessagePack.Code.FIXARRAY_PREFIX};
 
   private static boolean endpointAvailable(
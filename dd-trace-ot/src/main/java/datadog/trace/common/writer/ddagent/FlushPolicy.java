@@ -0,0 +1,89 @@
+package datadog.trace.common.writer.ddagent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the flush interval and the target payload size of {@link BatchWritingDisruptor} from the
+ * recent responses of the agent.
+ *
+ * <ul>
+ *   <li>The flush interval starts at the configured frequency and grows (up to {@value
+ *       #MAX_INTERVAL_MULTIPLIER} times) when the agent is slow to answer, so that a struggling
+ *       agent gets fewer, bigger requests.
+ *   <li>The target payload size is what the agent has been observed to ingest in about half a
+ *       second, so a single request doesn't hold up the traces behind it for too long.
+ * </ul>
+ *
+ * Responses come from the batch writing thread and from the {@link SpillBuffer} drainer, the
+ * settings are only read by the batch writing thread.
+ */
+final class FlushPolicy {
+  private static final int MIN_PAYLOAD_BYTES = 256 * 1024; // 256 KB
+  private static final long TARGET_REQUEST_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+  // The agent should spend at most about a tenth of the interval answering a request.
+  private static final int LATENCY_TO_INTERVAL_RATIO = 10;
+  private static final int MAX_INTERVAL_MULTIPLIER = 4;
+  private static final double SAMPLE_WEIGHT = 0.2;
+
+  private final long baseIntervalNanos;
+  private final int maxPayloadBytes;
+
+  private double averageLatencyNanos = 0;
+  private double averageBytesPerNano = 0;
+
+  // Written under the lock, read without it.
+  private volatile long flushIntervalNanos;
+  private volatile int targetPayloadBytes;
+
+  /** @param baseIntervalNanos 0 or less to only flush by size or explicitly. */
+  FlushPolicy(final long baseIntervalNanos, final int maxPayloadBytes) {
+    this.baseIntervalNanos = baseIntervalNanos;
+    this.maxPayloadBytes = maxPayloadBytes;
+    flushIntervalNanos = 0 < baseIntervalNanos ? baseIntervalNanos : Long.MAX_VALUE;
+    targetPayloadBytes = maxPayloadBytes;
+  }
+
+  /** @return {@link Long#MAX_VALUE} if there is no time based flushing. */
+  long getFlushIntervalNanos() {
+    return flushIntervalNanos;
+  }
+
+  int getTargetPayloadBytes() {
+    return targetPayloadBytes;
+  }
+
+  /** @return true if the flush interval or the target payload size changed. */
+  synchronized boolean onResponse(final int sizeInBytes, final long latencyNanos, final boolean success) {
+    averageLatencyNanos = average(averageLatencyNanos, latencyNanos);
+    // Small payloads are dominated by the per-request overhead, they say little about throughput.
+    if (success && MIN_PAYLOAD_BYTES <= sizeInBytes && 0 < latencyNanos) {
+      averageBytesPerNano = average(averageBytesPerNano, (double) sizeInBytes / latencyNanos);
+    }
+
+    final long previousInterval = flushIntervalNanos;
+    final int previousTarget = targetPayloadBytes;
+    if (0 < baseIntervalNanos) {
+      final long interval =
+          Math.min(
+              Math.max(baseIntervalNanos, (long) (averageLatencyNanos * LATENCY_TO_INTERVAL_RATIO)),
+              baseIntervalNanos * MAX_INTERVAL_MULTIPLIER);
+      // Round to the millisecond to not report changes for every little bit of jitter.
+      flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(TimeUnit.NANOSECONDS.toMillis(interval));
+    }
+    if (0 < averageBytesPerNano) {
+      final double target = averageBytesPerNano * TARGET_REQUEST_NANOS;
+      if (maxPayloadBytes <= target) {
+        targetPayloadBytes = maxPayloadBytes;
+      } else {
+        // Round to the kilobyte, for the same reason as the interval.
+        final int rounded = (int) Math.round(target) / 1024 * 1024;
+        targetPayloadBytes = Math.max(Math.min(MIN_PAYLOAD_BYTES, maxPayloadBytes), rounded);
+      }
+    }
+    return previousInterval != flushIntervalNanos || previousTarget != targetPayloadBytes;
+  }
+
+  private static double average(final double average, final double sample) {
+    return average == 0 ? sample : average + SAMPLE_WEIGHT * (sample - average);
+  }
+}
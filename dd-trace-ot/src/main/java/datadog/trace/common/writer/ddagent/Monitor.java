@@ -6,6 +6,10 @@ import datadog.opentracing.DDSpan;
 import datadog.opentracing.DDTraceOTInfo;
 import datadog.trace.common.writer.DDAgentWriter;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Callback interface for monitoring the health of the DDAgentWriter. Provides hooks for major
@@ -17,7 +21,12 @@ import java.util.List;
  *   <li>publishing to disruptor
  *   <li>serializing
  *   <li>sending to agent
+ *   <li>spilling to disk
  * </ul>
+ *
+ * <p>The interface grows with the writer, an implementation outside of the tracer has to be updated
+ * along with it: callbacks are added, and {@code onSerialize} takes the serialized size rather than
+ * the serialized bytes.
  */
 public interface Monitor {
   void onStart(final DDAgentWriter agentWriter);
@@ -32,8 +41,18 @@ public interface Monitor {
 
   void onScheduleFlush(final DDAgentWriter agentWriter, final boolean previousIncomplete);
 
+  /** Called when the flush interval or target payload size picked by the writer change. */
+  void onFlushPolicyChange(
+      final DDAgentWriter agentWriter,
+      final long flushIntervalMillis,
+      final int targetPayloadBytes);
+
+  /**
+   * Called once a trace is serialized. Only the size is given, the serialized trace may be in a
+   * pooled buffer which is recycled as soon as it's sent.
+   */
   void onSerialize(
-      final DDAgentWriter agentWriter, final List<DDSpan> trace, final byte[] serializedTrace);
+      final DDAgentWriter agentWriter, final List<DDSpan> trace, final int serializedSizeInBytes);
 
   void onFailedSerialize(
       final DDAgentWriter agentWriter, final List<DDSpan> trace, final Throwable optionalCause);
@@ -50,6 +69,23 @@ public interface Monitor {
       final int sizeInBytes,
       final DDAgentApi.Response response);
 
+  void onSpill(
+      final DDAgentWriter agentWriter, final int representativeCount, final int sizeInBytes);
+
+  void onSpillDropped(
+      final DDAgentWriter agentWriter, final int representativeCount, final int sizeInBytes);
+
+  void onSpillReplay(
+      final DDAgentWriter agentWriter, final int representativeCount, final int sizeInBytes);
+
+  /** A trace was garbage collected before all its spans finished, so it was dropped. */
+  void onAbandonedTrace(final DDAgentWriter agentWriter);
+
+  /** A running total kept outside of the writer, reported along with its health metrics. */
+  interface Counter {
+    long total();
+  }
+
   final class StatsD implements Monitor {
     public static final String PREFIX = "datadog.tracer";
 
@@ -62,18 +98,48 @@ public interface Monitor {
     private final String hostInfo;
     private final StatsDClient statsd;
 
+    // Drop rate and throughput of the trace queue, and the registered counters, are reported on
+    // flushes, and when traces are dropped, since no flush happens when the queue is saturated and
+    // drops all the traces.
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // Counters of components the tracer doesn't depend on, registered by the agent.
+    private static final Map<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+
+    // Counted since the last report.
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong serialized = new AtomicLong();
+    private final AtomicLong lastReportNanos = new AtomicLong(System.nanoTime());
+    private final long reportIntervalNanos;
+
+    // The totals already reported by this monitor, only the increase is counted.
+    private final Map<String, Long> reportedTotals = new ConcurrentHashMap<>();
+
     // DQH - Made a conscious choice to not take a Config object here.
     // Letting the creating of the Monitor take the Config,
     // so it can decide which Monitor variant to create.
     public StatsD(final String host, final int port) {
       hostInfo = host + ":" + port;
       statsd = new NonBlockingStatsDClient(PREFIX, host, port, getDefaultTags());
+      reportIntervalNanos = REPORT_INTERVAL_NANOS;
     }
 
     // Currently, intended for testing
     private StatsD(final StatsDClient statsd) {
+      this(statsd, REPORT_INTERVAL_NANOS);
+    }
+
+    // Currently, intended for testing
+    private StatsD(final StatsDClient statsd, final long reportIntervalNanos) {
       hostInfo = null;
       this.statsd = statsd;
+      this.reportIntervalNanos = reportIntervalNanos;
+    }
+
+    /** Registers a counter, reported as the increase of its total every time queue stats are. */
+    public static void registerCounter(final String name, final Counter counter) {
+      COUNTERS.put(name, counter);
     }
 
     protected static final String[] getDefaultTags() {
@@ -102,11 +168,14 @@ public interface Monitor {
     public void onPublish(final DDAgentWriter agentWriter, final List<DDSpan> trace) {
       statsd.incrementCounter("queue.accepted");
       statsd.count("queue.accepted_lengths", trace.size());
+      accepted.incrementAndGet();
     }
 
     @Override
     public void onFailedPublish(final DDAgentWriter agentWriter, final List<DDSpan> trace) {
       statsd.incrementCounter("queue.dropped");
+      dropped.incrementAndGet();
+      reportQueueStats(false);
     }
 
     @Override
@@ -115,14 +184,67 @@ public interface Monitor {
     }
 
     @Override
-    public void onFlush(final DDAgentWriter agentWriter, final boolean early) {}
+    public void onFlushPolicyChange(
+        final DDAgentWriter agentWriter,
+        final long flushIntervalMillis,
+        final int targetPayloadBytes) {
+      statsd.recordGaugeValue("queue.flush_interval", flushIntervalMillis);
+      statsd.recordGaugeValue("queue.target_payload_size", targetPayloadBytes);
+    }
+
+    @Override
+    public void onFlush(final DDAgentWriter agentWriter, final boolean early) {
+      reportQueueStats(true);
+    }
+
+    /** @param force report even if the last report is more recent than the report interval. */
+    private void reportQueueStats(final boolean force) {
+      final long now = System.nanoTime();
+      final long lastReport = lastReportNanos.get();
+      final long elapsedNanos = now - lastReport;
+      if (!force && elapsedNanos < reportIntervalNanos) {
+        return;
+      }
+      // Application threads drop traces concurrently, a single one of them reports.
+      if (!lastReportNanos.compareAndSet(lastReport, now)) {
+        return;
+      }
+      final long acceptedCount = accepted.getAndSet(0);
+      final long droppedCount = dropped.getAndSet(0);
+      final long serializedCount = serialized.getAndSet(0);
+      final long publishedCount = acceptedCount + droppedCount;
+      if (publishedCount > 0) {
+        statsd.recordGaugeValue("queue.drop_rate", (double) droppedCount / publishedCount);
+      }
+      if (elapsedNanos > 0) {
+        // serialized traces per second
+        statsd.recordGaugeValue(
+            "queue.throughput",
+            serializedCount * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+      }
+      reportCounters();
+    }
+
+    private void reportCounters() {
+      for (final Map.Entry<String, Counter> counter : COUNTERS.entrySet()) {
+        final long total = counter.getValue().total();
+        final Long reported = reportedTotals.put(counter.getKey(), total);
+        final long increase = total - (reported == null ? 0 : reported);
+        if (increase > 0) {
+          statsd.count(counter.getKey(), increase);
+        }
+      }
+    }
 
     @Override
     public void onSerialize(
-        final DDAgentWriter agentWriter, final List<DDSpan> trace, final byte[] serializedTrace) {
+        final DDAgentWriter agentWriter,
+        final List<DDSpan> trace,
+        final int serializedSizeInBytes) {
       // DQH - Because of Java tracer's 2 phase acceptance and serialization scheme, this doesn't
       // map precisely
-      statsd.count("queue.accepted_size", serializedTrace.length);
+      statsd.count("queue.accepted_size", serializedSizeInBytes);
+      serialized.incrementAndGet();
     }
 
     @Override
@@ -171,6 +293,30 @@ public interface Monitor {
       }
     }
 
+    @Override
+    public void onSpill(
+        final DDAgentWriter agentWriter, final int representativeCount, final int sizeInBytes) {
+      statsd.count("spill.accepted", representativeCount);
+      statsd.count("spill.accepted_size", sizeInBytes);
+    }
+
+    @Override
+    public void onSpillDropped(
+        final DDAgentWriter agentWriter, final int representativeCount, final int sizeInBytes) {
+      statsd.count("spill.dropped", representativeCount);
+    }
+
+    @Override
+    public void onSpillReplay(
+        final DDAgentWriter agentWriter, final int representativeCount, final int sizeInBytes) {
+      statsd.count("spill.replayed", representativeCount);
+    }
+
+    @Override
+    public void onAbandonedTrace(final DDAgentWriter agentWriter) {
+      statsd.incrementCounter("traces.abandoned");
+    }
+
     @Override
     public String toString() {
       if (hostInfo == null) {
@@ -201,9 +347,17 @@ public interface Monitor {
     public void onScheduleFlush(
         final DDAgentWriter agentWriter, final boolean previousIncomplete) {}
 
+    @Override
+    public void onFlushPolicyChange(
+        final DDAgentWriter agentWriter,
+        final long flushIntervalMillis,
+        final int targetPayloadBytes) {}
+
     @Override
     public void onSerialize(
-        final DDAgentWriter agentWriter, final List<DDSpan> trace, final byte[] serializedTrace) {}
+        final DDAgentWriter agentWriter,
+        final List<DDSpan> trace,
+        final int serializedSizeInBytes) {}
 
     @Override
     public void onFailedSerialize(
@@ -223,6 +377,21 @@ public interface Monitor {
         final int sizeInBytes,
         final DDAgentApi.Response response) {}
 
+    @Override
+    public void onSpill(
+        final DDAgentWriter agentWriter, final int representativeCount, final int sizeInBytes) {}
+
+    @Override
+    public void onSpillDropped(
+        final DDAgentWriter agentWriter, final int representativeCount, final int sizeInBytes) {}
+
+    @Override
+    public void onSpillReplay(
+        final DDAgentWriter agentWriter, final int representativeCount, final int sizeInBytes) {}
+
+    @Override
+    public void onAbandonedTrace(final DDAgentWriter agentWriter) {}
+
     @Override
     public String toString() {
       return "NoOp";
@@ -0,0 +1,99 @@
+package datadog.trace.common.writer.ddagent;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import org.msgpack.core.buffer.MessageBuffer;
+import org.msgpack.core.buffer.MessageBufferOutput;
+
+/**
+ * {@link MessageBufferOutput} which lets a {@link org.msgpack.core.MessagePacker} write traces back
+ * to back into chunks borrowed from a {@link BufferPool}. Each completed trace is handed out as a
+ * {@link SerializedTrace} slice of the chunk it was written to, so no intermediate byte array is
+ * produced.
+ *
+ * <p>A trace is always contiguous: if a chunk fills up part way through a trace, the partial trace
+ * is moved to a fresh chunk (one large enough to hold it if needed).
+ *
+ * <p>Intentionally not thread safe, each serializing thread owns its own instance.
+ */
+final class PooledBufferOutput implements MessageBufferOutput {
+  private final BufferPool pool;
+  private BufferPool.Chunk chunk;
+  private int traceStart = 0;
+
+  PooledBufferOutput(final BufferPool pool) {
+    this.pool = pool;
+  }
+
+  @Override
+  public MessageBuffer next(final int minimumSize) {
+    ensureRemaining(minimumSize);
+    // The view starts at the current position, so writes go right after what is already there.
+    return MessageBuffer.wrap(chunk.buffer);
+  }
+
+  @Override
+  public void writeBuffer(final int length) {
+    final ByteBuffer buffer = chunk.buffer;
+    ((Buffer) buffer).position(buffer.position() + length);
+  }
+
+  @Override
+  public void write(final byte[] src, final int offset, final int length) {
+    ensureRemaining(length);
+    chunk.buffer.put(src, offset, length);
+  }
+
+  @Override
+  public void add(final byte[] src, final int offset, final int length) {
+    write(src, offset, length);
+  }
+
+  @Override
+  public void flush() {}
+
+  @Override
+  public void close() {}
+
+  /** Completes the trace written since the last call and returns a view over its bytes. */
+  SerializedTrace finishTrace() throws IOException {
+    if (chunk == null) {
+      throw new IOException("Nothing was serialized");
+    }
+    final int traceEnd = chunk.buffer.position();
+    final ByteBuffer slice = chunk.buffer.duplicate();
+    ((Buffer) slice).limit(traceEnd);
+    ((Buffer) slice).position(traceStart);
+    traceStart = traceEnd;
+    chunk.retain();
+    return new SerializedTrace(slice, chunk);
+  }
+
+  /** Discards anything written since the last completed trace, e.g. after a failure. */
+  void abortTrace() {
+    if (chunk != null) {
+      ((Buffer) chunk.buffer).position(traceStart);
+    }
+  }
+
+  private void ensureRemaining(final int minimumSize) {
+    // Strictly greater: MessagePacker asks for a new buffer when it would fill the current one.
+    if (chunk != null && chunk.buffer.remaining() > minimumSize) {
+      return;
+    }
+    final BufferPool.Chunk previous = chunk;
+    final int pending = previous == null ? 0 : previous.buffer.position() - traceStart;
+    chunk = pool.acquire(pending + minimumSize + 1);
+    if (previous != null) {
+      if (pending > 0) {
+        final ByteBuffer partialTrace = previous.buffer.duplicate();
+        ((Buffer) partialTrace).limit(previous.buffer.position());
+        ((Buffer) partialTrace).position(traceStart);
+        chunk.buffer.put(partialTrace);
+      }
+      previous.release();
+    }
+    traceStart = 0;
+  }
+}
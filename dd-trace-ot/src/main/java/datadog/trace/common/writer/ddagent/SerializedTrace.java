@@ -0,0 +1,58 @@
+package datadog.trace.common.writer.ddagent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import okio.BufferedSink;
+
+/**
+ * A msgpack encoded trace waiting to be sent to the agent. It is either a standalone byte array or
+ * a slice of a pooled {@link BufferPool.Chunk}, in which case {@link #release()} must be called
+ * once the trace has been written out so the chunk can be reused.
+ */
+public final class SerializedTrace {
+  private final ByteBuffer buffer;
+  private final BufferPool.Chunk chunk;
+
+  public static SerializedTrace wrap(final byte[] serializedTrace) {
+    return new SerializedTrace(ByteBuffer.wrap(serializedTrace), null);
+  }
+
+  SerializedTrace(final ByteBuffer buffer, final BufferPool.Chunk chunk) {
+    this.buffer = buffer;
+    this.chunk = chunk;
+  }
+
+  public int sizeInBytes() {
+    return buffer.remaining();
+  }
+
+  /** Copies the trace straight from its backing buffer into the sink. */
+  public void writeTo(final BufferedSink sink) throws IOException {
+    if (buffer.hasArray()) {
+      sink.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    } else {
+      // Write from a view so the trace can be written again if the request is retried.
+      final ByteBuffer view = buffer.duplicate();
+      while (view.hasRemaining()) {
+        sink.write(view);
+      }
+    }
+  }
+
+  void writeTo(final ByteBuffer target) {
+    target.put(buffer.duplicate());
+  }
+
+  public byte[] toByteArray() {
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  /** Releases the pooled chunk backing this trace, if any. */
+  public void release() {
+    if (chunk != null) {
+      chunk.release();
+    }
+  }
+}
@@ -0,0 +1,592 @@
+package datadog.trace.common.writer.ddagent;
+
+import datadog.common.exec.DaemonThreadFactory;
+import datadog.trace.common.writer.DDAgentWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded on-disk queue for trace payloads the agent could not accept. Each payload is written to
+ * its own memory mapped segment file and a background thread replays the segments, oldest first,
+ * backing off exponentially while the agent keeps failing.
+ *
+ * <p>Segments are written to a {@code dd-spill-<uuid>} directory owned by this process (held with a
+ * file lock) under the configured spill directory. Segments left behind in such a directory by a
+ * process that is gone are adopted on startup, so traces survive an application restart. Nothing
+ * else in the configured spill directory is ever touched.
+ *
+ * <p>The oldest segments are dropped when the total size goes over the limit, or when they get
+ * older than the maximum age.
+ */
+@Slf4j
+public final class SpillBuffer implements Closeable {
+  private static final String DIRECTORY_PREFIX = "dd-spill-";
+  private static final String SEGMENT_SUFFIX = ".spill";
+  private static final String TEMP_SUFFIX = SEGMENT_SUFFIX + ".tmp";
+  private static final String LOCK_FILE = ".dd-spill.lock";
+  private static final int MAGIC = 0xDD5B0001;
+  private static final int HEADER_SIZE = 12; // magic, representative count, trace count
+  private static final long MIN_BACKOFF_MILLIS = 100;
+  private static final long MAX_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+  private final File directory;
+  private final String segmentPrefix;
+  private final long maxSizeInBytes;
+  private final long maxAgeMillis;
+  private final DDAgentApi api;
+  private final Monitor monitor;
+  private final DDAgentWriter writer;
+  private final RandomAccessFile lockFile;
+  private final Thread drainer;
+  private FlushPolicy flushPolicy = null;
+
+  // All guarded by this.
+  private final Deque<Segment> segments = new ArrayDeque<>();
+  private long sizeInBytes = 0;
+  private long segmentSequence = 0;
+
+  private volatile boolean running = false;
+
+  public SpillBuffer(
+      final File baseDirectory,
+      final long maxSizeInBytes,
+      final long maxAgeMillis,
+      final DDAgentApi api,
+      final Monitor monitor,
+      final DDAgentWriter writer)
+      throws IOException {
+    final String processId = UUID.randomUUID().toString();
+    directory = new File(baseDirectory, DIRECTORY_PREFIX + processId);
+    if (!directory.mkdirs()) {
+      throw new IOException("Unable to create spill directory " + directory);
+    }
+    lockFile = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+    if (lockFile.getChannel().tryLock() == null) {
+      lockFile.close();
+      throw new IOException("Unable to lock spill directory " + directory);
+    }
+    segmentPrefix = processId.substring(0, 8);
+    this.maxSizeInBytes = maxSizeInBytes;
+    this.maxAgeMillis = maxAgeMillis;
+    this.api = api;
+    this.monitor = monitor;
+    this.writer = writer;
+
+    adoptAbandonedSegments(baseDirectory);
+    drainer = DaemonThreadFactory.TRACE_SPILL_DRAINER.newThread(new Drainer(this));
+  }
+
+  /** Set before {@link #start()}, told about the responses to the replayed payloads. */
+  void setFlushPolicy(final FlushPolicy flushPolicy) {
+    this.flushPolicy = flushPolicy;
+  }
+
+  public void start() {
+    running = true;
+    drainer.start();
+  }
+
+  @Override
+  public void close() {
+    synchronized (this) {
+      running = false;
+      notifyAll();
+    }
+    // A request still going on when the lock is released could be sent again by the process
+    // adopting the directory, so it is interrupted and waited for first.
+    drainer.interrupt();
+    try {
+      drainer.join(CLOSE_TIMEOUT_MILLIS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (drainer.isAlive()) {
+      // The lock goes away with the process.
+      log.debug("Spilled traces drainer did not stop, keeping the spill directory lock");
+      return;
+    }
+    // Segments are kept on disk, the next process using the same spill directory will send them.
+    try {
+      lockFile.close();
+    } catch (final IOException e) {
+      log.debug("Failed to release spill directory lock", e);
+    }
+  }
+
+  public synchronized boolean isEmpty() {
+    return segments.isEmpty();
+  }
+
+  /**
+   * Copies the traces to a new segment, dropping the oldest segments if needed to stay under the
+   * size limit.
+   *
+   * @return false if the traces could not be spilled and are lost.
+   */
+  public boolean spill(final int representativeCount, final List<SerializedTrace> traces) {
+    int segmentSize = HEADER_SIZE;
+    for (final SerializedTrace trace : traces) {
+      segmentSize += 4 + trace.sizeInBytes();
+    }
+    if (!running || segmentSize > maxSizeInBytes) {
+      monitor.onSpillDropped(writer, representativeCount, segmentSize);
+      return false;
+    }
+
+    final File file;
+    final List<Segment> dropped = new ArrayList<>();
+    synchronized (this) {
+      dropExpired(System.currentTimeMillis(), dropped);
+      while (sizeInBytes + segmentSize > maxSizeInBytes && !segments.isEmpty()) {
+        drop(segments.pollFirst(), dropped);
+      }
+      // Reserve the space right away, writing the segment is done without holding the lock.
+      sizeInBytes += segmentSize;
+      file =
+          new File(
+              directory,
+              String.format(
+                  "%013d-%s-%06d",
+                  System.currentTimeMillis(), segmentPrefix, segmentSequence++));
+    }
+    reportDropped(dropped);
+
+    final File tempFile = new File(file.getPath() + TEMP_SUFFIX);
+    final File segmentFile = new File(file.getPath() + SEGMENT_SUFFIX);
+    try {
+      writeSegment(tempFile, segmentSize, representativeCount, traces);
+      if (!tempFile.renameTo(segmentFile)) {
+        throw new IOException("Unable to rename " + tempFile);
+      }
+    } catch (final IOException e) {
+      log.debug("Failed to spill traces to {}", tempFile, e);
+      tempFile.delete();
+      synchronized (this) {
+        sizeInBytes -= segmentSize;
+      }
+      monitor.onSpillDropped(writer, representativeCount, segmentSize);
+      return false;
+    }
+
+    synchronized (this) {
+      segments.addLast(
+          new Segment(segmentFile, createdMillis(segmentFile), segmentSize, representativeCount));
+      notifyAll();
+    }
+    monitor.onSpill(writer, representativeCount, segmentSize);
+    return true;
+  }
+
+  private static void writeSegment(
+      final File file,
+      final int segmentSize,
+      final int representativeCount,
+      final List<SerializedTrace> traces)
+      throws IOException {
+    try (final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        final FileChannel channel = raf.getChannel()) {
+      final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+      try {
+        buffer.putInt(MAGIC).putInt(representativeCount).putInt(traces.size());
+        for (final SerializedTrace trace : traces) {
+          buffer.putInt(trace.sizeInBytes());
+          trace.writeTo(buffer);
+        }
+      } finally {
+        Unmapper.unmap(buffer);
+      }
+    }
+  }
+
+  /** Sends the oldest segment, returns the delay before the next attempt. */
+  long drainOnce(final long backoffMillis) {
+    final Segment segment;
+    final List<Segment> dropped = new ArrayList<>();
+    synchronized (this) {
+      dropExpired(System.currentTimeMillis(), dropped);
+      final Segment oldest = segments.peekFirst();
+      if (oldest != null && !oldest.inFlight) {
+        // Dropping it while it is sent is left to complete(), see drop().
+        oldest.inFlight = true;
+        segment = oldest;
+      } else {
+        segment = null;
+      }
+    }
+    reportDropped(dropped);
+    if (segment == null) {
+      return 0;
+    }
+
+    final MappedByteBuffer mapped;
+    try {
+      mapped = map(segment.file);
+    } catch (final IOException e) {
+      log.debug("Dropping unreadable spilled segment {}", segment.file, e);
+      complete(segment, false, false);
+      return 0;
+    }
+    DDAgentApi.Response response = null;
+    try {
+      final List<SerializedTrace> traces = readSegment(mapped);
+      int payloadSize = 0;
+      for (final SerializedTrace trace : traces) {
+        payloadSize += trace.sizeInBytes();
+      }
+      final long start = System.nanoTime();
+      try {
+        response = api.sendSerializedTraces(segment.representativeCount, payloadSize, traces);
+      } catch (final Throwable e) {
+        response = DDAgentApi.Response.failed(e);
+      }
+      onResponse(payloadSize, System.nanoTime() - start, response.success());
+    } catch (final IOException e) {
+      log.debug("Dropping unreadable spilled segment {}", segment.file, e);
+    } finally {
+      // The traces are slices of the mapping, they are not used once the request is done. Unmapped
+      // before the file gets deleted, which fails on some platforms otherwise.
+      Unmapper.unmap(mapped);
+    }
+    if (response == null) {
+      // Unreadable, never sent.
+      complete(segment, false, false);
+      return 0;
+    } else if (response.success()) {
+      complete(segment, true, false);
+      return 0;
+    } else if (!isRetryable(response)) {
+      // The agent rejected the payload itself, retrying won't help.
+      complete(segment, false, false);
+      return 0;
+    } else {
+      complete(segment, false, true);
+      return Math.min(Math.max(MIN_BACKOFF_MILLIS, backoffMillis * 2), MAX_BACKOFF_MILLIS);
+    }
+  }
+
+  private void onResponse(final int payloadSize, final long latencyNanos, final boolean success) {
+    final FlushPolicy policy = flushPolicy;
+    if (policy != null && policy.onResponse(payloadSize, latencyNanos, success)) {
+      monitor.onFlushPolicyChange(
+          writer,
+          TimeUnit.NANOSECONDS.toMillis(policy.getFlushIntervalNanos()),
+          policy.getTargetPayloadBytes());
+    }
+  }
+
+  /** Communication failures and server errors are worth retrying, anything else is not. */
+  static boolean isRetryable(final DDAgentApi.Response response) {
+    return response.status() == null || response.status() >= 500;
+  }
+
+  private static MappedByteBuffer map(final File file) throws IOException {
+    try (final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        final FileChannel channel = raf.getChannel()) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  private static List<SerializedTrace> readSegment(final MappedByteBuffer mapped)
+      throws IOException {
+    final ByteBuffer buffer = mapped.duplicate();
+    if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+      throw new IOException("Not a spilled segment");
+    }
+    buffer.getInt(); // representative count
+    final int traceCount = buffer.getInt();
+    final List<SerializedTrace> traces = new ArrayList<>(traceCount);
+    for (int i = 0; i < traceCount; i++) {
+      final int size = buffer.getInt();
+      if (size < 0 || size > buffer.remaining()) {
+        throw new IOException("Truncated spilled segment");
+      }
+      final ByteBuffer trace = buffer.slice();
+      ((Buffer) trace).limit(size);
+      ((Buffer) buffer).position(buffer.position() + size);
+      traces.add(new SerializedTrace(trace, null));
+    }
+    return traces;
+  }
+
+  /**
+   * Accounts for a segment the drainer is done with: removes it, unless it is kept to be retried,
+   * and reports it as replayed or dropped. A segment dropped while it was sent is only deleted and
+   * reported here, and counts as replayed if the agent accepted it after all.
+   */
+  private void complete(final Segment segment, final boolean replayed, final boolean retry) {
+    synchronized (this) {
+      segment.inFlight = false;
+      if (!segment.dropped) {
+        if (retry) {
+          return;
+        }
+        segments.remove(segment);
+        sizeInBytes -= segment.sizeInBytes;
+      }
+      segment.file.delete();
+    }
+    if (replayed) {
+      monitor.onSpillReplay(writer, segment.representativeCount, segment.sizeInBytes);
+    } else {
+      monitor.onSpillDropped(writer, segment.representativeCount, segment.sizeInBytes);
+    }
+  }
+
+  // Must hold the lock.
+  private void dropExpired(final long now, final List<Segment> dropped) {
+    while (!segments.isEmpty() && segments.peekFirst().createdMillis + maxAgeMillis < now) {
+      drop(segments.pollFirst(), dropped);
+    }
+  }
+
+  // Must hold the lock, the segment must already be out of the queue. The monitor is told about
+  // it by reportDropped once the lock is released. A segment being sent is still mapped, so it is
+  // only marked and complete() takes care of it once the request is done.
+  private void drop(final Segment segment, final List<Segment> dropped) {
+    sizeInBytes -= segment.sizeInBytes;
+    if (segment.inFlight) {
+      segment.dropped = true;
+    } else {
+      segment.file.delete();
+      dropped.add(segment);
+    }
+  }
+
+  // Must not hold the lock.
+  private void reportDropped(final List<Segment> dropped) {
+    for (final Segment segment : dropped) {
+      monitor.onSpillDropped(writer, segment.representativeCount, segment.sizeInBytes);
+    }
+  }
+
+  /**
+   * Moves the segments of spill directories no process holds the lock for anymore into this
+   * process' directory. Only directories created by a spill buffer, recognized by their name and
+   * lock file, are considered, and only segment files are moved or deleted from them.
+   */
+  private void adoptAbandonedSegments(final File baseDirectory) {
+    final File[] directories =
+        baseDirectory.listFiles(
+            new FileFilter() {
+              @Override
+              public boolean accept(final File file) {
+                // Checked before opening anything, so no file gets created in foreign directories.
+                return file.getName().startsWith(DIRECTORY_PREFIX)
+                    && !file.equals(directory)
+                    && new File(file, LOCK_FILE).isFile();
+              }
+            });
+    if (directories == null) {
+      return;
+    }
+    final List<File> adopted = new ArrayList<>();
+    for (final File abandoned : directories) {
+      final File abandonedLock = new File(abandoned, LOCK_FILE);
+      boolean empty = true;
+      try (final RandomAccessFile raf = new RandomAccessFile(abandonedLock, "rw")) {
+        final FileLock lock = raf.getChannel().tryLock();
+        if (lock == null) {
+          continue; // Still in use.
+        }
+        final File[] files = abandoned.listFiles();
+        if (files != null) {
+          for (final File file : files) {
+            final String name = file.getName();
+            if (name.endsWith(SEGMENT_SUFFIX)) {
+              final File target = new File(directory, name);
+              if (file.renameTo(target)) {
+                adopted.add(target);
+              } else {
+                empty = false;
+              }
+            } else if (name.endsWith(TEMP_SUFFIX)) {
+              file.delete(); // Incomplete segment.
+            } else if (!file.equals(abandonedLock)) {
+              empty = false;
+            }
+          }
+        }
+        if (empty) {
+          abandonedLock.delete();
+        }
+      } catch (final OverlappingFileLockException e) {
+        continue; // Held by another writer in this process.
+      } catch (final IOException e) {
+        log.debug("Unable to adopt spilled segments from {}", abandoned, e);
+        continue;
+      }
+      if (empty) {
+        abandoned.delete();
+      }
+    }
+
+    final File[] sorted = adopted.toArray(new File[0]);
+    // Names start with the creation time, so this sorts oldest first.
+    Arrays.sort(sorted);
+    final List<Segment> dropped = new ArrayList<>();
+    synchronized (this) {
+      for (final File file : sorted) {
+        try {
+          final int size = (int) file.length();
+          segments.addLast(
+              new Segment(file, createdMillis(file), size, readRepresentativeCount(file)));
+          sizeInBytes += size;
+        } catch (final IOException | NumberFormatException e) {
+          log.debug("Dropping unreadable spilled segment {}", file, e);
+          file.delete();
+        }
+      }
+      while (sizeInBytes > maxSizeInBytes && !segments.isEmpty()) {
+        drop(segments.pollFirst(), dropped);
+      }
+      if (!segments.isEmpty()) {
+        log.debug("Adopted {} spilled segments", segments.size());
+      }
+    }
+    reportDropped(dropped);
+  }
+
+  private static int readRepresentativeCount(final File file) throws IOException {
+    try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      if (raf.length() < HEADER_SIZE || raf.readInt() != MAGIC) {
+        throw new IOException("Not a spilled segment");
+      }
+      return raf.readInt();
+    }
+  }
+
+  private static long createdMillis(final File file) {
+    final String name = file.getName();
+    return Long.parseLong(name.substring(0, name.indexOf('-')));
+  }
+
+  private static final class Segment {
+    final File file;
+    final long createdMillis;
+    final int sizeInBytes;
+    final int representativeCount;
+    // Both guarded by the buffer.
+    boolean inFlight = false;
+    boolean dropped = false;
+
+    private Segment(
+        final File file,
+        final long createdMillis,
+        final int sizeInBytes,
+        final int representativeCount) {
+      this.file = file;
+      this.createdMillis = createdMillis;
+      this.sizeInBytes = sizeInBytes;
+      this.representativeCount = representativeCount;
+    }
+  }
+
+  /**
+   * Releases mappings right away instead of waiting for the buffers to be collected, which keeps
+   * the address space in check and lets the segment files be deleted on every platform. Falls back
+   * to leaving the mapping to the garbage collector when the JDK doesn't expose a way to do it.
+   */
+  static final class Unmapper {
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER; // Java 9+
+    private static final Method CLEANER; // Java 7 & 8
+    private static final Method CLEAN;
+
+    static {
+      Object unsafe = null;
+      Method invokeCleaner = null;
+      Method cleaner = null;
+      Method clean = null;
+      try {
+        final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+        invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+        unsafe = theUnsafe.get(null);
+      } catch (final Throwable e) {
+        invokeCleaner = null;
+        try {
+          cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+          clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+        } catch (final Throwable t) {
+          log.debug("Unable to unmap spilled segments, leaving it to the garbage collector", t);
+          cleaner = null;
+          clean = null;
+        }
+      }
+      UNSAFE = unsafe;
+      INVOKE_CLEANER = invokeCleaner;
+      CLEANER = cleaner;
+      CLEAN = clean;
+    }
+
+    /** The buffer must be the mapping itself, not a slice or duplicate, and not used afterwards. */
+    static void unmap(final MappedByteBuffer buffer) {
+      try {
+        if (INVOKE_CLEANER != null) {
+          INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } else if (CLEANER != null) {
+          final Object cleaner = CLEANER.invoke(buffer);
+          if (cleaner != null) {
+            CLEAN.invoke(cleaner);
+          }
+        }
+      } catch (final Throwable e) {
+        log.debug("Failed to unmap spilled segment", e);
+      }
+    }
+  }
+
+  private static final class Drainer implements Runnable {
+    private final SpillBuffer buffer;
+
+    private Drainer(final SpillBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public void run() {
+      long backoffMillis = 0;
+      try {
+        while (buffer.running) {
+          synchronized (buffer) {
+            // Wait for something to send, and sit out the backoff even if new segments come in.
+            final long nextAttempt = System.currentTimeMillis() + backoffMillis;
+            long delay = backoffMillis;
+            while (buffer.running && (buffer.segments.isEmpty() || delay > 0)) {
+              buffer.wait(buffer.segments.isEmpty() ? 0 : delay);
+              delay = nextAttempt - System.currentTimeMillis();
+            }
+          }
+          if (buffer.running) {
+            backoffMillis = buffer.drainOnce(backoffMillis);
+          }
+        }
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (final Throwable e) {
+        log.debug("Spilled traces drainer stopped", e);
+      }
+    }
+  }
+}
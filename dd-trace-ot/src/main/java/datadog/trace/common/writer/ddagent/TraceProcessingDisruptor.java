@@ -4,9 +4,13 @@ import com.lmax.disruptor.EventHandler;
 import datadog.common.exec.DaemonThreadFactory;
 import datadog.opentracing.DDSpan;
 import datadog.trace.common.processor.TraceProcessor;
+import datadog.trace.common.serialization.MsgpackFormatWriter;
 import datadog.trace.common.writer.DDAgentWriter;
+import java.io.IOException;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
 
 /**
  * Disruptor that takes completed traces and applies processing to them. Upon completion, the
@@ -18,14 +22,37 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class TraceProcessingDisruptor extends AbstractDisruptor<List<DDSpan>> {
 
+  /**
+   * @param bufferPool when not null, traces are serialized into chunks borrowed from this pool.
+   * @param workers number of threads processing and serializing traces. With more than one, each
+   *     worker takes every {@code workers}th event and flushes are propagated by a final stage that
+   *     runs once all workers are done with the preceding events.
+   * @param formatWriter encodes the traces, the same for every worker.
+   */
+  @SuppressWarnings("unchecked")
   public TraceProcessingDisruptor(
       final int disruptorSize,
       final DDAgentApi api,
       final BatchWritingDisruptor batchWritingDisruptor,
       final Monitor monitor,
-      final DDAgentWriter writer) {
-    // TODO: add config to enable control over serialization overhead.
-    super(disruptorSize, new TraceSerializingHandler(api, batchWritingDisruptor, monitor, writer));
+      final DDAgentWriter writer,
+      final BufferPool bufferPool,
+      final int workers,
+      final MsgpackFormatWriter formatWriter) {
+    super(disruptorSize);
+    if (workers <= 1) {
+      disruptor.handleEventsWith(
+          new TraceSerializingHandler(
+              api, batchWritingDisruptor, monitor, writer, bufferPool, 0, 1, formatWriter));
+    } else {
+      final EventHandler<DisruptorEvent<List<DDSpan>>>[] handlers = new EventHandler[workers];
+      for (int i = 0; i < workers; i++) {
+        handlers[i] =
+            new TraceSerializingHandler(
+                api, batchWritingDisruptor, monitor, writer, bufferPool, i, workers, formatWriter);
+      }
+      disruptor.handleEventsWith(handlers).then(new FlushingHandler(batchWritingDisruptor));
+    }
   }
 
   @Override
@@ -38,7 +65,7 @@ public class TraceProcessingDisruptor extends AbstractDisruptor<List<DDSpan>> {
     return disruptor.getRingBuffer().tryPublishEvent(dataTranslator, data, representativeCount);
   }
 
-  // This class is threadsafe if we want to enable more processors.
+  // Each worker needs its own instance, the processor and pooled output are not shared.
   public static class TraceSerializingHandler
       implements EventHandler<DisruptorEvent<List<DDSpan>>> {
     private final TraceProcessor processor = new TraceProcessor();
@@ -46,49 +73,124 @@ public class TraceProcessingDisruptor extends AbstractDisruptor<List<DDSpan>> {
     private final BatchWritingDisruptor batchWritingDisruptor;
     private final Monitor monitor;
     private final DDAgentWriter writer;
+    private final MsgpackFormatWriter formatWriter;
+    private final PooledBufferOutput pooledOutput;
+    private MessagePacker pooledPacker;
+    private final int shard;
+    private final int shardCount;
 
+    /**
+     * @param shard only events with {@code sequence % shardCount == shard} are processed.
+     * @param shardCount when more than one, flushing and resetting events is left to a {@link
+     *     FlushingHandler} running after all the shards.
+     * @param formatWriter encodes the traces.
+     */
     public TraceSerializingHandler(
         final DDAgentApi api,
         final BatchWritingDisruptor batchWritingDisruptor,
         final Monitor monitor,
-        final DDAgentWriter writer) {
+        final DDAgentWriter writer,
+        final BufferPool bufferPool,
+        final int shard,
+        final int shardCount,
+        final MsgpackFormatWriter formatWriter) {
       this.api = api;
       this.batchWritingDisruptor = batchWritingDisruptor;
       this.monitor = monitor;
       this.writer = writer;
+      this.formatWriter = formatWriter;
+      if (bufferPool != null) {
+        pooledOutput = new PooledBufferOutput(bufferPool);
+        pooledPacker = MessagePack.newDefaultPacker(pooledOutput);
+      } else {
+        pooledOutput = null;
+      }
+      this.shard = shard;
+      this.shardCount = shardCount;
     }
 
     @Override
     public void onEvent(
         final DisruptorEvent<List<DDSpan>> event, final long sequence, final boolean endOfBatch) {
+      if (shardCount > 1) {
+        if (event.data != null && sequence % shardCount == shard) {
+          process(event);
+        }
+        return;
+      }
       try {
         if (event.data != null) {
-          // TODO populate `_sample_rate` metric in a way that accounts for lost/dropped traces
-          try {
-            event.data = processor.onTraceComplete(event.data);
-            final byte[] serializedTrace = api.serializeTrace(event.data);
-            batchWritingDisruptor.publish(serializedTrace, event.representativeCount);
-            monitor.onSerialize(writer, event.data, serializedTrace);
-            event.representativeCount = 0; // reset in case flush is invoked below.
-          } catch (final Throwable e) {
-            log.debug("Error while serializing trace", e);
-            monitor.onFailedSerialize(writer, event.data, e);
-          }
+          process(event);
         }
+        propagateFlush(batchWritingDisruptor, event);
+      } finally {
+        event.reset();
+      }
+    }
 
-        if (event.flushLatch != null) {
-          if (batchWritingDisruptor.running) {
-            // propagate the flush.
-            batchWritingDisruptor.flush(event.representativeCount, event.flushLatch);
-          }
-          if (!batchWritingDisruptor.running) { // check again to protect against race condition.
-            // got shutdown early somehow?
-            event.flushLatch.countDown();
-          }
-        }
+    private void process(final DisruptorEvent<List<DDSpan>> event) {
+      // TODO populate `_sample_rate` metric in a way that accounts for lost/dropped traces
+      try {
+        event.data = processor.onTraceComplete(event.data);
+        final SerializedTrace serializedTrace = serialize(event.data);
+        // Read the size first, a pooled buffer may be recycled as soon as it is published.
+        final int sizeInBytes = serializedTrace.sizeInBytes();
+        batchWritingDisruptor.publish(serializedTrace, event.representativeCount);
+        monitor.onSerialize(writer, event.data, sizeInBytes);
+        event.representativeCount = 0; // reset in case flush is invoked below.
+      } catch (final Throwable e) {
+        log.debug("Error while serializing trace", e);
+        monitor.onFailedSerialize(writer, event.data, e);
+      }
+    }
+
+    private SerializedTrace serialize(final List<DDSpan> trace) throws IOException {
+      if (pooledOutput == null) {
+        return SerializedTrace.wrap(api.serializeTrace(trace, formatWriter));
+      }
+      try {
+        formatWriter.writeTrace(trace, pooledPacker);
+        pooledPacker.flush();
+        return pooledOutput.finishTrace();
+      } catch (final IOException | RuntimeException e) {
+        pooledOutput.abortTrace();
+        // The packer may still hold part of the failed trace, start over with a clean one.
+        pooledPacker = MessagePack.newDefaultPacker(pooledOutput);
+        throw e;
+      }
+    }
+  }
+
+  /** Final stage when running several workers, sees each event once all of them are done. */
+  static class FlushingHandler implements EventHandler<DisruptorEvent<List<DDSpan>>> {
+    private final BatchWritingDisruptor batchWritingDisruptor;
+
+    FlushingHandler(final BatchWritingDisruptor batchWritingDisruptor) {
+      this.batchWritingDisruptor = batchWritingDisruptor;
+    }
+
+    @Override
+    public void onEvent(
+        final DisruptorEvent<List<DDSpan>> event, final long sequence, final boolean endOfBatch) {
+      try {
+        propagateFlush(batchWritingDisruptor, event);
       } finally {
         event.reset();
       }
     }
   }
+
+  private static void propagateFlush(
+      final BatchWritingDisruptor batchWritingDisruptor, final DisruptorEvent<?> event) {
+    if (event.flushLatch != null) {
+      if (batchWritingDisruptor.running) {
+        // propagate the flush.
+        batchWritingDisruptor.flush(event.representativeCount, event.flushLatch);
+      }
+      if (!batchWritingDisruptor.running) { // check again to protect against race condition.
+        // got shutdown early somehow?
+        event.flushLatch.countDown();
+      }
+    }
+  }
 }
@@ -151,8 +151,8 @@ class DDSpanBuilderTest extends DDSpecification {
     final BigInteger expectedParentId = spanId
 
     final DDSpanContext mockedContext = Mock()
-    1 * mockedContext.getTraceId() >> spanId
-    1 * mockedContext.getSpanId() >> spanId
+    1 * mockedContext.getTraceIdAsLong() >> spanId.longValue()
+    1 * mockedContext.getSpanIdAsLong() >> spanId.longValue()
     _ * mockedContext.getServiceName() >> "foo"
     1 * mockedContext.getBaggageItems() >> [:]
     1 * mockedContext.getTrace() >> new PendingTrace(tracer, 1G)
@@ -0,0 +1,77 @@
+package datadog.opentracing
+
+import datadog.trace.util.test.DDSpecification
+
+import static datadog.opentracing.DDTracer.TRACE_ID_MAX
+
+class IdUtilsTest extends DDSpecification {
+
+  def "convert #value to and from unsigned long"() {
+    when:
+    def id = IdUtils.fromBigInteger(value)
+
+    then:
+    IdUtils.toBigInteger(id) == value
+    IdUtils.toString(id) == value.toString()
+    IdUtils.toHexString(id) == value.toString(16)
+    IdUtils.parseUnsigned(value.toString(), 10) == id
+    IdUtils.parseUnsigned(value.toString(16), 16) == id
+
+    where:
+    value << [
+      0G,
+      1G,
+      9G,
+      10G,
+      2G.pow(63) - 1,
+      2G.pow(63),
+      2G.pow(63) + 1,
+      TRACE_ID_MAX - 5,
+      TRACE_ID_MAX - 1,
+      TRACE_ID_MAX
+    ]
+  }
+
+  def "parsing #value fails"() {
+    when:
+    IdUtils.parseUnsigned(value, radix)
+
+    then:
+    thrown(NumberFormatException)
+
+    where:
+    value                       | radix
+    ""                          | 10
+    "-1"                        | 10
+    "+1"                        | 10
+    "1a"                        | 10
+    "${TRACE_ID_MAX + 1}"       | 10
+    "${TRACE_ID_MAX * 10}"      | 10
+    "1" + "0" * 20              | 10
+    "1" + "0" * 16              | 16
+    "f" * 17                    | 16
+    "g"                         | 16
+  }
+
+  def "leading zeros are accepted"() {
+    expect:
+    IdUtils.parseUnsigned("000" + "f" * 16, 16) == -1L
+    IdUtils.parseUnsigned("00001", 10) == 1L
+  }
+
+  def "out of range big integers are rejected"() {
+    when:
+    IdUtils.fromBigInteger(value)
+
+    then:
+    thrown(IllegalArgumentException)
+
+    where:
+    value << [-1G, TRACE_ID_MAX + 1]
+  }
+
+  def "generated ids are positive"() {
+    expect:
+    (1..1000).every { IdUtils.generateId() > 0 }
+  }
+}
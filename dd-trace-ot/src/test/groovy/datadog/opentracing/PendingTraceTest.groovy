@@ -9,6 +9,8 @@ import spock.lang.Subject
 import spock.lang.Timeout
 
 import java.lang.ref.WeakReference
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicInteger
 
@@ -35,7 +37,6 @@ class PendingTraceTest extends DDSpecification {
   def setup() {
     assert trace.size() == 0
     assert trace.pendingReferenceCount.get() == 1
-    assert trace.weakReferences.size() == 1
     assert trace.isWritten.get() == false
   }
 
@@ -55,14 +56,12 @@ class PendingTraceTest extends DDSpecification {
 
     then:
     trace.pendingReferenceCount.get() == 2
-    trace.weakReferences.size() == 2
 
     when:
     child.finish()
 
     then:
     trace.pendingReferenceCount.get() == 1
-    trace.weakReferences.size() == 1
     trace.asList() == [child]
     writer == []
 
@@ -71,7 +70,6 @@ class PendingTraceTest extends DDSpecification {
 
     then:
     trace.pendingReferenceCount.get() == 0
-    trace.weakReferences.size() == 0
     trace.asList() == [rootSpan, child]
     writer == [[rootSpan, child]]
     traceCount.get() == 1
@@ -83,14 +81,12 @@ class PendingTraceTest extends DDSpecification {
 
     then:
     trace.pendingReferenceCount.get() == 2
-    trace.weakReferences.size() == 2
 
     when:
     rootSpan.finish()
 
     then:
     trace.pendingReferenceCount.get() == 1
-    trace.weakReferences.size() == 1
     trace.asList() == [rootSpan]
     writer == []
 
@@ -99,7 +95,6 @@ class PendingTraceTest extends DDSpecification {
 
     then:
     trace.pendingReferenceCount.get() == 0
-    trace.weakReferences.size() == 0
     trace.asList() == [child, rootSpan]
     writer == [[child, rootSpan]]
     traceCount.get() == 1
@@ -113,25 +108,32 @@ class PendingTraceTest extends DDSpecification {
 
     then:
     trace.pendingReferenceCount.get() == 1
-    trace.weakReferences.size() == 1
     trace.asList() == [rootSpan]
     writer == []
 
-    when:
-    def childRef = new WeakReference<>(child)
+    when: "nothing references the trace anymore"
+    def traceRef = new WeakReference<>(trace)
     child = null
-    GCUtils.awaitGC(childRef)
-    while (trace.pendingReferenceCount.get() > 0) {
-      trace.clean()
+    rootSpan = null
+    trace = null
+    GCUtils.awaitGC(traceRef)
+    while (traceCount.get() == 0) {
+      PendingTrace.clean()
     }
 
     then:
-    trace.pendingReferenceCount.get() == 0
-    trace.weakReferences.size() == 0
-    trace.asList() == [rootSpan]
     writer == []
     traceCount.get() == 1
-    !PendingTrace.SPAN_CLEANER.get().pendingTraces.contains(trace)
+    PendingTrace.SPAN_CLEANER.get().pendingTraces.isEmpty()
+  }
+
+  def "written trace is no longer tracked by the cleaner"() {
+    when:
+    rootSpan.finish()
+
+    then:
+    writer == [[rootSpan]]
+    PendingTrace.SPAN_CLEANER.get().pendingTraces.isEmpty()
   }
 
   def "add unfinished span to trace fails"() {
@@ -140,7 +142,6 @@ class PendingTraceTest extends DDSpecification {
 
     expect:
     trace.pendingReferenceCount.get() == 1
-    trace.weakReferences.size() == 1
     trace.asList() == []
     traceCount.get() == 0
   }
@@ -152,7 +153,6 @@ class PendingTraceTest extends DDSpecification {
 
     expect:
     otherTrace.pendingReferenceCount.get() == 0
-    otherTrace.weakReferences.size() == 0
     otherTrace.asList() == []
   }
 
@@ -164,7 +164,6 @@ class PendingTraceTest extends DDSpecification {
 
     expect:
     otherTrace.pendingReferenceCount.get() == 0
-    otherTrace.weakReferences.size() == 0
     otherTrace.asList() == []
   }
 
@@ -203,14 +202,12 @@ class PendingTraceTest extends DDSpecification {
 
     then:
     trace.pendingReferenceCount.get() == 3
-    trace.weakReferences.size() == 3
 
     when:
     rootSpan.finish()
 
     then:
     trace.pendingReferenceCount.get() == 2
-    trace.weakReferences.size() == 2
     trace.asList() == [rootSpan]
     writer == []
     traceCount.get() == 0
@@ -220,7 +217,6 @@ class PendingTraceTest extends DDSpecification {
 
     then:
     trace.pendingReferenceCount.get() == 1
-    trace.weakReferences.size() == 1
     trace.asList() == [rootSpan]
     writer == [[child1]]
     traceCount.get() == 1
@@ -230,7 +226,6 @@ class PendingTraceTest extends DDSpecification {
 
     then:
     trace.pendingReferenceCount.get() == 0
-    trace.weakReferences.size() == 0
     trace.asList() == [child2, rootSpan]
     writer == [[child1], [child2, rootSpan]]
     traceCount.get() == 2
@@ -249,14 +244,12 @@ class PendingTraceTest extends DDSpecification {
 
     then:
     trace.pendingReferenceCount.get() == 3
-    trace.weakReferences.size() == 3
 
     when:
     child1.finish()
 
     then:
     trace.pendingReferenceCount.get() == 2
-    trace.weakReferences.size() == 2
     trace.asList() == [child1]
     writer == []
     traceCount.get() == 0
@@ -266,7 +259,6 @@ class PendingTraceTest extends DDSpecification {
 
     then:
     trace.pendingReferenceCount.get() == 1
-    trace.weakReferences.size() == 1
     trace.asList() == []
     writer == [[child2, child1]]
     traceCount.get() == 1
@@ -276,9 +268,51 @@ class PendingTraceTest extends DDSpecification {
 
     then:
     trace.pendingReferenceCount.get() == 0
-    trace.weakReferences.size() == 0
     trace.asList() == [rootSpan]
     writer == [[child2, child1], [rootSpan]]
     traceCount.get() == 2
   }
+
+  @Timeout(value = 60, unit = TimeUnit.SECONDS)
+  def "concurrently finished spans are written once (partial flush min #partialFlushMinSpans)"() {
+    setup:
+    def properties = new Properties()
+    properties.setProperty(PARTIAL_FLUSH_MIN_SPANS, "$partialFlushMinSpans")
+    def config = Config.get(properties)
+    def tracer = DDTracer.builder().config(config).writer(writer).build()
+    def trace = new PendingTrace(tracer, traceId)
+    def rootSpan = SpanFactory.newSpanOf(trace)
+    def threadCount = 8
+    def spansPerThread = 500
+    def start = new CountDownLatch(1)
+    def executor = Executors.newFixedThreadPool(threadCount)
+
+    when:
+    def futures = (1..threadCount).collect {
+      executor.submit {
+        start.await()
+        spansPerThread.times {
+          def span = tracer.buildSpan("child").asChildOf(rootSpan).start()
+          span.finish()
+        }
+      }
+    }
+    start.countDown()
+    futures*.get()
+    rootSpan.finish()
+    def written = writer.flatten()
+
+    then:
+    trace.pendingReferenceCount.get() == 0
+    written.size() == threadCount * spansPerThread + 1
+    written.toSet().size() == written.size()
+    written.contains(rootSpan)
+    traceCount.get() == writer.size()
+
+    cleanup:
+    executor.shutdownNow()
+
+    where:
+    partialFlushMinSpans << [0, 1, 10]
+  }
 }
@@ -52,8 +52,8 @@ class SpanFactory {
   static DDSpan newSpanOf(PendingTrace trace) {
     def context = new DDSpanContext(
       trace.traceId,
-      1G,
-      0G,
+      1L,
+      0L,
       "fakeService",
       "fakeOperation",
       "fakeResource",
@@ -0,0 +1,127 @@
+package datadog.opentracing
+
+import datadog.trace.util.test.DDSpecification
+
+import java.util.concurrent.CountDownLatch
+
+class TagMapTest extends DDSpecification {
+
+  def "empty map"() {
+    setup:
+    def map = new TagMap<Object>()
+
+    expect:
+    map.isEmpty()
+    map == [:]
+    map.get("key") == null
+    !map.containsKey("key")
+    !map.entrySet().iterator().hasNext()
+  }
+
+  def "set, replace and delete #count entries"() {
+    setup:
+    def map = new TagMap<Object>()
+    def expected = [:]
+
+    when:
+    (1..count).each {
+      map.set("key$it".toString(), it)
+      expected.put("key$it".toString(), it)
+    }
+
+    then:
+    map == expected
+    map.size() == count
+
+    when:
+    (1..count).step(2) {
+      map.set("key$it".toString(), "replaced")
+      expected.put("key$it".toString(), "replaced")
+    }
+    (1..count).step(3) {
+      map.delete("key$it".toString())
+      expected.remove("key$it".toString())
+    }
+
+    then:
+    map == expected
+    map.size() == expected.size()
+    expected.every { map.get(it.key) == it.value }
+
+    where:
+    count << [1, 4, 5, 16, 100]
+  }
+
+  def "null value deletes the key"() {
+    setup:
+    def map = new TagMap<Object>([a: 1, b: 2])
+
+    when:
+    map.set("a", null)
+    map.delete("missing")
+
+    then:
+    map == [b: 2]
+  }
+
+  def "map view is read only"() {
+    setup:
+    def map = new TagMap<Object>([a: 1])
+
+    when:
+    map.put("b", 2)
+
+    then:
+    thrown(UnsupportedOperationException)
+
+    when:
+    map.clear()
+
+    then:
+    thrown(UnsupportedOperationException)
+    map == [a: 1]
+  }
+
+  def "iteration is not affected by later writes"() {
+    setup:
+    def map = new TagMap<Object>([a: 1, b: 2, c: 3])
+    def iterator = map.entrySet().iterator()
+
+    when:
+    map.delete("b")
+    (1..20).each { map.set("key$it".toString(), it) }
+    def seen = [:]
+    while (iterator.hasNext()) {
+      def entry = iterator.next()
+      seen.put(entry.key, entry.value)
+    }
+
+    then:
+    seen == [a: 1, b: 2, c: 3]
+    map.size() == 22
+  }
+
+  def "concurrent writers don't lose entries"() {
+    setup:
+    def map = new TagMap<Object>()
+    def threadCount = 8
+    def perThread = 200
+    def start = new CountDownLatch(1)
+    def threads = (1..threadCount).collect { thread ->
+      Thread.start {
+        start.await()
+        (1..perThread).each { map.set("$thread-$it".toString(), it) }
+      }
+    }
+
+    when:
+    start.countDown()
+    threads*.join()
+
+    then:
+    map.size() == threadCount * perThread
+    (1..threadCount).every { thread ->
+      (1..perThread).every { map.get("$thread-$it".toString()) == it }
+    }
+  }
+}
@@ -14,6 +14,7 @@ import static datadog.opentracing.propagation.DatadogHttpCodec.OT_BAGGAGE_PREFIX
 import static datadog.opentracing.propagation.DatadogHttpCodec.SAMPLING_PRIORITY_KEY
 import static datadog.opentracing.propagation.DatadogHttpCodec.SPAN_ID_KEY
 import static datadog.opentracing.propagation.DatadogHttpCodec.TRACE_ID_KEY
+import static datadog.trace.api.Config.PropagationStyle.DATADOG
 
 class DatadogHttpInjectorTest extends DDSpecification {
 
@@ -71,4 +72,57 @@ class DatadogHttpInjectorTest extends DDSpecification {
     TRACE_ID_MAX     | TRACE_ID_MAX - 1 | PrioritySampling.UNSET        | "saipan"
     TRACE_ID_MAX - 1 | TRACE_ID_MAX     | PrioritySampling.SAMPLER_KEEP | null
   }
+
+  def "injected headers are rendered again only when baggage or sampling priority change"() {
+    setup:
+    def writer = new ListWriter()
+    def tracer = DDTracer.builder().writer(writer).build()
+    final DDSpanContext context =
+      new DDSpanContext(
+        1G,
+        2G,
+        0G,
+        "fakeService",
+        "fakeOperation",
+        "fakeResource",
+        PrioritySampling.UNSET,
+        null,
+        ["k1": "v1"],
+        false,
+        "fakeType",
+        null,
+        new PendingTrace(tracer, 1G),
+        tracer,
+        [:])
+    final Map<String, String> carrier = [:]
+
+    when:
+    injector.inject(context, new TextMapInjectAdapter(carrier))
+    def rendered = context.getInjectedHeaders(DATADOG)
+    injector.inject(context, new TextMapInjectAdapter(carrier))
+
+    then:
+    rendered != null
+    context.getInjectedHeaders(DATADOG).is(rendered)
+    carrier == [(TRACE_ID_KEY): "1", (SPAN_ID_KEY): "2", (OT_BAGGAGE_PREFIX + "k1"): "v1"]
+
+    when:
+    context.setBaggageItem("k2", "v 2")
+    carrier.clear()
+    injector.inject(context, new TextMapInjectAdapter(carrier))
+
+    then:
+    !context.getInjectedHeaders(DATADOG).is(rendered)
+    carrier[OT_BAGGAGE_PREFIX + "k2"] == "v+2"
+
+    when:
+    rendered = context.getInjectedHeaders(DATADOG)
+    context.setSamplingPriority(PrioritySampling.SAMPLER_KEEP)
+    carrier.clear()
+    injector.inject(context, new TextMapInjectAdapter(carrier))
+
+    then:
+    !context.getInjectedHeaders(DATADOG).is(rendered)
+    carrier[SAMPLING_PRIORITY_KEY] == "$PrioritySampling.SAMPLER_KEEP"
+  }
 }
@@ -0,0 +1,47 @@
+package datadog.opentracing.propagation
+
+import datadog.trace.util.test.DDSpecification
+
+class HeaderTableTest extends DDSpecification {
+
+  def table = new HeaderTable(["x-datadog-trace-id", "X-B3-TraceId", "trace-id", "x-datadog-trace-id"])
+
+  def "names are looked up ignoring case"() {
+    expect:
+    table.indexOf(name) == index
+
+    where:
+    name                 | index
+    "x-datadog-trace-id" | 0
+    "X-DATADOG-TRACE-ID" | 0
+    "X-Datadog-Trace-Id" | 0
+    "x-b3-traceid"       | 1
+    "X-B3-TRACEID"       | 1
+    "Trace-ID"           | 2
+    "trace-id2"          | HeaderTable.NOT_FOUND
+    "span-id"            | HeaderTable.NOT_FOUND
+    ""                   | HeaderTable.NOT_FOUND
+  }
+
+  def "prefixes are matched ignoring case"() {
+    expect:
+    HeaderTable.startsWith(name, "ot-baggage-") == expected
+
+    where:
+    name              | expected
+    "ot-baggage-key"  | true
+    "OT-Baggage-Key"  | true
+    "ot-baggage-"     | true
+    "ot-baggage"      | false
+    "x-ot-baggage-k"  | false
+  }
+
+  def "many names"() {
+    setup:
+    def names = (0..<100).collect { "header-$it".toString() }
+    def table = new HeaderTable(names)
+
+    expect:
+    (0..<100).every { table.indexOf("HEADER-$it".toString()) == it }
+  }
+}
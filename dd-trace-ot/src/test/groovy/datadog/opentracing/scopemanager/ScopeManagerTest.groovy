@@ -333,9 +333,12 @@ class ScopeManagerTest extends DDSpecification {
 
     when:
     if (forceGC) {
-      def continuationRef = new WeakReference<>(continuation)
+      // The trace is dropped once nothing references it, including its spans.
+      def traceRef = new WeakReference<>(((DDSpanContext) span.context()).trace)
       continuation = null // Continuation references also hold up traces.
-      GCUtils.awaitGC(continuationRef)
+      span = null
+      scope = null
+      GCUtils.awaitGC(traceRef)
       latch.await(60, SECONDS)
     }
     if (autoClose) {
@@ -612,6 +615,30 @@ class ScopeManagerTest extends DDSpecification {
     closedCount.get() == 4
   }
 
+  def "restored scope is active when the scope listeners are told a scope closed"() {
+    setup:
+    def activeOnClose = []
+    scopeManager.addScopeListener(new ScopeListener() {
+      @Override
+      void afterScopeActivated() {
+      }
+
+      @Override
+      void afterScopeClosed() {
+        activeOnClose.add(scopeManager.active())
+      }
+    })
+    Scope parent = tracer.buildSpan("parent").startActive(true)
+    Scope child = tracer.buildSpan("child").startActive(true)
+
+    when:
+    child.close()
+    parent.close()
+
+    then:
+    activeOnClose == [parent, null]
+  }
+
   boolean spanFinished(Span span) {
     return ((DDSpan) span)?.isFinished()
   }
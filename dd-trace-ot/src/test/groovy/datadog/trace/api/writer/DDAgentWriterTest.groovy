@@ -10,6 +10,7 @@ import datadog.trace.common.writer.DDAgentWriter
 import datadog.trace.common.writer.ddagent.BatchWritingDisruptor
 import datadog.trace.common.writer.ddagent.DDAgentApi
 import datadog.trace.common.writer.ddagent.Monitor
+import datadog.trace.common.writer.ddagent.SerializedTrace
 import datadog.trace.util.test.DDSpecification
 import org.msgpack.core.MessagePack
 import org.msgpack.core.buffer.ArrayBufferOutput
@@ -20,9 +21,11 @@ import java.util.concurrent.Phaser
 import java.util.concurrent.Semaphore
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 
 import static datadog.opentracing.SpanFactory.newSpanOf
 import static datadog.trace.agent.test.server.http.TestHttpServer.httpServer
+import static datadog.trace.common.serialization.DirectMsgpackFormatWriter.DIRECT_MSGPACK_WRITER
 import static datadog.trace.common.serialization.MsgpackFormatWriter.MSGPACK_WRITER
 import static datadog.trace.common.writer.DDAgentWriter.DISRUPTOR_BUFFER_SIZE
 
@@ -62,7 +65,7 @@ class DDAgentWriterTest extends DDSpecification {
     writer.flush()
 
     then:
-    2 * api.serializeTrace(_) >> { trace -> callRealMethod() }
+    2 * api.serializeTrace(_, _) >> { trace -> callRealMethod() }
     1 * api.sendSerializedTraces(2, _, { it.size() == 2 }) >> DDAgentApi.Response.success(200)
     0 * _
 
@@ -73,6 +76,85 @@ class DDAgentWriterTest extends DDSpecification {
     trace = [newSpanOf(0, "fixed-thread-name")]
   }
 
+  def "test serialization encoder selected by the builder"() {
+    setup:
+    def writer = DDAgentWriter.builder().agentApi(api).traceBufferSize(2).flushFrequencySeconds(-1)
+      .serializationDirectEncoderEnabled(directEncoder).build()
+    writer.start()
+
+    when:
+    writer.write(trace)
+    writer.flush()
+
+    then:
+    1 * api.serializeTrace(_, formatWriter) >> { trace -> callRealMethod() }
+    1 * api.sendSerializedTraces(1, _, { it.size() == 1 }) >> DDAgentApi.Response.success(200)
+    0 * _
+
+    cleanup:
+    writer.close()
+
+    where:
+    trace = [newSpanOf(0, "fixed-thread-name")]
+    directEncoder | formatWriter
+    false         | MSGPACK_WRITER
+    true          | DIRECT_MSGPACK_WRITER
+  }
+
+  def "test happy path with pooled serialization buffers"() {
+    setup:
+    def writer = DDAgentWriter.builder().agentApi(api).traceBufferSize(2).flushFrequencySeconds(-1)
+      .serializationBufferPoolEnabled(true).serializationBufferPoolDirect(direct).build()
+    writer.start()
+
+    when:
+    writer.write(trace)
+    writer.write(trace)
+    writer.flush()
+
+    then:
+    0 * api.serializeTrace(_, _)
+    1 * api.sendSerializedTraces(2, _, { it.size() == 2 }) >> { int count, Integer size, List<SerializedTrace> traces ->
+      assert traces.every { it.toByteArray() == expected }
+      return DDAgentApi.Response.success(200)
+    }
+    0 * _
+
+    cleanup:
+    writer.close()
+
+    where:
+    trace = [newSpanOf(0, "fixed-thread-name")]
+    expected = new DDAgentApi("localhost", 8126, null).serializeTrace(trace)
+    direct << [false, true]
+  }
+
+  def "test happy path with multiple processing workers"() {
+    setup:
+    def writer = DDAgentWriter.builder().agentApi(api).traceBufferSize(DISRUPTOR_BUFFER_SIZE).flushFrequencySeconds(-1)
+      .traceProcessingWorkers(workers).build()
+    writer.start()
+
+    when:
+    (1..traceCount).each {
+      writer.write(trace)
+    }
+    writer.flush()
+
+    then:
+    traceCount * api.serializeTrace(_, _) >> { trace -> callRealMethod() }
+    1 * api.sendSerializedTraces(traceCount, _, { it.size() == traceCount }) >> DDAgentApi.Response.success(200)
+    0 * _
+
+    cleanup:
+    writer.close()
+
+    where:
+    trace = [newSpanOf(0, "fixed-thread-name")]
+    traceCount = 50
+    workers << [2, 4]
+  }
+
   def "test flood of traces"() {
     setup:
     def writer = DDAgentWriter.builder().agentApi(api).traceBufferSize(disruptorSize).flushFrequencySeconds(-1).build()
@@ -85,7 +167,7 @@ class DDAgentWriterTest extends DDSpecification {
     writer.flush()
 
     then:
-    _ * api.serializeTrace(_) >> { trace -> callRealMethod() }
+    _ * api.serializeTrace(_, _) >> { trace -> callRealMethod() }
     1 * api.sendSerializedTraces(traceCount, _, { it.size() < traceCount }) >> DDAgentApi.Response.success(200)
     0 * _
 
@@ -112,7 +194,7 @@ class DDAgentWriterTest extends DDSpecification {
     phaser.awaitAdvanceInterruptibly(phaser.arriveAndDeregister())
 
     then:
-    6 * api.serializeTrace(_) >> { trace -> callRealMethod() }
+    6 * api.serializeTrace(_, _) >> { trace -> callRealMethod() }
     2 * api.sendSerializedTraces(3, _, { it.size() == 3 }) >> {
       phaser.arrive()
       return DDAgentApi.Response.success(200)
@@ -126,7 +208,7 @@ class DDAgentWriterTest extends DDSpecification {
     writer.flush()
 
     then:
-    2 * api.serializeTrace(_) >> { trace -> callRealMethod() }
+    2 * api.serializeTrace(_, _) >> { trace -> callRealMethod() }
     1 * api.sendSerializedTraces(2, _, { it.size() == 2 }) >> DDAgentApi.Response.success(200)
     0 * _
 
@@ -150,7 +232,7 @@ class DDAgentWriterTest extends DDSpecification {
     phaser.awaitAdvanceInterruptibly(phaser.arriveAndDeregister())
 
     then:
-    5 * api.serializeTrace(_) >> { trace -> callRealMethod() }
+    5 * api.serializeTrace(_, _) >> { trace -> callRealMethod() }
     1 * api.sendSerializedTraces(5, _, { it.size() == 5 }) >> DDAgentApi.Response.success(200)
     5 * monitor.onPublish(_, _)
     5 * monitor.onSerialize(_, _, _)
@@ -185,7 +267,7 @@ class DDAgentWriterTest extends DDSpecification {
     writer.flush()
 
     then:
-    (maxedPayloadTraceCount + 1) * api.serializeTrace(_) >> { trace -> callRealMethod() }
+    (maxedPayloadTraceCount + 1) * api.serializeTrace(_, _) >> { trace -> callRealMethod() }
     1 * api.sendSerializedTraces(maxedPayloadTraceCount, _, { it.size() == maxedPayloadTraceCount }) >> DDAgentApi.Response.success(200)
 
     cleanup:
@@ -243,7 +325,7 @@ class DDAgentWriterTest extends DDSpecification {
     writer.flush()
 
     then:
-    1 * api.serializeTrace(_) >> { trace -> callRealMethod() }
+    1 * api.serializeTrace(_, _) >> { trace -> callRealMethod() }
     1 * monitor.onSerialize(writer, _, _)
     1 * monitor.onPublish(writer, _)
     0 * _
@@ -371,7 +453,7 @@ class DDAgentWriterTest extends DDSpecification {
       DDAgentApi.Response sendSerializedTraces(
         int representativeCount,
         Integer sizeInBytes,
-        List<byte[]> traces) {
+        List<SerializedTrace> traces) {
         // simulating a communication failure to a server
         return DDAgentApi.Response.failed(new IOException("comm error"))
       }
@@ -639,7 +721,7 @@ class DDAgentWriterTest extends DDSpecification {
       DDAgentApi.Response sendSerializedTraces(
         int representativeCount,
         Integer sizeInBytes,
-        List<byte[]> traces) {
+        List<SerializedTrace> traces) {
         // simulating a communication failure to a server
         return DDAgentApi.Response.failed(new IOException("comm error"))
       }
@@ -673,6 +755,118 @@ class DDAgentWriterTest extends DDSpecification {
     writer.close()
   }
 
+  def "statsd drop rate and throughput"() {
+    def gauges = [:]
+
+    setup:
+    def minimalTrace = createMinimalTrace()
+    def api = new DDAgentApi("localhost", 8192, null) {
+      DDAgentApi.Response sendSerializedTraces(
+        int representativeCount,
+        Integer sizeInBytes,
+        List<SerializedTrace> traces) {
+        return DDAgentApi.Response.success(200)
+      }
+    }
+
+    def statsd = Stub(StatsDClient)
+    statsd.recordGaugeValue(*_) >> { args ->
+      gauges[args[0]] = args[1]
+    }
+
+    // only report on flushes
+    def monitor = new Monitor.StatsD(statsd, Long.MAX_VALUE)
+    def writer = DDAgentWriter.builder().agentApi(api).monitor(monitor).build()
+    writer.start()
+
+    when:
+    writer.write(minimalTrace)
+    writer.write(minimalTrace)
+    monitor.onFailedPublish(writer, minimalTrace)
+    monitor.onFailedPublish(writer, minimalTrace)
+    writer.flush()
+
+    then:
+    gauges["queue.drop_rate"] == 0.5d
+    gauges["queue.throughput"] > 0
+
+    cleanup:
+    writer.close()
+  }
+
+  def "statsd drop rate without flushes"() {
+    def gauges = [:]
+
+    setup:
+    def minimalTrace = createMinimalTrace()
+    def statsd = Stub(StatsDClient)
+    statsd.recordGaugeValue(*_) >> { args ->
+      gauges[args[0]] = args[1]
+    }
+    // report on every drop
+    def monitor = new Monitor.StatsD(statsd, 0)
+    def writer = DDAgentWriter.builder().monitor(monitor).build()
+
+    when:
+    monitor.onFailedPublish(writer, minimalTrace)
+
+    then:
+    gauges["queue.drop_rate"] == 1d
+
+    cleanup:
+    writer.close()
+  }
+
+  def "statsd registered counters"() {
+    setup:
+    def total = new AtomicLong(5)
+    Monitor.StatsD.registerCounter("test.counter", { total.get() } as Monitor.Counter)
+    def statsd = Mock(StatsDClient)
+    def monitor = new Monitor.StatsD(statsd)
+    def writer = DDAgentWriter.builder().monitor(monitor).build()
+
+    when:
+    monitor.onFlush(writer, false)
+
+    then:
+    1 * statsd.count("test.counter", 5)
+
+    when:
+    total.set(7)
+    monitor.onFlush(writer, false)
+
+    then:
+    1 * statsd.count("test.counter", 2)
+
+    when:
+    monitor.onFlush(writer, false)
+
+    then:
+    0 * statsd.count("test.counter", _)
+
+    cleanup:
+    // only reported when it increases
+    total.set(0)
+    writer.close()
+  }
+
+  def "statsd abandoned traces"() {
+    setup:
+    def statsd = Mock(StatsDClient)
+    def writer = DDAgentWriter.builder().monitor(new Monitor.StatsD(statsd)).build()
+
+    when:
+    writer.onAbandonedTrace()
+    writer.onAbandonedTrace()
+
+    then:
+    2 * statsd.incrementCounter("traces.abandoned")
+    0 * _
+
+    cleanup:
+    writer.close()
+  }
+
   static int calculateSize(List<DDSpan> trace) {
     def buffer = new ArrayBufferOutput()
     def packer = MessagePack.newDefaultPacker(buffer)
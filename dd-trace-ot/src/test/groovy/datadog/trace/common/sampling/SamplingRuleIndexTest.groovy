@@ -0,0 +1,117 @@
+package datadog.trace.common.sampling
+
+import datadog.opentracing.DDSpan
+import datadog.opentracing.SpanFactory
+import datadog.trace.common.sampling.SamplingRule.AlwaysMatchesSamplingRule
+import datadog.trace.common.sampling.SamplingRule.OperationSamplingRule
+import datadog.trace.common.sampling.SamplingRule.ServiceSamplingRule
+import datadog.trace.util.test.DDSpecification
+
+class SamplingRuleIndexTest extends DDSpecification {
+
+  def rules = [
+    new OperationSamplingRule("op-.*", new DeterministicSampler(0.1)),
+    new ServiceSamplingRule("service", new DeterministicSampler(0.2)),
+    new OperationSamplingRule("operation", new DeterministicSampler(0.3)),
+    new ServiceSamplingRule("serv.*", new DeterministicSampler(0.4)),
+    new ServiceSamplingRule("service", new DeterministicSampler(0.5)),
+    new ServiceSamplingRule("other", new DeterministicSampler(0.6)),
+    new AlwaysMatchesSamplingRule(new DeterministicSampler(0.7)),
+    new OperationSamplingRule("never", new DeterministicSampler(0.8))
+  ]
+
+  def "first matching rule for #service and #operation"() {
+    setup:
+    def index = new SamplingRuleIndex(rules)
+    def span = span(service, operation)
+
+    expect:
+    // twice to check the memoized result
+    index.findFirstMatch(span) == linearScan(span)
+    index.findFirstMatch(span) == linearScan(span)
+    index.findFirstMatch(span).sampler.sampleRate == expectedRate
+
+    where:
+    service   | operation   | expectedRate
+    "service" | "op-1"      | 0.1
+    "service" | "operation" | 0.2
+    "unknown" | "operation" | 0.3
+    "server"  | "unknown"   | 0.4
+    "other"   | "unknown"   | 0.6
+    "unknown" | "never"     | 0.7
+    "unknown" | "unknown"   | 0.7
+  }
+
+  def "no match without default rule"() {
+    setup:
+    def index = new SamplingRuleIndex(rules.findAll { !(it instanceof AlwaysMatchesSamplingRule) })
+
+    expect:
+    index.findFirstMatch(span("unknown", "never")).sampler.sampleRate == 0.8
+    index.findFirstMatch(span("unknown", "unknown")) == null
+  }
+
+  def "literal rules match exact values only"() {
+    setup:
+    def rule = new ServiceSamplingRule("service", new DeterministicSampler(1))
+
+    expect:
+    rule.getLiteral() == "service"
+    rule.matches("service")
+    !rule.matches("service-2")
+    !rule.matches(null)
+    new ServiceSamplingRule("serv.ce", new DeterministicSampler(1)).getLiteral() == null
+  }
+
+  def "custom rules are checked in order"() {
+    setup:
+    def custom = new SamplingRule(new DeterministicSampler(0.9)) {
+        @Override
+        boolean matches(DDSpan span) {
+          return span.getSpanType() == "custom"
+        }
+      }
+    def index = new SamplingRuleIndex([custom] + rules)
+    def span = span("service", "operation")
+
+    expect:
+    index.findFirstMatch(span).sampler.sampleRate == 0.2
+
+    when:
+    span.setSpanType("custom")
+
+    then:
+    index.findFirstMatch(span) == custom
+  }
+
+  def "memoized results are bounded"() {
+    setup:
+    def index = new SamplingRuleIndex(rules)
+    def span = span("service", "operation")
+
+    when:
+    (1..SamplingRuleIndex.MAX_CACHED_SERVICES + 10).each { service ->
+      span.setServiceName("s$service")
+      (1..SamplingRuleIndex.MAX_CACHED_OPERATIONS_PER_SERVICE + 10).each { operation ->
+        span.setOperationName("o$operation")
+        index.findFirstMatch(span)
+      }
+    }
+
+    then:
+    index.cache.size() <= SamplingRuleIndex.MAX_CACHED_SERVICES
+    index.cache.values().every {
+      it.size() <= SamplingRuleIndex.MAX_CACHED_OPERATIONS_PER_SERVICE
+    }
+  }
+
+  DDSpan span(String service, String operation) {
+    def span = SpanFactory.newSpanOf(service, "env")
+    span.setOperationName(operation)
+    return span
+  }
+
+  SamplingRule linearScan(DDSpan span) {
+    return rules.find { it.matches(span) }
+  }
+}
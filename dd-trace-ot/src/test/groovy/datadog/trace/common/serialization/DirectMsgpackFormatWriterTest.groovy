@@ -0,0 +1,85 @@
+package datadog.trace.common.serialization
+
+import datadog.opentracing.DDSpan
+import datadog.opentracing.DDSpanContext
+import datadog.opentracing.DDTracer
+import datadog.opentracing.PendingTrace
+import datadog.trace.api.sampling.PrioritySampling
+import datadog.trace.common.writer.ListWriter
+import datadog.trace.util.test.DDSpecification
+import org.msgpack.core.MessagePack
+import org.msgpack.core.buffer.ArrayBufferOutput
+
+import static datadog.trace.common.serialization.DirectMsgpackFormatWriter.DIRECT_MSGPACK_WRITER
+import static datadog.trace.common.serialization.MsgpackFormatWriter.MSGPACK_WRITER
+
+class DirectMsgpackFormatWriterTest extends DDSpecification {
+
+  def writer = new ListWriter()
+  def tracer = DDTracer.builder().writer(writer).build()
+
+  def "direct writer output is equivalent to the generic writer"() {
+    setup:
+    def context = new DDSpanContext(
+      traceId,
+      2G,
+      0G,
+      service,
+      "operation",
+      resource,
+      PrioritySampling.SAMPLER_KEEP,
+      null,
+      baggage,
+      false,
+      spanType,
+      tags,
+      new PendingTrace(tracer, traceId),
+      tracer,
+      [:])
+    def span = new DDSpan(100L, context)
+    metrics.each { key, value -> span.setMetric(key, value) }
+    span.finish(133L)
+
+    expect:
+    decode(DIRECT_MSGPACK_WRITER, [span]) == decode(MSGPACK_WRITER, [span])
+    // Second pass goes through the caches.
+    decode(DIRECT_MSGPACK_WRITER, [span, span]) == decode(MSGPACK_WRITER, [span, span])
+
+    where:
+    traceId              | service   | resource  | spanType  | baggage                | tags                                          | metrics
+    1G                   | "service" | null      | null      | [:]                    | [:]                                           | [:]
+    1G                   | "service" | "res"     | "web"     | ["a-baggage": "v"]     | ["k1": "v1", "component": "servlet"]          | ["m1": 1, "m2": 2L, "m3": 0.5d, "m4": 1.5f]
+    2G.pow(64).minus(1G) | "ünïcode" | "r" * 40  | "db"      | ["k1": "overridden"]   | ["k1": "v1", "span.kind": "client", "n": 404] | ["m": (short) 1, "b": (byte) 2]
+    1G                   | "s" * 300 | "r" * 600 | "x" * 200 | ["b" * 200: "v" * 200] | ["k" * 200: "v" * 20000]                      | ["m" * 200: 1d]
+  }
+
+  def "span modified while being serialized fails instead of writing a broken payload"() {
+    setup:
+    def span = Stub(DDSpan) {
+      getTraceIdAsLong() >> 1L
+      getSpanIdAsLong() >> 2L
+      getMetrics() >> Stub(Map) {
+        size() >> 2
+        entrySet() >> ["m": 1].entrySet()
+      }
+    }
+    def packer = MessagePack.newDefaultPacker(new ArrayBufferOutput())
+
+    when:
+    DIRECT_MSGPACK_WRITER.writeDDSpan(span, packer)
+
+    then:
+    thrown(IOException)
+  }
+
+  static decode(MsgpackFormatWriter formatWriter, List<DDSpan> trace) {
+    def output = new ArrayBufferOutput()
+    def packer = MessagePack.newDefaultPacker(output)
+    formatWriter.writeTrace(trace, packer)
+    packer.flush()
+    def unpacker = MessagePack.newDefaultUnpacker(output.toByteArray())
+    def value = unpacker.unpackValue()
+    assert !unpacker.hasNext()
+    return value
+  }
+}
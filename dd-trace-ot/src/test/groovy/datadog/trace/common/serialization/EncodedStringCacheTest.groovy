@@ -0,0 +1,42 @@
+package datadog.trace.common.serialization
+
+import datadog.trace.util.test.DDSpecification
+import org.msgpack.core.MessagePack
+
+class EncodedStringCacheTest extends DDSpecification {
+
+  def "encoding is the same as the packer's"() {
+    setup:
+    def packer = MessagePack.newDefaultBufferPacker()
+    packer.packString(value)
+
+    expect:
+    EncodedStringCache.encode(value) == packer.toByteArray()
+
+    where:
+    value << ["", "a" * 31, "a" * 32, "a" * 255, "a" * 256, "a" * 65535, "a" * 65536, "é" * 20, "日本語", "😀"]
+  }
+
+  def "colliding strings are both cached"() {
+    setup:
+    def cache = new EncodedStringCache(16)
+    // same hash code
+    def first = "Aa"
+    def second = "BB"
+
+    when:
+    def firstEncoded = cache.get(first)
+    def secondEncoded = cache.get(second)
+
+    then:
+    cache.get(first).is(firstEncoded)
+    cache.get(second).is(secondEncoded)
+    firstEncoded == EncodedStringCache.encode(first)
+    secondEncoded == EncodedStringCache.encode(second)
+  }
+
+  def "long strings are not cached"() {
+    expect:
+    new EncodedStringCache(16).get("a" * 129) == null
+  }
+}
@@ -0,0 +1,89 @@
+package datadog.trace.common.writer.ddagent
+
+import datadog.trace.util.test.DDSpecification
+
+import java.util.concurrent.TimeUnit
+
+class FlushPolicyTest extends DDSpecification {
+
+  static final long SECOND = TimeUnit.SECONDS.toNanos(1)
+  static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1)
+  static final int MAX_PAYLOAD = 5_000_000
+
+  def "starts from the configured parameters"() {
+    when:
+    def policy = new FlushPolicy(SECOND, MAX_PAYLOAD)
+
+    then:
+    policy.flushIntervalNanos == SECOND
+    policy.targetPayloadBytes == MAX_PAYLOAD
+  }
+
+  def "fast agent keeps the configured parameters"() {
+    setup:
+    def policy = new FlushPolicy(SECOND, MAX_PAYLOAD)
+
+    expect:
+    !policy.onResponse(1_000_000, 5 * MILLISECOND, true)
+    policy.flushIntervalNanos == SECOND
+    policy.targetPayloadBytes == MAX_PAYLOAD
+  }
+
+  def "slow agent gets fewer requests"() {
+    setup:
+    def policy = new FlushPolicy(SECOND, MAX_PAYLOAD)
+
+    when:
+    def changed = policy.onResponse(1000, 200 * MILLISECOND, true)
+
+    then:
+    changed
+    policy.flushIntervalNanos == 2 * SECOND
+
+    when:
+    20.times { policy.onResponse(1000, 10 * SECOND, false) }
+
+    then: "bounded"
+    policy.flushIntervalNanos == 4 * SECOND
+  }
+
+  def "slow ingestion shrinks the payloads"() {
+    setup:
+    def policy = new FlushPolicy(SECOND, MAX_PAYLOAD)
+
+    when: "1 MB per second"
+    policy.onResponse(1024 * 1024, SECOND, true)
+
+    then: "what fits in half a second"
+    policy.targetPayloadBytes == 512 * 1024
+
+    when:
+    20.times { policy.onResponse(1024 * 1024, 100 * SECOND, true) }
+
+    then: "bounded"
+    policy.targetPayloadBytes == 256 * 1024
+  }
+
+  def "small or failed payloads don't change the target size"() {
+    setup:
+    def policy = new FlushPolicy(SECOND, MAX_PAYLOAD)
+
+    when:
+    policy.onResponse(1000, 50 * MILLISECOND, true)
+    policy.onResponse(1024 * 1024, 50 * MILLISECOND, false)
+
+    then:
+    policy.targetPayloadBytes == MAX_PAYLOAD
+  }
+
+  def "no time based flush when disabled"() {
+    setup:
+    def policy = new FlushPolicy(-1, MAX_PAYLOAD)
+
+    when:
+    policy.onResponse(1000, 10 * SECOND, true)
+
+    then:
+    policy.flushIntervalNanos == Long.MAX_VALUE
+  }
+}
@@ -0,0 +1,97 @@
+package datadog.trace.common.writer.ddagent
+
+import datadog.trace.util.test.DDSpecification
+import org.msgpack.core.MessagePack
+
+import static datadog.opentracing.SpanFactory.newSpanOf
+import static datadog.trace.common.serialization.MsgpackFormatWriter.MSGPACK_WRITER
+
+class PooledBufferOutputTest extends DDSpecification {
+
+  def api = new DDAgentApi("localhost", 8126, null)
+
+  def "pooled serialization matches byte array serialization"() {
+    setup:
+    def pool = new BufferPool(chunkSize, 16, direct)
+    def output = new PooledBufferOutput(pool)
+    def packer = MessagePack.newDefaultPacker(output)
+
+    when:
+    def serialized = traces.collect { trace ->
+      MSGPACK_WRITER.writeTrace(trace, packer)
+      packer.flush()
+      return output.finishTrace()
+    }
+
+    then:
+    serialized.size() == traces.size()
+    serialized.eachWithIndex { trace, i ->
+      assert trace.sizeInBytes() == api.serializeTrace(traces[i]).length
+      assert trace.toByteArray() == api.serializeTrace(traces[i])
+    }
+
+    where:
+    chunkSize | direct
+    64        | false
+    1024      | false
+    64 * 1024 | false
+    1024      | true
+
+    traces = [[newSpanOf(0)], (1..5).collect { newSpanOf(it) }, [], (1..100).collect { newSpanOf(it) }]
+  }
+
+  def "chunks are recycled once all traces written to them are released"() {
+    setup:
+    def pool = new BufferPool(1024, 16, false)
+    def output = new PooledBufferOutput(pool)
+    def packer = MessagePack.newDefaultPacker(output)
+
+    when:
+    def serialized = (1..20).collect {
+      MSGPACK_WRITER.writeTrace([newSpanOf(it)], packer)
+      packer.flush()
+      return output.finishTrace()
+    }
+
+    then:
+    pool.availableChunks == 0
+
+    when:
+    serialized*.release()
+
+    then:
+    // Only the chunk currently being written to is still held.
+    pool.availableChunks > 0
+
+    when:
+    def reused = (1..20).collect {
+      MSGPACK_WRITER.writeTrace([newSpanOf(it)], packer)
+      packer.flush()
+      return output.finishTrace()
+    }
+
+    then:
+    reused.eachWithIndex { trace, i ->
+      assert trace.toByteArray() == api.serializeTrace([newSpanOf(i + 1)])
+    }
+  }
+
+  def "aborted traces are discarded"() {
+    setup:
+    def pool = new BufferPool(1024, 16, false)
+    def output = new PooledBufferOutput(pool)
+    def packer = MessagePack.newDefaultPacker(output)
+    def trace = [newSpanOf(0)]
+
+    when:
+    MSGPACK_WRITER.writeTrace(trace, packer)
+    packer.flush()
+    output.abortTrace()
+    MSGPACK_WRITER.writeTrace(trace, packer)
+    packer.flush()
+    def serialized = output.finishTrace()
+
+    then:
+    serialized.toByteArray() == api.serializeTrace(trace)
+  }
+}
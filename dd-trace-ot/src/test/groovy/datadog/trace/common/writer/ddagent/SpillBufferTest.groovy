@@ -0,0 +1,282 @@
+package datadog.trace.common.writer.ddagent
+
+import datadog.trace.util.test.DDSpecification
+import spock.lang.Timeout
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+@Timeout(10)
+class SpillBufferTest extends DDSpecification {
+
+  def directory = File.createTempDir()
+  def monitor = Mock(Monitor)
+  def sent = new LinkedBlockingQueue<List<byte[]>>()
+  def conditions = new PollingConditions(timeout: 5)
+  // Segments dropped while being sent are reported by the drainer, asynchronously.
+  def dropped = new CopyOnWriteArrayList<List<Integer>>()
+
+  def cleanup() {
+    directory.deleteDir()
+  }
+
+  def "spilled traces are replayed once the agent answers again"() {
+    setup:
+    def api = Stub(DDAgentApi)
+    api.sendSerializedTraces(_, _, _) >>> [
+      DDAgentApi.Response.failed(new IOException("agent down")),
+      DDAgentApi.Response.failed(503)
+    ] >> { int count, Integer size, List<SerializedTrace> traces ->
+      assert count == 3
+      assert size == 5
+      sent.add(traces*.toByteArray())
+      return DDAgentApi.Response.success(200)
+    }
+    def buffer = new SpillBuffer(directory, 1024, TimeUnit.HOURS.toMillis(1), api, monitor, null)
+    buffer.start()
+
+    when:
+    def spilled = buffer.spill(3, traces([1, 2, 3], [4, 5]))
+
+    then:
+    spilled
+    1 * monitor.onSpill(_, 3, 12 + 4 + 3 + 4 + 2)
+
+    when:
+    def replayed = sent.poll(5, TimeUnit.SECONDS)
+
+    then:
+    replayed*.toList() == [[1, 2, 3], [4, 5]]
+    conditions.eventually {
+      assert buffer.isEmpty()
+    }
+
+    cleanup:
+    buffer.close()
+  }
+
+  def "replayed payloads are fed to the flush policy"() {
+    setup:
+    def api = Stub(DDAgentApi)
+    api.sendSerializedTraces(_, _, _) >> {
+      Thread.sleep(2)
+      return DDAgentApi.Response.success(200)
+    }
+    def policy = new FlushPolicy(TimeUnit.MILLISECONDS.toNanos(1), 5_000_000)
+    def buffer = new SpillBuffer(directory, 1024, TimeUnit.HOURS.toMillis(1), api, monitor, null)
+    buffer.setFlushPolicy(policy)
+    buffer.start()
+
+    when:
+    buffer.spill(1, traces([1]))
+
+    then:
+    conditions.eventually {
+      assert buffer.isEmpty()
+    }
+    // The agent took longer than a tenth of the interval to answer.
+    policy.flushIntervalNanos == TimeUnit.MILLISECONDS.toNanos(4)
+    1 * monitor.onFlushPolicyChange(_, 4, 5_000_000)
+
+    cleanup:
+    buffer.close()
+  }
+
+  def "agent rejecting a payload drops it instead of retrying"() {
+    setup:
+    def api = Stub(DDAgentApi)
+    api.sendSerializedTraces(_, _, _) >> DDAgentApi.Response.failed(400)
+    def buffer = new SpillBuffer(directory, 1024, TimeUnit.HOURS.toMillis(1), api, monitor, null)
+    buffer.start()
+
+    when:
+    buffer.spill(1, traces([1]))
+
+    then:
+    conditions.eventually {
+      assert buffer.isEmpty()
+    }
+    1 * monitor.onSpillDropped(_, 1, _)
+
+    cleanup:
+    buffer.close()
+  }
+
+  def "oldest segments are dropped to stay under the size limit"() {
+    setup:
+    def api = Stub(DDAgentApi)
+    api.sendSerializedTraces(_, _, _) >> DDAgentApi.Response.failed(new IOException("agent down"))
+    monitor.onSpillDropped(_, _, _) >> { writer, int count, int size -> dropped.add([count, size]) }
+    // Room for two segments of 12 + 4 + 4 bytes.
+    def buffer = new SpillBuffer(directory, 40, TimeUnit.HOURS.toMillis(1), api, monitor, null)
+    buffer.start()
+
+    when:
+    buffer.spill(1, traces([1, 1, 1, 1]))
+    buffer.spill(2, traces([2, 2, 2, 2]))
+    buffer.spill(3, traces([3, 3, 3, 3]))
+
+    then:
+    conditions.eventually {
+      assert dropped == [[1, 20]]
+    }
+
+    when: "the payload can never fit"
+    def spilled = buffer.spill(4, traces(new byte[64] as List))
+
+    then:
+    !spilled
+    dropped == [[1, 20], [4, 12 + 4 + 64]]
+
+    cleanup:
+    buffer.close()
+  }
+
+  def "expired segments are dropped"() {
+    setup:
+    def api = Stub(DDAgentApi)
+    api.sendSerializedTraces(_, _, _) >> DDAgentApi.Response.failed(new IOException("agent down"))
+    monitor.onSpillDropped(_, _, _) >> { writer, int count, int size -> dropped.add([count, size]) }
+    def buffer = new SpillBuffer(directory, 1024, 0, api, monitor, null)
+    buffer.start()
+
+    when:
+    buffer.spill(1, traces([1]))
+    Thread.sleep(10)
+    buffer.drainOnce(0)
+
+    then:
+    buffer.isEmpty()
+    conditions.eventually {
+      assert dropped == [[1, 12 + 4 + 1]]
+    }
+
+    cleanup:
+    buffer.close()
+  }
+
+  def "segment dropped while being sent is reported once the request is done"() {
+    setup:
+    def sending = new CountDownLatch(1)
+    def release = new CountDownLatch(1)
+    def api = Stub(DDAgentApi)
+    api.sendSerializedTraces(_, _, _) >> { int count, Integer size, List<SerializedTrace> traces ->
+      sending.countDown()
+      release.await()
+      sent.add(traces*.toByteArray())
+      return DDAgentApi.Response.success(200)
+    }
+    def replayed = new CopyOnWriteArrayList<List<Integer>>()
+    monitor.onSpillReplay(_, _, _) >> { writer, int count, int size -> replayed.add([count, size]) }
+    monitor.onSpillDropped(_, _, _) >> { writer, int count, int size -> dropped.add([count, size]) }
+    // Room for a single segment of 12 + 4 + 4 bytes.
+    def buffer = new SpillBuffer(directory, 30, TimeUnit.HOURS.toMillis(1), api, monitor, null)
+    buffer.start()
+
+    when:
+    buffer.spill(1, traces([1, 1, 1, 1]))
+    sending.await()
+    buffer.spill(2, traces([2, 2, 2, 2]))
+
+    then: "the segment being sent is still there"
+    directory.listFiles()[0].list().findAll { it.endsWith(".spill") }.size() == 2
+    dropped.isEmpty()
+
+    when:
+    release.countDown()
+
+    then: "both got to the agent, the first one only counts as replayed"
+    sent.poll(5, TimeUnit.SECONDS)*.toList() == [[1, 1, 1, 1]]
+    sent.poll(5, TimeUnit.SECONDS)*.toList() == [[2, 2, 2, 2]]
+    conditions.eventually {
+      assert buffer.isEmpty()
+      assert directory.listFiles()[0].list().findAll { it.endsWith(".spill") }.isEmpty()
+      assert replayed == [[1, 20], [2, 20]]
+    }
+    dropped.isEmpty()
+
+    cleanup:
+    buffer.close()
+  }
+
+  def "closing waits for the segment being sent before releasing the directory"() {
+    setup:
+    def sending = new CountDownLatch(1)
+    def api = Stub(DDAgentApi)
+    api.sendSerializedTraces(_, _, _) >> {
+      sending.countDown()
+      Thread.sleep(TimeUnit.MINUTES.toMillis(1))
+      return DDAgentApi.Response.success(200)
+    }
+    def first = new SpillBuffer(directory, 1024, TimeUnit.HOURS.toMillis(1), api, monitor, null)
+    first.start()
+    first.spill(1, traces([1]))
+    sending.await()
+
+    when:
+    first.close()
+    def second = new SpillBuffer(directory, 1024, TimeUnit.HOURS.toMillis(1), Stub(DDAgentApi), monitor, null)
+
+    then: "the interrupted request is kept for the next process"
+    !second.isEmpty()
+    0 * monitor.onSpillReplay(_, _, _)
+    0 * monitor.onSpillDropped(_, _, _)
+
+    cleanup:
+    second?.close()
+  }
+
+  def "segments left by a closed buffer are adopted by the next one"() {
+    setup:
+    def failingApi = Stub(DDAgentApi)
+    failingApi.sendSerializedTraces(_, _, _) >> DDAgentApi.Response.failed(new IOException("agent down"))
+    def first = new SpillBuffer(directory, 1024, TimeUnit.HOURS.toMillis(1), failingApi, monitor, null)
+    first.start()
+    first.spill(2, traces([1, 2]))
+    first.close()
+
+    def api = Stub(DDAgentApi)
+    api.sendSerializedTraces(_, _, _) >> { int count, Integer size, List<SerializedTrace> traces ->
+      sent.add(traces*.toByteArray())
+      return DDAgentApi.Response.success(200)
+    }
+
+    when:
+    def second = new SpillBuffer(directory, 1024, TimeUnit.HOURS.toMillis(1), api, monitor, null)
+    second.start()
+
+    then:
+    sent.poll(5, TimeUnit.SECONDS)*.toList() == [[1, 2]]
+
+    cleanup:
+    second?.close()
+  }
+
+  def "directories not created by a spill buffer are left alone"() {
+    setup:
+    def foreign = new File(directory, "data")
+    foreign.mkdirs()
+    def segment = new File(foreign, "1-segment.spill")
+    segment.text = "not ours"
+    def other = new File(foreign, "other.tmp")
+    other.text = "not ours either"
+
+    when:
+    def buffer = new SpillBuffer(directory, 1024, TimeUnit.HOURS.toMillis(1), Stub(DDAgentApi), monitor, null)
+
+    then:
+    foreign.list().toList().sort() == ["1-segment.spill", "other.tmp"]
+    segment.text == "not ours"
+    other.text == "not ours either"
+
+    cleanup:
+    buffer?.close()
+  }
+
+  static List<SerializedTrace> traces(List<Integer>... traces) {
+    return traces.collect { SerializedTrace.wrap(it as byte[]) }
+  }
+}
@@ -63,10 +63,10 @@ public final class CommonTaskExecutor extends AbstractExecutorService {
       log.warn("Periodic task scheduler is shutdown. Will not run: {}", name);
     } else {
       try {
-        final PeriodicTask<T> periodicTask = new PeriodicTask<>(task, target);
+        final WeakTargetTask<T> periodicTask = new WeakTargetTask<>(task, target);
         final ScheduledFuture<?> future =
             executorService.scheduleAtFixedRate(
-                new PeriodicTask<>(task, target), initialDelay, period, unit);
+                new WeakTargetTask<>(task, target), initialDelay, period, unit);
         periodicTask.setFuture(future);
         return future;
       } catch (final RejectedExecutionException e) {
@@ -80,6 +80,39 @@ public final class CommonTaskExecutor extends AbstractExecutorService {
     return new UnscheduledFuture(name);
   }
 
+  /**
+   * Run {@code task} once after {@code delay} providing it with {@code target}
+   *
+   * <p>Like {@link #scheduleAtFixedRate(Task, Object, long, long, TimeUnit, String)} no strong
+   * reference to {@code target} is held, the task doesn't run if {@code target} is GCed before the
+   * delay is over.
+   *
+   * @param task task to run. Important: must not hold any strong references to target (or anything
+   *     else non static)
+   * @param target target object to pass to task
+   * @param delay delay, see {@link ScheduledExecutorService#schedule(Runnable, long, TimeUnit)}
+   * @param unit unit, see {@link ScheduledExecutorService#schedule(Runnable, long, TimeUnit)}
+   * @param name name to use in logs when task cannot be scheduled
+   * @return future that can be canceled
+   */
+  public <T> ScheduledFuture<?> schedule(
+      final Task<T> task,
+      final T target,
+      final long delay,
+      final TimeUnit unit,
+      final String name) {
+    if (CommonTaskExecutor.INSTANCE.isShutdown()) {
+      log.warn("Task scheduler is shutdown. Will not run: {}", name);
+    } else {
+      try {
+        return executorService.schedule(new WeakTargetTask<>(task, target), delay, unit);
+      } catch (final RejectedExecutionException e) {
+        log.warn("Task rejected. Will not run: {}", name);
+      }
+    }
+    return new UnscheduledFuture(name);
+  }
+
   @Override
   public void shutdown() {
     executorService.shutdown();
@@ -137,12 +170,12 @@ public final class CommonTaskExecutor extends AbstractExecutorService {
     void run(T target);
   }
 
-  private static class PeriodicTask<T> implements Runnable {
+  private static class WeakTargetTask<T> implements Runnable {
     private final WeakReference<T> target;
     private final Task<T> task;
     private volatile ScheduledFuture<?> future = null;
 
-    public PeriodicTask(final Task<T> task, final T target) {
+    public WeakTargetTask(final Task<T> task, final T target) {
       this.target = new WeakReference<>(target);
       this.task = task;
     }
@@ -7,6 +7,10 @@ public final class DaemonThreadFactory implements ThreadFactory {
   public static final DaemonThreadFactory TRACE_PROCESSOR =
       new DaemonThreadFactory("dd-trace-processor");
   public static final DaemonThreadFactory TRACE_WRITER = new DaemonThreadFactory("dd-trace-writer");
+  public static final DaemonThreadFactory TRACE_SPILL_DRAINER =
+      new DaemonThreadFactory("dd-trace-spill-drainer");
+  public static final DaemonThreadFactory TRACE_CLEANER =
+      new DaemonThreadFactory("dd-trace-span-cleaner");
   public static final DaemonThreadFactory TASK_SCHEDULER =
       new DaemonThreadFactory("dd-task-scheduler");
 
@@ -33,6 +33,34 @@ class PeriodicSchedulingTest extends DDSpecification {
     latch.await(500, MILLISECONDS)
   }
 
+  def "test one-shot scheduling"() {
+    setup:
+    def callCount = new AtomicInteger()
+    def latch = new CountDownLatch(1)
+    def task = new CommonTaskExecutor.Task<CountDownLatch>() {
+      @Override
+      void run(CountDownLatch target) {
+        callCount.incrementAndGet()
+        target.countDown()
+      }
+    }
+
+    expect:
+    !CommonTaskExecutor.INSTANCE.isShutdown()
+
+    when:
+    CommonTaskExecutor.INSTANCE.schedule(task, latch, 10, MILLISECONDS, "test")
+
+    then:
+    latch.await(500, MILLISECONDS)
+
+    when:
+    Thread.sleep(50)
+
+    then:
+    callCount.get() == 1
+  }
+
   def "test canceling"() {
     setup:
     def callCount = new AtomicInteger()